@@ -0,0 +1,473 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.util.KthElement;
+
+/**
+ * A KDTree that supports inserting and removing points after construction.
+ * <p>
+ * Removed points are only marked as removed, and are skipped by searches.
+ * When more than half of the nodes in the tree are removed, the tree is
+ * rebuilt from the remaining points. Inserted points become new leaves. If an
+ * insertion makes a subtree unbalanced (one child subtree holds more than
+ * {@link #ALPHA} of its nodes), the highest such subtree is rebuilt. The
+ * amortized cost of an insertion is thus {@code O(log^2 N)} and of a removal
+ * {@code O(log N)}, so updating the tree costs time proportional to the
+ * number of changed points, not the total number of points.
+ * </p>
+ * <p>
+ * Use {@link net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree},
+ * and {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree}
+ * to query it.
+ * </p>
+ */
+public class DynamicKDTree< T > implements EuclideanSpace
+{
+	/**
+	 * A subtree is rebuilt if one of its child subtrees holds more than this
+	 * fraction of its nodes.
+	 */
+	public static final double ALPHA = 0.7;
+
+	/**
+	 * Subtrees with fewer nodes are never considered unbalanced.
+	 */
+	private static final int MIN_REBUILD_SIZE = 8;
+
+	final protected int n;
+
+	protected Node root;
+
+	/**
+	 * Number of points that have been inserted and not removed.
+	 */
+	protected int numPoints;
+
+	/**
+	 * Number of nodes in the tree that are marked as removed.
+	 */
+	protected int numRemoved;
+
+	/**
+	 * Nodes on the path from the root to the node being inserted.
+	 */
+	private final ArrayList< Node > path;
+
+	/**
+	 * A node of a {@link DynamicKDTree}. It has coordinates and a value. The
+	 * node returned by {@link DynamicKDTree#insert(Object, RealLocalizable)}
+	 * is the handle to remove the point from the tree again.
+	 */
+	public final class Node implements RealLocalizable, Sampler< T >
+	{
+		private final double[] pos;
+
+		private final T value;
+
+		private int splitDimension;
+
+		private Node left;
+
+		private Node right;
+
+		/**
+		 * Number of nodes (including removed nodes) in the subtree rooted at
+		 * this node.
+		 */
+		private int size;
+
+		private boolean removed;
+
+		private Node( final double[] pos, final T value )
+		{
+			this.pos = pos;
+			this.value = value;
+			this.size = 1;
+		}
+
+		public int getSplitDimension()
+		{
+			return splitDimension;
+		}
+
+		public double getSplitCoordinate()
+		{
+			return pos[ splitDimension ];
+		}
+
+		public Node left()
+		{
+			return left;
+		}
+
+		public Node right()
+		{
+			return right;
+		}
+
+		/**
+		 * @return whether this point was removed from the tree. Removed nodes
+		 *         may still be part of the tree structure until it is rebuilt.
+		 */
+		public boolean isRemoved()
+		{
+			return removed;
+		}
+
+		/**
+		 * Compute the squared distance from p to this node.
+		 */
+		public double squDistanceTo( final double[] p )
+		{
+			double sum = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double diff = pos[ d ] - p[ d ];
+				sum += diff * diff;
+			}
+			return sum;
+		}
+
+		private DynamicKDTree< T > tree()
+		{
+			return DynamicKDTree.this;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) pos[ d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( pos, 0, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) pos[ d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return pos[ d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return value;
+		}
+
+		/**
+		 * Nodes are handles into the tree, so they are not copied.
+		 *
+		 * @return this node.
+		 */
+		@Override
+		public Node copy()
+		{
+			return this;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + splitDimension + " ? " + getSplitCoordinate() + " | " + value + ( removed ? " (removed)" : "" );
+		}
+	}
+
+	/**
+	 * Construct an empty tree.
+	 *
+	 * @param numDimensions
+	 *            number of dimensions of the points.
+	 */
+	public DynamicKDTree( final int numDimensions )
+	{
+		this.n = numDimensions;
+		this.path = new ArrayList<>();
+	}
+
+	/**
+	 * Construct a balanced tree from the given points.
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @throws IllegalArgumentException
+	 *             if {@code positions} is empty. Use
+	 *             {@link #DynamicKDTree(int)} to construct an empty tree.
+	 */
+	public < L extends RealLocalizable > DynamicKDTree( final List< T > values, final List< L > positions )
+	{
+		this( numDimensions( positions ) );
+		if ( values.size() != positions.size() )
+			throw new IllegalArgumentException( "number of values (" + values.size() + ") and positions (" + positions.size() + ") differ" );
+		final List< Node > nodes = new ArrayList<>( values.size() );
+		for ( int i = 0; i < values.size(); ++i )
+			nodes.add( new Node( position( positions.get( i ) ), values.get( i ) ) );
+		numPoints = nodes.size();
+		root = build( nodes, 0 );
+	}
+
+	private static < L extends RealLocalizable > int numDimensions( final List< L > positions )
+	{
+		if ( positions.isEmpty() )
+			throw new IllegalArgumentException( "positions is empty, can not determine the number of dimensions" );
+		return positions.get( 0 ).numDimensions();
+	}
+
+	private double[] position( final RealLocalizable position )
+	{
+		if ( position.numDimensions() != n )
+			throw new IllegalArgumentException( "position has " + position.numDimensions() + " dimensions, expected " + n );
+		final double[] pos = new double[ n ];
+		position.localize( pos );
+		return pos;
+	}
+
+	/**
+	 * Insert a point.
+	 *
+	 * @return the new node, which can be used to
+	 *         {@link #remove(DynamicKDTree.Node) remove} the point again.
+	 */
+	public Node insert( final T value, final RealLocalizable position )
+	{
+		final Node node = new Node( position( position ), value );
+		++numPoints;
+		if ( root == null )
+		{
+			root = node;
+			return node;
+		}
+
+		// descend to a leaf, counting the new node in every subtree on the
+		// path
+		Node current = root;
+		while ( true )
+		{
+			path.add( current );
+			++current.size;
+			final int d = current.splitDimension;
+			// keys equal to the split go to the smaller side, otherwise points
+			// sharing a coordinate would pile up on the right and keep
+			// triggering rebuilds
+			final double key = node.pos[ d ];
+			final double split = current.pos[ d ];
+			final boolean goLeft = key < split || ( key == split && size( current.left ) < size( current.right ) );
+			final Node child = goLeft ? current.left : current.right;
+			if ( child == null )
+			{
+				node.splitDimension = ( d + 1 == n ) ? 0 : d + 1;
+				if ( goLeft )
+					current.left = node;
+				else
+					current.right = node;
+				break;
+			}
+			current = child;
+		}
+
+		// rebuild the highest unbalanced subtree on the path
+		for ( int i = 0; i < path.size(); ++i )
+		{
+			final Node p = path.get( i );
+			if ( p.size >= MIN_REBUILD_SIZE && Math.max( size( p.left ), size( p.right ) ) > ALPHA * p.size )
+			{
+				rebuild( i );
+				break;
+			}
+		}
+		path.clear();
+		return node;
+	}
+
+	/**
+	 * Remove a point from the tree.
+	 *
+	 * @param node
+	 *            the node returned by {@link #insert(Object, RealLocalizable)}
+	 *            for the point.
+	 * @return {@code true} if the point was removed, {@code false} if it had
+	 *         already been removed.
+	 */
+	public boolean remove( final Node node )
+	{
+		if ( node.tree() != this )
+			throw new IllegalArgumentException( "node does not belong to this tree" );
+		if ( node.removed )
+			return false;
+		node.removed = true;
+		--numPoints;
+		++numRemoved;
+		if ( numRemoved > numPoints )
+			rebalance();
+		return true;
+	}
+
+	/**
+	 * Rebuild the whole tree from the points that have not been removed. This
+	 * happens automatically if more than half of the nodes are removed, but
+	 * can be called explicitly, for example after a batch of updates.
+	 */
+	public void rebalance()
+	{
+		final List< Node > nodes = new ArrayList<>( numPoints );
+		collect( root, nodes );
+		root = build( nodes, 0 );
+		numRemoved = 0;
+	}
+
+	/**
+	 * Rebuild the {@code i}-th subtree on the insertion path, dropping removed
+	 * nodes.
+	 */
+	private void rebuild( final int i )
+	{
+		final Node subtreeRoot = path.get( i );
+		final List< Node > nodes = new ArrayList<>( subtreeRoot.size );
+		collect( subtreeRoot, nodes );
+		final Node rebuilt = build( nodes, subtreeRoot.splitDimension );
+		final int dropped = subtreeRoot.size - nodes.size();
+		numRemoved -= dropped;
+		if ( i == 0 )
+			root = rebuilt;
+		else
+		{
+			final Node parent = path.get( i - 1 );
+			if ( parent.left == subtreeRoot )
+				parent.left = rebuilt;
+			else
+				parent.right = rebuilt;
+			for ( int j = 0; j < i; ++j )
+				path.get( j ).size -= dropped;
+		}
+	}
+
+	private static int size( final DynamicKDTree< ? >.Node node )
+	{
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * Add all nodes of the subtree rooted at {@code node} that have not been
+	 * removed to {@code nodes}.
+	 */
+	private void collect( final Node node, final List< Node > nodes )
+	{
+		if ( node == null )
+			return;
+		if ( !node.removed )
+			nodes.add( node );
+		collect( node.left, nodes );
+		collect( node.right, nodes );
+	}
+
+	/**
+	 * Build a balanced tree from {@code nodes}, splitting along dimension
+	 * {@code d} at the root.
+	 */
+	private Node build( final List< Node > nodes, final int d )
+	{
+		final int size = nodes.size();
+		final int[] order = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+			order[ i ] = i;
+		return build( nodes, order, new double[ size ], 0, size - 1, d );
+	}
+
+	private Node build( final List< Node > nodes, final int[] order, final double[] keys, final int i, final int j, final int d )
+	{
+		if ( j < i )
+			return null;
+		final int k = i + ( j - i ) / 2;
+		if ( j > i )
+		{
+			for ( int l = i; l <= j; ++l )
+				keys[ l ] = nodes.get( order[ l ] ).pos[ d ];
+			KthElement.kthElement( i, j, k, keys, order );
+		}
+		final Node node = nodes.get( order[ k ] );
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		node.splitDimension = d;
+		node.left = build( nodes, order, keys, i, k - 1, dChild );
+		node.right = build( nodes, order, keys, k + 1, j, dChild );
+		node.size = j - i + 1;
+		return node;
+	}
+
+	/**
+	 * Get the root node.
+	 *
+	 * @return the root node, or {@code null} if the tree is empty.
+	 */
+	public Node getRoot()
+	{
+		return root;
+	}
+
+	/**
+	 * @return the number of points in the tree (not counting removed points).
+	 */
+	public int size()
+	{
+		return numPoints;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+}
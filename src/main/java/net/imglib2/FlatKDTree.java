@@ -0,0 +1,700 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.imglib2.type.Type;
+import net.imglib2.util.KthElement;
+
+/**
+ * A KDTree that stores all point coordinates in one flat {@code double[]}
+ * instead of one {@link KDTreeNode} object per point.
+ * <p>
+ * Nodes are laid out as an implicit, left-balanced binary tree: node
+ * {@code i} has children {@code 2i+1} and {@code 2i+2}, its coordinates are
+ * at {@code [i*n, i*n+n)} in {@link #getPositions()}, and nodes at depth
+ * {@code l} are split along dimension {@code l % n}. Values are not stored
+ * per node. Instead, {@link #valueIndex(int)} maps each node to the index of
+ * its value in the list the tree was constructed from.
+ * </p>
+ * <p>
+ * Use {@link net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree},
+ * {@link net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree}, and
+ * {@link net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree} to
+ * query it.
+ * </p>
+ */
+public class FlatKDTree< T > implements EuclideanSpace, IterableRealInterval< T >
+{
+	final protected int n;
+
+	final protected int size;
+
+	/**
+	 * Coordinates of all nodes, in tree order.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * For each node, index of its value in {@link #values}.
+	 */
+	final protected int[] indices;
+
+	final protected List< T > values;
+
+	final protected double[] min;
+
+	final protected double[] max;
+
+	/**
+	 * Construct a tree over the given points.
+	 *
+	 * @param values
+	 *            values associated with the points.
+	 * @param positions
+	 *            point coordinates.
+	 * @throws IllegalArgumentException
+	 *             if {@code positions} is empty.
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null );
+	}
+
+	/**
+	 * Construct a tree over the given points, building independent subtrees
+	 * concurrently on the given {@link ForkJoinPool}.
+	 *
+	 * @param values
+	 *            values associated with the points.
+	 * @param positions
+	 *            point coordinates.
+	 * @param pool
+	 *            the pool to build the tree on, or {@code null} to build it
+	 *            on the calling thread.
+	 * @throws IllegalArgumentException
+	 *             if {@code positions} is empty.
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions, final ForkJoinPool pool )
+	{
+		this( numDimensions( positions ), flatten( positions ), values, pool );
+	}
+
+	/**
+	 * Construct a tree over the given points.
+	 *
+	 * @param numDimensions
+	 *            number of dimensions {@code n} of the points.
+	 * @param positions
+	 *            point coordinates, {@code n} consecutive entries per point.
+	 *            The array is not modified.
+	 * @param values
+	 *            values associated with the points.
+	 */
+	public FlatKDTree( final int numDimensions, final double[] positions, final List< T > values )
+	{
+		this( numDimensions, positions, values, null );
+	}
+
+	/**
+	 * Construct a tree over the given points, building independent subtrees
+	 * concurrently on the given {@link ForkJoinPool}. The resulting tree is
+	 * identical to the one constructed by
+	 * {@link #FlatKDTree(int, double[], List)}.
+	 *
+	 * @param numDimensions
+	 *            number of dimensions {@code n} of the points.
+	 * @param positions
+	 *            point coordinates, {@code n} consecutive entries per point.
+	 *            The array is not modified.
+	 * @param values
+	 *            values associated with the points.
+	 * @param pool
+	 *            the pool to build the tree on, or {@code null} to build it
+	 *            on the calling thread.
+	 */
+	public FlatKDTree( final int numDimensions, final double[] positions, final List< T > values, final ForkJoinPool pool )
+	{
+		if ( positions.length % numDimensions != 0 )
+			throw new IllegalArgumentException( "length of positions is not a multiple of numDimensions" );
+		this.n = numDimensions;
+		this.size = positions.length / numDimensions;
+		if ( values.size() != size )
+			throw new IllegalArgumentException( "number of values (" + values.size() + ") and positions (" + size + ") differ" );
+		this.values = values;
+		this.positions = new double[ positions.length ];
+		this.indices = new int[ size ];
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		computeBounds( positions );
+		build( positions, pool );
+	}
+
+	/**
+	 * Construct a tree over the samples of an {@link IterableRealInterval}.
+	 * The values returned by the cursor are stored by reference. If the
+	 * cursor re-uses a single {@link Type} instance for all samples (as
+	 * cursors on images do), copies of the values are stored instead.
+	 */
+	public FlatKDTree( final IterableRealInterval< T > interval )
+	{
+		this( interval.numDimensions(), flatten( interval ), collectValues( interval ) );
+	}
+
+	private void computeBounds( final double[] points )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int i = 0; i < points.length; )
+		{
+			for ( int d = 0; d < n; ++d, ++i )
+			{
+				final double x = points[ i ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+	}
+
+	private void build( final double[] points, final ForkJoinPool pool )
+	{
+		final int[] order = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+			order[ i ] = i;
+		final double[] keys = new double[ size ];
+		if ( pool == null )
+			buildSubtree( points, order, keys, 0, 0, size, 0 );
+		else
+			pool.invoke( new BuildSubtreeTask( points, order, keys, 0, 0, size, 0 ) );
+	}
+
+	/**
+	 * Ranges with fewer points than this are turned into subtrees
+	 * sequentially by the parallel construction.
+	 */
+	protected static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	/**
+	 * Fork-join version of {@link FlatKDTree#buildSubtree}. After the split,
+	 * the left and right subtrees are built concurrently. They work on
+	 * disjoint ranges of {@code order} and {@code keys}, and write disjoint
+	 * nodes, so the resulting tree is identical to the sequentially built one.
+	 */
+	private class BuildSubtreeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] points;
+
+		private final int[] order;
+
+		private final double[] keys;
+
+		private final int node;
+
+		private final int from;
+
+		private final int to;
+
+		private final int d;
+
+		BuildSubtreeTask( final double[] points, final int[] order, final double[] keys, final int node, final int from, final int to, final int d )
+		{
+			this.points = points;
+			this.order = order;
+			this.keys = keys;
+			this.node = node;
+			this.from = from;
+			this.to = to;
+			this.d = d;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from < PARALLEL_THRESHOLD )
+			{
+				buildSubtree( points, order, keys, node, from, to, d );
+				return;
+			}
+			final int k = selectSplit( points, order, keys, node, from, to, d );
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			invokeAll(
+					new BuildSubtreeTask( points, order, keys, 2 * node + 1, from, k, dChild ),
+					new BuildSubtreeTask( points, order, keys, 2 * node + 2, k + 1, to, dChild ) );
+		}
+	}
+
+	/**
+	 * Build the subtree rooted at {@code node} from the points
+	 * {@code order[from]} to {@code order[to - 1]}.
+	 *
+	 * @param d
+	 *            split dimension of {@code node}
+	 */
+	protected void buildSubtree( final double[] points, final int[] order, final double[] keys, final int node, final int from, final int to, final int d )
+	{
+		final int k = selectSplit( points, order, keys, node, from, to, d );
+		if ( k < 0 )
+			return;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		buildSubtree( points, order, keys, 2 * node + 1, from, k, dChild );
+		buildSubtree( points, order, keys, 2 * node + 2, k + 1, to, dChild );
+	}
+
+	/**
+	 * Partition {@code order[from]} to {@code order[to - 1]} along dimension
+	 * {@code d} around the point that becomes {@code node} and store that
+	 * point.
+	 *
+	 * @return the index of {@code node} in {@code order}, or -1 if the range
+	 *         is empty.
+	 */
+	protected int selectSplit( final double[] points, final int[] order, final double[] keys, final int node, final int from, final int to, final int d )
+	{
+		final int m = to - from;
+		if ( m <= 0 )
+			return -1;
+		final int k = from + leftSubtreeSize( m );
+		if ( m > 1 )
+		{
+			for ( int i = from; i < to; ++i )
+				keys[ i ] = points[ order[ i ] * n + d ];
+			KthElement.kthElement( from, to - 1, k, keys, order );
+		}
+		final int p = order[ k ];
+		System.arraycopy( points, p * n, positions, node * n, n );
+		indices[ node ] = p;
+		return k;
+	}
+
+	/**
+	 * @return the number of nodes in the left subtree of a left-balanced
+	 *         binary tree with {@code m} nodes.
+	 */
+	protected static int leftSubtreeSize( final int m )
+	{
+		if ( m < 2 )
+			return 0;
+		final int h = 31 - Integer.numberOfLeadingZeros( m ); // index of the last level
+		final int lastLevel = m - ( 1 << h ) + 1;
+		final int half = 1 << ( h - 1 );
+		return half - 1 + Math.min( lastLevel, half );
+	}
+
+	private static < L extends RealLocalizable > int numDimensions( final List< L > positions )
+	{
+		if ( positions.isEmpty() )
+			throw new IllegalArgumentException( "positions is empty, can not determine the number of dimensions" );
+		return positions.get( 0 ).numDimensions();
+	}
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions )
+	{
+		final int n = positions.get( 0 ).numDimensions();
+		final double[] points = new double[ positions.size() * n ];
+		final double[] pos = new double[ n ];
+		int i = 0;
+		for ( final L position : positions )
+		{
+			assert position.numDimensions() == n;
+			position.localize( pos );
+			System.arraycopy( pos, 0, points, i, n );
+			i += n;
+		}
+		return points;
+	}
+
+	static double[] flatten( final IterableRealInterval< ? > interval )
+	{
+		final int n = interval.numDimensions();
+		final double[] points = new double[ ( int ) interval.size() * n ];
+		final double[] pos = new double[ n ];
+		final RealCursor< ? > cursor = interval.localizingCursor();
+		for ( int i = 0; cursor.hasNext(); i += n )
+		{
+			cursor.fwd();
+			cursor.localize( pos );
+			System.arraycopy( pos, 0, points, i, n );
+		}
+		return points;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	static < T > List< T > collectValues( final IterableRealInterval< T > interval )
+	{
+		final List< T > values = new ArrayList<>( ( int ) interval.size() );
+		for ( final T t : interval )
+			values.add( t );
+		if ( values.size() > 1 && values.get( 0 ) == values.get( 1 ) && values.get( 0 ) instanceof Type )
+		{
+			values.clear();
+			for ( final T t : interval )
+				values.add( ( T ) ( ( Type ) t ).copy() );
+		}
+		return values;
+	}
+
+	/**
+	 * Get the coordinates of all nodes, {@code n} consecutive entries per
+	 * node, in tree order. The returned array must not be modified.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return the index (into the list of values the tree was constructed
+	 *         from) of the value at {@code node}.
+	 */
+	public int valueIndex( final int node )
+	{
+		return indices[ node ];
+	}
+
+	/**
+	 * @return the value at {@code node}.
+	 */
+	public T getValue( final int node )
+	{
+		return values.get( indices[ node ] );
+	}
+
+	/**
+	 * @return the values the tree was constructed from, in original order.
+	 */
+	public List< T > getValues()
+	{
+		return values;
+	}
+
+	/**
+	 * @return the squared Euclidean distance between {@code node} and
+	 *         {@code pos}.
+	 */
+	public double squDistance( final int node, final double[] pos )
+	{
+		double sum = 0;
+		for ( int d = 0, i = node * n; d < n; ++d, ++i )
+		{
+			final double diff = positions[ i ] - pos[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the dimension along which {@code node} splits its subtree.
+	 */
+	public int splitDimension( final int node )
+	{
+		return ( 31 - Integer.numberOfLeadingZeros( node + 1 ) ) % n;
+	}
+
+	/**
+	 * @return the number of nodes (points) in the tree.
+	 */
+	public int numPoints()
+	{
+		return size;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	/**
+	 * A reference to a node of the tree. It is a {@link RealLocalizable} and
+	 * {@link Sampler} of the node it currently points to. Searches re-use
+	 * instances of this class to report results without allocation.
+	 */
+	public final class NodeRef implements RealLocalizable, Sampler< T >
+	{
+		private int node;
+
+		public NodeRef()
+		{
+			this( -1 );
+		}
+
+		public NodeRef( final int node )
+		{
+			this.node = node;
+		}
+
+		public void setNode( final int node )
+		{
+			this.node = node;
+		}
+
+		public int getNode()
+		{
+			return node;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, node * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ node * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( node );
+		}
+
+		@Override
+		public NodeRef copy()
+		{
+			return new NodeRef( node );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + node + " | " + get();
+		}
+	}
+
+	/**
+	 * Iterates the nodes in tree order.
+	 */
+	public final class FlatKDTreeCursor implements RealCursor< T >
+	{
+		private final NodeRef ref;
+
+		private FlatKDTreeCursor( final int node )
+		{
+			ref = new NodeRef( node );
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			ref.localize( position );
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			ref.localize( position );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ref.getFloatPosition( d );
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return ref.getDoublePosition( d );
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public T get()
+		{
+			return ref.get();
+		}
+
+		@Override
+		public FlatKDTreeCursor copy()
+		{
+			return new FlatKDTreeCursor( ref.node );
+		}
+
+		@Override
+		public FlatKDTreeCursor copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			ref.node += steps;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++ref.node;
+		}
+
+		@Override
+		public void reset()
+		{
+			ref.node = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return ref.node < size - 1;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			// NB: no action.
+		}
+	}
+
+	@Override
+	public FlatKDTreeCursor iterator()
+	{
+		return cursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor cursor()
+	{
+		return new FlatKDTreeCursor( -1 );
+	}
+
+	@Override
+	public FlatKDTreeCursor localizingCursor()
+	{
+		return cursor();
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return getValue( 0 );
+	}
+}
@@ -39,6 +39,8 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import net.imglib2.util.KthElement;
 
@@ -188,6 +190,30 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 *            a list of positions corresponding to the values
 	 */
 	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null );
+	}
+
+	/**
+	 * Construct a KDTree from the elements in the given list, building
+	 * independent subtrees concurrently on the given {@link ForkJoinPool}.
+	 *
+	 * <p>
+	 * The resulting tree is identical to the one constructed by
+	 * {@link #KDTree(List, List)}. Subtrees are built in parallel only if
+	 * {@code positions} is a {@link java.util.RandomAccess} list, otherwise
+	 * the tree is built on the calling thread.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param pool
+	 *            the pool to build the tree on, or {@code null} to build it
+	 *            on the calling thread.
+	 */
+	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions, final ForkJoinPool pool )
 	{
 		assert values.size() == positions.size();
 
@@ -220,7 +246,9 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 		if ( values == positions )
 		{
 			if ( positions instanceof java.util.RandomAccess )
-				root = makeNode( positions, 0, positions.size() - 1, 0 );
+				root = pool == null
+						? makeNode( positions, 0, positions.size() - 1, 0 )
+						: pool.invoke( new MakeNodeTask<>( positions, 0, positions.size() - 1, 0, null, null ) );
 			else
 				root = makeNode( positions.listIterator(), positions.listIterator( positions.size() ), 0 );
 		}
@@ -231,7 +259,9 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 				permutation[ k ] = k;
 
 			if ( positions instanceof java.util.RandomAccess )
-				root = makeNode( positions, 0, positions.size() - 1, 0, values, permutation );
+				root = pool == null
+						? makeNode( positions, 0, positions.size() - 1, 0, values, permutation )
+						: pool.invoke( new MakeNodeTask<>( positions, 0, positions.size() - 1, 0, values, permutation ) );
 			else
 				root = makeNode( positions.listIterator(), positions.listIterator( positions.size() ), 0, values, permutation );
 		}
@@ -245,6 +275,23 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 *            elements in the tree are obtained by iterating this
 	 */
 	public KDTree( final IterableRealInterval< T > interval )
+	{
+		this( interval, null );
+	}
+
+	/**
+	 * Construct a KDTree from the elements of the given
+	 * {@link IterableRealInterval}, building independent subtrees concurrently
+	 * on the given {@link ForkJoinPool}. The resulting tree is identical to
+	 * the one constructed by {@link #KDTree(IterableRealInterval)}.
+	 *
+	 * @param interval
+	 *            elements in the tree are obtained by iterating this
+	 * @param pool
+	 *            the pool to build the tree on, or {@code null} to build it
+	 *            on the calling thread.
+	 */
+	public KDTree( final IterableRealInterval< T > interval, final ForkJoinPool pool )
 	{
 		this.n = interval.numDimensions();
 		this.size = interval.size();
@@ -259,7 +306,9 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 			cursor.next();
 			values.add( cursor.copyCursor() );
 		}
-		root = makeSamplerNode( values, 0, values.size() - 1, 0 );
+		root = pool == null
+				? makeSamplerNode( values, 0, values.size() - 1, 0 )
+				: pool.invoke( new MakeSamplerNodeTask( values, 0, values.size() - 1, 0 ) );
 	}
 
 	/**
@@ -522,6 +571,112 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 		}
 	}
 
+	/**
+	 * Sublists with fewer elements than this are turned into subtrees
+	 * sequentially by the parallel construction.
+	 */
+	protected static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	/**
+	 * Fork-join version of {@link #makeNode(List, int, int, int, List, int[])}
+	 * (or {@link #makeNode(List, int, int, int)} if {@code values} is
+	 * {@code null}). After the split at the median, the left and right
+	 * subtrees are built concurrently. They work on disjoint sublists of
+	 * positions (and permutation), so the resulting tree is identical to the
+	 * sequentially built one.
+	 */
+	protected class MakeNodeTask< L extends RealLocalizable > extends RecursiveTask< ValueNode< T > >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List< L > positions;
+
+		private final int i;
+
+		private final int j;
+
+		private final int d;
+
+		private final List< T > values;
+
+		private final int[] permutation;
+
+		public MakeNodeTask( final List< L > positions, final int i, final int j, final int d, final List< T > values, final int[] permutation )
+		{
+			this.positions = positions;
+			this.i = i;
+			this.j = j;
+			this.d = d;
+			this.values = values;
+			this.permutation = permutation;
+		}
+
+		@SuppressWarnings( "unchecked" )
+		@Override
+		protected ValueNode< T > compute()
+		{
+			if ( j - i < PARALLEL_THRESHOLD )
+				return values == null
+						? makeNode( positions, i, j, d )
+						: makeNode( positions, i, j, d, values, permutation );
+
+			final int k = i + ( j - i ) / 2;
+			if ( values == null )
+				KthElement.kthElement( i, j, k, positions, new DimComparator< L >( d ) );
+			else
+				KthElement.kthElement( i, j, k, positions, permutation, new DimComparator< L >( d ) );
+
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			final MakeNodeTask< L > leftTask = new MakeNodeTask<>( positions, i, k - 1, dChild, values, permutation );
+			leftTask.fork();
+			final ValueNode< T > right = new MakeNodeTask<>( positions, k + 1, j, dChild, values, permutation ).compute();
+			final ValueNode< T > left = leftTask.join();
+			final T value = values == null ? ( T ) positions.get( k ) : values.get( permutation[ k ] );
+			return new ValueNode< T >( value, positions.get( k ), d, left, right );
+		}
+	}
+
+	/**
+	 * Fork-join version of {@link #makeSamplerNode(List, int, int, int)}.
+	 */
+	protected class MakeSamplerNodeTask extends RecursiveTask< SamplerNode< T > >
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List< RealCursor< T > > elements;
+
+		private final int i;
+
+		private final int j;
+
+		private final int d;
+
+		public MakeSamplerNodeTask( final List< RealCursor< T > > elements, final int i, final int j, final int d )
+		{
+			this.elements = elements;
+			this.i = i;
+			this.j = j;
+			this.d = d;
+		}
+
+		@Override
+		protected SamplerNode< T > compute()
+		{
+			if ( j - i < PARALLEL_THRESHOLD )
+				return makeSamplerNode( elements, i, j, d );
+
+			final int k = i + ( j - i ) / 2;
+			KthElement.kthElement( i, j, k, elements, new DimComparator< RealCursor< T > >( d ) );
+
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			final MakeSamplerNodeTask leftTask = new MakeSamplerNodeTask( elements, i, k - 1, dChild );
+			leftTask.fork();
+			final SamplerNode< T > right = new MakeSamplerNodeTask( elements, k + 1, j, dChild ).compute();
+			final SamplerNode< T > left = leftTask.join();
+			return new SamplerNode< T >( elements.get( k ), elements.get( k ), d, left, right );
+		}
+	}
+
 	/**
 	 * Get the root node.
 	 *
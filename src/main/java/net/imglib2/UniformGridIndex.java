@@ -0,0 +1,487 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.List;
+
+/**
+ * Uniform grid (bucket) index over a set of points. Space is divided into a
+ * regular grid of cells, and the points in each cell are stored
+ * contiguously. For dense, evenly distributed points, the cells near a
+ * query location contain few points each, so that neighbors can be found in
+ * expected constant time.
+ * <p>
+ * Cells are stored in a flat layout: The points of cell {@code c} are
+ * {@code cellStart(c)} (inclusive) to {@code cellStart(c + 1)} (exclusive),
+ * point {@code i} has coordinates {@code [i*n, i*n+n)} in
+ * {@link #getPositions()}, and {@link #valueIndex(int)} maps it to the index
+ * of its value in the list the index was constructed from.
+ * </p>
+ * <p>
+ * Use {@link net.imglib2.neighborsearch.NearestNeighborSearchOnUniformGrid}
+ * to query it.
+ * </p>
+ */
+public class UniformGridIndex< T > implements EuclideanSpace, RealInterval
+{
+	/**
+	 * Average number of points per cell, if the cell size is chosen
+	 * automatically.
+	 */
+	public static final double DEFAULT_POINTS_PER_CELL = 2;
+
+	final protected int n;
+
+	final protected int size;
+
+	final protected double[] min;
+
+	final protected double[] max;
+
+	/**
+	 * Size of a cell in each dimension.
+	 */
+	final protected double[] cellSize;
+
+	/**
+	 * Number of cells in each dimension.
+	 */
+	final protected int[] gridDimensions;
+
+	/**
+	 * Offset between neighboring cells in each dimension in the flat cell
+	 * index.
+	 */
+	final protected int[] gridSteps;
+
+	final protected int numCells;
+
+	/**
+	 * Points of cell {@code c} are {@code cellStart[c]} to
+	 * {@code cellStart[c+1] - 1}.
+	 */
+	final protected int[] cellStart;
+
+	/**
+	 * Coordinates of all points, ordered by cell.
+	 */
+	final protected double[] positions;
+
+	/**
+	 * For each point, index of its value in {@link #values}.
+	 */
+	final protected int[] indices;
+
+	final protected List< T > values;
+
+	/**
+	 * Construct an index over the given points, with a cell size chosen such
+	 * that there are on average {@link #DEFAULT_POINTS_PER_CELL} points per
+	 * cell (assuming evenly distributed points).
+	 *
+	 * @param numDimensions
+	 *            number of dimensions {@code n} of the points.
+	 * @param positions
+	 *            point coordinates, {@code n} consecutive entries per point.
+	 *            The array is not modified.
+	 * @param values
+	 *            values associated with the points.
+	 */
+	public UniformGridIndex( final int numDimensions, final double[] positions, final List< T > values )
+	{
+		this( numDimensions, positions, values, -1 );
+	}
+
+	/**
+	 * Construct an index over the given points, with cubic cells of the
+	 * given size.
+	 *
+	 * @param numDimensions
+	 *            number of dimensions {@code n} of the points.
+	 * @param positions
+	 *            point coordinates, {@code n} consecutive entries per point.
+	 *            The array is not modified.
+	 * @param values
+	 *            values associated with the points.
+	 * @param cellSize
+	 *            edge length of the cells, or a non-positive value to choose
+	 *            it automatically.
+	 */
+	public UniformGridIndex( final int numDimensions, final double[] positions, final List< T > values, final double cellSize )
+	{
+		if ( positions.length % numDimensions != 0 )
+			throw new IllegalArgumentException( "length of positions is not a multiple of numDimensions" );
+		this.n = numDimensions;
+		this.size = positions.length / numDimensions;
+		if ( values.size() != size )
+			throw new IllegalArgumentException( "number of values (" + values.size() + ") and positions (" + size + ") differ" );
+		this.values = values;
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		computeBounds( positions );
+
+		this.cellSize = new double[ n ];
+		this.gridDimensions = new int[ n ];
+		this.gridSteps = new int[ n ];
+		final double s = cellSize > 0 ? cellSize : defaultCellSize();
+		long cells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double extent = max[ d ] - min[ d ];
+			final long g = Math.max( 1, ( long ) Math.ceil( extent / s ) );
+			gridSteps[ d ] = ( int ) cells;
+			cells *= g;
+			if ( g > Integer.MAX_VALUE || cells >= Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "cell size " + s + " is too small, the grid would have more than " + Integer.MAX_VALUE + " cells" );
+			gridDimensions[ d ] = ( int ) g;
+			this.cellSize[ d ] = extent > 0 ? extent / g : 1;
+		}
+		this.numCells = ( int ) cells;
+
+		this.cellStart = new int[ numCells + 1 ];
+		this.positions = new double[ positions.length ];
+		this.indices = new int[ size ];
+		build( positions );
+	}
+
+	/**
+	 * Construct an index over the samples of an {@link IterableRealInterval},
+	 * with a cell size chosen automatically. The values returned by the
+	 * cursor are stored by reference. If the cursor re-uses a single
+	 * {@link net.imglib2.type.Type} instance for all samples (as cursors on
+	 * images do), copies of the values are stored instead.
+	 */
+	public UniformGridIndex( final IterableRealInterval< T > interval )
+	{
+		this( interval.numDimensions(), FlatKDTree.flatten( interval ), FlatKDTree.collectValues( interval ) );
+	}
+
+	private void computeBounds( final double[] points )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = size > 0 ? Double.MAX_VALUE : 0;
+			max[ d ] = size > 0 ? -Double.MAX_VALUE : 0;
+		}
+		for ( int i = 0; i < points.length; )
+		{
+			for ( int d = 0; d < n; ++d, ++i )
+			{
+				final double x = points[ i ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+	}
+
+	/**
+	 * Choose the edge length of cubic cells such that the bounding box
+	 * contains {@code size / DEFAULT_POINTS_PER_CELL} cells. Dimensions in
+	 * which all points have the same coordinate are ignored.
+	 */
+	private double defaultCellSize()
+	{
+		double volume = 1;
+		int m = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double extent = max[ d ] - min[ d ];
+			if ( extent > 0 )
+			{
+				volume *= extent;
+				++m;
+			}
+		}
+		if ( m == 0 )
+			return 1;
+		final double targetCells = Math.max( 1, size / DEFAULT_POINTS_PER_CELL );
+		return Math.pow( volume / targetCells, 1.0 / m );
+	}
+
+	/**
+	 * Sort points into cells (counting sort).
+	 */
+	private void build( final double[] points )
+	{
+		final int[] cellOfPoint = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+		{
+			int cell = 0;
+			for ( int d = 0; d < n; ++d )
+				cell += cellCoordinate( points[ i * n + d ], d ) * gridSteps[ d ];
+			cellOfPoint[ i ] = cell;
+			++cellStart[ cell + 1 ];
+		}
+		for ( int c = 0; c < numCells; ++c )
+			cellStart[ c + 1 ] += cellStart[ c ];
+		final int[] next = new int[ numCells ];
+		System.arraycopy( cellStart, 0, next, 0, numCells );
+		for ( int i = 0; i < size; ++i )
+		{
+			final int j = next[ cellOfPoint[ i ] ]++;
+			System.arraycopy( points, i * n, positions, j * n, n );
+			indices[ j ] = i;
+		}
+	}
+
+	/**
+	 * @return the grid coordinate in dimension {@code d} of the cell
+	 *         containing coordinate {@code x}. Coordinates outside the
+	 *         bounding box are clamped to the nearest cell.
+	 */
+	public int cellCoordinate( final double x, final int d )
+	{
+		final int c = ( int ) Math.floor( ( x - min[ d ] ) / cellSize[ d ] );
+		return c < 0 ? 0 : ( c >= gridDimensions[ d ] ? gridDimensions[ d ] - 1 : c );
+	}
+
+	/**
+	 * @return the lower bound of the cell at grid coordinate {@code c} in
+	 *         dimension {@code d}.
+	 */
+	public double cellMin( final int c, final int d )
+	{
+		return min[ d ] + c * cellSize[ d ];
+	}
+
+	/**
+	 * @return the number of cells in dimension {@code d}.
+	 */
+	public int gridDimension( final int d )
+	{
+		return gridDimensions[ d ];
+	}
+
+	/**
+	 * @return the offset between neighboring cells in dimension {@code d} in
+	 *         the flat cell index.
+	 */
+	public int gridStep( final int d )
+	{
+		return gridSteps[ d ];
+	}
+
+	/**
+	 * @return the total number of cells.
+	 */
+	public int numCells()
+	{
+		return numCells;
+	}
+
+	/**
+	 * @return the first point of cell {@code cell}. The points of cell
+	 *         {@code cell} are {@code cellStart(cell)} to
+	 *         {@code cellStart(cell + 1) - 1}.
+	 */
+	public int cellStart( final int cell )
+	{
+		return cellStart[ cell ];
+	}
+
+	/**
+	 * Get the coordinates of all points, {@code n} consecutive entries per
+	 * point, ordered by cell. The returned array must not be modified.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return the index (into the list of values the grid was constructed
+	 *         from) of the value at {@code point}.
+	 */
+	public int valueIndex( final int point )
+	{
+		return indices[ point ];
+	}
+
+	/**
+	 * @return the value at {@code point}.
+	 */
+	public T getValue( final int point )
+	{
+		return values.get( indices[ point ] );
+	}
+
+	/**
+	 * @return the squared Euclidean distance between {@code point} and
+	 *         {@code pos}.
+	 */
+	public double squDistance( final int point, final double[] pos )
+	{
+		double sum = 0;
+		for ( int d = 0, i = point * n; d < n; ++d, ++i )
+		{
+			final double diff = positions[ i ] - pos[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the number of points.
+	 */
+	public int numPoints()
+	{
+		return size;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	/**
+	 * A reference to a point of the index. It is a {@link RealLocalizable}
+	 * and {@link Sampler} of the point it currently points to. Searches re-use
+	 * instances of this class to report results without allocation.
+	 */
+	public final class PointRef implements RealLocalizable, Sampler< T >
+	{
+		private int point;
+
+		public PointRef()
+		{
+			this( -1 );
+		}
+
+		public PointRef( final int point )
+		{
+			this.point = point;
+		}
+
+		public void setPoint( final int point )
+		{
+			this.point = point;
+		}
+
+		public int getPoint()
+		{
+			return point;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ point * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, point * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ point * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ point * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( point );
+		}
+
+		@Override
+		public PointRef copy()
+		{
+			return new PointRef( point );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "point " + point + " | " + get();
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.converter;
+
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.basictypeaccess.ByteAccess;
+import net.imglib2.img.basictypeaccess.DoubleAccess;
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.ShortAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Creates {@link ARGBLineConverter}s that convert lines of the accesses of a
+ * {@link NativeImg} with a {@link BulkARGBConverter} (e.g.
+ * {@link RealARGBConverter}, {@link RealLUTConverter} or
+ * {@link ChannelARGBConverter}). Pixels are read into a {@code double[]}
+ * buffer in blocks, by a loop specialized for the primitive type, which is
+ * then converted by {@link BulkARGBConverter#convertLine}.
+ * <p>
+ * Supported are {@link ByteType}, {@link UnsignedByteType},
+ * {@link ShortType}, {@link UnsignedShortType}, {@link IntType},
+ * {@link UnsignedIntType}, {@link LongType}, {@link FloatType} and
+ * {@link DoubleType}.
+ */
+public final class ARGBLineConverters
+{
+	private ARGBLineConverters()
+	{}
+
+	/**
+	 * Number of pixels read into the buffer at a time.
+	 */
+	private static final int BLOCK_SIZE = 1024;
+
+	/**
+	 * Create an {@link ARGBLineConverter} for the accesses of {@code img}
+	 * that gives the same result as converting each pixel with
+	 * {@code converter}.
+	 *
+	 * @return the line converter, or {@code null} if the pixel type of
+	 *         {@code img} is not supported or {@code converter} is not a
+	 *         {@link BulkARGBConverter}.
+	 */
+	public static < T extends NativeType< T >, A > ARGBLineConverter< A > create( final NativeImg< T, A > img, final Converter< ? super T, ARGBType > converter )
+	{
+		if ( !( converter instanceof BulkARGBConverter ) )
+			return null;
+		final LineReader reader = lineReader( img.createLinkedType().getClass() );
+		if ( reader == null )
+			return null;
+		return new ReaderLineConverter<>( reader, ( BulkARGBConverter ) converter );
+	}
+
+	/**
+	 * @return whether {@link #create} supports pixels of the given type.
+	 */
+	public static boolean isSupported( final Class< ? > typeClass )
+	{
+		return lineReader( typeClass ) != null;
+	}
+
+	private static final class ReaderLineConverter< A > implements ARGBLineConverter< A >
+	{
+		private final LineReader reader;
+
+		private final BulkARGBConverter converter;
+
+		private final double[] buffer = new double[ BLOCK_SIZE ];
+
+		ReaderLineConverter( final LineReader reader, final BulkARGBConverter converter )
+		{
+			this.reader = reader;
+			this.converter = converter;
+		}
+
+		@Override
+		public void convertLine( final A source, final int sourceOffset, final int[] target, final int targetOffset, final int length )
+		{
+			for ( int i = 0; i < length; i += BLOCK_SIZE )
+			{
+				final int n = Math.min( BLOCK_SIZE, length - i );
+				reader.read( source, sourceOffset + i, buffer, n );
+				converter.convertLine( buffer, 0, target, targetOffset + i, n );
+			}
+		}
+	}
+
+	private enum LineReader
+	{
+		BYTE
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final ByteAccess a = ( ByteAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i );
+			}
+		},
+		UNSIGNED_BYTE
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final ByteAccess a = ( ByteAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i ) & 0xff;
+			}
+		},
+		SHORT
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final ShortAccess a = ( ShortAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i );
+			}
+		},
+		UNSIGNED_SHORT
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final ShortAccess a = ( ShortAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i ) & 0xffff;
+			}
+		},
+		INT
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final IntAccess a = ( IntAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i );
+			}
+		},
+		UNSIGNED_INT
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final IntAccess a = ( IntAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i ) & 0xffffffffL;
+			}
+		},
+		LONG
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final LongAccess a = ( LongAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i );
+			}
+		},
+		FLOAT
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final FloatAccess a = ( FloatAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i );
+			}
+		},
+		DOUBLE
+		{
+			@Override
+			void read( final Object access, final int offset, final double[] values, final int n )
+			{
+				final DoubleAccess a = ( DoubleAccess ) access;
+				for ( int i = 0; i < n; ++i )
+					values[ i ] = a.getValue( offset + i );
+			}
+		};
+
+		/**
+		 * Reads {@code n} pixels of {@code access}, starting at
+		 * {@code offset}, into {@code values}.
+		 */
+		abstract void read( Object access, int offset, double[] values, int n );
+	}
+
+	private static LineReader lineReader( final Class< ? > typeClass )
+	{
+		if ( typeClass == ByteType.class )
+			return LineReader.BYTE;
+		if ( typeClass == UnsignedByteType.class )
+			return LineReader.UNSIGNED_BYTE;
+		if ( typeClass == ShortType.class )
+			return LineReader.SHORT;
+		if ( typeClass == UnsignedShortType.class )
+			return LineReader.UNSIGNED_SHORT;
+		if ( typeClass == IntType.class )
+			return LineReader.INT;
+		if ( typeClass == UnsignedIntType.class )
+			return LineReader.UNSIGNED_INT;
+		if ( typeClass == LongType.class )
+			return LineReader.LONG;
+		if ( typeClass == FloatType.class )
+			return LineReader.FLOAT;
+		if ( typeClass == DoubleType.class )
+			return LineReader.DOUBLE;
+		return null;
+	}
+}
@@ -54,7 +54,7 @@ import net.imglib2.type.numeric.integer.UnsignedByteType;
  * 
  * @author Tobias Pietzsch
  */
-public final class ChannelARGBConverter implements Converter< UnsignedByteType, ARGBType >
+public final class ChannelARGBConverter implements Converter< UnsignedByteType, ARGBType >, BulkARGBConverter
 {
 	public ChannelARGBConverter( final Channel channel )
 	{
@@ -95,4 +95,11 @@ public final class ChannelARGBConverter implements Converter< UnsignedByteType,
 	{
 		output.set( input.get() << shift );
 	}
+
+	@Override
+	public void convertLine( final double[] values, final int valuesOffset, final int[] argb, final int argbOffset, final int length )
+	{
+		for ( int i = 0; i < length; ++i )
+			argb[ argbOffset + i ] = ( int ) values[ valuesOffset + i ] << shift;
+	}
 }
@@ -43,7 +43,7 @@ import net.imglib2.type.numeric.RealType;
  * @author Stephan Saalfeld
  * @author Philipp Hanslovsky
  */
-public class RealARGBConverter< R extends RealType< ? > > extends AbstractLinearRange implements Converter< R, ARGBType >
+public class RealARGBConverter< R extends RealType< ? > > extends AbstractLinearRange implements Converter< R, ARGBType >, BulkARGBConverter
 {
 
 	private int alpha = 0xff000000;
@@ -67,6 +67,20 @@ public class RealARGBConverter< R extends RealType< ? > > extends AbstractLinear
 		output.set( argb );
 	}
 
+	@Override
+	public void convertLine( final double[] values, final int valuesOffset, final int[] argb, final int argbOffset, final int length )
+	{
+		final double min = this.min;
+		final double scale = this.scale;
+		final int alpha = this.alpha;
+		for ( int i = 0; i < length; ++i )
+		{
+			final double a = values[ valuesOffset + i ];
+			final int b = Math.min( 255, roundPositive( Math.max( 0, ( a - min ) / scale * 255.0 ) ) );
+			argb[ argbOffset + i ] = alpha | ( b << 8 | b ) << 8 | b;
+		}
+	}
+
 	public void setAlpha( final int alpha )
 	{
 		this.alpha = ( alpha & 0xff ) << 24;
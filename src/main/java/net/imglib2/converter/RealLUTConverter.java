@@ -53,7 +53,7 @@ import net.imglib2.type.numeric.RealType;
  * @author Curtis Rueden
  */
 public class RealLUTConverter< R extends RealType< R >> extends
-		AbstractLinearRange implements Converter< R, ARGBType >
+		AbstractLinearRange implements Converter< R, ARGBType >, BulkARGBConverter
 {
 
 	private ColorTable lut = null;
@@ -88,4 +88,14 @@ public class RealLUTConverter< R extends RealType< R >> extends
 		output.set( argb );
 	}
 
+	@Override
+	public void convertLine( final double[] values, final int valuesOffset, final int[] argb, final int argbOffset, final int length )
+	{
+		final ColorTable lut = this.lut;
+		final double min = this.min;
+		final double max = this.max;
+		for ( int i = 0; i < length; ++i )
+			argb[ argbOffset + i ] = lut.lookupARGB( min, max, values[ valuesOffset + i ] );
+	}
+
 }
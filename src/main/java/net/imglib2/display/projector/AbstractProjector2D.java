@@ -33,7 +33,21 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import net.imglib2.Interval;
 import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.loops.ParallelTasks;
+import net.imglib2.type.Type;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
 import net.imglib2.display.projector.sampler.SamplingProjector2D;
 import net.imglib2.display.projector.specialized.ArrayImgXYByteProjector;
 
@@ -47,6 +61,17 @@ import net.imglib2.display.projector.specialized.ArrayImgXYByteProjector;
  * point to project data into a 2 dimensional representation. <br>
  * A basic example is the extraction of a data plain (containing the reference
  * point) by sampling two axes
+ * <p>
+ * If an {@link ExecutorService} is {@link #setExecutorService set},
+ * projectors that support it split the target into stripes that are rendered
+ * in parallel. Each stripe uses its own source and target accessors, and its
+ * own converter. Projectors that were given a single converter instance,
+ * instead of a supplier of converters, render on the calling thread.
+ * <p>
+ * Rendering can be canceled with a {@link #setCancellationToken cancellation
+ * token}, which is polled every few rows, and projectors that support it can
+ * render a {@link #map(int) subsampled} preview, for example to
+ * {@link #mapProgressive render progressively} from coarse to fine.
  * 
  * @author Michael Zinsmaier
  * @author Martin Horn
@@ -58,6 +83,18 @@ public abstract class AbstractProjector2D extends Point implements Projector
 
 	protected final long[] max;
 
+	/**
+	 * Stripes rendered in parallel do not get smaller than this number of
+	 * target pixels.
+	 */
+	protected static final long MIN_PIXELS_PER_TASK = 1 << 14;
+
+	private ExecutorService executorService = null;
+
+	private BooleanSupplier cancellationToken = null;
+
+	private volatile boolean canceled = false;
+
 	/**
 	 * initializes a reference point with the specified number of dimensions.
 	 * Start position is 0,0,...,0
@@ -74,4 +111,370 @@ public abstract class AbstractProjector2D extends Point implements Projector
 		max = new long[ n ];
 	}
 
+	/**
+	 * Set the {@link ExecutorService} that {@link #map()} renders on, in
+	 * parallel stripes. If {@code null} (the default), or if the projector
+	 * {@link #isParallelizable() can not render in parallel}, {@link #map()}
+	 * renders on the calling thread.
+	 */
+	public void setExecutorService( final ExecutorService executorService )
+	{
+		this.executorService = executorService;
+	}
+
+	/**
+	 * @return the {@link ExecutorService} that {@link #map()} renders on, or
+	 *         {@code null} if it renders on the calling thread.
+	 */
+	public ExecutorService getExecutorService()
+	{
+		return executorService;
+	}
+
+	/**
+	 * Set the cancellation token that is polled while rendering. When it
+	 * returns {@code true}, {@link #map()} stops as soon as possible, leaving
+	 * the target partially rendered, and {@link #wasCanceled()} returns
+	 * {@code true}. For example, a viewer can pass
+	 * {@code () -> frameId != currentFrameId} to abandon stale frames. If
+	 * {@code null} (the default), rendering is never canceled.
+	 */
+	public void setCancellationToken( final BooleanSupplier cancellationToken )
+	{
+		this.cancellationToken = cancellationToken;
+	}
+
+	/**
+	 * @return the cancellation token, or {@code null} if there is none.
+	 */
+	public BooleanSupplier getCancellationToken()
+	{
+		return cancellationToken;
+	}
+
+	/**
+	 * @return true if the last {@link #map()} stopped early because the
+	 *         {@link #setCancellationToken cancellation token} was set.
+	 */
+	public boolean wasCanceled()
+	{
+		return canceled;
+	}
+
+	/**
+	 * Render a preview, where only every {@code subsampling}th pixel in X and
+	 * Y is sampled from the source, and replicated to fill a
+	 * {@code subsampling} by {@code subsampling} block of the target.
+	 * {@code subsampling <= 1} renders at full resolution.
+	 * <p>
+	 * Projectors that do not support subsampling render at full resolution.
+	 *
+	 * @return true if the target was rendered subsampled, false if it was
+	 *         rendered at full resolution.
+	 */
+	public boolean map( final int subsampling )
+	{
+		map();
+		return false;
+	}
+
+	/**
+	 * Re-render the parts of the target that show any of the given regions
+	 * of the source, for example the cells polled from a
+	 * {@link net.imglib2.img.cell.DirtyCellTracker}, after they were
+	 * modified. Regions that do not intersect the plane at the current
+	 * position are skipped.
+	 * <p>
+	 * Projectors that do not support this render the whole target.
+	 *
+	 * @param dirtySourceRegions
+	 *            modified regions, in source coordinates
+	 */
+	public void map( final Collection< ? extends Interval > dirtySourceRegions )
+	{
+		map();
+	}
+
+	/**
+	 * Render coarse to fine: first with {@code coarsestSubsampling}, then
+	 * with half the subsampling, and so on, until the target is rendered at
+	 * full resolution. {@code passDone} is called after each pass that was
+	 * not canceled, for example to repaint. If the projector (or its target)
+	 * does not support subsampling, the target is rendered once at full
+	 * resolution.
+	 *
+	 * @return true if the full resolution pass completed, false if rendering
+	 *         was canceled.
+	 */
+	public boolean mapProgressive( final int coarsestSubsampling, final Runnable passDone )
+	{
+		for ( int subsampling = Math.max( 1, coarsestSubsampling );; subsampling /= 2 )
+		{
+			final boolean subsampled = map( subsampling );
+			if ( wasCanceled() || isCancellationRequested() )
+			{
+				canceled = true;
+				return false;
+			}
+			passDone.run();
+			if ( subsampling == 1 || !subsampled )
+				return true;
+		}
+	}
+
+	private boolean isCancellationRequested()
+	{
+		final BooleanSupplier token = cancellationToken;
+		return token != null && token.getAsBoolean();
+	}
+
+	/**
+	 * Renders a range of the target. The unit of the range (for example
+	 * rows, or pixels in iteration order) is defined by the caller of
+	 * {@link AbstractProjector2D#mapInChunks}.
+	 */
+	protected interface ChunkMapper
+	{
+		/**
+		 * Render units {@code from} (inclusive) to {@code to} (exclusive).
+		 * Before each unit, {@link Cancellation#isCanceled()} should be
+		 * called, and rendering should stop if it returns {@code true}.
+		 */
+		void map( long from, long to, Cancellation cancellation );
+	}
+
+	/**
+	 * Polls the {@link AbstractProjector2D#setCancellationToken cancellation
+	 * token} while a chunk is rendered, every few units. There is one
+	 * instance per chunk.
+	 */
+	protected final class Cancellation
+	{
+		private final long unitsPerPoll;
+
+		private long remaining = 0;
+
+		private Cancellation( final long unitsPerPoll )
+		{
+			this.unitsPerPoll = unitsPerPoll;
+		}
+
+		/**
+		 * Call before rendering each unit.
+		 *
+		 * @return true if rendering was canceled and should stop.
+		 */
+		public boolean isCanceled()
+		{
+			if ( --remaining > 0 )
+				return false;
+			remaining = unitsPerPoll;
+			if ( canceled )
+				return true;
+			if ( isCancellationRequested() )
+			{
+				canceled = true;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Splits {@code [0, size)} into chunks that are mapped in parallel on the
+	 * {@link #getExecutorService() ExecutorService}, or maps it as a whole on
+	 * the calling thread if there is none.
+	 *
+	 * @param size
+	 *            number of units to map
+	 * @param pixelsPerUnit
+	 *            number of target pixels in each unit, for example the width
+	 *            of the target if units are rows
+	 * @param mapper
+	 *            maps one chunk. Called concurrently for disjoint chunks.
+	 */
+	protected void mapInChunks( final long size, final long pixelsPerUnit, final ChunkMapper mapper )
+	{
+		canceled = false;
+		final long unitsPerPoll = Math.max( 1, MIN_PIXELS_PER_TASK / Math.max( 1, pixelsPerUnit ) );
+		final ExecutorService es = executorService;
+		final long numTasks = es == null || !isParallelizable()
+				? 1
+				: Math.min( Math.min( ParallelTasks.suggestNumberOfTasks( es ), size ), size * pixelsPerUnit / MIN_PIXELS_PER_TASK );
+		if ( numTasks <= 1 )
+		{
+			mapper.map( 0, size, new Cancellation( unitsPerPoll ) );
+			return;
+		}
+		final List< Runnable > tasks = new ArrayList<>( ( int ) numTasks );
+		for ( long t = 0; t < numTasks; ++t )
+		{
+			final long from = size * t / numTasks;
+			final long to = size * ( t + 1 ) / numTasks;
+			tasks.add( () -> mapper.map( from, to, new Cancellation( unitsPerPoll ) ) );
+		}
+		ParallelTasks.run( es, tasks );
+	}
+
+	/**
+	 * Whether {@link #mapInChunks} may render chunks in parallel, if there is
+	 * an {@link #getExecutorService() ExecutorService}. Projectors that share
+	 * one converter between all chunks return {@code false}, because the
+	 * converter is not required to be thread-safe.
+	 */
+	protected boolean isParallelizable()
+	{
+		return true;
+	}
+
+	/**
+	 * Samples the source for a target pixel. One instance is used per stripe.
+	 */
+	protected interface PixelSampler< B >
+	{
+		/**
+		 * Compute the value of target pixel {@code ( x, y )} into
+		 * {@code output}.
+		 */
+		void sample( long x, long y, B output );
+	}
+
+	/**
+	 * @return true if {@link #mapSubsampled} can render into {@code target}:
+	 *         it is a non-empty {@link RandomAccessibleInterval} of
+	 *         {@link Type}s.
+	 */
+	protected static boolean canSubsample( final Object target )
+	{
+		if ( !( target instanceof RandomAccessibleInterval ) )
+			return false;
+		final RandomAccessibleInterval< ? > rai = ( RandomAccessibleInterval< ? > ) target;
+		return !Intervals.isEmpty( rai ) && Util.getTypeFromInterval( rai ) instanceof Type;
+	}
+
+	/**
+	 * Render a subsampled preview into {@code target}: the target is split
+	 * into blocks of {@code subsampling} by {@code subsampling} pixels, the
+	 * top left pixel of each block is sampled, and its value is copied to the
+	 * whole block. Rows of blocks are rendered in parallel and canceled like
+	 * in {@link #map()}.
+	 *
+	 * @param target
+	 *            the target, must satisfy {@link #canSubsample}
+	 * @param targetDimX
+	 *            the X dimension of the target
+	 * @param targetDimY
+	 *            the Y dimension of the target
+	 * @param samplers
+	 *            provides one {@link PixelSampler} per stripe
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	protected < B > void mapSubsampled( final RandomAccessibleInterval< B > target, final int targetDimX, final int targetDimY, final int subsampling, final Supplier< ? extends PixelSampler< B > > samplers )
+	{
+		mapSubsampledTypes( ( RandomAccessibleInterval ) target, targetDimX, targetDimY, subsampling, ( Supplier ) samplers );
+	}
+
+	private < T extends Type< T > > void mapSubsampledTypes( final RandomAccessibleInterval< T > target, final int targetDimX, final int targetDimY, final int subsampling, final Supplier< ? extends PixelSampler< T > > samplers )
+	{
+		final long[] targetMin = Intervals.minAsLongArray( target );
+		final long minX = targetMin[ targetDimX ];
+		final long minY = targetMin[ targetDimY ];
+		final long width = target.dimension( targetDimX );
+		final long height = target.dimension( targetDimY );
+		final int numBlocksX = ( int ) ( ( width + subsampling - 1 ) / subsampling );
+		final long numBlocksY = ( height + subsampling - 1 ) / subsampling;
+		final T type = Util.getTypeFromInterval( target );
+
+		mapInChunks( numBlocksY, width * subsampling, ( fromBlockY, toBlockY, cancellation ) -> {
+			final PixelSampler< T > sampler = samplers.get();
+			final RandomAccess< T > targetRandomAccess = target.randomAccess();
+			targetRandomAccess.setPosition( targetMin );
+			final List< T > values = new ArrayList<>( numBlocksX );
+			for ( int i = 0; i < numBlocksX; ++i )
+				values.add( type.createVariable() );
+
+			for ( long blockY = fromBlockY; blockY < toBlockY; ++blockY )
+			{
+				if ( cancellation.isCanceled() )
+					return;
+				final long y0 = minY + blockY * subsampling;
+				for ( int i = 0; i < numBlocksX; ++i )
+					sampler.sample( minX + ( long ) i * subsampling, y0, values.get( i ) );
+
+				final long y1 = Math.min( y0 + subsampling, minY + height );
+				for ( long y = y0; y < y1; ++y )
+				{
+					targetRandomAccess.setPosition( minX, targetDimX );
+					targetRandomAccess.setPosition( y, targetDimY );
+					for ( long x = 0; x < width; ++x )
+					{
+						targetRandomAccess.get().set( values.get( ( int ) ( x / subsampling ) ) );
+						targetRandomAccess.fwd( targetDimX );
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Intersects source regions with the plane at the current position and
+	 * with the target bounds in X and Y.
+	 *
+	 * @return the non-empty intersections as target rectangles
+	 *         {@code { minX, minY, maxX, maxY }}.
+	 */
+	protected List< long[] > dirtyRectangles( final Collection< ? extends Interval > sourceRegions, final int dimX, final int dimY, final long minX, final long minY, final long maxX, final long maxY )
+	{
+		final List< long[] > rectangles = new ArrayList<>();
+		A: for ( final Interval region : sourceRegions )
+		{
+			for ( int d = 0; d < region.numDimensions(); ++d )
+				if ( d != dimX && d != dimY && d < position.length && ( position[ d ] < region.min( d ) || position[ d ] > region.max( d ) ) )
+					continue A;
+			final long[] rectangle = {
+					Math.max( minX, region.min( dimX ) ),
+					Math.max( minY, region.min( dimY ) ),
+					Math.min( maxX, region.max( dimX ) ),
+					Math.min( maxY, region.max( dimY ) ) };
+			if ( rectangle[ 0 ] <= rectangle[ 2 ] && rectangle[ 1 ] <= rectangle[ 3 ] )
+				rectangles.add( rectangle );
+		}
+		return rectangles;
+	}
+
+	/**
+	 * Renders one target rectangle.
+	 */
+	protected interface RectangleMapper
+	{
+		/**
+		 * Render the target rectangle {@code { minX, minY, maxX, maxY }}.
+		 *
+		 * @return false if rendering was canceled.
+		 */
+		boolean map( long[] rectangle );
+	}
+
+	/**
+	 * Renders target rectangles, in parallel on the
+	 * {@link #getExecutorService() ExecutorService} if there is one, and
+	 * canceled like {@link #map()}.
+	 */
+	protected void mapRectangles( final List< long[] > rectangles, final RectangleMapper mapper )
+	{
+		long numPixels = 0;
+		for ( final long[] r : rectangles )
+			numPixels += ( r[ 2 ] - r[ 0 ] + 1 ) * ( r[ 3 ] - r[ 1 ] + 1 );
+		final long pixelsPerRectangle = rectangles.isEmpty() ? 1 : numPixels / rectangles.size();
+		mapInChunks( rectangles.size(), pixelsPerRectangle, ( from, to, cancellation ) -> {
+			for ( int i = ( int ) from; i < to; ++i )
+			{
+				if ( cancellation.isCanceled() || !mapper.map( rectangles.get( i ) ) )
+				{
+					canceled = true;
+					return;
+				}
+			}
+		} );
+	}
 }
@@ -33,13 +33,20 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.RandomAccessibleIntervalCursor;
 import net.imglib2.view.Views;
 
@@ -69,6 +76,14 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 
 	final protected IterableInterval< B > target;
 
+	final protected Supplier< ? extends Converter< ? super A, B > > converterSupplier;
+
+	/**
+	 * Whether {@link #converterSupplier} only returns the converter passed to
+	 * the constructor.
+	 */
+	private final boolean sharedConverter;
+
 	final int numDimensions;
 
 	private final int dimX;
@@ -85,9 +100,35 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 	 * @param target
 	 * @param converter
 	 *            a converter that is applied to each point in the plain. This
-	 *            can e.g. be used for normalization, conversions, ...
+	 *            can e.g. be used for normalization, conversions, ... The
+	 *            converter need not be thread-safe, so {@link #map()} renders
+	 *            on the calling thread. Use the {@link Supplier} constructor
+	 *            to render in parallel.
 	 */
 	public IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Converter< ? super A, B > converter )
+	{
+		this( dimX, dimY, source, target, converter, () -> converter, true );
+	}
+
+	/**
+	 * creates a new 2D projector that samples a plain in the dimensions dimX,
+	 * dimY.
+	 * 
+	 * @param dimX
+	 * @param dimY
+	 * @param source
+	 * @param target
+	 * @param converterSupplier
+	 *            provides the converter that is applied to each point in the
+	 *            plain. If the projector renders in parallel, each stripe gets
+	 *            its own converter.
+	 */
+	public IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Supplier< ? extends Converter< ? super A, B > > converterSupplier )
+	{
+		this( dimX, dimY, source, target, converterSupplier.get(), converterSupplier, false );
+	}
+
+	private IterableIntervalProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final IterableInterval< B > target, final Converter< ? super A, B > converter, final Supplier< ? extends Converter< ? super A, B > > converterSupplier, final boolean sharedConverter )
 	{
 		super( source.numDimensions() );
 		this.dimX = dimX;
@@ -95,9 +136,21 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 		this.target = target;
 		this.source = source;
 		this.converter = converter;
+		this.converterSupplier = converterSupplier;
+		this.sharedConverter = sharedConverter;
 		this.numDimensions = source.numDimensions();
 	}
 
+	/**
+	 * @return {@code false} if this projector was created with a single
+	 *         {@link Converter}, which is not required to be thread-safe.
+	 */
+	@Override
+	protected boolean isParallelizable()
+	{
+		return !sharedConverter;
+	}
+
 	/**
 	 * projects data from the source to the target and applies the former
 	 * specified {@link Converter} e.g. for normalization.
@@ -116,62 +169,155 @@ public class IterableIntervalProjector2D< A, B > extends AbstractProjector2D
 
 		// TODO: this is ugly, but the only way to make sure, that iteration
 		// order fits in the case of one sized dims. Tobi?
-		final IterableInterval< A > ii = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
+		final FinalInterval sourceInterval = new FinalInterval( min, max );
+		final IterableInterval< A > ii = Views.iterable( Views.interval( source, sourceInterval ) );
 
 		final Cursor< A > sourceCursor = ii.cursor();
 
 		if ( target.iterationOrder().equals( ii.iterationOrder() ) && !( sourceCursor instanceof RandomAccessibleIntervalCursor ) )
 		{
-			final Cursor< B > targetCursor = target.cursor();
-			while ( targetCursor.hasNext() )
-			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
-			}
+			mapInChunks( target.size(), 1, ( from, to, cancellation ) -> {
+				final Converter< ? super A, B > converter = converterSupplier.get();
+				final Cursor< A > sourceChunkCursor = ii.cursor();
+				final Cursor< B > targetCursor = target.cursor();
+				sourceChunkCursor.jumpFwd( from );
+				targetCursor.jumpFwd( from );
+				for ( long i = from; i < to; ++i )
+				{
+					if ( cancellation.isCanceled() )
+						return;
+					converter.convert( sourceChunkCursor.next(), targetCursor.next() );
+				}
+			} );
 		}
 		else if ( target.iterationOrder() instanceof FlatIterationOrder )
 		{
-			final Cursor< B > targetCursor = target.cursor();
-			targetCursor.fwd();
-			final FinalInterval sourceInterval = new FinalInterval( min, max );
-
-			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
-			sourceRandomAccess.setPosition( position );
-
+			final long[] sourceMin = min.clone();
 			final long cr = -target.dimension( 0 );
 
 			final long width = target.dimension( 0 );
 			final long height = target.dimension( 1 );
 
-			sourceRandomAccess.setPosition( min );
-			for ( long y = 0; y < height; ++y )
-			{
-				for ( long x = 0; x < width; ++x )
+			mapInChunks( height, width, ( fromY, toY, cancellation ) -> {
+				final Converter< ? super A, B > converter = converterSupplier.get();
+				final Cursor< B > targetCursor = target.cursor();
+				targetCursor.jumpFwd( fromY * width + 1 );
+
+				// use localizing cursor
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
+				sourceRandomAccess.setPosition( sourceMin );
+				sourceRandomAccess.move( fromY, dimY );
+				for ( long y = fromY; y < toY; ++y )
 				{
-					converter.convert( sourceRandomAccess.get(), targetCursor.get() );
-					sourceRandomAccess.fwd( dimX );
-					targetCursor.fwd();
+					if ( cancellation.isCanceled() )
+						return;
+					for ( long x = 0; x < width; ++x )
+					{
+						converter.convert( sourceRandomAccess.get(), targetCursor.get() );
+						sourceRandomAccess.fwd( dimX );
+						targetCursor.fwd();
+					}
+					sourceRandomAccess.move( cr, dimX );
+					sourceRandomAccess.fwd( dimY );
 				}
-				sourceRandomAccess.move( cr, dimX );
-				sourceRandomAccess.fwd( dimY );
-			}
-
+			} );
 		}
 		else
 		{
-			final Cursor< B > targetCursor = target.localizingCursor();
-			
-			// use localizing cursor
+			final long[] sourcePosition = position.clone();
+			mapInChunks( target.size(), 1, ( from, to, cancellation ) -> {
+				final Converter< ? super A, B > converter = converterSupplier.get();
+				final Cursor< B > targetCursor = target.localizingCursor();
+				targetCursor.jumpFwd( from );
+
+				// use localizing cursor
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+				sourceRandomAccess.setPosition( sourcePosition );
+				for ( long i = from; i < to; ++i )
+				{
+					if ( cancellation.isCanceled() )
+						return;
+					final B b = targetCursor.next();
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), dimX );
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), dimY );
+
+					converter.convert( sourceRandomAccess.get(), b );
+				}
+			} );
+		}
+	}
+
+	/**
+	 * Render a preview that samples only every {@code subsampling}th pixel
+	 * of the source, see {@link AbstractProjector2D#map(int)}. Renders at
+	 * full resolution if the target is not a {@link RandomAccessibleInterval}
+	 * of {@link net.imglib2.type.Type}s.
+	 */
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public boolean map( final int subsampling )
+	{
+		if ( subsampling <= 1 || !canSubsample( target ) )
+		{
+			map();
+			return false;
+		}
+
+		final long[] sourcePosition = position.clone();
+		mapSubsampled( ( RandomAccessibleInterval< B > ) target, 0, 1, subsampling, () -> {
+			final Converter< ? super A, B > converter = converterSupplier.get();
 			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
-			sourceRandomAccess.setPosition( position );
-			while ( targetCursor.hasNext() )
-			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), dimX );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), dimY );
-
-				converter.convert( sourceRandomAccess.get(), b );
-			}
+			sourceRandomAccess.setPosition( sourcePosition );
+			return ( x, y, output ) -> {
+				sourceRandomAccess.setPosition( x, dimX );
+				sourceRandomAccess.setPosition( y, dimY );
+				converter.convert( sourceRandomAccess.get(), output );
+			};
+		} );
+		return true;
+	}
+
+	/**
+	 * Re-render the parts of the target that show the given source regions,
+	 * see {@link AbstractProjector2D#map(Collection)}. Renders the whole
+	 * target if it is not a {@link RandomAccessibleInterval}.
+	 */
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public void map( final Collection< ? extends Interval > dirtySourceRegions )
+	{
+		if ( !( target instanceof RandomAccessibleInterval ) )
+		{
+			map();
+			return;
 		}
+
+		final RandomAccessibleInterval< B > targetInterval = ( RandomAccessibleInterval< B > ) target;
+		final List< long[] > rectangles = dirtyRectangles( dirtySourceRegions, dimX, dimY, target.min( 0 ), target.min( 1 ), target.max( 0 ), target.max( 1 ) );
+		final long[] targetMin = Intervals.minAsLongArray( target );
+		final long[] targetMax = Intervals.maxAsLongArray( target );
+		mapRectangles( rectangles, rectangle -> {
+			final long[] subMin = targetMin.clone();
+			final long[] subMax = targetMax.clone();
+			subMin[ 0 ] = rectangle[ 0 ];
+			subMin[ 1 ] = rectangle[ 1 ];
+			subMax[ 0 ] = rectangle[ 2 ];
+			subMax[ 1 ] = rectangle[ 3 ];
+			final IterableIntervalProjector2D< A, B > projector = subProjector( Views.interval( targetInterval, subMin, subMax ) );
+			projector.setPosition( this );
+			projector.setCancellationToken( getCancellationToken() );
+			projector.map();
+			return !projector.wasCanceled();
+		} );
+	}
+
+	/**
+	 * Creates a projector with the same source and converter that renders
+	 * into a part of the target. Used to re-render
+	 * {@link #map(Collection) dirty regions}.
+	 */
+	protected IterableIntervalProjector2D< A, B > subProjector( final RandomAccessibleInterval< B > subTarget )
+	{
+		return new IterableIntervalProjector2D<>( dimX, dimY, source, Views.iterable( subTarget ), converterSupplier );
 	}
 }
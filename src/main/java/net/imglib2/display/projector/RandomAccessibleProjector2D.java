@@ -33,8 +33,14 @@
  */
 package net.imglib2.display.projector;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
 import net.imglib2.FinalInterval;
 import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -72,6 +78,14 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 
 	final protected RandomAccessible< A > source;
 
+	final protected Supplier< ? extends Converter< ? super A, B > > converterSupplier;
+
+	/**
+	 * Whether {@link #converterSupplier} only returns the converter passed to
+	 * the constructor.
+	 */
+	private final boolean sharedConverter;
+
 	final int numDimensions;
 
 	private final int dimX;
@@ -92,9 +106,35 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 	 * @param target
 	 * @param converter
 	 *            a converter that is applied to each point in the plain. This
-	 *            can e.g. be used for normalization, conversions, ...
+	 *            can e.g. be used for normalization, conversions, ... The
+	 *            converter need not be thread-safe, so {@link #map()} renders
+	 *            on the calling thread. Use the {@link Supplier} constructor
+	 *            to render in parallel.
 	 */
 	public RandomAccessibleProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter )
+	{
+		this( dimX, dimY, source, target, converter, () -> converter, true );
+	}
+
+	/**
+	 * creates a new 2D projector that samples a plain in the dimensions dimX,
+	 * dimY.
+	 * 
+	 * @param dimX
+	 * @param dimY
+	 * @param source
+	 * @param target
+	 * @param converterSupplier
+	 *            provides the converter that is applied to each point in the
+	 *            plain. If the projector renders in parallel, each stripe gets
+	 *            its own converter.
+	 */
+	public RandomAccessibleProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Supplier< ? extends Converter< ? super A, B > > converterSupplier )
+	{
+		this( dimX, dimY, source, target, converterSupplier.get(), converterSupplier, false );
+	}
+
+	private RandomAccessibleProjector2D( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Converter< ? super A, B > converter, final Supplier< ? extends Converter< ? super A, B > > converterSupplier, final boolean sharedConverter )
 	{
 		super( source.numDimensions() );
 		this.dimX = dimX;
@@ -102,9 +142,21 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 		this.target = target;
 		this.source = source;
 		this.converter = converter;
+		this.converterSupplier = converterSupplier;
+		this.sharedConverter = sharedConverter;
 		this.numDimensions = source.numDimensions();
 	}
 
+	/**
+	 * @return {@code false} if this projector was created with a single
+	 *         {@link Converter}, which is not required to be thread-safe.
+	 */
+	@Override
+	protected boolean isParallelizable()
+	{
+		return !sharedConverter;
+	}
+
 	/**
 	 * projects data from the source to the target and applies the former
 	 * specified {@link Converter} e.g. for normalization.
@@ -119,21 +171,98 @@ public class RandomAccessibleProjector2D< A, B > extends AbstractProjector2D
 		min[ dimY ] = target.min( dimY );
 		max[ dimX ] = target.max( dimX );
 		max[ dimY ] = target.max( dimY );
-		final FinalInterval sourceInterval = new FinalInterval( min, max );
+		final long[] sourceMin = min.clone();
+		final long[] sourceMax = max.clone();
+
+		final long width = target.dimension( dimX );
+		final long height = target.dimension( dimY );
+
+		mapInChunks( height, width, ( fromY, toY, cancellation ) -> {
+			final long[] stripeMin = sourceMin.clone();
+			final long[] stripeMax = sourceMax.clone();
+			stripeMin[ dimY ] = sourceMin[ dimY ] + fromY;
+			stripeMax[ dimY ] = sourceMin[ dimY ] + toY - 1;
+			mapStripe( new FinalInterval( stripeMin, stripeMax ), converterSupplier.get(), cancellation );
+		} );
+	}
+
+	/**
+	 * Render a preview that samples only every {@code subsampling}th pixel
+	 * of the source, see {@link AbstractProjector2D#map(int)}.
+	 */
+	@Override
+	public boolean map( final int subsampling )
+	{
+		if ( subsampling <= 1 || !canSubsample( target ) )
+		{
+			map();
+			return false;
+		}
 
-		final long cr = -target.dimension( dimX );
+		final long[] sourcePosition = position.clone();
+		mapSubsampled( target, dimX, dimY, subsampling, () -> {
+			final Converter< ? super A, B > converter = converterSupplier.get();
+			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+			sourceRandomAccess.setPosition( sourcePosition );
+			return ( x, y, output ) -> {
+				sourceRandomAccess.setPosition( x, dimX );
+				sourceRandomAccess.setPosition( y, dimY );
+				converter.convert( sourceRandomAccess.get(), output );
+			};
+		} );
+		return true;
+	}
+
+	/**
+	 * Re-render the parts of the target that show the given source regions,
+	 * see {@link AbstractProjector2D#map(Collection)}.
+	 */
+	@Override
+	public void map( final Collection< ? extends Interval > dirtySourceRegions )
+	{
+		for ( int d = 2; d < position.length; ++d )
+			min[ d ] = max[ d ] = position[ d ];
+		final long[] sourceMin = min.clone();
+		final long[] sourceMax = max.clone();
+
+		final List< long[] > rectangles = dirtyRectangles( dirtySourceRegions, dimX, dimY, target.min( dimX ), target.min( dimY ), target.max( dimX ), target.max( dimY ) );
+		final BooleanSupplier token = getCancellationToken();
+		mapRectangles( rectangles, rectangle -> {
+			final long[] rectangleMin = sourceMin.clone();
+			final long[] rectangleMax = sourceMax.clone();
+			rectangleMin[ dimX ] = rectangle[ 0 ];
+			rectangleMin[ dimY ] = rectangle[ 1 ];
+			rectangleMax[ dimX ] = rectangle[ 2 ];
+			rectangleMax[ dimY ] = rectangle[ 3 ];
+			if ( token != null && token.getAsBoolean() )
+				return false;
+			mapStripe( new FinalInterval( rectangleMin, rectangleMax ), converterSupplier.get(), null );
+			return true;
+		} );
+	}
+
+	/**
+	 * Render the target pixels of {@code sourceInterval}, polling
+	 * {@code cancellation} before each row, unless it is {@code null}.
+	 */
+	private void mapStripe( final FinalInterval sourceInterval, final Converter< ? super A, B > converter, final Cancellation cancellation )
+	{
+		final long cr = -sourceInterval.dimension( dimX );
 
 		final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
 		final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
 
-		final long width = target.dimension( dimX );
-		final long height = target.dimension( dimY );
+		final long width = sourceInterval.dimension( dimX );
+		final long height = sourceInterval.dimension( dimY );
 
-		sourceRandomAccess.setPosition( min );
-		targetRandomAccess.setPosition( min[ dimX ], dimX );
-		targetRandomAccess.setPosition( min[ dimY ], dimY );
+		for ( int d = 0; d < numDimensions; ++d )
+			sourceRandomAccess.setPosition( sourceInterval.min( d ), d );
+		targetRandomAccess.setPosition( sourceInterval.min( dimX ), dimX );
+		targetRandomAccess.setPosition( sourceInterval.min( dimY ), dimY );
 		for ( long y = 0; y < height; ++y )
 		{
+			if ( cancellation != null && cancellation.isCanceled() )
+				return;
 			for ( long x = 0; x < width; ++x )
 			{
 				converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
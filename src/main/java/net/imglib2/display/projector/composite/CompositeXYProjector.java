@@ -35,6 +35,8 @@
 package net.imglib2.display.projector.composite;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
@@ -44,6 +46,7 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.display.projector.AbstractProjector2D;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.util.Intervals;
 
 /**
  * Creates a composite image from across multiple dimensional positions along an
@@ -54,6 +57,12 @@ import net.imglib2.type.numeric.ARGBType;
  * methods.
  *
  * See XYProjector for the code upon which this class was based.
+ * <p>
+ * The converters are not required to be thread-safe, so {@link #map()} renders
+ * on the calling thread even if an
+ * {@link #setExecutorService(java.util.concurrent.ExecutorService)
+ * ExecutorService} is set, unless the projector was created with a
+ * {@link Supplier} of converters. Then each stripe gets its own converters.
  *
  * @author Stephan Saalfeld
  * @author Curtis Rueden
@@ -65,6 +74,12 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 
 	private final ArrayList< Converter< A, ARGBType >> converters;
 
+	/**
+	 * Provides a list of converters for each stripe, or {@code null} if all
+	 * stripes use {@link #converters}.
+	 */
+	private final Supplier< ? extends List< ? extends Converter< A, ARGBType > > > convertersSupplier;
+
 	private final int dimIndex;
 
 	private final long positionCount;
@@ -77,17 +92,41 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 
 	protected final Converter< A, ARGBType >[] currentConverters;
 
+	/**
+	 * Indices of {@link #currentConverters} in the list of converters.
+	 */
+	private final int[] currentIndices;
+
 	private final IterableInterval< ARGBType > target;
 
 	private final RandomAccessibleInterval< A > source;
 
-	@SuppressWarnings( "unchecked" )
 	public CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final ArrayList< Converter< A, ARGBType >> converters, final int dimIndex )
+	{
+		this( source, target, converters, null, dimIndex );
+	}
+
+	/**
+	 * Creates a projector that can render in parallel stripes, each with its
+	 * own converters.
+	 *
+	 * @param convertersSupplier
+	 *            provides one converter per dimensional position. It is
+	 *            called once on construction and once per stripe.
+	 */
+	public CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final Supplier< ? extends List< ? extends Converter< A, ARGBType > > > convertersSupplier, final int dimIndex )
+	{
+		this( source, target, new ArrayList<>( convertersSupplier.get() ), convertersSupplier, dimIndex );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private CompositeXYProjector( final RandomAccessibleInterval< A > source, final IterableInterval< ARGBType > target, final ArrayList< Converter< A, ARGBType >> converters, final Supplier< ? extends List< ? extends Converter< A, ARGBType > > > convertersSupplier, final int dimIndex )
 	{
 		super( source.numDimensions() );
 		this.source = source;
 		this.target = target;
 		this.converters = converters;
+		this.convertersSupplier = convertersSupplier;
 		this.dimIndex = dimIndex;
 
 		// check that there is one converter per dimensional position
@@ -100,6 +139,7 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		composite[ 0 ] = true;
 		currentPositions = new long[ converterCount ];
 		currentConverters = new Converter[ converterCount ];
+		currentIndices = new int[ converterCount ];
 	}
 
 	// -- CompositeXYProjector methods --
@@ -157,9 +197,7 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 		{
 			// there is only converter[0]
 			// use it to map the current position
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-			sourceRandomAccess.setPosition( min );
-			mapSingle( sourceRandomAccess, converters.get( 0 ) );
+			mapSingle( new FinalInterval( min, max ), 0 );
 			return;
 		}
 
@@ -171,56 +209,149 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 				min[ dimIndex ] = currentPositions[ i ];
 			else if ( currentPositions[ i ] > max[ dimIndex ] )
 				max[ dimIndex ] = currentPositions[ i ];
-		final RandomAccess< A > sourceRandomAccess = source.randomAccess( new FinalInterval( min, max ) );
-		sourceRandomAccess.setPosition( min );
+		final FinalInterval sourceInterval = new FinalInterval( min, max );
 
 		if ( size == 1 )
 		{
 			// there is only one active converter: converter[0]
 			// use it to map the slice at currentPositions[0]
-			mapSingle( sourceRandomAccess, currentConverters[ 0 ] );
+			mapSingle( sourceInterval, currentIndices[ 0 ] );
 			return;
 		}
 
-		final Cursor< ARGBType > targetCursor = target.localizingCursor();
-		final ARGBType bi = new ARGBType();
+		final long[] sourceMin = Intervals.minAsLongArray( sourceInterval );
+		mapInChunks( target.size(), 1, ( from, to, cancellation ) -> {
+			final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
+			sourceRandomAccess.setPosition( sourceMin );
+			final Cursor< ARGBType > targetCursor = target.localizingCursor();
+			targetCursor.jumpFwd( from );
+			final List< ? extends Converter< A, ARGBType > > stripeConverters = stripeConverters();
+			final ARGBType bi = new ARGBType();
 
-		while ( targetCursor.hasNext() )
-		{
-			targetCursor.fwd();
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
-			int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
-			for ( int i = 0; i < size; i++ )
+			for ( long j = from; j < to; ++j )
 			{
-				sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
-				currentConverters[ i ].convert( sourceRandomAccess.get(), bi );
-
-				// accumulate converted result
-				final int value = bi.get();
-				final int a = ARGBType.alpha( value );
-				final int r = ARGBType.red( value );
-				final int g = ARGBType.green( value );
-				final int b = ARGBType.blue( value );
-				aSum += a;
-				rSum += r;
-				gSum += g;
-				bSum += b;
+				if ( cancellation.isCanceled() )
+					return;
+				targetCursor.fwd();
+				composite( sourceRandomAccess, stripeConverters, targetCursor.getLongPosition( 0 ), targetCursor.getLongPosition( 1 ), size, bi, targetCursor.get() );
 			}
-			if ( aSum > 255 )
-				aSum = 255;
-			if ( rSum > 255 )
-				rSum = 255;
-			if ( gSum > 255 )
-				gSum = 255;
-			if ( bSum > 255 )
-				bSum = 255;
-			targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
+		} );
+	}
+
+	/**
+	 * Render a preview that samples only every {@code subsampling}th pixel
+	 * of the source, see {@link AbstractProjector2D#map(int)}. Renders at
+	 * full resolution if the target is not a {@link RandomAccessibleInterval}.
+	 */
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public boolean map( final int subsampling )
+	{
+		if ( subsampling <= 1 || !canSubsample( target ) )
+		{
+			map();
+			return false;
+		}
+
+		for ( int d = 2; d < position.length; ++d )
+			min[ d ] = max[ d ] = position[ d ];
+		min[ 0 ] = target.min( 0 );
+		min[ 1 ] = target.min( 1 );
+		max[ 0 ] = target.max( 0 );
+		max[ 1 ] = target.max( 1 );
+
+		final int size;
+		final int single;
+		if ( dimIndex < 0 )
+		{
+			size = 1;
+			single = 0;
+		}
+		else
+		{
+			size = updateCurrentArrays();
+			single = currentIndices[ 0 ];
+			min[ dimIndex ] = max[ dimIndex ] = currentPositions[ 0 ];
+		}
+		final long[] sourceMin = min.clone();
+
+		mapSubsampled( ( RandomAccessibleInterval< ARGBType > ) target, 0, 1, subsampling, () -> {
+			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+			sourceRandomAccess.setPosition( sourceMin );
+			final List< ? extends Converter< A, ARGBType > > stripeConverters = stripeConverters();
+			final Converter< A, ARGBType > singleConverter = stripeConverters.get( single );
+			final ARGBType bi = new ARGBType();
+			return ( x, y, output ) -> {
+				if ( size == 1 )
+				{
+					sourceRandomAccess.setPosition( x, 0 );
+					sourceRandomAccess.setPosition( y, 1 );
+					singleConverter.convert( sourceRandomAccess.get(), output );
+				}
+				else
+					composite( sourceRandomAccess, stripeConverters, x, y, size, bi, output );
+			};
+		} );
+		return true;
+	}
+
+	/**
+	 * Sum the converted values of the {@code size} active positions at
+	 * {@code ( x, y )} into {@code output}, using the converters of the
+	 * current stripe.
+	 */
+	private void composite( final RandomAccess< A > sourceRandomAccess, final List< ? extends Converter< A, ARGBType > > stripeConverters, final long x, final long y, final int size, final ARGBType bi, final ARGBType output )
+	{
+		sourceRandomAccess.setPosition( x, 0 );
+		sourceRandomAccess.setPosition( y, 1 );
+		int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			sourceRandomAccess.setPosition( currentPositions[ i ], dimIndex );
+			stripeConverters.get( currentIndices[ i ] ).convert( sourceRandomAccess.get(), bi );
+
+			// accumulate converted result
+			final int value = bi.get();
+			final int a = ARGBType.alpha( value );
+			final int r = ARGBType.red( value );
+			final int g = ARGBType.green( value );
+			final int b = ARGBType.blue( value );
+			aSum += a;
+			rSum += r;
+			gSum += g;
+			bSum += b;
 		}
+		if ( aSum > 255 )
+			aSum = 255;
+		if ( rSum > 255 )
+			rSum = 255;
+		if ( gSum > 255 )
+			gSum = 255;
+		if ( bSum > 255 )
+			bSum = 255;
+		output.set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
 	}
 
 	// -- Helper methods --
 
+	/**
+	 * @return {@code false} unless the projector was created with a
+	 *         {@link Supplier} of converters.
+	 */
+	@Override
+	protected boolean isParallelizable()
+	{
+		return convertersSupplier != null;
+	}
+
+	/**
+	 * @return the converters for a new stripe.
+	 */
+	private List< ? extends Converter< A, ARGBType > > stripeConverters()
+	{
+		return convertersSupplier == null ? converters : convertersSupplier.get();
+	}
+
 	/**
 	 * Walk through composite[] and store the currently active converters and
 	 * positions (in dimension {@link #dimIndex}) to {@link #currentConverters}
@@ -246,7 +377,8 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 			// this is the isSingle() case.
 			// map the current position using the converter at that position
 			currentPositions[ 0 ] = position[ dimIndex ];
-			currentConverters[ 0 ] = converters.get( ( int ) ( position[ dimIndex ] - positionMin ) );
+			currentIndices[ 0 ] = ( int ) ( position[ dimIndex ] - positionMin );
+			currentConverters[ 0 ] = converters.get( currentIndices[ 0 ] );
 			return 1;
 		}
 		// this is the normal case.
@@ -257,6 +389,7 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 			if ( composite[ i ] )
 			{
 				currentPositions[ j ] = positionMin + i;
+				currentIndices[ j ] = i;
 				currentConverters[ j ] = converters.get( i );
 				++j;
 			}
@@ -264,14 +397,41 @@ public class CompositeXYProjector< A > extends AbstractProjector2D
 	}
 
 	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv )
+	{
+		mapSingle( sourceRandomAccess, conv, 0, target.size(), null );
+	}
+
+	/**
+	 * Map target pixels {@code from} (inclusive) to {@code to} (exclusive), in
+	 * iteration order, using a single converter. Polls {@code cancellation}
+	 * before each pixel, unless it is {@code null}.
+	 */
+	protected void mapSingle( final RandomAccess< A > sourceRandomAccess, final Converter< A, ARGBType > conv, final long from, final long to, final Cancellation cancellation )
 	{
 		final Cursor< ARGBType > targetCursor = target.localizingCursor();
-		while ( targetCursor.hasNext() )
+		targetCursor.jumpFwd( from );
+		for ( long i = from; i < to; ++i )
 		{
+			if ( cancellation != null && cancellation.isCanceled() )
+				return;
 			targetCursor.fwd();
 			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
 			sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
 			conv.convert( sourceRandomAccess.get(), targetCursor.get() );
 		}
 	}
+
+	/**
+	 * Map the target using the converter at {@code index} in the list of
+	 * converters.
+	 */
+	private void mapSingle( final FinalInterval sourceInterval, final int index )
+	{
+		final long[] sourceMin = Intervals.minAsLongArray( sourceInterval );
+		mapInChunks( target.size(), 1, ( from, to, cancellation ) -> {
+			final RandomAccess< A > sourceRandomAccess = source.randomAccess( sourceInterval );
+			sourceRandomAccess.setPosition( sourceMin );
+			mapSingle( sourceRandomAccess, stripeConverters().get( index ), from, to, cancellation );
+		} );
+	}
 }
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.display.projector.specialized;
+
+import net.imglib2.converter.ARGBLineConverter;
+import net.imglib2.converter.ARGBLineConverters;
+import net.imglib2.converter.BulkARGBConverter;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Base class of projectors that render the XY plane of a {@link NativeImg}
+ * at the current position into an ARGB {@link ArrayImg} (e.g. an
+ * {@link net.imglib2.display.screenimage.awt.ARGBScreenImage}), reading the
+ * primitive storage of the source line by line with an
+ * {@link ARGBLineConverter}.
+ * <p>
+ * The converter must be a {@link BulkARGBConverter}, for example a
+ * {@link net.imglib2.converter.RealARGBConverter} that scales
+ * {@code [min, max]} to gray values, and the pixel type must be supported by
+ * {@link ARGBLineConverters}. The source must have at least 2 dimensions.
+ * The converter is shared by all threads if an
+ * {@link #setExecutorService ExecutorService} is set.
+ *
+ * @param <T>
+ *            pixel type
+ * @param <A>
+ *            access type
+ */
+public abstract class AbstractXYARGBProjector< T extends RealType< T > & NativeType< T >, A > extends AbstractProjector2D
+{
+	protected final NativeImg< T, A > source;
+
+	protected final Converter< ? super T, ARGBType > converter;
+
+	protected final int[] targetArray;
+
+	/**
+	 * Dimensions of the source.
+	 */
+	protected final long[] dims;
+
+	protected final int width;
+
+	protected final int height;
+
+	public AbstractXYARGBProjector( final NativeImg< T, A > source, final ArrayImg< ARGBType, IntArray > target, final Converter< ? super T, ARGBType > converter )
+	{
+		super( source.numDimensions() );
+
+		if ( source.numDimensions() < 2 )
+			throw new IllegalArgumentException( "Source must have at least 2 dimensions, but has " + source.numDimensions() + "." );
+		if ( !( converter instanceof BulkARGBConverter ) )
+			throw new IllegalArgumentException( "Converter must implement " + BulkARGBConverter.class.getSimpleName() + "." );
+		if ( !ARGBLineConverters.isSupported( source.createLinkedType().getClass() ) )
+			throw new IllegalArgumentException( "Unsupported pixel type " + source.createLinkedType().getClass().getSimpleName() + "." );
+
+		this.source = source;
+		this.converter = converter;
+		this.dims = new long[ n ];
+		source.dimensions( dims );
+		this.width = ( int ) dims[ 0 ];
+		this.height = ( int ) dims[ 1 ];
+
+		if ( target.dimension( 0 ) != width || target.size() != ( long ) width * height )
+			throw new IllegalArgumentException( "Target must be " + width + "x" + height + "." );
+		this.targetArray = target.update( null ).getCurrentStorageArray();
+	}
+
+	/**
+	 * @return a new {@link ARGBLineConverter} for the source. One is used per
+	 *         thread.
+	 */
+	protected ARGBLineConverter< A > lineConverter()
+	{
+		return ARGBLineConverters.create( source, converter );
+	}
+}
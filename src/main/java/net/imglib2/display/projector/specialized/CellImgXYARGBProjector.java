@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.display.projector.specialized;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.converter.ARGBLineConverter;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Renders the XY plane of an {@link AbstractCellImg} (e.g. a
+ * {@link net.imglib2.img.cell.CellImg} or
+ * {@link net.imglib2.img.cell.LazyCellImg}) of any primitive
+ * {@link RealType} into an ARGB {@link ArrayImg}. Cells are visited in
+ * their native layout: each cell that intersects the plane is fetched once,
+ * and its rows are converted at once from the cell data. Rows of cells are
+ * rendered in parallel if an {@link #setExecutorService ExecutorService} is
+ * set.
+ *
+ * @see AbstractXYARGBProjector
+ */
+public class CellImgXYARGBProjector< T extends RealType< T > & NativeType< T >, A > extends AbstractXYARGBProjector< T, A >
+{
+	private final AbstractCellImg< T, A, ? extends Cell< A >, ? > cellSource;
+
+	public CellImgXYARGBProjector( final AbstractCellImg< T, A, ? extends Cell< A >, ? > source, final ArrayImg< ARGBType, IntArray > target, final Converter< ? super T, ARGBType > converter )
+	{
+		super( source, target, converter );
+		this.cellSource = source;
+	}
+
+	/**
+	 * Scales {@code [min, max]} to gray values with a
+	 * {@link RealARGBConverter}.
+	 */
+	public CellImgXYARGBProjector( final AbstractCellImg< T, A, ? extends Cell< A >, ? > source, final ArrayImg< ARGBType, IntArray > target, final double min, final double max )
+	{
+		this( source, target, new RealARGBConverter<>( min, max ) );
+	}
+
+	@Override
+	public void map()
+	{
+		final CellGrid grid = cellSource.getCellGrid();
+		final int sn = grid.numDimensions();
+		final long[] gridPos = new long[ sn ];
+		for ( int d = 2; d < sn; ++d )
+			gridPos[ d ] = position[ d ] / grid.cellDimension( d );
+		final long[] planePos = position.clone();
+		final long numCellsX = grid.gridDimension( 0 );
+		final long numCellsY = grid.gridDimension( 1 );
+		final int cellHeight = grid.cellDimension( 1 );
+
+		mapInChunks( numCellsY, ( long ) width * cellHeight, ( from, to, cancellation ) -> {
+			final ARGBLineConverter< A > lineConverter = lineConverter();
+			final RandomAccess< ? extends Cell< A > > cellAccess = cellSource.getCells().randomAccess();
+			cellAccess.setPosition( gridPos );
+			for ( long gy = from; gy < to; ++gy )
+			{
+				cellAccess.setPosition( gy, 1 );
+				for ( long gx = 0; gx < numCellsX; ++gx )
+				{
+					if ( cancellation.isCanceled() )
+						return;
+					cellAccess.setPosition( gx, 0 );
+					final Cell< A > cell = cellAccess.get();
+					final int cellWidth = cell.dimension( 0 );
+					final int rows = cell.dimension( 1 );
+
+					// offset of the plane in the cell data
+					int offset = 0;
+					int stride = cellWidth * rows;
+					for ( int d = 2; d < sn; ++d )
+					{
+						offset += ( int ) ( planePos[ d ] - cell.min( d ) ) * stride;
+						stride *= cell.dimension( d );
+					}
+
+					final A data = cell.getData();
+					final int x = ( int ) cell.min( 0 );
+					final int y = ( int ) cell.min( 1 );
+					for ( int r = 0; r < rows; ++r )
+						lineConverter.convertLine( data, offset + r * cellWidth, targetArray, ( y + r ) * width + x, cellWidth );
+				}
+			}
+		} );
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.display.projector.specialized;
+
+import net.imglib2.converter.ARGBLineConverter;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Renders the XY plane of a {@link PlanarImg} of any primitive
+ * {@link RealType} into an ARGB {@link ArrayImg}, converting rows of the
+ * plane at once.
+ *
+ * @see AbstractXYARGBProjector
+ */
+public class PlanarImgXYARGBProjector< T extends RealType< T > & NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractXYARGBProjector< T, A >
+{
+	private final PlanarImg< T, A > planarSource;
+
+	public PlanarImgXYARGBProjector( final PlanarImg< T, A > source, final ArrayImg< ARGBType, IntArray > target, final Converter< ? super T, ARGBType > converter )
+	{
+		super( source, target, converter );
+		this.planarSource = source;
+	}
+
+	/**
+	 * Scales {@code [min, max]} to gray values with a
+	 * {@link RealARGBConverter}.
+	 */
+	public PlanarImgXYARGBProjector( final PlanarImg< T, A > source, final ArrayImg< ARGBType, IntArray > target, final double min, final double max )
+	{
+		this( source, target, new RealARGBConverter<>( min, max ) );
+	}
+
+	@Override
+	public void map()
+	{
+		final long[] planePos = new long[ n - 2 ];
+		final long[] planeDims = new long[ n - 2 ];
+		for ( int d = 2; d < n; ++d )
+		{
+			planePos[ d - 2 ] = position[ d ];
+			planeDims[ d - 2 ] = dims[ d ];
+		}
+		final int planeIndex = n > 2 ? ( int ) IntervalIndexer.positionToIndex( planePos, planeDims ) : 0;
+		final A plane = planarSource.getPlane( planeIndex );
+
+		mapInChunks( height, width, ( from, to, cancellation ) -> {
+			final ARGBLineConverter< A > lineConverter = lineConverter();
+			for ( int y = ( int ) from; y < to; ++y )
+			{
+				if ( cancellation.isCanceled() )
+					return;
+				lineConverter.convertLine( plane, y * width, targetArray, y * width, width );
+			}
+		} );
+	}
+}
@@ -33,6 +33,8 @@
  */
 package net.imglib2.display.projector.volatiles;
 
+import java.util.function.Supplier;
+
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
 import net.imglib2.IterableInterval;
@@ -60,6 +62,11 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 		super( dimX, dimY, source, Views.iterable( target ), converter );
 	}
 
+	public Volatile2DRandomAccessibleProjector( final int dimX, final int dimY, final RandomAccessible< A > source, final RandomAccessibleInterval< B > target, final Supplier< ? extends Converter< ? super A, B > > converterSupplier )
+	{
+		super( dimX, dimY, source, Views.iterable( target ), converterSupplier );
+	}
+
 	/**
 	 * @return true if all mapped pixels were {@link Volatile#isValid() valid}.
 	 */
@@ -85,29 +92,49 @@ public class Volatile2DRandomAccessibleProjector< T, A extends Volatile< T >, B
 		max[ 1 ] = target.max( 1 );
 
 		final IterableInterval< A > srcIterable = Views.iterable( Views.interval( source, new FinalInterval( min, max ) ) );
-		final Cursor< B > targetCursor = target.localizingCursor();
 
 		if ( target.iterationOrder().equals( srcIterable.iterationOrder() ) )
 		{
 			// use cursors
-			final Cursor< A > sourceCursor = srcIterable.cursor();
-			while ( targetCursor.hasNext() )
-			{
-				converter.convert( sourceCursor.next(), targetCursor.next() );
-			}
+			mapInChunks( target.size(), 1, ( from, to, cancellation ) -> {
+				final Converter< ? super A, B > converter = converterSupplier.get();
+				final Cursor< A > sourceCursor = srcIterable.cursor();
+				final Cursor< B > targetCursor = target.cursor();
+				sourceCursor.jumpFwd( from );
+				targetCursor.jumpFwd( from );
+				for ( long i = from; i < to; ++i )
+				{
+					if ( cancellation.isCanceled() )
+						return;
+					converter.convert( sourceCursor.next(), targetCursor.next() );
+				}
+			} );
 		}
 		else
 		{
 			// use localizing cursor
-			final RandomAccess< A > sourceRandomAccess = source.randomAccess();
-			while ( targetCursor.hasNext() )
-			{
-				final B b = targetCursor.next();
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
-				sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
+			mapInChunks( target.size(), 1, ( from, to, cancellation ) -> {
+				final Converter< ? super A, B > converter = converterSupplier.get();
+				final Cursor< B > targetCursor = target.localizingCursor();
+				targetCursor.jumpFwd( from );
+				final RandomAccess< A > sourceRandomAccess = source.randomAccess();
+				for ( long i = from; i < to; ++i )
+				{
+					if ( cancellation.isCanceled() )
+						return;
+					final B b = targetCursor.next();
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 0 ), 0 );
+					sourceRandomAccess.setPosition( targetCursor.getLongPosition( 1 ), 1 );
 
-				converter.convert( sourceRandomAccess.get(), b );
-			}
+					converter.convert( sourceRandomAccess.get(), b );
+				}
+			} );
 		}
 	}
+
+	@Override
+	protected IterableIntervalProjector2D< A, B > subProjector( final RandomAccessibleInterval< B > subTarget )
+	{
+		return new Volatile2DRandomAccessibleProjector<>( 0, 1, source, subTarget, converterSupplier );
+	}
 }
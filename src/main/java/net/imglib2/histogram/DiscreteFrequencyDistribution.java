@@ -47,6 +47,7 @@ import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * This class represents an n-dimensional set of counters. Histogram
@@ -168,6 +169,55 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		totalValues--;
 	}
 
+	/**
+	 * Adds the counts of another distribution to this one. Both distributions
+	 * must have the same bin counts. One can use this to combine partial
+	 * distributions that were counted separately.
+	 */
+	public void merge( final DiscreteFrequencyDistribution other )
+	{
+		checkSameDimensions( other );
+		final Cursor< LongType > cursor = other.localizingCursor();
+		final RandomAccess< LongType > access = counts.randomAccess();
+		while ( cursor.hasNext() )
+		{
+			final LongType value = cursor.next();
+			access.setPosition( cursor );
+			access.get().add( value );
+		}
+		totalValues += other.totalValues;
+	}
+
+	/**
+	 * Adds counts given as a flat array, in which the count of bin
+	 * {@code binPos} is at index
+	 * {@link IntervalIndexer#positionToIndex(long[], long[])}.
+	 */
+	void addCounts( final long[] flatCounts )
+	{
+		final long[] dims = new long[ numDimensions() ];
+		dimensions( dims );
+		final long[] binPos = new long[ dims.length ];
+		final Cursor< LongType > cursor = counts.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			final LongType value = cursor.next();
+			cursor.localize( binPos );
+			final long count = flatCounts[ ( int ) IntervalIndexer.positionToIndex( binPos, dims ) ];
+			value.set( value.get() + count );
+			totalValues += count;
+		}
+	}
+
+	private void checkSameDimensions( final DiscreteFrequencyDistribution other )
+	{
+		boolean same = numDimensions() == other.numDimensions();
+		for ( int d = 0; same && d < numDimensions(); ++d )
+			same = dimension( d ) == other.dimension( d );
+		if ( !same )
+			throw new IllegalArgumentException( "bin counts of distributions differ" );
+	}
+
 	/**
 	 * Returns the total number of values counted by this distribution.
 	 */
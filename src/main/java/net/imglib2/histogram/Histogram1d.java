@@ -35,14 +35,18 @@
 package net.imglib2.histogram;
 
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.loops.ParallelTasks;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.integer.LongType;
 
 /**
@@ -53,6 +57,11 @@ import net.imglib2.type.numeric.integer.LongType;
  * <p>
  * Note: the last three classifications may not be present depending upon the
  * makeup of the input data.
+ * <p>
+ * {@link net.imglib2.img.array.ArrayImg}s and
+ * {@link net.imglib2.img.planar.PlanarImg}s of 8-bit and 16-bit integer types
+ * are counted directly on their primitive arrays, and each representable value
+ * is mapped to its bin only once.
  * 
  * @author Barry DeZonia
  */
@@ -425,6 +434,88 @@ public class Histogram1d< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data source using the underlying
+	 * bin distribution. The data is split into chunks that are counted in
+	 * parallel on the given {@link ExecutorService}. To count a
+	 * {@link net.imglib2.RandomAccessibleInterval}, pass
+	 * {@link net.imglib2.view.Views#iterable}.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param executorService
+	 *            The executor to count on, for example
+	 *            {@link ParallelTasks#defaultExecutorService()}
+	 */
+	public void countData( final IterableInterval< T > data, final ExecutorService executorService )
+	{
+		reset();
+		addData( data, executorService );
+		if ( data.size() > 0 )
+			firstValue = data.firstElement();
+	}
+
+	/**
+	 * Counts additional data contained in a given data source, in parallel on
+	 * the given {@link ExecutorService}. One can use this to update an
+	 * existing histogram with a subset of values.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param executorService
+	 *            The executor to count on
+	 */
+	public void addData( final IterableInterval< T > data, final ExecutorService executorService )
+	{
+		final PrimitiveCounting primitive = PrimitiveCounting.forData( data );
+		if ( primitive != null )
+		{
+			final long[] rawCounts = new long[ primitive.numRawValues() ];
+			ParallelCounting.count( primitive.size(), executorService, () -> primitive, rawCounts );
+			addRawCounts( primitive, rawCounts );
+			return;
+		}
+
+		final long[] bins = new long[ ( int ) getBinCount() ];
+		ignoredCount += ParallelCounting.count( data.size(), executorService, () -> {
+			final BinMapper1d< T > m = mapper.copy();
+			return ( from, to, counts ) -> {
+				long ignored = 0;
+				final Cursor< T > cursor = data.cursor();
+				cursor.jumpFwd( from );
+				for ( long i = from; i < to; ++i )
+				{
+					final long bin = m.map( cursor.next() );
+					if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+						++ignored;
+					else
+						++counts[ ( int ) bin ];
+				}
+				return ignored;
+			};
+		}, bins );
+		distrib.addCounts( bins );
+	}
+
+	/**
+	 * Adds the counts of another histogram to this one. Both histograms must
+	 * have the same number of bins. One can use this to combine partial
+	 * histograms that were counted separately, for example on different
+	 * machines.
+	 * 
+	 * @param other
+	 *            The histogram to add
+	 */
+	public void merge( final Histogram1d< T > other )
+	{
+		if ( getBinCount() != other.getBinCount() )
+			throw new IllegalArgumentException( "bin counts of histograms differ" );
+		distrib.merge( other.distrib );
+		ignoredCount += other.ignoredCount;
+		if ( firstValue == null )
+			firstValue = other.firstValue;
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
@@ -734,6 +825,14 @@ public class Histogram1d< T > implements Img< LongType >
 	{
 		reset();
 
+		final PrimitiveCounting primitive = PrimitiveCounting.forData( data );
+		if ( primitive != null )
+		{
+			firstValue = data.iterator().next();
+			addPrimitive( primitive );
+			return;
+		}
+
 		// record the first element
 		final Iterator<T> iter = data.iterator();
 		if ( iter.hasNext() )
@@ -751,12 +850,53 @@ public class Histogram1d< T > implements Img< LongType >
 
 	private void add( final Iterable< T > data )
 	{
+		final PrimitiveCounting primitive = PrimitiveCounting.forData( data );
+		if ( primitive != null )
+		{
+			addPrimitive( primitive );
+			return;
+		}
+
 		for ( final T value : data )
 		{
 			increment( value );
 		}
 	}
 
+	private void addPrimitive( final PrimitiveCounting primitive )
+	{
+		final long[] rawCounts = new long[ primitive.numRawValues() ];
+		primitive.count( 0, primitive.size(), rawCounts );
+		addRawCounts( primitive, rawCounts );
+	}
+
+	/**
+	 * Adds counts per representable value of 8-bit or 16-bit integer data.
+	 * Each value is mapped to its bin only once.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private void addRawCounts( final PrimitiveCounting primitive, final long[] rawCounts )
+	{
+		final IntegerType< ? > value = primitive.createVariable();
+		for ( int i = 0; i < rawCounts.length; ++i )
+		{
+			final long count = rawCounts[ i ];
+			if ( count == 0 )
+				continue;
+			primitive.getValue( i, value );
+			final long bin = mapper.map( ( T ) value );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+			{
+				ignoredCount += count;
+			}
+			else
+			{
+				pos[ 0 ] = bin;
+				distrib.setFrequency( pos, distrib.frequency( pos ) + count );
+			}
+		}
+	}
+
 	private void subtract( final Iterable< T > data )
 	{
 		for ( final T value : data )
@@ -37,14 +37,17 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.loops.ParallelTasks;
 import net.imglib2.type.numeric.integer.LongType;
 
 // TODO - calculate lazily but should be able to count upper/lower/middle in
@@ -756,6 +759,102 @@ public class HistogramNd< T > implements Img< LongType >
 		init( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data sources using the underlying
+	 * bin distribution. Must be given one data source per dimension of the
+	 * histogram, all of the same size and iteration order. The data is split
+	 * into chunks that are counted in parallel on the given
+	 * {@link ExecutorService}.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param executorService
+	 *            The executor to count on, for example
+	 *            {@link ParallelTasks#defaultExecutorService()}
+	 */
+	public void countData( final List< ? extends IterableInterval< T > > data, final ExecutorService executorService )
+	{
+		reset();
+		addData( data, executorService );
+	}
+
+	/**
+	 * Counts additional data contained in the given data sources, in parallel
+	 * on the given {@link ExecutorService}. One can use this to update an
+	 * existing histogram with a subset of values.
+	 * 
+	 * @param data
+	 *            The new data to count, one data source per dimension of the
+	 *            histogram, all of the same size and iteration order
+	 * @param executorService
+	 *            The executor to count on
+	 */
+	public void addData( final List< ? extends IterableInterval< T > > data, final ExecutorService executorService )
+	{
+		final int n = mappers.size();
+		if ( data.size() != n )
+			throw new IllegalArgumentException( "expected " + n + " data sources, got " + data.size() );
+		final long size = data.get( 0 ).size();
+		final Object iterationOrder = data.get( 0 ).iterationOrder();
+		for ( final IterableInterval< T > d : data )
+			if ( d.size() != size || !iterationOrder.equals( d.iterationOrder() ) )
+				throw new IllegalArgumentException( "data sources differ in size or iteration order" );
+
+		final long[] dims = new long[ n ];
+		distrib.dimensions( dims );
+		final long[] bins = new long[ ParallelCounting.numBins( dims ) ];
+		ignoredCount += ParallelCounting.count( size, executorService, () -> {
+			final List< BinMapper1d< T > > m = new ArrayList<>( n );
+			for ( final BinMapper1d< T > mapper : mappers )
+				m.add( mapper.copy() );
+			return ( from, to, counts ) -> {
+				final List< Cursor< T > > cursors = new ArrayList<>( n );
+				for ( final IterableInterval< T > d : data )
+				{
+					final Cursor< T > cursor = d.cursor();
+					cursor.jumpFwd( from );
+					cursors.add( cursor );
+				}
+				long ignored = 0;
+				for ( long i = from; i < to; ++i )
+				{
+					// flat bin index, first dimension varies fastest
+					long index = 0;
+					long step = 1;
+					boolean isIgnored = false;
+					for ( int dim = 0; dim < n; ++dim )
+					{
+						final long bin = m.get( dim ).map( cursors.get( dim ).next() );
+						if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+							isIgnored = true;
+						index += bin * step;
+						step *= dims[ dim ];
+					}
+					if ( isIgnored )
+						++ignored;
+					else
+						++counts[ ( int ) index ];
+				}
+				return ignored;
+			};
+		}, bins );
+		distrib.addCounts( bins );
+	}
+
+	/**
+	 * Adds the counts of another histogram to this one. Both histograms must
+	 * have the same bin counts. One can use this to combine partial histograms
+	 * that were counted separately, for example on different machines.
+	 * 
+	 * @param other
+	 *            The histogram to add
+	 */
+	public void merge( final HistogramNd< T > other )
+	{
+		distrib.merge( other.distrib );
+		ignoredCount += other.ignoredCount;
+	}
+
 	/**
 	 * Counts additional data contained in a given iterable collection. One can
 	 * use this to update an existing histogram with a subset of values.
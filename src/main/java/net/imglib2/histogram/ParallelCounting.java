@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import net.imglib2.loops.ParallelTasks;
+
+/**
+ * Counts values into histogram bins in parallel. The values are split into
+ * chunks, each chunk is counted into its own primitive {@code long[]}
+ * histogram, and the partial histograms are summed up afterwards.
+ */
+final class ParallelCounting
+{
+	/**
+	 * Chunks are not made smaller than this number of values.
+	 */
+	static final long MIN_VALUES_PER_TASK = 1 << 16;
+
+	private ParallelCounting()
+	{
+		// prevent from instantiation.
+	}
+
+	/**
+	 * Counts a chunk of values.
+	 */
+	interface ChunkCounter
+	{
+		/**
+		 * Count values {@code from} (inclusive) to {@code to} (exclusive) into
+		 * {@code bins}, indexed by flat bin index.
+		 *
+		 * @return the number of values that were ignored, because they do not
+		 *         map to a bin.
+		 */
+		long count( long from, long to, long[] bins );
+	}
+
+	/**
+	 * Count {@code size} values in parallel.
+	 *
+	 * @param counters
+	 *            provides one {@link ChunkCounter} per task, such that tasks do
+	 *            not share state.
+	 * @param bins
+	 *            the counts are added to this.
+	 * @return the number of values that were ignored.
+	 */
+	static long count( final long size, final ExecutorService executorService, final Supplier< ChunkCounter > counters, final long[] bins )
+	{
+		final int numTasks = ( int ) Math.max( 1, Math.min( ParallelTasks.suggestNumberOfTasks( executorService ), size / MIN_VALUES_PER_TASK ) );
+		final long[][] partialBins = new long[ numTasks ][];
+		final long[] partialIgnored = new long[ numTasks ];
+		final List< Runnable > tasks = new ArrayList<>( numTasks );
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final int task = t;
+			final long from = size * t / numTasks;
+			final long to = size * ( t + 1 ) / numTasks;
+			tasks.add( () -> {
+				final long[] local = new long[ bins.length ];
+				partialIgnored[ task ] = counters.get().count( from, to, local );
+				partialBins[ task ] = local;
+			} );
+		}
+		ParallelTasks.run( executorService, tasks );
+
+		long ignored = 0;
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final long[] local = partialBins[ t ];
+			for ( int i = 0; i < bins.length; ++i )
+				bins[ i ] += local[ i ];
+			ignored += partialIgnored[ t ];
+		}
+		return ignored;
+	}
+
+	/**
+	 * @return the total number of bins, if it fits into a {@code long[]}.
+	 * @throws IllegalArgumentException
+	 *             if there are too many bins.
+	 */
+	static int numBins( final long[] binCounts )
+	{
+		long numBins = 1;
+		for ( final long binCount : binCounts )
+		{
+			numBins *= binCount;
+			if ( numBins > Integer.MAX_VALUE - 8 )
+				throw new IllegalArgumentException( "too many bins to count in parallel" );
+		}
+		return ( int ) numBins;
+	}
+}
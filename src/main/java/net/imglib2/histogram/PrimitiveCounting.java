@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.AbstractByteArray;
+import net.imglib2.img.basictypeaccess.array.AbstractShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Counts 8-bit and 16-bit integer images by reading their primitive backing
+ * arrays directly. Each value is counted with a single increment of a
+ * {@code long[]} that has one entry per representable value ("raw" counts).
+ * The raw counts are mapped to histogram bins afterwards, using each
+ * representable value at most once, so the cost of the bin mapping does not
+ * depend on the size of the image.
+ * <p>
+ * Supported are {@link ArrayImg}s and {@link PlanarImg}s of
+ * {@link UnsignedByteType}, {@link ByteType}, {@link UnsignedShortType} and
+ * {@link ShortType}.
+ */
+final class PrimitiveCounting implements ParallelCounting.ChunkCounter
+{
+	private final Object[] arrays;
+
+	private final int arrayLength;
+
+	private final long size;
+
+	private final boolean isShort;
+
+	private final boolean isSigned;
+
+	private final IntegerType< ? > type;
+
+	private PrimitiveCounting( final Object[] arrays, final int arrayLength, final boolean isShort, final boolean isSigned, final IntegerType< ? > type )
+	{
+		this.arrays = arrays;
+		this.arrayLength = arrayLength;
+		this.size = ( long ) arrays.length * arrayLength;
+		this.isShort = isShort;
+		this.isSigned = isSigned;
+		this.type = type;
+	}
+
+	/**
+	 * Returns a {@link PrimitiveCounting} for the given data, or {@code null}
+	 * if the data is not stored in a supported way.
+	 */
+	static PrimitiveCounting forData( final Iterable< ? > data )
+	{
+		final Object[] accesses;
+		final long arrayLength;
+		if ( data instanceof ArrayImg )
+		{
+			final ArrayImg< ?, ? > img = ( ArrayImg< ?, ? > ) data;
+			accesses = new Object[] { img.update( null ) };
+			arrayLength = img.size();
+		}
+		else if ( data instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > img = ( PlanarImg< ?, ? > ) data;
+			accesses = new Object[ img.numSlices() ];
+			for ( int i = 0; i < accesses.length; ++i )
+				accesses[ i ] = img.getPlane( i );
+			arrayLength = img.size() / accesses.length;
+		}
+		else
+			return null;
+
+		if ( arrayLength == 0 || arrayLength > Integer.MAX_VALUE )
+			return null;
+
+		final Object t = ( ( IterableInterval< ? > ) data ).firstElement();
+		final Class< ? > typeClass = t.getClass();
+		final boolean isShort;
+		final boolean isSigned;
+		if ( typeClass == UnsignedByteType.class || typeClass == ByteType.class )
+			isShort = false;
+		else if ( typeClass == UnsignedShortType.class || typeClass == ShortType.class )
+			isShort = true;
+		else
+			return null;
+		isSigned = typeClass == ByteType.class || typeClass == ShortType.class;
+
+		final Object[] arrays = new Object[ accesses.length ];
+		for ( int i = 0; i < arrays.length; ++i )
+		{
+			final Object access = accesses[ i ];
+			if ( !isShort && access instanceof AbstractByteArray )
+				arrays[ i ] = ( ( AbstractByteArray< ? > ) access ).getCurrentStorageArray();
+			else if ( isShort && access instanceof AbstractShortArray )
+				arrays[ i ] = ( ( AbstractShortArray< ? > ) access ).getCurrentStorageArray();
+			else
+				return null;
+		}
+
+		return new PrimitiveCounting( arrays, ( int ) arrayLength, isShort, isSigned, ( ( IntegerType< ? > ) t ).createVariable() );
+	}
+
+	/**
+	 * The number of values in the data.
+	 */
+	long size()
+	{
+		return size;
+	}
+
+	/**
+	 * The number of representable values, that is the length of the raw
+	 * counts array.
+	 */
+	int numRawValues()
+	{
+		return isShort ? 1 << 16 : 1 << 8;
+	}
+
+	/**
+	 * Returns a new variable of the type of the data.
+	 */
+	IntegerType< ? > createVariable()
+	{
+		return type.createVariable();
+	}
+
+	/**
+	 * Sets {@code value} to the value counted in {@code rawCounts[ rawIndex ]}.
+	 */
+	void getValue( final int rawIndex, final IntegerType< ? > value )
+	{
+		value.setInteger( isSigned ? rawIndex - numRawValues() / 2 : rawIndex );
+	}
+
+	/**
+	 * Counts values {@code from} (inclusive) to {@code to} (exclusive) into
+	 * {@code rawCounts}, which must have {@link #numRawValues()} entries. No
+	 * values are ignored.
+	 */
+	@Override
+	public long count( final long from, final long to, final long[] rawCounts )
+	{
+		long i = from;
+		while ( i < to )
+		{
+			final int a = ( int ) ( i / arrayLength );
+			final int start = ( int ) ( i - ( long ) a * arrayLength );
+			final int end = ( int ) Math.min( arrayLength, to - ( long ) a * arrayLength );
+			if ( isShort )
+				countShorts( ( short[] ) arrays[ a ], start, end, isSigned, rawCounts );
+			else
+				countBytes( ( byte[] ) arrays[ a ], start, end, isSigned, rawCounts );
+			i += end - start;
+		}
+		return 0;
+	}
+
+	private static void countBytes( final byte[] data, final int from, final int to, final boolean signed, final long[] rawCounts )
+	{
+		if ( signed )
+			for ( int i = from; i < to; ++i )
+				++rawCounts[ data[ i ] + 0x80 ];
+		else
+			for ( int i = from; i < to; ++i )
+				++rawCounts[ data[ i ] & 0xff ];
+	}
+
+	private static void countShorts( final short[] data, final int from, final int to, final boolean signed, final long[] rawCounts )
+	{
+		if ( signed )
+			for ( int i = from; i < to; ++i )
+				++rawCounts[ data[ i ] + 0x8000 ];
+		else
+			for ( int i = from; i < to; ++i )
+				++rawCounts[ data[ i ] & 0xffff ];
+	}
+}
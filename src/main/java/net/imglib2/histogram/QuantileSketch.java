@@ -0,0 +1,445 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.loops.ParallelTasks;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Util;
+
+/**
+ * A streaming sketch of the distribution of real values, that answers
+ * quantile queries approximately using bounded memory. Use it instead of
+ * {@link Util#percentile(double[], double)} and {@link Util#median(double[])}
+ * when the data is too large to be copied into one array.
+ * <p>
+ * The sketch follows the KLL design: values are collected in a hierarchy of
+ * buffers, where an item on level {@code h} stands for {@code 2^h} values.
+ * When a buffer is full it is sorted, and every other item is promoted to the
+ * next level. The capacity of the levels decreases geometrically from the top
+ * level, which holds {@code k} items, so the memory used is {@code O(k)} plus
+ * a few items per level. The error of a quantile query, as a fraction of the
+ * number of values, is roughly {@code 2 / k}, independent of the number of
+ * values. As long as fewer than {@code k} values have been added, quantiles
+ * are exact.
+ * <p>
+ * Sketches can be {@link #merge merged}, for example to combine sketches
+ * computed in parallel or for separate cells of an image. The choice of items
+ * to promote is randomized with a fixed seed, so the result for a given
+ * sequence of values is reproducible. NaN values are ignored.
+ */
+public class QuantileSketch
+{
+	/**
+	 * The default for {@code k}, giving about 1% rank error.
+	 */
+	public static final int DEFAULT_K = 200;
+
+	private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+	private static final int MIN_LEVEL_CAPACITY = 8;
+
+	private static final long MIN_VALUES_PER_TASK = 1 << 16;
+
+	private final int k;
+
+	private final Random random = new Random( 0x6b6c6cL );
+
+	private double[][] levels;
+
+	private int[] levelSizes;
+
+	private int numLevels;
+
+	private int numItems;
+
+	private int maxNumItems;
+
+	private long count;
+
+	private double min = Double.POSITIVE_INFINITY;
+
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Sorted items with cumulative weights, for answering queries. Computed
+	 * lazily, and cleared when values are added.
+	 */
+	private double[] sortedItems;
+
+	private long[] cumulativeWeights;
+
+	/**
+	 * Create an empty sketch with {@link #DEFAULT_K}.
+	 */
+	public QuantileSketch()
+	{
+		this( DEFAULT_K );
+	}
+
+	/**
+	 * Create an empty sketch.
+	 *
+	 * @param k
+	 *            the size of the top level buffer, that trades accuracy for
+	 *            memory. Must be at least {@value #MIN_LEVEL_CAPACITY}.
+	 */
+	public QuantileSketch( final int k )
+	{
+		if ( k < MIN_LEVEL_CAPACITY )
+			throw new IllegalArgumentException( "k must be at least " + MIN_LEVEL_CAPACITY );
+		this.k = k;
+		levels = new double[ 4 ][];
+		levelSizes = new int[ 4 ];
+		numLevels = 1;
+		levels[ 0 ] = new double[ k ];
+		maxNumItems = maxNumItems();
+	}
+
+	/**
+	 * Create a sketch of the values of {@code data}, computed in parallel on
+	 * the given {@link ExecutorService}.
+	 */
+	public static QuantileSketch create( final IterableInterval< ? extends RealType< ? > > data, final int k, final ExecutorService executorService )
+	{
+		final long size = data.size();
+		final int numTasks = ( int ) Math.max( 1, Math.min( ParallelTasks.suggestNumberOfTasks( executorService ), size / MIN_VALUES_PER_TASK ) );
+		final QuantileSketch[] sketches = new QuantileSketch[ numTasks ];
+		final List< Runnable > tasks = new ArrayList<>( numTasks );
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final int task = t;
+			final long from = size * t / numTasks;
+			final long to = size * ( t + 1 ) / numTasks;
+			tasks.add( () -> {
+				final QuantileSketch sketch = new QuantileSketch( k );
+				final Cursor< ? extends RealType< ? > > cursor = data.cursor();
+				cursor.jumpFwd( from );
+				for ( long i = from; i < to; ++i )
+					sketch.add( cursor.next().getRealDouble() );
+				sketches[ task ] = sketch;
+			} );
+		}
+		ParallelTasks.run( executorService, tasks );
+
+		final QuantileSketch sketch = sketches[ 0 ];
+		for ( int t = 1; t < numTasks; ++t )
+			sketch.merge( sketches[ t ] );
+		return sketch;
+	}
+
+	/**
+	 * The {@code k} this sketch was created with.
+	 */
+	public int k()
+	{
+		return k;
+	}
+
+	/**
+	 * The number of values added to the sketch, not counting NaNs.
+	 */
+	public long count()
+	{
+		return count;
+	}
+
+	/**
+	 * The smallest value added, or NaN if the sketch is empty.
+	 */
+	public double min()
+	{
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * The largest value added, or NaN if the sketch is empty.
+	 */
+	public double max()
+	{
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Add a value. NaN is ignored.
+	 */
+	public void add( final double value )
+	{
+		if ( Double.isNaN( value ) )
+			return;
+		if ( value < min )
+			min = value;
+		if ( value > max )
+			max = value;
+		++count;
+		append( 0, value );
+		++numItems;
+		sortedItems = null;
+		if ( numItems > maxNumItems )
+			compress();
+	}
+
+	/**
+	 * Add all values of {@code data}.
+	 */
+	public void addAll( final Iterable< ? extends RealType< ? > > data )
+	{
+		for ( final RealType< ? > t : data )
+			add( t.getRealDouble() );
+	}
+
+	/**
+	 * Add the values of another sketch to this one. Afterwards, this sketch
+	 * describes the union of the values of both. {@code other} is not
+	 * modified.
+	 */
+	public void merge( final QuantileSketch other )
+	{
+		if ( other.count == 0 )
+			return;
+		min = Math.min( min, other.min );
+		max = Math.max( max, other.max );
+		count += other.count;
+		for ( int h = 0; h < other.numLevels; ++h )
+		{
+			ensureLevel( h );
+			final double[] items = other.levels[ h ];
+			final int size = other.levelSizes[ h ];
+			for ( int i = 0; i < size; ++i )
+				append( h, items[ i ] );
+			numItems += size;
+		}
+		sortedItems = null;
+		maxNumItems = maxNumItems();
+		while ( numItems > maxNumItems )
+			compress();
+	}
+
+	/**
+	 * Returns the approximate {@code q}-quantile of the values added, or NaN
+	 * if the sketch is empty. The quantile is defined as for
+	 * {@link Util#percentile(double[], double)}: the value of rank
+	 * {@code round( ( count - 1 ) * q )} in sorted order.
+	 *
+	 * @param q
+	 *            the quantile in {@code [0, 1]}
+	 */
+	public double quantile( final double q )
+	{
+		if ( q < 0 || q > 1 )
+			throw new IllegalArgumentException( "quantile must be in [0, 1]" );
+		if ( count == 0 )
+			return Double.NaN;
+		if ( q == 0 )
+			return min;
+		if ( q == 1 )
+			return max;
+		prepareQueries();
+		final long rank = Math.round( ( count - 1 ) * q );
+		// first item whose cumulative weight exceeds the rank
+		int lo = 0;
+		int hi = cumulativeWeights.length - 1;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( cumulativeWeights[ mid ] > rank )
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+		return Math.max( min, Math.min( max, sortedItems[ lo ] ) );
+	}
+
+	/**
+	 * Returns the approximate {@code qs[ i ]}-quantile for each {@code i}.
+	 *
+	 * @see #quantile(double)
+	 */
+	public double[] quantiles( final double... qs )
+	{
+		final double[] result = new double[ qs.length ];
+		for ( int i = 0; i < qs.length; ++i )
+			result[ i ] = quantile( qs[ i ] );
+		return result;
+	}
+
+	/**
+	 * Returns the approximate fraction of values that are less than or equal
+	 * to {@code value}, or NaN if the sketch is empty.
+	 */
+	public double rank( final double value )
+	{
+		if ( count == 0 )
+			return Double.NaN;
+		prepareQueries();
+		// number of items less than or equal to value
+		int lo = 0;
+		int hi = sortedItems.length;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( sortedItems[ mid ] <= value )
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo == 0 ? 0 : ( double ) cumulativeWeights[ lo - 1 ] / count;
+	}
+
+	/**
+	 * Returns an independent copy of this sketch.
+	 */
+	public QuantileSketch copy()
+	{
+		final QuantileSketch copy = new QuantileSketch( k );
+		copy.merge( this );
+		return copy;
+	}
+
+	private void append( final int level, final double value )
+	{
+		double[] items = levels[ level ];
+		final int size = levelSizes[ level ];
+		if ( size == items.length )
+		{
+			items = Arrays.copyOf( items, Math.max( MIN_LEVEL_CAPACITY, 2 * size ) );
+			levels[ level ] = items;
+		}
+		items[ size ] = value;
+		levelSizes[ level ] = size + 1;
+	}
+
+	private void ensureLevel( final int level )
+	{
+		if ( level < numLevels )
+			return;
+		if ( level >= levels.length )
+		{
+			levels = Arrays.copyOf( levels, 2 * level );
+			levelSizes = Arrays.copyOf( levelSizes, 2 * level );
+		}
+		for ( int h = numLevels; h <= level; ++h )
+		{
+			if ( levels[ h ] == null )
+				levels[ h ] = new double[ MIN_LEVEL_CAPACITY ];
+			levelSizes[ h ] = 0;
+		}
+		numLevels = level + 1;
+	}
+
+	private int levelCapacity( final int level )
+	{
+		final int depth = numLevels - 1 - level;
+		return Math.max( MIN_LEVEL_CAPACITY, ( int ) Math.ceil( k * Math.pow( CAPACITY_DECAY, depth ) ) );
+	}
+
+	private int maxNumItems()
+	{
+		int sum = 0;
+		for ( int h = 0; h < numLevels; ++h )
+			sum += levelCapacity( h );
+		return sum;
+	}
+
+	/**
+	 * Compact the lowest level that is at capacity: sort it and promote every
+	 * other item to the next level, starting at a random offset. If the level
+	 * holds an odd number of items, the largest one stays.
+	 */
+	private void compress()
+	{
+		for ( int h = 0; h < numLevels; ++h )
+		{
+			final int size = levelSizes[ h ];
+			if ( size < levelCapacity( h ) )
+				continue;
+
+			if ( h + 1 == numLevels )
+			{
+				ensureLevel( h + 1 );
+				maxNumItems = maxNumItems();
+			}
+
+			final double[] items = levels[ h ];
+			Arrays.sort( items, 0, size );
+			final int pairs = size / 2;
+			final int offset = random.nextBoolean() ? 1 : 0;
+			for ( int i = 0; i < pairs; ++i )
+				append( h + 1, items[ 2 * i + offset ] );
+			if ( size % 2 == 1 )
+			{
+				items[ 0 ] = items[ size - 1 ];
+				levelSizes[ h ] = 1;
+			}
+			else
+				levelSizes[ h ] = 0;
+			numItems -= pairs;
+			return;
+		}
+	}
+
+	private void prepareQueries()
+	{
+		if ( sortedItems != null )
+			return;
+		final double[] items = new double[ numItems ];
+		final int[] itemLevels = new int[ numItems ];
+		int n = 0;
+		for ( int h = 0; h < numLevels; ++h )
+		{
+			System.arraycopy( levels[ h ], 0, items, n, levelSizes[ h ] );
+			Arrays.fill( itemLevels, n, n + levelSizes[ h ], h );
+			n += levelSizes[ h ];
+		}
+		if ( n > 1 )
+			Util.quicksort( items, itemLevels, 0, n - 1 );
+		final long[] weights = new long[ n ];
+		long cumulative = 0;
+		for ( int i = 0; i < n; ++i )
+		{
+			cumulative += 1L << itemLevels[ i ];
+			weights[ i ] = cumulative;
+		}
+		sortedItems = items;
+		cumulativeWeights = weights;
+	}
+}
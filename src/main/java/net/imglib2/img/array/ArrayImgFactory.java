@@ -34,11 +34,14 @@
 
 package net.imglib2.img.array;
 
+import java.util.Set;
+
 import net.imglib2.Dimensions;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.AbstractImg;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.AccessFlags;
 import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.type.NativeType;
@@ -56,9 +59,24 @@ import net.imglib2.util.Util;
  */
 public class ArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
 {
+	private final Set< AccessFlags > flags;
+
 	public ArrayImgFactory( final T type )
+	{
+		this( type, AccessFlags.setOf() );
+	}
+
+	/**
+	 * Create a factory for images whose data is stored in accesses of the
+	 * variant specified by {@code flags} (see {@link ArrayDataAccessFactory}).
+	 * For example, {@link AccessFlags#ATOMIC} gives images of sub-byte types
+	 * such as {@link net.imglib2.type.logic.BitType}, that can be written
+	 * concurrently without locking.
+	 */
+	public ArrayImgFactory( final T type, final Set< AccessFlags > flags )
 	{
 		super( type );
+		this.flags = flags;
 	}
 
 	@Override
@@ -88,7 +106,7 @@ public class ArrayImgFactory< T extends NativeType< T > > extends NativeImgFacto
 	{
 		final Fraction entitiesPerPixel = type.getEntitiesPerPixel();
 		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel );
-		final A data = ArrayDataAccessFactory.get( typeFactory ).createArray( numEntities );
+		final A data = ArrayDataAccessFactory.get( typeFactory, flags ).createArray( numEntities );
 		final ArrayImg< T, A > img = new ArrayImg<>( data, dimensions, entitiesPerPixel );
 		img.setLinkedType( typeFactory.createLinkedType( img ) );
 		return img;
@@ -109,7 +127,7 @@ public class ArrayImgFactory< T extends NativeType< T > > extends NativeImgFacto
 	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
 	{
 		if ( type instanceof NativeType )
-			return new ArrayImgFactory( (NativeType) type );
+			return new ArrayImgFactory( (NativeType) type, flags );
 		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
 	}
 
@@ -129,6 +147,7 @@ public class ArrayImgFactory< T extends NativeType< T > > extends NativeImgFacto
 	public ArrayImgFactory()
 	{
 		super();
+		flags = AccessFlags.setOf();
 	}
 
 	@Deprecated
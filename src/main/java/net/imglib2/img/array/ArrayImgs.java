@@ -34,6 +34,10 @@
 
 package net.imglib2.img.array;
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
 import net.imglib2.img.basictypeaccess.ByteAccess;
 import net.imglib2.img.basictypeaccess.DoubleAccess;
 import net.imglib2.img.basictypeaccess.FloatAccess;
@@ -46,6 +50,11 @@ import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.basictypeaccess.nio.AbstractBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferDataAccessFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.NativeTypeFactory;
+import net.imglib2.type.PrimitiveType;
 import net.imglib2.type.Type;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.ARGBType;
@@ -67,6 +76,7 @@ import net.imglib2.type.numeric.integer.UnsignedVariableBitLengthType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
 
 /**
  * <p>
@@ -625,4 +635,55 @@ final public class ArrayImgs
 		return img;
 	}
 
+	/**
+	 * Creates an {@link ArrayImg} over a raw file, without copying the data.
+	 * The file is mapped into memory (see
+	 * {@link BufferDataAccessFactory#map}), such that pixels are loaded by the
+	 * operating system when they are accessed, and the page cache is shared
+	 * with other processes mapping the same file. The pixel data is expected
+	 * in flat iteration order, starting at {@code offset}.
+	 * <p>
+	 * As the data is stored in a single {@link java.nio.ByteBuffer}, the image
+	 * must not be larger than {@code Integer.MAX_VALUE} bytes. Use
+	 * {@link net.imglib2.img.cell.CellImgFactory#mapFile} for larger files.
+	 * </p>
+	 *
+	 * @param type
+	 *            the pixel type.
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            position of the first pixel in the file, in bytes.
+	 * @param byteOrder
+	 *            byte order of the data in the file.
+	 * @param writable
+	 *            whether the image can be modified. Modifications are written
+	 *            to the file.
+	 * @param dim
+	 *            dimensions of the image.
+	 * @throws IOException
+	 *             if the file can not be mapped.
+	 * @throws IllegalArgumentException
+	 *             if the image is larger than {@code Integer.MAX_VALUE}
+	 *             bytes.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	final public static < T extends NativeType< T > > ArrayImg< T, ? > mapFile( final T type, final Path file, final long offset, final ByteOrder byteOrder, final boolean writable, final long... dim ) throws IOException
+	{
+		return mapFile( type, ( NativeTypeFactory ) type.getNativeTypeFactory(), file, offset, byteOrder, writable, dim );
+	}
+
+	private static < T extends NativeType< T >, A extends AbstractBufferAccess< A > > ArrayImg< T, A > mapFile( final T type, final NativeTypeFactory< T, ? super A > typeFactory, final Path file, final long offset, final ByteOrder byteOrder, final boolean writable, final long... dim ) throws IOException
+	{
+		final Fraction entitiesPerPixel = type.getEntitiesPerPixel();
+		final long numEntities = entitiesPerPixel.mulCeil( Intervals.numElements( dim ) );
+		final PrimitiveType primitiveType = typeFactory.getPrimitiveType();
+		final int bytesPerEntity = primitiveType.getByteCount();
+		if ( numEntities > Integer.MAX_VALUE / bytesPerEntity )
+			throw new IllegalArgumentException( "Mapped ArrayImg too big, use for example CellImgFactory.mapFile instead: " + numEntities + " x " + bytesPerEntity + " bytes > " + Integer.MAX_VALUE + " bytes" );
+		final A access = BufferDataAccessFactory.< A >map( primitiveType, file, offset, new int[] { ( int ) numEntities }, byteOrder, writable ).get( 0 );
+		final ArrayImg< T, A > img = new ArrayImg<>( access, dim, entitiesPerPixel );
+		img.setLinkedType( typeFactory.createLinkedType( img ) );
+		return img;
+	}
 }
@@ -45,15 +45,20 @@ import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
  * Flags that specify variants of {@link ArrayDataAccess} underlying primitive
  * types. {@link #DIRTY} means that an access implements {@link Dirty}.
  * {@link #VOLATILE} means that an access implements {@link VolatileAccess}.
+ * {@link #ATOMIC} means that an access implements {@link AtomicLongAccess}.
+ * {@link #ATOMIC} is only available for {@code long} accesses, and can not be
+ * combined with the other flags.
  *
  * @author Tobias Pietzsch
  */
 public enum AccessFlags
 {
-	DIRTY, VOLATILE;
+	DIRTY, VOLATILE, ATOMIC;
 
 	public static Set< AccessFlags > ofAccess( final Object access )
 	{
+		if ( access instanceof AtomicLongAccess )
+			return flags_ATOMIC;
 		final boolean dirtyAccesses = ( access instanceof Dirty );
 		final boolean volatileAccesses = ( access instanceof VolatileAccess );
 		return fromBooleansDirtyVolatile( dirtyAccesses, volatileAccesses );
@@ -66,11 +71,21 @@ public enum AccessFlags
 
 	public static Set< AccessFlags > setOf( final AccessFlags f1 )
 	{
-		return f1 == DIRTY ? flags_DIRTY : flags_VOLATILE;
+		switch ( f1 )
+		{
+		case DIRTY:
+			return flags_DIRTY;
+		case VOLATILE:
+			return flags_VOLATILE;
+		default:
+			return flags_ATOMIC;
+		}
 	}
 
 	public static Set< AccessFlags > setOf( final AccessFlags f1, final AccessFlags f2 )
 	{
+		if ( f1 == ATOMIC || f2 == ATOMIC )
+			return setOf( new AccessFlags[] { f1, f2 } );
 		return f1 == DIRTY
 				? ( f2 == DIRTY ? flags_DIRTY : flags_DIRTY_VOLATILE )
 				: ( f2 == DIRTY ? flags_DIRTY_VOLATILE : flags_VOLATILE);
@@ -80,12 +95,26 @@ public enum AccessFlags
 	{
 		boolean dirtyAccesses = false;
 		boolean volatileAccesses = false;
+		boolean atomicAccesses = false;
 		for ( AccessFlags flag : flags )
 		{
 			if ( flag == DIRTY )
 				dirtyAccesses = true;
 			else if ( flag == VOLATILE )
 				volatileAccesses = true;
+			else if ( flag == ATOMIC )
+				atomicAccesses = true;
+		}
+		if ( atomicAccesses )
+		{
+			if ( !dirtyAccesses && !volatileAccesses )
+				return flags_ATOMIC;
+			final EnumSet< AccessFlags > set = EnumSet.of( ATOMIC );
+			if ( dirtyAccesses )
+				set.add( DIRTY );
+			if ( volatileAccesses )
+				set.add( VOLATILE );
+			return Collections.unmodifiableSet( set );
 		}
 		return fromBooleansDirtyVolatile( dirtyAccesses, volatileAccesses );
 	}
@@ -100,5 +129,6 @@ public enum AccessFlags
 	private final static Set< AccessFlags > flags_DIRTY_VOLATILE = Collections.unmodifiableSet( EnumSet.of( DIRTY, VOLATILE ) );
 	private final static Set< AccessFlags > flags_DIRTY = Collections.unmodifiableSet( EnumSet.of( DIRTY ) );
 	private final static Set< AccessFlags > flags_VOLATILE = Collections.unmodifiableSet( EnumSet.of( VOLATILE ) );
+	private final static Set< AccessFlags > flags_ATOMIC = Collections.unmodifiableSet( EnumSet.of( ATOMIC ) );
 	private final static Set< AccessFlags > flags_NONE = Collections.unmodifiableSet( EnumSet.noneOf( AccessFlags.class ) );
 }
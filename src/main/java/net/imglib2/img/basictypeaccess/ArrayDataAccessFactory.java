@@ -33,12 +33,14 @@
  */
 package net.imglib2.img.basictypeaccess;
 
+import static net.imglib2.img.basictypeaccess.AccessFlags.ATOMIC;
 import static net.imglib2.img.basictypeaccess.AccessFlags.DIRTY;
 import static net.imglib2.img.basictypeaccess.AccessFlags.VOLATILE;
 
 import java.util.Set;
 
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.AtomicLongArray;
 import net.imglib2.img.basictypeaccess.array.ByteArray;
 import net.imglib2.img.basictypeaccess.array.CharArray;
 import net.imglib2.img.basictypeaccess.array.DirtyByteArray;
@@ -74,7 +76,8 @@ import net.imglib2.type.NativeTypeFactory;
 /**
  * Given a {@link PrimitiveType} and {@link AccessFlags} creates a specific
  * {@link ArrayDataAccess}. For example, {@code BYTE} with flags {@code DIRTY}
- * and {@code VOLATILE} specifies {@link DirtyVolatileByteArray}.
+ * and {@code VOLATILE} specifies {@link DirtyVolatileByteArray}. {@code LONG}
+ * with flag {@code ATOMIC} specifies {@link AtomicLongArray}.
  *
  * @author Tobias Pietzsch
  */
@@ -113,6 +116,12 @@ public class ArrayDataAccessFactory
 	{
 		final boolean dirty = flags.contains( DIRTY );
 		final boolean volatil = flags.contains( VOLATILE );
+		if ( flags.contains( ATOMIC ) )
+		{
+			if ( primitiveType != PrimitiveType.LONG || dirty || volatil )
+				throw new IllegalArgumentException( "ATOMIC accesses are only available for LONG without other flags, not for " + primitiveType + " with " + flags );
+			return ( A ) new AtomicLongArray( 0 );
+		}
 		switch ( primitiveType )
 		{
 		case BYTE:
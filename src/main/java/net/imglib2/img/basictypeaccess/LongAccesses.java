@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess;
+
+/**
+ * Helpers for read-modify-write of bit fields stored in a {@link LongAccess}.
+ */
+final public class LongAccesses
+{
+	private LongAccesses()
+	{
+		// prevent from instantiation.
+	}
+
+	/**
+	 * Replace the bits selected by {@code mask} in entry {@code index} of
+	 * {@code access} by the corresponding bits of {@code bits}, leaving all
+	 * other bits unchanged. This is a lock-free compare-and-set loop if
+	 * {@code access} is an {@link AtomicLongAccess}, otherwise it synchronizes
+	 * on {@code access}.
+	 */
+	public static void setBits( final LongAccess access, final int index, final long mask, final long bits )
+	{
+		final long masked = bits & mask;
+		if ( access instanceof AtomicLongAccess )
+		{
+			final AtomicLongAccess atomic = ( AtomicLongAccess ) access;
+			long v;
+			do
+			{
+				v = atomic.getValue( index );
+			}
+			while ( !atomic.compareAndSetValue( index, v, ( v & ~mask ) | masked ) );
+		}
+		else
+		{
+			synchronized ( access )
+			{
+				access.setValue( index, ( access.getValue( index ) & ~mask ) | masked );
+			}
+		}
+	}
+
+	/**
+	 * Like {@link #setBits(LongAccess, int, long, long)}, for a bit field that
+	 * is split between entries {@code index} (bits selected by
+	 * {@code lowMask}) and {@code index + 1} (bits selected by
+	 * {@code highMask}). Both entries are updated while synchronizing on
+	 * {@code access}, such that concurrent writes of the same field do not
+	 * leave a mix of the bits of two writers. If {@code access} is an
+	 * {@link AtomicLongAccess}, each entry is additionally updated by
+	 * compare-and-set, because single-entry writes of neighboring fields do
+	 * not lock. Readers may still observe the field between the two updates.
+	 */
+	public static void setBits( final LongAccess access, final int index, final long lowMask, final long lowBits, final long highMask, final long highBits )
+	{
+		synchronized ( access )
+		{
+			if ( access instanceof AtomicLongAccess )
+			{
+				setBits( access, index, lowMask, lowBits );
+				setBits( access, index + 1, highMask, highBits );
+			}
+			else
+			{
+				access.setValue( index, ( access.getValue( index ) & ~lowMask ) | ( lowBits & lowMask ) );
+				access.setValue( index + 1, ( access.getValue( index + 1 ) & ~highMask ) | ( highBits & highMask ) );
+			}
+		}
+	}
+}
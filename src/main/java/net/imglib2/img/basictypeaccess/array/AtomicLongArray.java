@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.array;
+
+import net.imglib2.img.basictypeaccess.AtomicLongAccess;
+
+/**
+ * An {@link AtomicLongAccess} backed by a
+ * {@link java.util.concurrent.atomic.AtomicLongArray}.
+ * <p>
+ * Use it as storage for images of sub-byte types that are written by many
+ * threads, e.g.
+ * {@code ArrayImgs.bits( new AtomicLongArray( numEntities ), dimensions )},
+ * or
+ * {@code new ArrayImgFactory<>( new BitType(), AccessFlags.setOf( AccessFlags.ATOMIC ) )}
+ * (likewise for {@code PlanarImgFactory} and {@code CellImgFactory}).
+ * Writes of such types then use compare-and-set instead of synchronizing on
+ * the access. Values that are split between two {@code long}s (e.g. some
+ * pixels of {@code Unsigned12BitType}) are still written while synchronizing
+ * on the access, such that concurrent writes of the same pixel do not tear
+ * (see {@link net.imglib2.img.basictypeaccess.LongAccesses}).
+ * </p>
+ */
+public class AtomicLongArray implements AtomicLongAccess, ArrayDataAccess< AtomicLongArray >
+{
+	private static final long serialVersionUID = 1L;
+
+	protected final java.util.concurrent.atomic.AtomicLongArray data;
+
+	public AtomicLongArray( final int numEntities )
+	{
+		this.data = new java.util.concurrent.atomic.AtomicLongArray( numEntities );
+	}
+
+	/**
+	 * Create a new access initialized with a copy of {@code data}.
+	 */
+	public AtomicLongArray( final long[] data )
+	{
+		this.data = new java.util.concurrent.atomic.AtomicLongArray( data );
+	}
+
+	@Override
+	public long getValue( final int index )
+	{
+		return data.get( index );
+	}
+
+	@Override
+	public void setValue( final int index, final long value )
+	{
+		data.set( index, value );
+	}
+
+	@Override
+	public boolean compareAndSetValue( final int index, final long expected, final long value )
+	{
+		return data.compareAndSet( index, expected, value );
+	}
+
+	@Override
+	public AtomicLongArray createArray( final int numEntities )
+	{
+		return new AtomicLongArray( numEntities );
+	}
+
+	@Override
+	public java.util.concurrent.atomic.AtomicLongArray getCurrentStorageArray()
+	{
+		return data;
+	}
+
+	@Override
+	public int getArrayLength()
+	{
+		return data.length();
+	}
+}
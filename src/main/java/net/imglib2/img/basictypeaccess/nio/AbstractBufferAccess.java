@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Base class for accesses that store their data in a {@link ByteBuffer}
+ * instead of a Java array. The buffer may be a direct (off-heap) buffer, or a
+ * {@link java.nio.MappedByteBuffer} of a file region. Values are read and
+ * written with absolute indexing, in the {@link ByteBuffer#order() byte order}
+ * of the buffer.
+ * <p>
+ * As the buffer is indexed by {@code int}, an access can hold at most
+ * {@code Integer.MAX_VALUE} bytes. {@link #getCurrentStorageArray()} returns
+ * the {@link ByteBuffer}.
+ * </p>
+ * <p>
+ * The memory of a direct or mapped buffer is normally freed when the buffer is
+ * garbage collected. {@link #release()} frees it immediately.
+ * </p>
+ *
+ * @param <A>
+ *            the concrete access type
+ */
+public abstract class AbstractBufferAccess< A extends AbstractBufferAccess< A > > implements ArrayDataAccess< A >
+{
+	protected ByteBuffer buffer;
+
+	private int numEntities;
+
+	public AbstractBufferAccess( final ByteBuffer buffer, final int bytesPerEntity )
+	{
+		this.buffer = buffer;
+		this.numEntities = buffer.limit() / bytesPerEntity;
+	}
+
+	public AbstractBufferAccess( final int numEntities, final int bytesPerEntity )
+	{
+		this( allocate( numEntities, bytesPerEntity, ByteOrder.nativeOrder() ), bytesPerEntity );
+	}
+
+	/**
+	 * Allocate a direct {@link ByteBuffer} for {@code numEntities} entities of
+	 * {@code bytesPerEntity} bytes each.
+	 */
+	protected static ByteBuffer allocate( final int numEntities, final int bytesPerEntity, final ByteOrder order )
+	{
+		final long numBytes = ( long ) numEntities * bytesPerEntity;
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of bytes too large for a ByteBuffer: " + numBytes );
+		return ByteBuffer.allocateDirect( ( int ) numBytes ).order( order );
+	}
+
+	/**
+	 * @return the {@link ByteBuffer} that stores the data.
+	 */
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * @return the number of bytes of the buffer.
+	 */
+	public long getSizeInBytes()
+	{
+		return buffer.capacity();
+	}
+
+	/**
+	 * Free the memory of a direct or mapped buffer immediately, instead of
+	 * waiting for the garbage collector. Afterwards the access is empty, and
+	 * reading or writing values throws an {@link IndexOutOfBoundsException}.
+	 * <p>
+	 * This must not be called while the access is used by other threads, and
+	 * the buffer (see {@link #getBuffer()}) must not be used after it was
+	 * released.
+	 * </p>
+	 */
+	public void release()
+	{
+		final ByteBuffer released = buffer;
+		buffer = ByteBuffer.allocate( 0 ).order( released.order() );
+		numEntities = 0;
+		DirectBuffers.free( released );
+	}
+
+	@Override
+	public ByteBuffer getCurrentStorageArray()
+	{
+		return buffer;
+	}
+
+	@Override
+	public int getArrayLength()
+	{
+		return numEntities;
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.basictypeaccess.nio;
+
+import static net.imglib2.img.basictypeaccess.AccessFlags.ATOMIC;
+import static net.imglib2.img.basictypeaccess.AccessFlags.DIRTY;
+import static net.imglib2.img.basictypeaccess.AccessFlags.VOLATILE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.PrimitiveType;
+
+/**
+ * Given a {@link PrimitiveType} creates a specific {@link AbstractBufferAccess}
+ * that wraps a {@link ByteBuffer}. For example, {@code FLOAT} specifies
+ * {@link FloatBufferAccess}, or {@link DirtyVolatileFloatBufferAccess} with
+ * {@link AccessFlags} {@code DIRTY} and {@code VOLATILE}. Buffers can be
+ * allocated off-heap, or mapped from a file.
+ */
+public class BufferDataAccessFactory
+{
+	public static < T extends NativeType< T >, A extends AbstractBufferAccess< A > > A get(
+			final T type,
+			final ByteBuffer buffer )
+	{
+		return get( type.getNativeTypeFactory().getPrimitiveType(), buffer );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	public static < A extends AbstractBufferAccess< A > > A get(
+			final PrimitiveType primitiveType,
+			final ByteBuffer buffer )
+	{
+		switch ( primitiveType )
+		{
+		case BYTE:
+			return ( A ) new ByteBufferAccess( buffer );
+		case CHAR:
+			return ( A ) new CharBufferAccess( buffer );
+		case DOUBLE:
+			return ( A ) new DoubleBufferAccess( buffer );
+		case FLOAT:
+			return ( A ) new FloatBufferAccess( buffer );
+		case INT:
+			return ( A ) new IntBufferAccess( buffer );
+		case LONG:
+			return ( A ) new LongBufferAccess( buffer );
+		case SHORT:
+			return ( A ) new ShortBufferAccess( buffer );
+		default:
+			throw new IllegalArgumentException();
+		}
+	}
+
+	public static < T extends NativeType< T >, A extends AbstractBufferAccess< A > > A get(
+			final T type,
+			final Set< AccessFlags > flags )
+	{
+		return get( type.getNativeTypeFactory().getPrimitiveType(), flags );
+	}
+
+	/**
+	 * Creates an empty access of the type specified by {@code primitiveType}
+	 * and {@code flags}, that can be used to allocate accesses of that type
+	 * with {@link AbstractBufferAccess#createArray(int)}. For example,
+	 * {@code BYTE} with flags {@code DIRTY} and {@code VOLATILE} specifies
+	 * {@link DirtyVolatileByteBufferAccess}. The {@code ATOMIC} flag is not
+	 * supported.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static < A extends AbstractBufferAccess< A > > A get(
+			final PrimitiveType primitiveType,
+			final Set< AccessFlags > flags )
+	{
+		if ( flags.contains( ATOMIC ) )
+			throw new IllegalArgumentException( "ATOMIC buffer accesses are not supported." );
+		final boolean dirty = flags.contains( DIRTY );
+		final boolean volatil = flags.contains( VOLATILE );
+		switch ( primitiveType )
+		{
+		case BYTE:
+			return dirty
+					? ( volatil
+							? ( A ) new DirtyVolatileByteBufferAccess( 0, true )
+							: ( A ) new DirtyByteBufferAccess( 0 ) )
+					: ( volatil
+							? ( A ) new VolatileByteBufferAccess( 0, true )
+							: ( A ) new ByteBufferAccess( 0 ) );
+		case CHAR:
+			return dirty
+					? ( volatil
+							? ( A ) new DirtyVolatileCharBufferAccess( 0, true )
+							: ( A ) new DirtyCharBufferAccess( 0 ) )
+					: ( volatil
+							? ( A ) new VolatileCharBufferAccess( 0, true )
+							: ( A ) new CharBufferAccess( 0 ) );
+		case DOUBLE:
+			return dirty
+					? ( volatil
+							? ( A ) new DirtyVolatileDoubleBufferAccess( 0, true )
+							: ( A ) new DirtyDoubleBufferAccess( 0 ) )
+					: ( volatil
+							? ( A ) new VolatileDoubleBufferAccess( 0, true )
+							: ( A ) new DoubleBufferAccess( 0 ) );
+		case FLOAT:
+			return dirty
+					? ( volatil
+							? ( A ) new DirtyVolatileFloatBufferAccess( 0, true )
+							: ( A ) new DirtyFloatBufferAccess( 0 ) )
+					: ( volatil
+							? ( A ) new VolatileFloatBufferAccess( 0, true )
+							: ( A ) new FloatBufferAccess( 0 ) );
+		case INT:
+			return dirty
+					? ( volatil
+							? ( A ) new DirtyVolatileIntBufferAccess( 0, true )
+							: ( A ) new DirtyIntBufferAccess( 0 ) )
+					: ( volatil
+							? ( A ) new VolatileIntBufferAccess( 0, true )
+							: ( A ) new IntBufferAccess( 0 ) );
+		case LONG:
+			return dirty
+					? ( volatil
+							? ( A ) new DirtyVolatileLongBufferAccess( 0, true )
+							: ( A ) new DirtyLongBufferAccess( 0 ) )
+					: ( volatil
+							? ( A ) new VolatileLongBufferAccess( 0, true )
+							: ( A ) new LongBufferAccess( 0 ) );
+		case SHORT:
+			return dirty
+					? ( volatil
+							? ( A ) new DirtyVolatileShortBufferAccess( 0, true )
+							: ( A ) new DirtyShortBufferAccess( 0 ) )
+					: ( volatil
+							? ( A ) new VolatileShortBufferAccess( 0, true )
+							: ( A ) new ShortBufferAccess( 0 ) );
+		default:
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Map consecutive regions of a file into {@link AbstractBufferAccess}es.
+	 * The first region starts at {@code offset}, each following region starts
+	 * where the previous one ends. The file is closed again, the mappings stay
+	 * valid until the accesses are garbage collected.
+	 *
+	 * @param primitiveType
+	 *            the primitive type of the entities in the file.
+	 * @param file
+	 *            the file to map.
+	 * @param offset
+	 *            position of the first region in the file, in bytes.
+	 * @param numEntities
+	 *            number of entities of each region.
+	 * @param byteOrder
+	 *            byte order of the data in the file.
+	 * @param writable
+	 *            if {@code true}, the file is mapped read-write, and is
+	 *            extended if necessary. Otherwise it is mapped read-only, and
+	 *            modifying the accesses throws
+	 *            {@link java.nio.ReadOnlyBufferException}.
+	 * @return one access for each region.
+	 * @throws IOException
+	 *             if the file can not be mapped, or, if not
+	 *             {@code writable}, the file is too short.
+	 */
+	public static < A extends AbstractBufferAccess< A > > List< A > map(
+			final PrimitiveType primitiveType,
+			final Path file,
+			final long offset,
+			final int[] numEntities,
+			final ByteOrder byteOrder,
+			final boolean writable ) throws IOException
+	{
+		final int bytesPerEntity = primitiveType.getByteCount();
+		if ( bytesPerEntity <= 0 )
+			throw new IllegalArgumentException();
+		long size = 0;
+		for ( final int n : numEntities )
+		{
+			if ( ( long ) n * bytesPerEntity > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "Region too large to be mapped into a single ByteBuffer." );
+			size += ( long ) n * bytesPerEntity;
+		}
+
+		final List< A > accesses = new ArrayList<>( numEntities.length );
+		try (final FileChannel channel = writable
+				? FileChannel.open( file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE )
+				: FileChannel.open( file, StandardOpenOption.READ ))
+		{
+			if ( !writable && channel.size() < offset + size )
+				throw new EOFException( "File " + file + " is too short: " + channel.size() + " bytes, but " + ( offset + size ) + " bytes are required." );
+			final MapMode mode = writable ? MapMode.READ_WRITE : MapMode.READ_ONLY;
+			long position = offset;
+			for ( final int n : numEntities )
+			{
+				final long regionSize = ( long ) n * bytesPerEntity;
+				final ByteBuffer buffer = channel.map( mode, position, regionSize ).order( byteOrder );
+				accesses.add( get( primitiveType, buffer ) );
+				position += regionSize;
+			}
+		}
+		return accesses;
+	}
+}
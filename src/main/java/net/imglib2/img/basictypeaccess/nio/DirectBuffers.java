@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frees the memory of direct and mapped {@link ByteBuffer}s explicitly. There
+ * is no public API for this, so the JDK internals are accessed by reflection:
+ * {@code sun.misc.Unsafe.invokeCleaner} on Java 9 and later,
+ * {@code sun.nio.ch.DirectBuffer.cleaner()} on Java 8. If neither is
+ * available, the memory is left to the garbage collector.
+ */
+final class DirectBuffers
+{
+	private DirectBuffers()
+	{
+		// prevent from instantiation.
+	}
+
+	private interface Freer
+	{
+		void free( ByteBuffer buffer ) throws Exception;
+	}
+
+	private static final Freer freer = createFreer();
+
+	private static Freer createFreer()
+	{
+		try
+		{
+			final Class< ? > unsafeClass = Class.forName( "sun.misc.Unsafe" );
+			final Method invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+			final Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+			theUnsafe.setAccessible( true );
+			final Object unsafe = theUnsafe.get( null );
+			return buffer -> invokeCleaner.invoke( unsafe, buffer );
+		}
+		catch ( final Exception e )
+		{
+			// not Java 9+, try Java 8
+		}
+		try
+		{
+			final Method cleaner = Class.forName( "sun.nio.ch.DirectBuffer" ).getMethod( "cleaner" );
+			final Method clean = Class.forName( "sun.misc.Cleaner" ).getMethod( "clean" );
+			return buffer -> {
+				final Object c = cleaner.invoke( buffer );
+				if ( c != null )
+					clean.invoke( c );
+			};
+		}
+		catch ( final Exception e )
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Free the memory of the given buffer, if it is a direct buffer. The
+	 * buffer must not be used afterwards.
+	 */
+	static void free( final ByteBuffer buffer )
+	{
+		if ( freer == null || !buffer.isDirect() )
+			return;
+		try
+		{
+			freer.free( buffer );
+		}
+		catch ( final Exception e )
+		{
+			// e.g. a duplicate or slice of another buffer, leave it to the garbage collector
+		}
+	}
+}
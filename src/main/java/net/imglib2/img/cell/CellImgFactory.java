@@ -34,12 +34,22 @@
 
 package net.imglib2.img.cell;
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
 import net.imglib2.Dimensions;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.AccessFlags;
 import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.nio.AbstractBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferDataAccessFactory;
 import net.imglib2.img.list.ListImg;
 import net.imglib2.img.list.ListLocalizingCursor;
 import net.imglib2.type.NativeType;
@@ -60,14 +70,29 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 {
 	private final int[] defaultCellDimensions;
 
+	private final Set< AccessFlags > flags;
+
 	public CellImgFactory( final T type )
 	{
 		this( type, 10 );
 	}
 
 	public CellImgFactory( final T type, final int... cellDimensions )
+	{
+		this( type, AccessFlags.setOf(), cellDimensions );
+	}
+
+	/**
+	 * Create a factory for images whose cells are stored in accesses of the
+	 * variant specified by {@code flags} (see {@link ArrayDataAccessFactory}).
+	 * For example, {@link AccessFlags#ATOMIC} gives images of sub-byte types
+	 * such as {@link net.imglib2.type.logic.BitType}, that can be written
+	 * concurrently without locking.
+	 */
+	public CellImgFactory( final T type, final Set< AccessFlags > flags, final int... cellDimensions )
 	{
 		super( type );
+		this.flags = flags;
 		defaultCellDimensions = cellDimensions.clone();
 		verifyDimensions( defaultCellDimensions );
 	}
@@ -180,13 +205,14 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 		final long[] cellGridPosition = new long[ n ];
 		final long[] cellMin = new long[ n ];
 		final int[] cellDims = new int[ n ];
+		final A creator = createAccess( typeFactory );
 		final ListLocalizingCursor< Cell< A > > cellCursor = cells.localizingCursor();
 		while ( cellCursor.hasNext() )
 		{
 			cellCursor.fwd();
 			cellCursor.localize( cellGridPosition );
 			grid.getCellDimensions( cellGridPosition, cellMin, cellDims );
-			final A data = ArrayDataAccessFactory.get( typeFactory ).createArray( ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) );
+			final A data = creator.createArray( ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) );
 			cellCursor.set( new Cell<>( cellDims, cellMin, data ) );
 		}
 
@@ -195,12 +221,123 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 		return img;
 	}
 
+	/**
+	 * Creates a {@link CellImg} over a raw file, without copying the data. The
+	 * pixel data is expected in flat iteration order, starting at
+	 * {@code offset}. To keep each cell a contiguous region of the file, a
+	 * cell spans the full image in all dimensions but the last one. Along the
+	 * last dimension, the cell size of this factory is used, but reduced if
+	 * necessary, such that a cell is not larger than {@code Integer.MAX_VALUE}
+	 * bytes. Each cell is mapped into memory separately (see
+	 * {@link BufferDataAccessFactory#map}), such that the image can be larger
+	 * than the Java heap. For types with less than one entity per pixel (for
+	 * example {@link net.imglib2.type.logic.BitType}), every cell but the last
+	 * must end at an entity boundary.
+	 *
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            position of the first pixel in the file, in bytes.
+	 * @param byteOrder
+	 *            byte order of the data in the file.
+	 * @param writable
+	 *            whether the image can be modified. Modifications are written
+	 *            to the file.
+	 * @param dimensions
+	 *            dimensions of the image.
+	 * @throws IOException
+	 *             if the file can not be mapped.
+	 * @throws IllegalArgumentException
+	 *             if a cell does not fit into a single buffer or does not end
+	 *             at an entity boundary.
+	 */
+	public CellImg< T, ? > mapFile( final Path file, final long offset, final ByteOrder byteOrder, final boolean writable, final long... dimensions ) throws IOException
+	{
+		@SuppressWarnings( { "unchecked", "rawtypes" } )
+		final CellImg< T, ? > img = mapFile( file, offset, byteOrder, writable, dimensions, type(), ( NativeTypeFactory ) type().getNativeTypeFactory() );
+		return img;
+	}
+
+	private < A extends AbstractBufferAccess< A > > CellImg< T, A > mapFile(
+			final Path file,
+			final long offset,
+			final ByteOrder byteOrder,
+			final boolean writable,
+			final long[] dimensions,
+			final T type,
+			final NativeTypeFactory< T, ? super A > typeFactory ) throws IOException
+	{
+		verifyDimensions( dimensions );
+
+		final int n = dimensions.length;
+		final Fraction entitiesPerPixel = type.getEntitiesPerPixel();
+		final long bytesPerEntity = typeFactory.getPrimitiveType().getByteCount();
+		final int[] cellDimensions = new int[ n ];
+		long pixelsPerSlice = 1;
+		for ( int d = 0; d < n - 1; ++d )
+		{
+			cellDimensions[ d ] = ( int ) dimensions[ d ];
+			pixelsPerSlice *= dimensions[ d ];
+		}
+		final long maxEntities = Integer.MAX_VALUE / bytesPerEntity;
+		if ( entitiesPerPixel.mulCeil( pixelsPerSlice ) > maxEntities )
+			throw new IllegalArgumentException( "Hyperplane of image too large to be mapped into a single ByteBuffer." );
+		long slicesPerCell = Math.min( defaultCellDimensions[ Math.min( n, defaultCellDimensions.length ) - 1 ], dimensions[ n - 1 ] );
+		while ( entitiesPerPixel.mulCeil( pixelsPerSlice * slicesPerCell ) > maxEntities )
+			--slicesPerCell;
+		cellDimensions[ n - 1 ] = ( int ) slicesPerCell;
+		if ( slicesPerCell < dimensions[ n - 1 ] && ( pixelsPerSlice * slicesPerCell * entitiesPerPixel.getNumerator() ) % entitiesPerPixel.getDenominator() != 0 )
+			throw new IllegalArgumentException( "Cells of " + ( pixelsPerSlice * slicesPerCell ) + " pixels do not end at an entity boundary for " + entitiesPerPixel.getNumerator() + "/" + entitiesPerPixel.getDenominator() + " entities per pixel." );
+
+		final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+		final long[] gridDimensions = new long[ grid.numDimensions() ];
+		grid.gridDimensions( gridDimensions );
+
+		final Cell< A > cellType = new Cell<>( new int[] { 1 }, new long[] { 1 }, null );
+		final ListImg< Cell< A > > cells = new ListImg<>( gridDimensions, cellType );
+
+		final int numCells = ( int ) gridDimensions[ n - 1 ];
+		final int[] numEntities = new int[ numCells ];
+		for ( int i = 0; i < numCells; ++i )
+			numEntities[ i ] = ( int ) entitiesPerPixel.mulCeil( pixelsPerSlice * grid.getCellDimension( n - 1, i ) );
+		final List< A > data = BufferDataAccessFactory.map( typeFactory.getPrimitiveType(), file, offset, numEntities, byteOrder, writable );
+
+		final long[] cellGridPosition = new long[ n ];
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		final Iterator< A > dataIterator = data.iterator();
+		final ListLocalizingCursor< Cell< A > > cellCursor = cells.localizingCursor();
+		while ( cellCursor.hasNext() )
+		{
+			cellCursor.fwd();
+			cellCursor.localize( cellGridPosition );
+			grid.getCellDimensions( cellGridPosition, cellMin, cellDims );
+			cellCursor.set( new Cell<>( cellDims, cellMin, dataIterator.next() ) );
+		}
+
+		final CellImg< T, A > img = new CellImg<>( this, grid, cells, entitiesPerPixel );
+		img.setLinkedType( typeFactory.createLinkedType( img ) );
+		return img;
+	}
+
+	/**
+	 * Returns an (empty) access, whose {@link ArrayDataAccess#createArray(int)}
+	 * is used to create the data of the cells. By default, this is a Java
+	 * array of the variant given by the {@link AccessFlags} of this factory
+	 * (see {@link ArrayDataAccessFactory}). Subclasses may override this to
+	 * store the cells differently.
+	 */
+	protected < A extends ArrayDataAccess< A > > A createAccess( final NativeTypeFactory< T, ? super A > typeFactory )
+	{
+		return ArrayDataAccessFactory.get( typeFactory.getPrimitiveType(), flags );
+	}
+
 	@SuppressWarnings( { "unchecked", "rawtypes" } )
 	@Override
 	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
 	{
 		if ( NativeType.class.isInstance( type ) )
-			return new CellImgFactory( ( NativeType ) type, defaultCellDimensions );
+			return new CellImgFactory( ( NativeType ) type, flags, defaultCellDimensions );
 		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
 	}
 
@@ -225,6 +362,7 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 	@Deprecated
 	public CellImgFactory( final int... cellDimensions )
 	{
+		flags = AccessFlags.setOf();
 		defaultCellDimensions = cellDimensions.clone();
 		verifyDimensions( defaultCellDimensions );
 	}
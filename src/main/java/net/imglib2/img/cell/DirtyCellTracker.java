@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.imglib2.Cursor;
+import net.imglib2.Dirty;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.Localizable;
+import net.imglib2.iterator.LocalizingIntervalIterator;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Tracks which cells of a {@link CellGrid} were modified since they were last
+ * {@link #pollDirtyCells() polled}. Code that modifies an image marks the
+ * modified regions dirty, and a renderer polls the dirty cells to update only
+ * the parts of the display that show them, see
+ * {@link net.imglib2.display.projector.AbstractProjector2D#map(java.util.Collection)}.
+ * <p>
+ * The grid does not have to be the grid of a {@link CellImg}: to track
+ * modifications of any other image, use a grid with the dimensions of the
+ * image and a block size that suits the expected modifications.
+ * <p>
+ * The {@link Dirty} flag of cell accesses is set on the first modification
+ * and not cleared until the cell is written back, so it cannot tell about
+ * later modifications. {@link #markDirtyAccesses(CellImg)} uses it to find
+ * cells that were modified for the first time; further modifications have to
+ * be marked explicitly.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class DirtyCellTracker
+{
+	private final CellGrid grid;
+
+	private final long[] gridDimensions;
+
+	private final Set< Long > dirtyCells = new HashSet<>();
+
+	private final Set< Long > dirtyAccesses = new HashSet<>();
+
+	public DirtyCellTracker( final CellGrid grid )
+	{
+		this.grid = grid;
+		this.gridDimensions = grid.getGridDimensions();
+	}
+
+	public CellGrid getCellGrid()
+	{
+		return grid;
+	}
+
+	/**
+	 * Mark the cell containing {@code position} dirty.
+	 */
+	public synchronized void markDirty( final Localizable position )
+	{
+		final long[] cellPosition = new long[ gridDimensions.length ];
+		for ( int d = 0; d < cellPosition.length; ++d )
+		{
+			final long p = position.getLongPosition( d );
+			if ( p < 0 || p >= grid.imgDimension( d ) )
+				return;
+			cellPosition[ d ] = p / grid.cellDimension( d );
+		}
+		dirtyCells.add( IntervalIndexer.positionToIndex( cellPosition, gridDimensions ) );
+	}
+
+	/**
+	 * Mark all cells that intersect {@code interval} dirty.
+	 */
+	public synchronized void markDirty( final Interval interval )
+	{
+		final int n = gridDimensions.length;
+		final long[] gridMin = new long[ n ];
+		final long[] gridMax = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			final long min = Math.max( 0, interval.min( d ) );
+			final long max = Math.min( grid.imgDimension( d ) - 1, interval.max( d ) );
+			if ( min > max )
+				return;
+			gridMin[ d ] = min / grid.cellDimension( d );
+			gridMax[ d ] = max / grid.cellDimension( d );
+		}
+		final LocalizingIntervalIterator cells = new LocalizingIntervalIterator( gridMin, gridMax );
+		final long[] cellPosition = new long[ n ];
+		while ( cells.hasNext() )
+		{
+			cells.fwd();
+			cells.localize( cellPosition );
+			dirtyCells.add( IntervalIndexer.positionToIndex( cellPosition, gridDimensions ) );
+		}
+	}
+
+	/**
+	 * Mark the cells of {@code img} dirty whose access became {@link Dirty}
+	 * since the last call. {@code img} must use the grid of this tracker.
+	 */
+	public synchronized void markDirtyAccesses( final CellImg< ?, ? > img )
+	{
+		if ( !grid.equals( img.getCellGrid() ) )
+			throw new IllegalArgumentException( "the image does not use the grid of this tracker" );
+		final Cursor< ? extends Cell< ? > > cells = img.getCells().localizingCursor();
+		final long[] cellPosition = new long[ gridDimensions.length ];
+		while ( cells.hasNext() )
+		{
+			final Object data = cells.next().getData();
+			if ( data instanceof Dirty && ( ( Dirty ) data ).isDirty() )
+			{
+				cells.localize( cellPosition );
+				final Long index = IntervalIndexer.positionToIndex( cellPosition, gridDimensions );
+				if ( dirtyAccesses.add( index ) )
+					dirtyCells.add( index );
+			}
+		}
+	}
+
+	/**
+	 * @return true if any cell is dirty.
+	 */
+	public synchronized boolean isDirty()
+	{
+		return !dirtyCells.isEmpty();
+	}
+
+	/**
+	 * Returns the intervals (in image coordinates) of all dirty cells, and
+	 * marks them clean.
+	 */
+	public synchronized List< Interval > pollDirtyCells()
+	{
+		final List< Interval > intervals = new ArrayList<>( dirtyCells.size() );
+		final int n = gridDimensions.length;
+		final long[] cellPosition = new long[ n ];
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		final long[] cellMax = new long[ n ];
+		for ( final long index : dirtyCells )
+		{
+			IntervalIndexer.indexToPosition( index, gridDimensions, cellPosition );
+			grid.getCellDimensions( cellPosition, cellMin, cellDims );
+			for ( int d = 0; d < n; ++d )
+				cellMax[ d ] = cellMin[ d ] + cellDims[ d ] - 1;
+			intervals.add( new FinalInterval( cellMin, cellMax ) );
+		}
+		dirtyCells.clear();
+		return intervals;
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.util.Fraction;
+
+/**
+ * A bounded cache that memoizes the values provided by a {@link Get} loader,
+ * for use with {@link LazyCellImg}:
+ *
+ * <pre>
+ * {@code
+ * Get<Cell<A>> loader = index -> loadCell(index);
+ * LazyCellImg<T, A> img = new LazyCellImg<>(grid, type, new LruCellCache<>(loader, 100));
+ * }
+ * </pre>
+ *
+ * The cache holds strong references to the most recently used values, up to
+ * a maximum total weight (for example a number of cells, or a number of
+ * bytes). The least recently used values are evicted when the maximum weight
+ * is exceeded. Optionally, evicted values are kept as {@link SoftReference}s,
+ * such that they can be reused until the garbage collector reclaims them.
+ * <p>
+ * The cache is thread-safe. If several threads request the same missing key
+ * concurrently, the value is loaded only once, and the other threads wait for
+ * it.
+ * </p>
+ *
+ * @param <T>
+ *            the cached value type, typically {@code Cell<A>}.
+ */
+public class LruCellCache< T > implements Get< T >
+{
+	private final Get< T > loader;
+
+	private final long maxWeight;
+
+	private final ToLongFunction< ? super T > weigher;
+
+	private final boolean softReferences;
+
+	/**
+	 * Strongly referenced values in access order. Guarded by itself.
+	 */
+	private final LinkedHashMap< Long, T > lru = new LinkedHashMap<>( 16, 0.75f, true );
+
+	/**
+	 * Total weight of the values in {@link #lru}. Guarded by {@link #lru}.
+	 */
+	private long weight = 0;
+
+	private final ConcurrentHashMap< Long, SoftEntry< T > > soft = new ConcurrentHashMap<>();
+
+	private final ReferenceQueue< T > queue = new ReferenceQueue<>();
+
+	private final ConcurrentHashMap< Long, CompletableFuture< T > > loading = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Create a cache that holds at most {@code maxCells} values.
+	 *
+	 * @param loader
+	 *            loads the value for a given key on a cache miss.
+	 * @param maxCells
+	 *            maximum number of strongly referenced values.
+	 */
+	public LruCellCache( final Get< T > loader, final long maxCells )
+	{
+		this( loader, maxCells, value -> 1, false );
+	}
+
+	/**
+	 * Create a cache that holds values up to a total weight of
+	 * {@code maxWeight}.
+	 *
+	 * @param loader
+	 *            loads the value for a given key on a cache miss.
+	 * @param maxWeight
+	 *            maximum total weight of strongly referenced values.
+	 * @param weigher
+	 *            computes the weight of a value, for example its size in
+	 *            bytes (see {@link #cellBytes(Fraction, int)}).
+	 * @param softReferences
+	 *            whether evicted values are kept as {@link SoftReference}s.
+	 */
+	public LruCellCache( final Get< T > loader, final long maxWeight, final ToLongFunction< ? super T > weigher, final boolean softReferences )
+	{
+		if ( maxWeight < 1 )
+			throw new IllegalArgumentException( "maximum weight must be positive" );
+		this.loader = loader;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.softReferences = softReferences;
+	}
+
+	/**
+	 * Returns a weigher, that computes the size of the data of a {@link Cell}
+	 * in bytes.
+	 *
+	 * @param entitiesPerPixel
+	 *            number of entities (e.g. bytes, shorts, ...) per pixel, see
+	 *            {@link net.imglib2.type.NativeType#getEntitiesPerPixel()}.
+	 * @param bytesPerEntity
+	 *            size of an entity in bytes.
+	 */
+	public static ToLongFunction< Cell< ? > > cellBytes( final Fraction entitiesPerPixel, final int bytesPerEntity )
+	{
+		return cell -> entitiesPerPixel.mulCeil( cell.size() ) * bytesPerEntity;
+	}
+
+	@Override
+	public T get( final long index )
+	{
+		final T cached = getIfPresent( index );
+		if ( cached != null )
+		{
+			hits.incrementAndGet();
+			return cached;
+		}
+
+		final CompletableFuture< T > future = new CompletableFuture<>();
+		final CompletableFuture< T > existing = loading.putIfAbsent( index, future );
+		if ( existing != null )
+		{
+			hits.incrementAndGet();
+			return waitFor( existing );
+		}
+
+		try
+		{
+			// another thread might have finished loading in the meantime
+			final T value = getIfPresent( index );
+			if ( value != null )
+			{
+				hits.incrementAndGet();
+				future.complete( value );
+				return value;
+			}
+			misses.incrementAndGet();
+			final T loaded;
+			try
+			{
+				loaded = loader.get( index );
+			}
+			catch ( final RuntimeException | Error e )
+			{
+				future.completeExceptionally( e );
+				throw e;
+			}
+			future.complete( loaded );
+			if ( loaded != null )
+				put( index, loaded );
+			return loaded;
+		}
+		finally
+		{
+			loading.remove( index, future );
+		}
+	}
+
+	/**
+	 * Returns the cached value for the given key, or {@code null} if it is not
+	 * in the cache. Does not load the value, and does not affect the
+	 * hit/miss statistics.
+	 */
+	public T getIfPresent( final long index )
+	{
+		synchronized ( lru )
+		{
+			final T value = lru.get( index );
+			if ( value != null )
+				return value;
+		}
+		if ( softReferences )
+		{
+			cleanUp();
+			final SoftEntry< T > entry = soft.get( index );
+			if ( entry != null )
+			{
+				final T value = entry.get();
+				if ( value != null )
+				{
+					soft.remove( index, entry );
+					put( index, value );
+					return value;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove all values from the cache. Values that are currently being loaded
+	 * are not affected.
+	 */
+	public void invalidateAll()
+	{
+		synchronized ( lru )
+		{
+			lru.clear();
+			weight = 0;
+		}
+		soft.clear();
+	}
+
+	/**
+	 * @return the number of requests that were answered without loading.
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that loaded a value.
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of values that were evicted from the strongly
+	 *         referenced part of the cache.
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of strongly referenced values in the cache.
+	 */
+	public int size()
+	{
+		synchronized ( lru )
+		{
+			return lru.size();
+		}
+	}
+
+	/**
+	 * @return the total weight of the strongly referenced values in the cache.
+	 */
+	public long getWeight()
+	{
+		synchronized ( lru )
+		{
+			return weight;
+		}
+	}
+
+	private void put( final long index, final T value )
+	{
+		final long w = weigher.applyAsLong( value );
+		synchronized ( lru )
+		{
+			final T previous = lru.put( index, value );
+			if ( previous != null )
+				weight -= weigher.applyAsLong( previous );
+			weight += w;
+			// evict least recently used values, but keep the one just added
+			final Iterator< Map.Entry< Long, T > > it = lru.entrySet().iterator();
+			while ( weight > maxWeight && lru.size() > 1 )
+			{
+				final Map.Entry< Long, T > eldest = it.next();
+				it.remove();
+				weight -= weigher.applyAsLong( eldest.getValue() );
+				evictions.incrementAndGet();
+				if ( softReferences )
+					soft.put( eldest.getKey(), new SoftEntry<>( eldest.getKey(), eldest.getValue(), queue ) );
+			}
+		}
+	}
+
+	private void cleanUp()
+	{
+		SoftEntry< ? > entry;
+		while ( ( entry = ( SoftEntry< ? > ) queue.poll() ) != null )
+			soft.remove( entry.key, entry );
+	}
+
+	private static < T > T waitFor( final CompletableFuture< T > future )
+	{
+		boolean interrupted = false;
+		try
+		{
+			while ( true )
+			{
+				try
+				{
+					return future.get();
+				}
+				catch ( final InterruptedException e )
+				{
+					interrupted = true;
+				}
+				catch ( final ExecutionException e )
+				{
+					final Throwable cause = e.getCause();
+					if ( cause instanceof RuntimeException )
+						throw ( RuntimeException ) cause;
+					if ( cause instanceof Error )
+						throw ( Error ) cause;
+					throw new RuntimeException( cause );
+				}
+			}
+		}
+		finally
+		{
+			if ( interrupted )
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class SoftEntry< T > extends SoftReference< T >
+	{
+		private final long key;
+
+		SoftEntry( final long key, final T value, final ReferenceQueue< ? super T > queue )
+		{
+			super( value, queue );
+			this.key = key;
+		}
+	}
+}
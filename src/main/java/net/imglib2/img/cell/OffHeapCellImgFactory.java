@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.nio.AbstractBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferDataAccessFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.NativeTypeFactory;
+
+/**
+ * Factory for creating {@link CellImg CellImgs}, that store their cells in
+ * off-heap memory (direct {@link java.nio.ByteBuffer}s) instead of Java
+ * arrays. Large images then don't increase the Java heap, and don't slow
+ * down garbage collection.
+ * <p>
+ * The cells implement the same {@code Access} interfaces as the array based
+ * cells, so any {@link NativeType} can be used. With {@link AccessFlags} the
+ * cells can additionally be {@code DIRTY} and/or {@code VOLATILE} (see
+ * {@link BufferDataAccessFactory#get(net.imglib2.type.PrimitiveType, Set)}).
+ * </p>
+ * <p>
+ * The factory keeps track of all memory it allocated (see
+ * {@link #getAllocatedBytes()}), including the memory of copies of the
+ * created images. {@link #close()} frees all of it immediately. The images
+ * created by this factory must not be used afterwards.
+ * </p>
+ */
+public class OffHeapCellImgFactory< T extends NativeType< T > > extends CellImgFactory< T > implements AutoCloseable
+{
+	private final Set< AccessFlags > flags;
+
+	private final int[] cellDimensions;
+
+	/**
+	 * Accesses allocated by this factory. Guarded by itself.
+	 */
+	private final List< AbstractBufferAccess< ? > > allocated = new ArrayList<>();
+
+	private long allocatedBytes = 0;
+
+	public OffHeapCellImgFactory( final T type )
+	{
+		this( type, AccessFlags.setOf(), 10 );
+	}
+
+	public OffHeapCellImgFactory( final T type, final int... cellDimensions )
+	{
+		this( type, AccessFlags.setOf(), cellDimensions );
+	}
+
+	public OffHeapCellImgFactory( final T type, final Set< AccessFlags > flags, final int... cellDimensions )
+	{
+		super( type, cellDimensions );
+		this.flags = flags;
+		this.cellDimensions = cellDimensions.clone();
+	}
+
+	@Override
+	public CellImg< T, ? > create( final long... dimensions )
+	{
+		return track( super.create( dimensions ) );
+	}
+
+	@Deprecated
+	@Override
+	public CellImg< T, ? > create( final long[] dimensions, final T type )
+	{
+		return track( super.create( dimensions, type ) );
+	}
+
+	/**
+	 * Remember the cell accesses of {@code img}, such that they are counted by
+	 * {@link #getAllocatedBytes()} and released by {@link #close()}.
+	 */
+	private CellImg< T, ? > track( final CellImg< T, ? > img )
+	{
+		synchronized ( allocated )
+		{
+			for ( final Cell< ? > cell : img.getCells() )
+			{
+				final AbstractBufferAccess< ? > access = ( AbstractBufferAccess< ? > ) cell.getData();
+				allocated.add( access );
+				allocatedBytes += access.getSizeInBytes();
+			}
+		}
+		return img;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	protected < A extends ArrayDataAccess< A > > A createAccess( final NativeTypeFactory< T, ? super A > typeFactory )
+	{
+		return ( A ) BufferDataAccessFactory.get( typeFactory.getPrimitiveType(), flags );
+	}
+
+	/**
+	 * @return the number of bytes of off-heap memory, that is currently
+	 *         allocated by this factory.
+	 */
+	public long getAllocatedBytes()
+	{
+		synchronized ( allocated )
+		{
+			return allocatedBytes;
+		}
+	}
+
+	/**
+	 * Free all off-heap memory allocated by this factory. The images created
+	 * by this factory must not be used afterwards: Accessing their pixels
+	 * throws an {@link IndexOutOfBoundsException}. The factory itself can
+	 * still be used to create new images.
+	 */
+	@Override
+	public void close()
+	{
+		synchronized ( allocated )
+		{
+			allocated.forEach( AbstractBufferAccess::release );
+			allocated.clear();
+			allocatedBytes = 0;
+		}
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new OffHeapCellImgFactory( ( NativeType ) type, flags, cellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
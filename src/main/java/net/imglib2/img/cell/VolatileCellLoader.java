@@ -0,0 +1,362 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+
+import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileArrayDataAccess;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.util.Fraction;
+
+/**
+ * Loads the cells of a {@link LazyCellImg} asynchronously, for use with
+ * volatile types:
+ *
+ * <pre>
+ * {@code
+ * LruCellCache<Cell<VolatileShortArray>> cache = new LruCellCache<>(blockingLoader, 1000);
+ * Get<Cell<VolatileShortArray>> placeholders = VolatileCellLoader.invalidCells(grid, new Fraction(), new VolatileShortArray(0, false));
+ * VolatileCellLoader<VolatileShortArray> loader = new VolatileCellLoader<>(cache, placeholders, 4, 10000);
+ * LazyCellImg<VolatileUnsignedShortType, VolatileShortArray> img = new LazyCellImg<>(grid, new VolatileUnsignedShortType(), loader);
+ * }
+ * </pre>
+ *
+ * If a requested cell is in the {@link LruCellCache}, it is returned
+ * immediately. Otherwise a placeholder cell is returned, whose
+ * {@link VolatileAccess#isValid()} should be {@code false}, and the cell is
+ * enqueued for loading. A fixed number of background threads load the
+ * enqueued cells into the cache, such that subsequent requests return the
+ * loaded cell. A listener can be notified whenever a cell was loaded, for
+ * example to trigger repainting.
+ * <p>
+ * The queue is ordered by priority (see {@link #setPriority(int)}), lower
+ * values first. Among requests of equal priority, the most recent request is
+ * loaded first. The queue is bounded: If it is full, the request that would
+ * be loaded last is dropped. Dropped requests, and requests whose loading
+ * failed, are enqueued again when the cell is requested again.
+ * </p>
+ * <p>
+ * Exceptions thrown while loading a cell or by the load listener are
+ * reported to the {@link #setErrorListener error listener}, or, if there is
+ * none, to the {@link Thread.UncaughtExceptionHandler} of the loader thread.
+ * The loader thread continues with the next request.
+ * </p>
+ *
+ * @param <A>
+ *            the underlying volatile access type
+ */
+public class VolatileCellLoader< A > implements Get< Cell< A > >
+{
+	private final LruCellCache< Cell< A > > cache;
+
+	private final Get< Cell< A > > placeholders;
+
+	private final int maxQueueSize;
+
+	/**
+	 * Queued requests, in the order they will be loaded. Guarded by itself.
+	 */
+	private final TreeSet< Request > queue = new TreeSet<>( Comparator
+			.comparingInt( ( final Request r ) -> r.priority )
+			.thenComparing( Comparator.comparingLong( ( final Request r ) -> r.stamp ).reversed() ) );
+
+	/**
+	 * Queued requests by cell index. Guarded by {@link #queue}.
+	 */
+	private final Map< Long, Request > enqueued = new HashMap<>();
+
+	private final List< Thread > threads = new ArrayList<>();
+
+	private long stamp = 0;
+
+	private volatile int priority = 0;
+
+	private volatile LongConsumer loadListener = null;
+
+	private volatile ObjLongConsumer< RuntimeException > errorListener = null;
+
+	private volatile boolean shutdown = false;
+
+	/**
+	 * @param cache
+	 *            the cache, that holds the loaded cells. Its loader is called
+	 *            on the background threads.
+	 * @param placeholders
+	 *            provides the placeholder cell, that is returned for a cell
+	 *            that is not loaded yet (see
+	 *            {@link #invalidCells(CellGrid, Fraction, VolatileArrayDataAccess)}).
+	 * @param numThreads
+	 *            the number of background loader threads.
+	 * @param maxQueueSize
+	 *            the maximal number of enqueued requests.
+	 */
+	public VolatileCellLoader( final LruCellCache< Cell< A > > cache, final Get< Cell< A > > placeholders, final int numThreads, final int maxQueueSize )
+	{
+		if ( numThreads < 1 || maxQueueSize < 1 )
+			throw new IllegalArgumentException( "number of threads and queue size must be positive" );
+		this.cache = cache;
+		this.placeholders = placeholders;
+		this.maxQueueSize = maxQueueSize;
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final Thread thread = new Thread( this::run, getClass().getSimpleName() + "-" + i );
+			thread.setDaemon( true );
+			thread.setPriority( Thread.MIN_PRIORITY );
+			threads.add( thread );
+			thread.start();
+		}
+	}
+
+	/**
+	 * Returns a {@link Get}, that provides empty, invalid cells of the given
+	 * {@link CellGrid}. Cells with equal dimensions share the same data.
+	 *
+	 * @param grid
+	 *            the cell grid.
+	 * @param entitiesPerPixel
+	 *            number of entities per pixel of the pixel type.
+	 * @param access
+	 *            access of the desired type, used to create the invalid data
+	 *            by {@link VolatileArrayDataAccess#createArray(int, boolean)}.
+	 */
+	public static < A extends VolatileArrayDataAccess< A > > Get< Cell< A > > invalidCells( final CellGrid grid, final Fraction entitiesPerPixel, final A access )
+	{
+		final int n = grid.numDimensions();
+		final Map< List< Integer >, A > shared = new ConcurrentHashMap<>();
+		return index -> {
+			final long[] cellMin = new long[ n ];
+			final int[] cellDims = new int[ n ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final List< Integer > key = new ArrayList<>( n );
+			for ( final int d : cellDims )
+				key.add( d );
+			final A data = shared.computeIfAbsent( key, k -> access.createArray(
+					( int ) entitiesPerPixel.mulCeil( Arrays.stream( cellDims ).asLongStream().reduce( 1, ( a, b ) -> a * b ) ), false ) );
+			return new Cell<>( cellDims, cellMin, data );
+		};
+	}
+
+	@Override
+	public Cell< A > get( final long index )
+	{
+		final Cell< A > cell = cache.getIfPresent( index );
+		if ( cell != null )
+			return cell;
+		enqueue( index );
+		return placeholders.get( index );
+	}
+
+	/**
+	 * Set the priority of subsequent requests. Requests with lower values are
+	 * loaded first. For example, a renderer may request coarse resolution
+	 * levels with a lower value than fine resolution levels.
+	 */
+	public void setPriority( final int priority )
+	{
+		this.priority = priority;
+	}
+
+	/**
+	 * Set a listener, that is called with the cell index, whenever a cell was
+	 * loaded. The listener is called on the loader threads.
+	 */
+	public void setLoadListener( final LongConsumer loadListener )
+	{
+		this.loadListener = loadListener;
+	}
+
+	/**
+	 * Set a listener, that is called with the exception and the cell index,
+	 * whenever loading a cell or calling the load listener failed. The
+	 * listener is called on the loader threads. If {@code null} (the
+	 * default), failures are reported to the
+	 * {@link Thread.UncaughtExceptionHandler} of the loader thread.
+	 */
+	public void setErrorListener( final ObjLongConsumer< RuntimeException > errorListener )
+	{
+		this.errorListener = errorListener;
+	}
+
+	/**
+	 * Remove all enqueued requests. Cells that are currently being loaded are
+	 * not affected. A renderer may call this, when the displayed region
+	 * changed, such that only currently visible cells are loaded.
+	 */
+	public void clearQueue()
+	{
+		synchronized ( queue )
+		{
+			queue.clear();
+			enqueued.clear();
+		}
+	}
+
+	/**
+	 * @return the number of enqueued requests.
+	 */
+	public int getQueueSize()
+	{
+		synchronized ( queue )
+		{
+			return queue.size();
+		}
+	}
+
+	/**
+	 * Stop the background threads, and remove all enqueued requests.
+	 */
+	public void shutdown()
+	{
+		shutdown = true;
+		clearQueue();
+		threads.forEach( Thread::interrupt );
+	}
+
+	private void enqueue( final long index )
+	{
+		if ( shutdown )
+			return;
+		synchronized ( queue )
+		{
+			final Request previous = enqueued.get( index );
+			if ( previous != null )
+			{
+				// re-prioritize
+				queue.remove( previous );
+				enqueued.remove( index );
+			}
+			final Request request = new Request( index, priority, stamp++ );
+			queue.add( request );
+			enqueued.put( index, request );
+			if ( queue.size() > maxQueueSize )
+				enqueued.remove( queue.pollLast().index );
+			queue.notify();
+		}
+	}
+
+	private Request take() throws InterruptedException
+	{
+		synchronized ( queue )
+		{
+			while ( queue.isEmpty() )
+				queue.wait();
+			final Request request = queue.pollFirst();
+			enqueued.remove( request.index );
+			return request;
+		}
+	}
+
+	private void run()
+	{
+		while ( !shutdown )
+		{
+			final Request request;
+			try
+			{
+				request = take();
+			}
+			catch ( final InterruptedException e )
+			{
+				return;
+			}
+			try
+			{
+				cache.get( request.index );
+			}
+			catch ( final RuntimeException e )
+			{
+				// the cell remains invalid, and is enqueued again when it is requested again
+				reportError( e, request.index );
+				continue;
+			}
+			final LongConsumer listener = loadListener;
+			if ( listener != null )
+			{
+				try
+				{
+					listener.accept( request.index );
+				}
+				catch ( final RuntimeException e )
+				{
+					reportError( e, request.index );
+				}
+			}
+		}
+	}
+
+	private void reportError( final RuntimeException e, final long index )
+	{
+		final ObjLongConsumer< RuntimeException > listener = errorListener;
+		if ( listener != null )
+		{
+			try
+			{
+				listener.accept( e, index );
+				return;
+			}
+			catch ( final RuntimeException listenerException )
+			{
+				e.addSuppressed( listenerException );
+			}
+		}
+		final Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException( thread, e );
+	}
+
+	private static final class Request
+	{
+		final long index;
+
+		final int priority;
+
+		final long stamp;
+
+		Request( final long index, final int priority, final long stamp )
+		{
+			this.index = index;
+			this.priority = priority;
+			this.stamp = stamp;
+		}
+	}
+}
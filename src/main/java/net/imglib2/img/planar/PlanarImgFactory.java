@@ -34,10 +34,13 @@
 
 package net.imglib2.img.planar;
 
+import java.util.Set;
+
 import net.imglib2.Dimensions;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.AccessFlags;
 import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.type.NativeType;
@@ -57,9 +60,24 @@ import net.imglib2.util.Util;
  */
 public class PlanarImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
 {
+	private final Set< AccessFlags > flags;
+
 	public PlanarImgFactory( final T type )
+	{
+		this( type, AccessFlags.setOf() );
+	}
+
+	/**
+	 * Create a factory for images whose data is stored in accesses of the
+	 * variant specified by {@code flags} (see {@link ArrayDataAccessFactory}).
+	 * For example, {@link AccessFlags#ATOMIC} gives images of sub-byte types
+	 * such as {@link net.imglib2.type.logic.BitType}, that can be written
+	 * concurrently without locking.
+	 */
+	public PlanarImgFactory( final T type, final Set< AccessFlags > flags )
 	{
 		super( type );
+		this.flags = flags;
 	}
 
 	@Override
@@ -88,7 +106,7 @@ public class PlanarImgFactory< T extends NativeType< T > > extends NativeImgFact
 			final NativeTypeFactory< T, A > typeFactory )
 	{
 		final Fraction entitiesPerPixel = type.getEntitiesPerPixel();
-		final PlanarImg< T, A > img = new PlanarImg<>( ArrayDataAccessFactory.get( typeFactory ), dimensions, entitiesPerPixel );
+		final PlanarImg< T, A > img = new PlanarImg<>( ArrayDataAccessFactory.get( typeFactory, flags ), dimensions, entitiesPerPixel );
 		img.setLinkedType( typeFactory.createLinkedType( img ) );
 		return img;
 	}
@@ -98,7 +116,7 @@ public class PlanarImgFactory< T extends NativeType< T > > extends NativeImgFact
 	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
 	{
 		if ( NativeType.class.isInstance( type ) )
-			return new PlanarImgFactory( ( NativeType ) type );
+			return new PlanarImgFactory( ( NativeType ) type, flags );
 		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
 	}
 
@@ -118,6 +136,7 @@ public class PlanarImgFactory< T extends NativeType< T > > extends NativeImgFact
 	public PlanarImgFactory()
 	{
 		super();
+		flags = AccessFlags.setOf();
 	}
 
 	@Deprecated
@@ -34,12 +34,22 @@
 
 package net.imglib2.img.planar;
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
 import net.imglib2.img.basictypeaccess.array.ByteArray;
 import net.imglib2.img.basictypeaccess.array.DoubleArray;
 import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.basictypeaccess.nio.AbstractBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferDataAccessFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.NativeTypeFactory;
 import net.imglib2.type.Type;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.ARGBType;
@@ -54,6 +64,7 @@ import net.imglib2.type.numeric.integer.UnsignedIntType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
 
 /**
  * Convenience factory methods for creation of {@link PlanarImg} instances with
@@ -194,4 +205,58 @@ final public class PlanarImgs
 	{
 		return ( PlanarImg< ComplexDoubleType, DoubleArray > ) new PlanarImgFactory<>( new ComplexDoubleType() ).create( dim );
 	}
+
+	/**
+	 * Creates a {@link PlanarImg} over a raw file, without copying the data.
+	 * Each plane is mapped into memory separately (see
+	 * {@link BufferDataAccessFactory#map}), such that pixels are loaded by the
+	 * operating system when they are accessed. The pixel data is expected in
+	 * flat iteration order, starting at {@code offset}. The whole image may be
+	 * larger than the Java heap, but a single plane must not be larger than
+	 * {@code Integer.MAX_VALUE} bytes. For types with less than one entity per
+	 * pixel (for example {@link net.imglib2.type.logic.BitType}), each plane
+	 * must end at an entity boundary.
+	 *
+	 * @param type
+	 *            the pixel type.
+	 * @param file
+	 *            the raw file.
+	 * @param offset
+	 *            position of the first pixel in the file, in bytes.
+	 * @param byteOrder
+	 *            byte order of the data in the file.
+	 * @param writable
+	 *            whether the image can be modified. Modifications are written
+	 *            to the file.
+	 * @param dim
+	 *            dimensions of the image.
+	 * @throws IOException
+	 *             if the file can not be mapped.
+	 * @throws IllegalArgumentException
+	 *             if a plane does not fit into a single buffer or does not end
+	 *             at an entity boundary.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	final public static < T extends NativeType< T > > PlanarImg< T, ? > mapFile( final T type, final Path file, final long offset, final ByteOrder byteOrder, final boolean writable, final long... dim ) throws IOException
+	{
+		return mapFile( type, ( NativeTypeFactory ) type.getNativeTypeFactory(), file, offset, byteOrder, writable, dim );
+	}
+
+	private static < T extends NativeType< T >, A extends AbstractBufferAccess< A > > PlanarImg< T, A > mapFile( final T type, final NativeTypeFactory< T, ? super A > typeFactory, final Path file, final long offset, final ByteOrder byteOrder, final boolean writable, final long... dim ) throws IOException
+	{
+		final Fraction entitiesPerPixel = type.getEntitiesPerPixel();
+		final long pixelsPerPlane = ( ( dim.length > 1 ) ? dim[ 1 ] : 1 ) * dim[ 0 ];
+		final long entitiesPerPlane = entitiesPerPixel.mulCeil( pixelsPerPlane );
+		if ( entitiesPerPlane > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of elements in plane too big: " + entitiesPerPlane + " > " + Integer.MAX_VALUE );
+		final int numSlices = PlanarImg.numberOfSlices( dim );
+		if ( numSlices > 1 && ( pixelsPerPlane * entitiesPerPixel.getNumerator() ) % entitiesPerPixel.getDenominator() != 0 )
+			throw new IllegalArgumentException( "Planes of " + pixelsPerPlane + " pixels do not end at an entity boundary for " + entitiesPerPixel.getNumerator() + "/" + entitiesPerPixel.getDenominator() + " entities per pixel." );
+		final int[] numEntities = new int[ numSlices ];
+		Arrays.fill( numEntities, ( int ) entitiesPerPlane );
+		final List< A > slices = BufferDataAccessFactory.map( typeFactory.getPrimitiveType(), file, offset, numEntities, byteOrder, writable );
+		final PlanarImg< T, A > img = new PlanarImg<>( slices, dim, entitiesPerPixel );
+		img.setLinkedType( typeFactory.createLinkedType( img ) );
+		return img;
+	}
 }
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.segmented;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.img.segmented.SegmentedArrayImg.SegmentedContainerSampler;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Cursor on a {@link SegmentedArrayImg}. Within a segment it advances by
+ * incrementing the index of the linked type, like
+ * {@link net.imglib2.img.array.ArrayCursor}. Only when the end of a segment is
+ * reached, the linked type is re-attached to the next segment.
+ */
+public class SegmentedArrayCursor< T extends NativeType< T > > extends AbstractCursor< T > implements SegmentedContainerSampler
+{
+	protected final T type;
+
+	protected final SegmentedArrayImg< T, ? > img;
+
+	protected final long[] dimensions;
+
+	protected final int segmentBits;
+
+	protected final int lastSegment;
+
+	/**
+	 * Current segment.
+	 */
+	protected int segment;
+
+	/**
+	 * Last valid index within the current segment.
+	 */
+	protected int lastIndexInSegment;
+
+	protected SegmentedArrayCursor( final SegmentedArrayCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		this.img = cursor.img;
+		this.type = img.createLinkedType();
+		this.dimensions = cursor.dimensions;
+		this.segmentBits = cursor.segmentBits;
+		this.lastSegment = cursor.lastSegment;
+		this.segment = cursor.segment;
+		this.lastIndexInSegment = cursor.lastIndexInSegment;
+
+		type.updateIndex( cursor.type.getIndex() );
+		type.updateContainer( this );
+	}
+
+	public SegmentedArrayCursor( final SegmentedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		this.type = img.createLinkedType();
+		this.dimensions = new long[ n ];
+		img.dimensions( dimensions );
+		this.segmentBits = img.getSegmentBits();
+		this.lastSegment = img.numSegments() - 1;
+
+		reset();
+	}
+
+	@Override
+	public int getCurrentSegmentIndex()
+	{
+		return segment;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return type.getIndex() < lastIndexInSegment || segment < lastSegment;
+	}
+
+	@Override
+	public void fwd()
+	{
+		if ( type.getIndex() < lastIndexInSegment )
+			type.incIndex();
+		else
+			nextSegment();
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		setFlatIndex( flatIndex() + steps );
+	}
+
+	@Override
+	public void reset()
+	{
+		segment = 0;
+		lastIndexInSegment = img.segmentSize( 0 ) - 1;
+		type.updateIndex( -1 );
+		type.updateContainer( this );
+	}
+
+	/**
+	 * @return the flat index of the current pixel in the image.
+	 */
+	public long flatIndex()
+	{
+		return ( ( long ) segment << segmentBits ) + type.getIndex();
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return IntervalIndexer.indexToPosition( flatIndex(), dimensions, img.steps, d );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		IntervalIndexer.indexToPosition( flatIndex(), dimensions, position );
+	}
+
+	@Override
+	public SegmentedArrayCursor< T > copy()
+	{
+		return new SegmentedArrayCursor<>( this );
+	}
+
+	@Override
+	public SegmentedArrayCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+
+	private void nextSegment()
+	{
+		++segment;
+		lastIndexInSegment = img.segmentSize( segment ) - 1;
+		type.updateContainer( this );
+		type.updateIndex( 0 );
+	}
+
+	/**
+	 * Move to the given flat index. An index of -1 (before the first pixel) is
+	 * allowed.
+	 */
+	protected void setFlatIndex( final long index )
+	{
+		final int s = index < 0 ? 0 : ( int ) ( index >>> segmentBits );
+		if ( s != segment )
+		{
+			segment = s;
+			lastIndexInSegment = img.segmentSize( s ) - 1;
+			type.updateContainer( this );
+		}
+		type.updateIndex( ( int ) ( index - ( ( long ) s << segmentBits ) ) );
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.segmented;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * A {@link NativeImg} that stores its pixels in flat (row-major) order like
+ * {@link ArrayImg}, but distributes them over a list of primitive arrays
+ * (segments) of 2<sup>segmentBits</sup> pixels each. The pixel index is a
+ * {@code long}, so the total number of pixels is not limited by the maximum
+ * Java array length.
+ * <p>
+ * Segments are cut in flat index space without regard to image dimensions.
+ * Iteration is therefore {@link FlatIterationOrder} and compatible with
+ * {@link ArrayImg}. Cursors switch segments only once every
+ * 2<sup>segmentBits</sup> steps, so linear iteration performs like an
+ * {@link ArrayImg} cursor.
+ * </p>
+ */
+public class SegmentedArrayImg< T extends NativeType< T >, A extends ArrayDataAccess< A > > extends AbstractNativeImg< T, A >
+{
+	/**
+	 * The default (and maximum) number of bits of the pixel index addressing
+	 * pixels within one segment.
+	 */
+	public static final int DEFAULT_SEGMENT_BITS = 30;
+
+	final protected int segmentBits;
+
+	final protected long segmentMask;
+
+	final protected int numSegments;
+
+	/*
+	 * Flat index steps, steps[ d ] = dimension[ 0 ] * ... * dimension[ d - 1 ]
+	 */
+	final protected long[] steps;
+
+	final protected List< A > segments;
+
+	public SegmentedArrayImg( final List< A > segments, final long[] dim, final Fraction entitiesPerPixel, final int segmentBits )
+	{
+		super( dim, entitiesPerPixel );
+		if ( segmentBits < 0 || segmentBits > maxSegmentBits( entitiesPerPixel ) )
+			throw new IllegalArgumentException( "segmentBits " + segmentBits + " out of range [0, " + maxSegmentBits( entitiesPerPixel ) + "]" );
+		this.segmentBits = segmentBits;
+		this.segmentMask = ( 1L << segmentBits ) - 1;
+		this.numSegments = numberOfSegments( dim, segmentBits );
+		if ( segments.size() != numSegments )
+			throw new IllegalArgumentException( "expected " + numSegments + " segments, got " + segments.size() );
+		this.segments = segments;
+		this.steps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( dim, steps );
+	}
+
+	SegmentedArrayImg( final A creator, final long[] dim, final Fraction entitiesPerPixel, final int segmentBits )
+	{
+		this( createSegments( creator, dim, entitiesPerPixel, segmentBits ), dim, entitiesPerPixel, segmentBits );
+	}
+
+	/**
+	 * This interface is implemented by all samplers on the
+	 * {@link SegmentedArrayImg}. It allows the container to ask for the
+	 * segment the sampler is currently in.
+	 */
+	public interface SegmentedContainerSampler
+	{
+		/**
+		 * @return the index of the segment the sampler is currently accessing.
+		 */
+		public int getCurrentSegmentIndex();
+	}
+
+	@Override
+	public A update( final Object c )
+	{
+		final int i = ( ( SegmentedContainerSampler ) c ).getCurrentSegmentIndex();
+		return segments.get( i < 0 ? 0 : ( i >= numSegments ? numSegments - 1 : i ) );
+	}
+
+	/**
+	 * @return number of bits of the flat pixel index that address a pixel
+	 *         within a segment.
+	 */
+	public int getSegmentBits()
+	{
+		return segmentBits;
+	}
+
+	public int numSegments()
+	{
+		return numSegments;
+	}
+
+	public A getSegment( final int i )
+	{
+		return segments.get( i );
+	}
+
+	/**
+	 * @return the number of pixels stored in segment {@code i}. All segments
+	 *         but the last hold 2<sup>segmentBits</sup> pixels.
+	 */
+	public int segmentSize( final int i )
+	{
+		return ( int ) Math.min( segmentMask + 1, numPixels - ( ( long ) i << segmentBits ) );
+	}
+
+	@Override
+	public SegmentedArrayCursor< T > cursor()
+	{
+		return new SegmentedArrayCursor<>( this );
+	}
+
+	@Override
+	public SegmentedArrayLocalizingCursor< T > localizingCursor()
+	{
+		return new SegmentedArrayLocalizingCursor<>( this );
+	}
+
+	@Override
+	public SegmentedArrayRandomAccess< T > randomAccess()
+	{
+		return new SegmentedArrayRandomAccess<>( this );
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public SegmentedArrayImgFactory< T > factory()
+	{
+		return new SegmentedArrayImgFactory<>( linkedType, segmentBits );
+	}
+
+	@Override
+	public SegmentedArrayImg< T, ? > copy()
+	{
+		final SegmentedArrayImg< T, ? > copy = factory().create( dimension );
+
+		final SegmentedArrayCursor< T > cursor1 = this.cursor();
+		final SegmentedArrayCursor< T > cursor2 = copy.cursor();
+
+		while ( cursor1.hasNext() )
+			cursor2.next().set( cursor1.next() );
+
+		return copy;
+	}
+
+	/**
+	 * Get the largest number of segment bits for which a segment of the given
+	 * type still fits into a single primitive array.
+	 */
+	public static int maxSegmentBits( final Fraction entitiesPerPixel )
+	{
+		int bits = DEFAULT_SEGMENT_BITS;
+		while ( bits > 0 && entitiesPerPixel.mulCeil( 1L << bits ) > Integer.MAX_VALUE - 8 )
+			--bits;
+		return bits;
+	}
+
+	/**
+	 * Get the number of segments of an image with the given dimensions. An
+	 * empty image has a single empty segment.
+	 */
+	public static int numberOfSegments( final long[] dimensions, final int segmentBits )
+	{
+		final long numPixels = numElements( dimensions );
+		if ( numPixels == 0 )
+			return 1;
+		final long numSegments = ( ( numPixels - 1 ) >>> segmentBits ) + 1;
+		if ( numSegments > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Too many segments: " + numSegments );
+		return ( int ) numSegments;
+	}
+
+	// -- Helper methods --
+
+	private static < A extends ArrayDataAccess< A > > List< A > createSegments( final A creator, final long[] dim, final Fraction entitiesPerPixel, final int segmentBits )
+	{
+		final long numPixels = numElements( dim );
+		final int numSegments = numberOfSegments( dim, segmentBits );
+		final List< A > segments = new ArrayList<>( numSegments );
+		for ( int i = 0; i < numSegments; ++i )
+		{
+			final long pixelsInSegment = Math.min( 1L << segmentBits, numPixels - ( ( long ) i << segmentBits ) );
+			segments.add( creator.createArray( ( int ) entitiesPerPixel.mulCeil( pixelsInSegment ) ) );
+		}
+		return segments;
+	}
+}
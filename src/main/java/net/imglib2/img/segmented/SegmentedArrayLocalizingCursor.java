@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.segmented;
+
+import net.imglib2.AbstractLocalizingCursor;
+import net.imglib2.img.segmented.SegmentedArrayImg.SegmentedContainerSampler;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Localizing cursor on a {@link SegmentedArrayImg}. Keeps track of its
+ * position while iterating in flat order.
+ */
+public class SegmentedArrayLocalizingCursor< T extends NativeType< T > > extends AbstractLocalizingCursor< T > implements SegmentedContainerSampler
+{
+	protected final T type;
+
+	protected final SegmentedArrayImg< T, ? > img;
+
+	protected final long[] dimensions;
+
+	protected final int segmentBits;
+
+	protected final int lastSegment;
+
+	protected final long[] max;
+
+	protected int segment;
+
+	protected int lastIndexInSegment;
+
+	protected SegmentedArrayLocalizingCursor( final SegmentedArrayLocalizingCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		this.img = cursor.img;
+		this.type = img.createLinkedType();
+		this.dimensions = cursor.dimensions;
+		this.segmentBits = cursor.segmentBits;
+		this.lastSegment = cursor.lastSegment;
+		this.segment = cursor.segment;
+		this.lastIndexInSegment = cursor.lastIndexInSegment;
+
+		max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = cursor.position[ d ];
+			max[ d ] = cursor.max[ d ];
+		}
+
+		type.updateIndex( cursor.type.getIndex() );
+		type.updateContainer( this );
+	}
+
+	public SegmentedArrayLocalizingCursor( final SegmentedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		this.type = img.createLinkedType();
+		this.dimensions = new long[ n ];
+		img.dimensions( dimensions );
+		this.segmentBits = img.getSegmentBits();
+		this.lastSegment = img.numSegments() - 1;
+
+		max = new long[ n ];
+		img.max( max );
+
+		reset();
+	}
+
+	@Override
+	public int getCurrentSegmentIndex()
+	{
+		return segment;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return type.getIndex() < lastIndexInSegment || segment < lastSegment;
+	}
+
+	@Override
+	public void fwd()
+	{
+		if ( type.getIndex() < lastIndexInSegment )
+			type.incIndex();
+		else
+		{
+			++segment;
+			lastIndexInSegment = img.segmentSize( segment ) - 1;
+			type.updateContainer( this );
+			type.updateIndex( 0 );
+		}
+
+		if ( ++position[ 0 ] <= max[ 0 ] )
+			return;
+
+		position[ 0 ] = 0;
+		for ( int d = 1; d < n; ++d )
+		{
+			if ( ++position[ d ] <= max[ d ] )
+				break;
+			position[ d ] = 0;
+		}
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		final long index = ( ( long ) segment << segmentBits ) + type.getIndex() + steps;
+		final int s = ( int ) ( index >>> segmentBits );
+		if ( s != segment )
+		{
+			segment = s;
+			lastIndexInSegment = img.segmentSize( s ) - 1;
+			type.updateContainer( this );
+		}
+		type.updateIndex( ( int ) ( index - ( ( long ) s << segmentBits ) ) );
+		IntervalIndexer.indexToPosition( index, dimensions, position );
+	}
+
+	@Override
+	public void reset()
+	{
+		segment = 0;
+		lastIndexInSegment = img.segmentSize( 0 ) - 1;
+		type.updateIndex( -1 );
+		type.updateContainer( this );
+
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = 0;
+		position[ 0 ] = -1;
+	}
+
+	@Override
+	public SegmentedArrayLocalizingCursor< T > copy()
+	{
+		return new SegmentedArrayLocalizingCursor<>( this );
+	}
+
+	@Override
+	public SegmentedArrayLocalizingCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public String toString()
+	{
+		return type.toString();
+	}
+}
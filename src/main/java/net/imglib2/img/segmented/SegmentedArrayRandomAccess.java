@@ -0,0 +1,248 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.segmented;
+
+import net.imglib2.AbstractLocalizable;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.segmented.SegmentedArrayImg.SegmentedContainerSampler;
+import net.imglib2.type.NativeType;
+
+/**
+ * {@link RandomAccess} on a {@link SegmentedArrayImg}. Maintains the
+ * {@code long} flat index of the current position and re-attaches the linked
+ * type only when a move crosses a segment boundary.
+ */
+public class SegmentedArrayRandomAccess< T extends NativeType< T > > extends AbstractLocalizable implements RandomAccess< T >, SegmentedContainerSampler
+{
+	protected final T type;
+
+	protected final SegmentedArrayImg< T, ? > img;
+
+	protected final long[] steps;
+
+	protected final int segmentBits;
+
+	protected final long segmentMask;
+
+	protected long index;
+
+	protected int segment;
+
+	protected SegmentedArrayRandomAccess( final SegmentedArrayRandomAccess< T > randomAccess )
+	{
+		super( randomAccess.numDimensions() );
+
+		this.img = randomAccess.img;
+		this.type = img.createLinkedType();
+		this.steps = randomAccess.steps;
+		this.segmentBits = randomAccess.segmentBits;
+		this.segmentMask = randomAccess.segmentMask;
+
+		for ( int d = 0; d < n; d++ )
+			position[ d ] = randomAccess.position[ d ];
+		index = randomAccess.index;
+		segment = randomAccess.segment;
+
+		type.updateContainer( this );
+		type.updateIndex( randomAccess.type.getIndex() );
+	}
+
+	public SegmentedArrayRandomAccess( final SegmentedArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		this.type = img.createLinkedType();
+		this.steps = img.steps;
+		this.segmentBits = img.getSegmentBits();
+		this.segmentMask = img.segmentMask;
+
+		index = 0;
+		segment = 0;
+
+		type.updateContainer( this );
+		type.updateIndex( 0 );
+	}
+
+	@Override
+	public int getCurrentSegmentIndex()
+	{
+		return segment;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	private void updateIndex()
+	{
+		final int s = ( int ) ( index >> segmentBits );
+		if ( s != segment )
+		{
+			segment = s;
+			type.updateContainer( this );
+		}
+		type.updateIndex( ( int ) ( index & segmentMask ) );
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		index += steps[ d ];
+		++position[ d ];
+		updateIndex();
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		index -= steps[ d ];
+		--position[ d ];
+		updateIndex();
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		move( ( long ) distance, d );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		index += steps[ d ] * distance;
+		position[ d ] += distance;
+		updateIndex();
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final long distance = localizable.getLongPosition( d );
+			position[ d ] += distance;
+			index += distance * steps[ d ];
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] += distance[ d ];
+			index += distance[ d ] * steps[ d ];
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] += distance[ d ];
+			index += distance[ d ] * steps[ d ];
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = localizable.getLongPosition( d );
+			index += position[ d ] * steps[ d ];
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = pos[ d ];
+			index += pos[ d ] * steps[ d ];
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			position[ d ] = pos[ d ];
+			index += pos[ d ] * steps[ d ];
+		}
+		updateIndex();
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		setPosition( ( long ) pos, d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		index += ( pos - position[ d ] ) * steps[ d ];
+		position[ d ] = pos;
+		updateIndex();
+	}
+
+	@Override
+	public SegmentedArrayRandomAccess< T > copy()
+	{
+		return new SegmentedArrayRandomAccess<>( this );
+	}
+
+	@Override
+	public SegmentedArrayRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
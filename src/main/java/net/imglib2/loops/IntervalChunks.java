@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.loops;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Intervals;
+
+/**
+ * {@link IntervalChunks} splits an {@link Interval} into a list of
+ * non-overlapping sub-intervals, that can be processed independently, for
+ * example by multiple threads.
+ */
+final public class IntervalChunks
+{
+
+	private IntervalChunks()
+	{
+		// prevent from instantiation.
+	}
+
+	/**
+	 * Splits the given interval into (at most) {@code numberOfChunks}
+	 * sub-intervals of approximately equal size. The interval is cut along a
+	 * single dimension: The outermost dimension that is large enough to
+	 * provide the requested number of chunks. If there is no such dimension,
+	 * the largest dimension is used.
+	 * <p>
+	 * Cutting along the outermost dimension keeps each chunk a contiguous
+	 * block of memory for images in flat iteration order.
+	 * </p>
+	 *
+	 * @param interval
+	 *            Interval to be split.
+	 * @param numberOfChunks
+	 *            Requested number of chunks.
+	 * @return List of non-overlapping sub-intervals, that together cover the
+	 *         given interval. The list is empty if the interval is empty.
+	 */
+	public static List< Interval > chunkInterval( final Interval interval, final int numberOfChunks )
+	{
+		if ( numberOfChunks < 1 )
+			throw new IllegalArgumentException( "Number of chunks must be positive." );
+		final List< Interval > chunks = new ArrayList<>();
+		if ( Intervals.isEmpty( interval ) )
+			return chunks;
+		final int n = interval.numDimensions();
+		if ( n == 0 || numberOfChunks == 1 )
+		{
+			chunks.add( new FinalInterval( interval ) );
+			return chunks;
+		}
+		final int d = splitDimension( interval, numberOfChunks );
+		final long size = interval.dimension( d );
+		final long numChunks = Math.min( size, numberOfChunks );
+		final long[] min = Intervals.minAsLongArray( interval );
+		final long[] max = Intervals.maxAsLongArray( interval );
+		final long offset = interval.min( d );
+		for ( long i = 0; i < numChunks; i++ )
+		{
+			min[ d ] = offset + i * size / numChunks;
+			max[ d ] = offset + ( i + 1 ) * size / numChunks - 1;
+			chunks.add( new FinalInterval( min, max ) );
+		}
+		return chunks;
+	}
+
+	/**
+	 * Splits the given interval along the cell borders of the given
+	 * {@link CellGrid}. Each returned chunk is the intersection of the interval
+	 * with exactly one cell of the grid. Cells that don't intersect the
+	 * interval are skipped. The chunks are returned in flat order of the grid.
+	 *
+	 * @param grid
+	 *            The cell grid, as returned by
+	 *            {@link AbstractCellImg#getCellGrid()}.
+	 * @param interval
+	 *            Interval to be split, in image coordinates of the cell image.
+	 * @return List of non-overlapping sub-intervals, that together cover the
+	 *         intersection of the given interval with the image.
+	 */
+	public static List< Interval > chunkCells( final CellGrid grid, final Interval interval )
+	{
+		final int n = grid.numDimensions();
+		if ( interval.numDimensions() != n )
+			throw new IllegalArgumentException( "Number of dimensions do not fit." );
+		final List< Interval > chunks = new ArrayList<>();
+		final long[] gridMin = new long[ n ];
+		final long[] gridMax = new long[ n ];
+		for ( int d = 0; d < n; d++ )
+		{
+			final long min = Math.max( 0, interval.min( d ) );
+			final long max = Math.min( grid.imgDimension( d ) - 1, interval.max( d ) );
+			if ( min > max )
+				return chunks;
+			gridMin[ d ] = min / grid.cellDimension( d );
+			gridMax[ d ] = max / grid.cellDimension( d );
+		}
+		final long[] gridPosition = gridMin.clone();
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		while ( true )
+		{
+			for ( int d = 0; d < n; d++ )
+			{
+				final long cellMin = grid.getCellMin( d, gridPosition[ d ] );
+				min[ d ] = Math.max( cellMin, interval.min( d ) );
+				max[ d ] = Math.min( cellMin + grid.getCellDimension( d, gridPosition[ d ] ) - 1, interval.max( d ) );
+			}
+			chunks.add( new FinalInterval( min, max ) );
+			int d = 0;
+			for ( ; d < n; d++ )
+			{
+				if ( gridPosition[ d ] < gridMax[ d ] )
+				{
+					gridPosition[ d ]++;
+					break;
+				}
+				gridPosition[ d ] = gridMin[ d ];
+			}
+			if ( d == n )
+				return chunks;
+		}
+	}
+
+	/**
+	 * Splits the given image into chunks, that can be processed in parallel.
+	 * <p>
+	 * If the image is an {@link AbstractCellImg}, the chunks are aligned to the
+	 * cells (see {@link #chunkCells}), such that no chunk crosses a cell
+	 * border. If there are fewer cells than {@code numberOfChunks}, the cells
+	 * are split further with {@link #chunkInterval}. Otherwise the image is
+	 * split by {@link #chunkInterval}.
+	 * </p>
+	 *
+	 * @param image
+	 *            Image to be split.
+	 * @param numberOfChunks
+	 *            The minimal number of chunks, that is desired. (For images
+	 *            that are not cell images, the maximal number of chunks.)
+	 * @return List of non-overlapping sub-intervals, in the coordinates of the
+	 *         image, that together cover the image.
+	 */
+	public static List< Interval > chunkImage( final RandomAccessibleInterval< ? > image, final int numberOfChunks )
+	{
+		if ( !( image instanceof AbstractCellImg ) )
+			return chunkInterval( image, numberOfChunks );
+		final List< Interval > cells = chunkCells( ( ( AbstractCellImg< ?, ?, ?, ? > ) image ).getCellGrid(), image );
+		if ( cells.isEmpty() || cells.size() >= numberOfChunks )
+			return cells;
+		final int chunksPerCell = ( numberOfChunks + cells.size() - 1 ) / cells.size();
+		final List< Interval > chunks = new ArrayList<>();
+		for ( final Interval cell : cells )
+			chunks.addAll( chunkInterval( cell, chunksPerCell ) );
+		return chunks;
+	}
+
+	private static int splitDimension( final Interval interval, final int numberOfChunks )
+	{
+		int largest = 0;
+		for ( int d = interval.numDimensions() - 1; d >= 0; d-- )
+		{
+			if ( interval.dimension( d ) >= numberOfChunks )
+				return d;
+			if ( interval.dimension( d ) > interval.dimension( largest ) )
+				largest = d;
+		}
+		return largest;
+	}
+}
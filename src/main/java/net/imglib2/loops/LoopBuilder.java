@@ -33,9 +33,12 @@
  */
 package net.imglib2.loops;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -46,8 +49,10 @@ import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Sampler;
+import net.imglib2.img.cell.AbstractCellImg;
 import net.imglib2.util.Intervals;
 
 /**
@@ -72,6 +77,20 @@ import net.imglib2.util.Intervals;
  * The {@link RandomAccessibleInterval}s {@code imageA}, {@code imageB} and
  * {@code sum} must have equal dimensions, but the bounds of there
  * {@link Intervals} can differ.
+ * <p>
+ * By default the loop is executed on the calling thread. Calling
+ * {@link #multiThreaded()} splits the interval into chunks, that are processed
+ * in parallel. The action must then be thread-safe:
+ *
+ * <pre>
+ * {@code
+ * LoopBuilder.setImages(imageA, imageB, sum).multiThreaded().forEachPixel(
+ *     (a, b, s) -> {
+ *          s.setReal(a.getRealDouble() + b.getRealDouble());
+ *     }
+ * );
+ * }
+ * </pre>
  *
  * @author Matthias Arzt
  */
@@ -82,6 +101,10 @@ public class LoopBuilder< T >
 
 	private final RandomAccessibleInterval< ? >[] images;
 
+	private ExecutorService executorService = null;
+
+	private int numberOfTasks = 0;
+
 	private LoopBuilder( final RandomAccessibleInterval< ? >... images )
 	{
 		this.images = images;
@@ -127,19 +150,104 @@ public class LoopBuilder< T >
 		return new LoopBuilder<>( a, b, c, d, e, f );
 	}
 
+	/**
+	 * Execute the loop in parallel, using {@link ParallelTasks#defaultExecutorService()}.
+	 *
+	 * @see #multiThreaded(ExecutorService)
+	 */
+	public LoopBuilder< T > multiThreaded()
+	{
+		return multiThreaded( ParallelTasks.defaultExecutorService() );
+	}
+
+	/**
+	 * Execute the loop in parallel, using the given {@link ExecutorService}.
+	 * The interval is split into chunks (see
+	 * {@link IntervalChunks#chunkInterval}). If one of the images is a cell
+	 * image, the chunks are aligned to its cells instead (see
+	 * {@link IntervalChunks#chunkCells}), such that no chunk crosses a cell
+	 * border. Each chunk is processed by a
+	 * separate task, with its own {@link RandomAccess}es and its own
+	 * {@link ClassCopyProvider}-specialized loop. The action given to
+	 * {@link #forEachPixel} is shared by all tasks, and must therefore be
+	 * thread-safe.
+	 */
+	public LoopBuilder< T > multiThreaded( final ExecutorService executorService )
+	{
+		this.executorService = Objects.requireNonNull( executorService );
+		return this;
+	}
+
+	/**
+	 * Set the number of chunks, the interval is split into, when the loop is
+	 * executed {@link #multiThreaded()}. By default
+	 * {@link ParallelTasks#suggestNumberOfTasks} is used.
+	 */
+	public LoopBuilder< T > numberOfTasks( final int numberOfTasks )
+	{
+		if ( numberOfTasks < 1 )
+			throw new IllegalArgumentException( "Number of tasks must be positive." );
+		this.numberOfTasks = numberOfTasks;
+		return this;
+	}
+
 	public void forEachPixel( final T action )
 	{
 		Objects.requireNonNull( action );
-		final List< RandomAccess< ? > > samplers = Stream.of( images ).map( this::initRandomAccess ).collect( Collectors.toList() );
+		if ( executorService == null )
+		{
+			runChunks( action, Collections.singletonList( new FinalInterval( dimensions ) ) );
+			return;
+		}
+		final int tasks = numberOfTasks > 0 ? numberOfTasks : ParallelTasks.suggestNumberOfTasks( executorService );
+		final List< Interval > chunks = chunks( tasks );
+		final List< Runnable > runnables = new ArrayList<>();
+		for ( int i = 0; i < tasks; i++ )
+		{
+			final List< Interval > subList = chunks.subList( i * chunks.size() / tasks, ( i + 1 ) * chunks.size() / tasks );
+			if ( !subList.isEmpty() )
+				runnables.add( () -> runChunks( action, subList ) );
+		}
+		ParallelTasks.run( executorService, runnables );
+	}
+
+	/**
+	 * Splits the interval into chunks, the chunks are relative to the min of
+	 * the images. If one of the images is a cell image, the chunks are aligned
+	 * to its cells.
+	 */
+	private List< Interval > chunks( final int numberOfChunks )
+	{
+		final RandomAccessibleInterval< ? > cellImage = Stream.of( images )
+				.filter( image -> image instanceof AbstractCellImg )
+				.findFirst().orElse( null );
+		if ( cellImage == null )
+			return IntervalChunks.chunkInterval( new FinalInterval( dimensions ), numberOfChunks );
+		final long[] offset = Intervals.minAsLongArray( cellImage );
+		for ( int d = 0; d < offset.length; d++ )
+			offset[ d ] = -offset[ d ];
+		return IntervalChunks.chunkImage( cellImage, numberOfChunks ).stream()
+				.map( chunk -> Intervals.translate( chunk, offset ) )
+				.collect( Collectors.toList() );
+	}
+
+	private void runChunks( final T action, final List< Interval > chunks )
+	{
+		final List< RandomAccess< ? > > samplers = Stream.of( images ).map( RandomAccessible::randomAccess ).collect( Collectors.toList() );
 		final Positionable synced = SyncedPositionables.create( samplers );
-		LoopUtils.createIntervalLoop( synced, dimensions, RunnableFactory.bindActionToSamplers( action, samplers ) ).run();
+		final Runnable runnable = RunnableFactory.bindActionToSamplers( action, samplers );
+		for ( final Interval chunk : chunks )
+		{
+			for ( int i = 0; i < images.length; i++ )
+				setPosition( samplers.get( i ), images[ i ], chunk );
+			LoopUtils.createIntervalLoop( synced, chunk, runnable ).run();
+		}
 	}
 
-	private RandomAccess< ? > initRandomAccess( final RandomAccessibleInterval< ? > image )
+	private static void setPosition( final RandomAccess< ? > ra, final RandomAccessibleInterval< ? > image, final Interval chunk )
 	{
-		final RandomAccess< ? > ra = image.randomAccess();
-		ra.setPosition( Intervals.minAsLongArray( image ) );
-		return ra;
+		for ( int d = 0; d < chunk.numDimensions(); d++ )
+			ra.setPosition( image.min( d ) + chunk.min( d ), d );
 	}
 
 	public interface TriConsumer< A, B, C >
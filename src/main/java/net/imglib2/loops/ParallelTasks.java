@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.loops;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * {@link ParallelTasks} contains methods to run a list of independent tasks on
+ * an {@link ExecutorService}, and to wait for their completion.
+ */
+final public class ParallelTasks
+{
+
+	private ParallelTasks()
+	{
+		// prevent from instantiation.
+	}
+
+	/**
+	 * Returns the {@link ExecutorService} that is used if no executor is
+	 * specified explicitly: {@link ForkJoinPool#commonPool()}.
+	 */
+	public static ExecutorService defaultExecutorService()
+	{
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Returns a suggested number of tasks, to split a computation into, when
+	 * running it with the given {@link ExecutorService}. A few more tasks than
+	 * threads are suggested, such that an uneven workload is balanced.
+	 */
+	public static int suggestNumberOfTasks( final ExecutorService executorService )
+	{
+		final int parallelism = ( executorService instanceof ForkJoinPool )
+				? ( ( ForkJoinPool ) executorService ).getParallelism()
+				: Runtime.getRuntime().availableProcessors();
+		return 4 * Math.max( 1, parallelism );
+	}
+
+	/**
+	 * Submits all tasks to the given {@link ExecutorService}, and waits until
+	 * all of them are finished. A single task is run on the calling thread.
+	 * <p>
+	 * Note: The calling thread blocks. Don't call this method from a task that
+	 * runs on a fixed size thread pool, with the same thread pool as argument.
+	 * This may result in a deadlock.
+	 * </p>
+	 *
+	 * @throws RuntimeException
+	 *             if one of the tasks fails, or the calling thread is
+	 *             interrupted. The exception thrown by a failing task is
+	 *             rethrown, if it is a {@link RuntimeException} or
+	 *             {@link Error}.
+	 */
+	public static void run( final ExecutorService executorService, final List< ? extends Runnable > tasks )
+	{
+		if ( tasks.size() == 1 )
+		{
+			tasks.get( 0 ).run();
+			return;
+		}
+		final List< Future< ? > > futures = new ArrayList<>( tasks.size() );
+		for ( final Runnable task : tasks )
+			futures.add( executorService.submit( task ) );
+		try
+		{
+			for ( final Future< ? > future : futures )
+				future.get();
+		}
+		catch ( final InterruptedException e )
+		{
+			futures.forEach( future -> future.cancel( true ) );
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			futures.forEach( future -> future.cancel( true ) );
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw new RuntimeException( cause );
+		}
+	}
+}
@@ -0,0 +1,380 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.loops.ParallelTasks;
+
+/**
+ * Answers many nearest neighbor, k-nearest neighbor, or radius neighbor
+ * queries on a {@link FlatKDTree} at once. Queries are split into chunks that
+ * are processed in parallel, each with its own searcher.
+ * <p>
+ * Query points are given either as a list of {@link RealLocalizable}s or as a
+ * flat {@code double[]} with {@code n} consecutive coordinates per query.
+ * Results are returned as {@link Neighbors}, packed primitive arrays of
+ * neighbor indices (into the list of values the tree was constructed from,
+ * see {@link FlatKDTree#valueIndex(int)}) and squared distances.
+ * </p>
+ */
+public class BatchNeighborSearchOnFlatKDTree
+{
+	/**
+	 * Queries are not split into chunks smaller than this.
+	 */
+	private static final int MIN_QUERIES_PER_TASK = 256;
+
+	/**
+	 * Maximum total number of neighbors in a batch, the largest safe array
+	 * size.
+	 */
+	private static final int MAX_NUM_NEIGHBORS = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Neighbors of a batch of queries. The neighbors of query {@code q} are at
+	 * positions {@code offsets[q]} (inclusive) to {@code offsets[q + 1]}
+	 * (exclusive) of {@link #indices} and {@link #squDistances}.
+	 */
+	public static final class Neighbors
+	{
+		/**
+		 * Start of the neighbors of each query, and the total number of
+		 * neighbors as last element.
+		 */
+		public final int[] offsets;
+
+		/**
+		 * Neighbor indices, into the list of values the tree was constructed
+		 * from.
+		 */
+		public final int[] indices;
+
+		/**
+		 * Squared distances of neighbors to their query.
+		 */
+		public final double[] squDistances;
+
+		public Neighbors( final int[] offsets, final int[] indices, final double[] squDistances )
+		{
+			this.offsets = offsets;
+			this.indices = indices;
+			this.squDistances = squDistances;
+		}
+
+		public int numQueries()
+		{
+			return offsets.length - 1;
+		}
+
+		public int numNeighbors( final int query )
+		{
+			return offsets[ query + 1 ] - offsets[ query ];
+		}
+
+		/**
+		 * @return the index of the {@code i}-th neighbor of {@code query}.
+		 */
+		public int index( final int query, final int i )
+		{
+			return indices[ offsets[ query ] + i ];
+		}
+
+		/**
+		 * @return the squared distance of the {@code i}-th neighbor of
+		 *         {@code query}.
+		 */
+		public double squDistance( final int query, final int i )
+		{
+			return squDistances[ offsets[ query ] + i ];
+		}
+	}
+
+	private final FlatKDTree< ? > tree;
+
+	private final int n;
+
+	private final ExecutorService executorService;
+
+	/**
+	 * Batch searches on {@code tree}, running on
+	 * {@link ParallelTasks#defaultExecutorService()}.
+	 */
+	public BatchNeighborSearchOnFlatKDTree( final FlatKDTree< ? > tree )
+	{
+		this( tree, ParallelTasks.defaultExecutorService() );
+	}
+
+	/**
+	 * Batch searches on {@code tree}, running on {@code executorService}.
+	 */
+	public BatchNeighborSearchOnFlatKDTree( final FlatKDTree< ? > tree, final ExecutorService executorService )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.executorService = executorService;
+	}
+
+	/**
+	 * Find the nearest neighbor of each query. Every query has exactly one
+	 * neighbor (unless the tree is empty).
+	 */
+	public Neighbors nearestNeighbors( final List< ? extends RealLocalizable > queries )
+	{
+		return nearestNeighbors( flatten( queries ) );
+	}
+
+	/**
+	 * Find the nearest neighbor of each query. Every query has exactly one
+	 * neighbor (unless the tree is empty).
+	 *
+	 * @param queries
+	 *            query coordinates, {@code n} consecutive entries per query.
+	 */
+	public Neighbors nearestNeighbors( final double[] queries )
+	{
+		return kNearestNeighbors( queries, 1 );
+	}
+
+	/**
+	 * Find the {@code k} nearest neighbors of each query, sorted by distance.
+	 * If the tree has fewer than {@code k} points, all points are returned for
+	 * each query.
+	 */
+	public Neighbors kNearestNeighbors( final List< ? extends RealLocalizable > queries, final int k )
+	{
+		return kNearestNeighbors( flatten( queries ), k );
+	}
+
+	/**
+	 * Find the {@code k} nearest neighbors of each query, sorted by distance.
+	 * If the tree has fewer than {@code k} points, all points are returned for
+	 * each query.
+	 *
+	 * @param queries
+	 *            query coordinates, {@code n} consecutive entries per query.
+	 * @throws IllegalArgumentException
+	 *             if the batch would have too many neighbors to store in
+	 *             arrays.
+	 */
+	public Neighbors kNearestNeighbors( final double[] queries, final int k )
+	{
+		if ( k < 1 )
+			throw new IllegalArgumentException( "k must be positive" );
+		final int numQueries = numQueries( queries );
+		final int numNeighbors = Math.min( k, tree.numPoints() );
+		checkNumNeighbors( ( long ) numQueries * numNeighbors );
+		final int[] offsets = new int[ numQueries + 1 ];
+		for ( int q = 0; q <= numQueries; ++q )
+			offsets[ q ] = q * numNeighbors;
+		final int[] indices = new int[ numQueries * numNeighbors ];
+		final double[] squDistances = new double[ numQueries * numNeighbors ];
+		if ( numNeighbors > 0 )
+		{
+			final List< Runnable > tasks = new ArrayList<>();
+			for ( final int[] chunk : chunks( numQueries ) )
+			{
+				tasks.add( () -> {
+					final double[] query = new double[ n ];
+					if ( numNeighbors == 1 )
+					{
+						final NearestNeighborSearchOnFlatKDTree< ? > search = new NearestNeighborSearchOnFlatKDTree<>( tree );
+						for ( int q = chunk[ 0 ]; q < chunk[ 1 ]; ++q )
+						{
+							System.arraycopy( queries, q * n, query, 0, n );
+							search.search( query );
+							indices[ q ] = tree.valueIndex( search.getNode() );
+							squDistances[ q ] = search.getSquareDistance();
+						}
+					}
+					else
+					{
+						final KNearestNeighborSearchOnFlatKDTree< ? > search = new KNearestNeighborSearchOnFlatKDTree<>( tree, numNeighbors );
+						for ( int q = chunk[ 0 ]; q < chunk[ 1 ]; ++q )
+						{
+							System.arraycopy( queries, q * n, query, 0, n );
+							search.search( query );
+							for ( int i = 0, o = q * numNeighbors; i < numNeighbors; ++i, ++o )
+							{
+								indices[ o ] = tree.valueIndex( search.getNode( i ) );
+								squDistances[ o ] = search.getSquareDistance( i );
+							}
+						}
+					}
+				} );
+			}
+			ParallelTasks.run( executorService, tasks );
+		}
+		return new Neighbors( offsets, indices, squDistances );
+	}
+
+	/**
+	 * Find all neighbors within {@code radius} of each query.
+	 *
+	 * @param sortResults
+	 *            whether the neighbors of each query should be sorted by
+	 *            distance.
+	 */
+	public Neighbors radiusNeighbors( final List< ? extends RealLocalizable > queries, final double radius, final boolean sortResults )
+	{
+		return radiusNeighbors( flatten( queries ), radius, sortResults );
+	}
+
+	/**
+	 * Find all neighbors within {@code radius} of each query.
+	 *
+	 * @param queries
+	 *            query coordinates, {@code n} consecutive entries per query.
+	 * @param sortResults
+	 *            whether the neighbors of each query should be sorted by
+	 *            distance.
+	 * @throws IllegalArgumentException
+	 *             if the batch has too many neighbors to store in arrays.
+	 */
+	public Neighbors radiusNeighbors( final double[] queries, final double radius, final boolean sortResults )
+	{
+		final int numQueries = numQueries( queries );
+		final int[] offsets = new int[ numQueries + 1 ];
+		final List< int[] > chunks = chunks( numQueries );
+		final int numChunks = chunks.size();
+
+		// each task collects the neighbors of its chunk of queries, counts
+		// are stored in offsets[ q + 1 ]
+		final int[][] chunkIndices = new int[ numChunks ][];
+		final double[][] chunkSquDistances = new double[ numChunks ][];
+		final List< Runnable > tasks = new ArrayList<>();
+		for ( int c = 0; c < numChunks; ++c )
+		{
+			final int[] chunk = chunks.get( c );
+			final int chunkIndex = c;
+			tasks.add( () -> {
+				final RadiusNeighborSearchOnFlatKDTree< ? > search = new RadiusNeighborSearchOnFlatKDTree<>( tree );
+				final double[] query = new double[ n ];
+				int[] localIndices = new int[ 16 ];
+				double[] localSquDistances = new double[ 16 ];
+				int size = 0;
+				for ( int q = chunk[ 0 ]; q < chunk[ 1 ]; ++q )
+				{
+					System.arraycopy( queries, q * n, query, 0, n );
+					search.search( query, radius, sortResults );
+					final int numNeighbors = search.numNeighbors();
+					if ( size + numNeighbors > localIndices.length )
+					{
+						checkNumNeighbors( ( long ) size + numNeighbors );
+						final int capacity = ( int ) Math.min( MAX_NUM_NEIGHBORS, Math.max( 2L * localIndices.length, size + numNeighbors ) );
+						localIndices = Arrays.copyOf( localIndices, capacity );
+						localSquDistances = Arrays.copyOf( localSquDistances, capacity );
+					}
+					for ( int i = 0; i < numNeighbors; ++i, ++size )
+					{
+						localIndices[ size ] = tree.valueIndex( search.getNode( i ) );
+						localSquDistances[ size ] = search.getSquareDistance( i );
+					}
+					offsets[ q + 1 ] = numNeighbors;
+				}
+				chunkIndices[ chunkIndex ] = localIndices;
+				chunkSquDistances[ chunkIndex ] = localSquDistances;
+			} );
+		}
+		ParallelTasks.run( executorService, tasks );
+
+		long numNeighbors = 0;
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			numNeighbors += offsets[ q + 1 ];
+			checkNumNeighbors( numNeighbors );
+			offsets[ q + 1 ] = ( int ) numNeighbors;
+		}
+		final int[] indices = new int[ offsets[ numQueries ] ];
+		final double[] squDistances = new double[ offsets[ numQueries ] ];
+		for ( int c = 0; c < numChunks; ++c )
+		{
+			final int[] chunk = chunks.get( c );
+			final int start = offsets[ chunk[ 0 ] ];
+			final int length = offsets[ chunk[ 1 ] ] - start;
+			System.arraycopy( chunkIndices[ c ], 0, indices, start, length );
+			System.arraycopy( chunkSquDistances[ c ], 0, squDistances, start, length );
+		}
+		return new Neighbors( offsets, indices, squDistances );
+	}
+
+	private static void checkNumNeighbors( final long numNeighbors )
+	{
+		if ( numNeighbors > MAX_NUM_NEIGHBORS )
+			throw new IllegalArgumentException( "batch has more than " + MAX_NUM_NEIGHBORS + " neighbors, split it into smaller batches" );
+	}
+
+	private int numQueries( final double[] queries )
+	{
+		if ( queries.length % n != 0 )
+			throw new IllegalArgumentException( "length of queries is not a multiple of numDimensions" );
+		return queries.length / n;
+	}
+
+	/**
+	 * Split {@code numQueries} into chunks {@code [from, to)}.
+	 */
+	private List< int[] > chunks( final int numQueries )
+	{
+		final int numTasks = Math.max( 1, Math.min( ParallelTasks.suggestNumberOfTasks( executorService ), numQueries / MIN_QUERIES_PER_TASK ) );
+		final List< int[] > chunks = new ArrayList<>( numTasks );
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final int from = ( int ) ( ( long ) numQueries * t / numTasks );
+			final int to = ( int ) ( ( long ) numQueries * ( t + 1 ) / numTasks );
+			chunks.add( new int[] { from, to } );
+		}
+		return chunks;
+	}
+
+	private double[] flatten( final List< ? extends RealLocalizable > queries )
+	{
+		final double[] flat = new double[ queries.size() * n ];
+		final double[] pos = new double[ n ];
+		int i = 0;
+		for ( final RealLocalizable query : queries )
+		{
+			query.localize( pos );
+			System.arraycopy( pos, 0, flat, i, n );
+			i += n;
+		}
+		return flat;
+	}
+}
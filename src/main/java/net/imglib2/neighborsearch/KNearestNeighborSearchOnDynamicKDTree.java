@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for a
+ * {@link DynamicKDTree}. Removed points are skipped. If the tree has fewer
+ * than {@code k} points, the remaining results are {@code null}.
+ */
+public class KNearestNeighborSearchOnDynamicKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final ArrayList< DynamicKDTree< T >.Node > bestPoints;
+
+	protected final double[] bestSquDistances;
+
+	public KNearestNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.bestPoints = new ArrayList<>( k );
+		this.bestSquDistances = new double[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestPoints.add( null );
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestPoints.set( i, null );
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		final DynamicKDTree< T >.Node root = tree.getRoot();
+		if ( root != null )
+			searchNode( root );
+	}
+
+	protected void searchNode( final DynamicKDTree< T >.Node current )
+	{
+		// consider the current node
+		if ( !current.isRemoved() )
+		{
+			final double squDistance = current.squDistanceTo( pos );
+			if ( squDistance < bestSquDistances[ k - 1 ] )
+			{
+				int i = k - 1;
+				for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+				{
+					bestSquDistances[ i ] = bestSquDistances[ j ];
+					bestPoints.set( i, bestPoints.get( j ) );
+				}
+				bestSquDistances[ i ] = squDistance;
+				bestPoints.set( i, current );
+			}
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final DynamicKDTree< T >.Node nearChild = leftIsNearBranch ? current.left() : current.right();
+		final DynamicKDTree< T >.Node awayChild = leftIsNearBranch ? current.right() : current.left();
+		if ( nearChild != null )
+			searchNode( nearChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= bestSquDistances[ k - 1 ] ) && ( awayChild != null ) )
+			searchNode( awayChild );
+	}
+
+	/**
+	 * @return the node of the {@code i}-th nearest neighbor, which can be
+	 *         used to remove it from the tree.
+	 */
+	public DynamicKDTree< T >.Node getNode( final int i )
+	{
+		return bestPoints.get( i );
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints.get( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints.get( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnDynamicKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnDynamicKDTree< T > copy = new KNearestNeighborSearchOnDynamicKDTree< T >( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestPoints.set( i, bestPoints.get( i ) );
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for a
+ * {@link FlatKDTree}. Queries do not allocate objects.
+ * <p>
+ * {@link #getSampler(int)} and {@link #getPosition(int)} return the same
+ * instance for every query, pointing to the current {@code i}-th result. Use
+ * {@code copy()} on it to keep a result across queries.
+ * </p>
+ */
+public class KNearestNeighborSearchOnFlatKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final int size;
+
+	protected final double[] positions;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final int[] bestNodes;
+
+	protected final double[] bestSquDistances;
+
+	protected final FlatKDTree< T >.NodeRef[] bestPoints;
+
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.size = tree.numPoints();
+		this.positions = tree.getPositions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.bestNodes = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		this.bestPoints = new FlatKDTree.NodeRef[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestNodes[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = tree.new NodeRef();
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		search( pos );
+	}
+
+	/**
+	 * Search the {@code k} nearest neighbors of {@code query}. If the tree
+	 * has fewer than {@code k} points, the remaining results have node -1 and
+	 * distance {@link Double#MAX_VALUE}.
+	 */
+	public void search( final double[] query )
+	{
+		if ( query != pos )
+			System.arraycopy( query, 0, pos, 0, n );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestNodes[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		if ( size > 0 )
+			searchNode( 0, 0 );
+		for ( int i = 0; i < k; ++i )
+			bestPoints[ i ].setNode( bestNodes[ i ] );
+	}
+
+	protected void searchNode( final int current, final int d )
+	{
+		// consider the current node
+		final double squDistance = tree.squDistance( current, pos );
+		if ( squDistance < bestSquDistances[ k - 1 ] )
+		{
+			int i = k - 1;
+			for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+			{
+				bestSquDistances[ i ] = bestSquDistances[ j ];
+				bestNodes[ i ] = bestNodes[ j ];
+			}
+			bestSquDistances[ i ] = squDistance;
+			bestNodes[ i ] = current;
+		}
+
+		final double axisDiff = pos[ d ] - positions[ current * n + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = 2 * current + 1;
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		if ( nearChild < size )
+			searchNode( nearChild, dChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= bestSquDistances[ k - 1 ] ) && ( awayChild < size ) )
+			searchNode( awayChild, dChild );
+	}
+
+	/**
+	 * @return the tree node of the {@code i}-th nearest neighbor.
+	 */
+	public int getNode( final int i )
+	{
+		return bestNodes[ i ];
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnFlatKDTree< T > copy = new KNearestNeighborSearchOnFlatKDTree< T >( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestNodes[ i ] = bestNodes[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+			copy.bestPoints[ i ].setNode( bestNodes[ i ] );
+		}
+		return copy;
+	}
+}
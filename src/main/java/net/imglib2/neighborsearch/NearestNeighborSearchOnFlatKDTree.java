@@ -0,0 +1,175 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for a
+ * {@link FlatKDTree}. Queries do not allocate objects.
+ * <p>
+ * {@link #getSampler()} and {@link #getPosition()} return the same instance
+ * for every query, pointing to the current result. Use {@code copy()} on it
+ * to keep a result across queries.
+ * </p>
+ */
+public class NearestNeighborSearchOnFlatKDTree< T > implements NearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final int size;
+
+	protected final double[] positions;
+
+	protected final double[] pos;
+
+	protected int bestNode;
+
+	protected double bestSquDistance;
+
+	protected final FlatKDTree< T >.NodeRef bestPoint;
+
+	public NearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		n = tree.numDimensions();
+		size = tree.numPoints();
+		positions = tree.getPositions();
+		pos = new double[ n ];
+		bestNode = -1;
+		bestPoint = tree.new NodeRef();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		p.localize( pos );
+		search( pos );
+	}
+
+	/**
+	 * Search the nearest neighbor of {@code query}.
+	 */
+	public void search( final double[] query )
+	{
+		if ( query != pos )
+			System.arraycopy( query, 0, pos, 0, n );
+		bestSquDistance = Double.MAX_VALUE;
+		bestNode = -1;
+		if ( size > 0 )
+			searchNode( 0, 0 );
+		bestPoint.setNode( bestNode );
+	}
+
+	protected void searchNode( final int current, final int d )
+	{
+		// consider the current node
+		final double distance = tree.squDistance( current, pos );
+		if ( distance < bestSquDistance )
+		{
+			bestSquDistance = distance;
+			bestNode = current;
+		}
+
+		final double axisDiff = pos[ d ] - positions[ current * n + d ];
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = 2 * current + 1;
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		if ( nearChild < size )
+			searchNode( nearChild, dChild );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= bestSquDistance ) && ( awayChild < size ) )
+			searchNode( awayChild, dChild );
+	}
+
+	/**
+	 * @return the tree node of the nearest neighbor.
+	 */
+	public int getNode()
+	{
+		return bestNode;
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	@Override
+	public NearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final NearestNeighborSearchOnFlatKDTree< T > copy = new NearestNeighborSearchOnFlatKDTree< T >( tree );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestNode = bestNode;
+		copy.bestSquDistance = bestSquDistance;
+		copy.bestPoint.setNode( bestNode );
+		return copy;
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.UniformGridIndex;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for a
+ * {@link UniformGridIndex}. Queries do not allocate objects.
+ * <p>
+ * Cells are searched in rings of increasing (Chebyshev) distance around the
+ * cell containing the query location. The search stops as soon as the
+ * nearest point found so far is closer than any point outside the rings
+ * searched so far, so the result is exact. For dense, evenly distributed
+ * points this takes expected constant time.
+ * </p>
+ * <p>
+ * {@link #getSampler()} and {@link #getPosition()} return the same instance
+ * for every query, pointing to the current result. Use {@code copy()} on it
+ * to keep a result across queries.
+ * </p>
+ */
+public class NearestNeighborSearchOnUniformGrid< T > implements NearestNeighborSearch< T >
+{
+	protected final UniformGridIndex< T > grid;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	/**
+	 * Grid coordinates of the cell containing the query location.
+	 */
+	protected final int[] center;
+
+	protected final int[] lo;
+
+	protected final int[] hi;
+
+	/**
+	 * Grid coordinates of the current row of cells when iterating a ring.
+	 */
+	protected final int[] cell;
+
+	protected int bestPoint;
+
+	protected double bestSquDistance;
+
+	protected final UniformGridIndex< T >.PointRef bestRef;
+
+	public NearestNeighborSearchOnUniformGrid( final UniformGridIndex< T > grid )
+	{
+		this.grid = grid;
+		n = grid.numDimensions();
+		pos = new double[ n ];
+		center = new int[ n ];
+		lo = new int[ n ];
+		hi = new int[ n ];
+		cell = new int[ n ];
+		bestPoint = -1;
+		bestRef = grid.new PointRef();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable p )
+	{
+		p.localize( pos );
+		search( pos );
+	}
+
+	/**
+	 * Search the nearest neighbor of {@code query}.
+	 */
+	public void search( final double[] query )
+	{
+		if ( query != pos )
+			System.arraycopy( query, 0, pos, 0, n );
+		bestSquDistance = Double.MAX_VALUE;
+		bestPoint = -1;
+		if ( grid.numPoints() > 0 )
+		{
+			for ( int d = 0; d < n; ++d )
+				center[ d ] = grid.cellCoordinate( pos[ d ], d );
+			for ( int r = 0;; ++r )
+			{
+				searchRing( r );
+				if ( isComplete( r ) )
+					break;
+			}
+		}
+		bestRef.setPoint( bestPoint );
+	}
+
+	/**
+	 * Search all cells at Chebyshev distance {@code r} from {@link #center}.
+	 */
+	protected void searchRing( final int r )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			lo[ d ] = Math.max( 0, center[ d ] - r );
+			hi[ d ] = Math.min( grid.gridDimension( d ) - 1, center[ d ] + r );
+			cell[ d ] = lo[ d ];
+		}
+
+		// iterate rows of cells along dimension 0
+		while ( true )
+		{
+			boolean onRing = false;
+			int rowStart = 0;
+			for ( int d = 1; d < n; ++d )
+			{
+				onRing |= cell[ d ] == center[ d ] - r || cell[ d ] == center[ d ] + r;
+				rowStart += cell[ d ] * grid.gridStep( d );
+			}
+
+			if ( onRing )
+			{
+				// the cells of a row are consecutive, so are their points
+				searchPoints( grid.cellStart( rowStart + lo[ 0 ] ), grid.cellStart( rowStart + hi[ 0 ] + 1 ) );
+			}
+			else
+			{
+				// only the ends of the row are on the ring
+				if ( center[ 0 ] - r == lo[ 0 ] )
+					searchCell( rowStart + lo[ 0 ] );
+				if ( center[ 0 ] + r == hi[ 0 ] && r > 0 )
+					searchCell( rowStart + hi[ 0 ] );
+			}
+
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( cell[ d ] < hi[ d ] )
+				{
+					++cell[ d ];
+					break;
+				}
+				cell[ d ] = lo[ d ];
+			}
+			if ( d >= n )
+				break;
+		}
+	}
+
+	private void searchCell( final int c )
+	{
+		searchPoints( grid.cellStart( c ), grid.cellStart( c + 1 ) );
+	}
+
+	private void searchPoints( final int from, final int to )
+	{
+		for ( int i = from; i < to; ++i )
+		{
+			final double squDistance = grid.squDistance( i, pos );
+			if ( squDistance < bestSquDistance )
+			{
+				bestSquDistance = squDistance;
+				bestPoint = i;
+			}
+		}
+	}
+
+	/**
+	 * Check whether the nearest neighbor is known after searching all rings
+	 * up to {@code r}, i.e., whether no point outside those rings can be
+	 * closer than the current best.
+	 */
+	protected boolean isComplete( final int r )
+	{
+		double bound = Double.MAX_VALUE;
+		for ( int d = 0; d < n; ++d )
+		{
+			final int cLo = center[ d ] - r;
+			if ( cLo > 0 )
+				bound = Math.min( bound, pos[ d ] - grid.cellMin( cLo, d ) );
+			final int cHi = center[ d ] + r;
+			if ( cHi < grid.gridDimension( d ) - 1 )
+				bound = Math.min( bound, grid.cellMin( cHi + 1, d ) - pos[ d ] );
+		}
+		if ( bound == Double.MAX_VALUE )
+			return true; // the whole grid has been searched
+		return bound > 0 && bestSquDistance <= bound * bound;
+	}
+
+	/**
+	 * @return the point of {@link UniformGridIndex} that is the nearest
+	 *         neighbor.
+	 */
+	public int getPoint()
+	{
+		return bestPoint;
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return bestRef;
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return bestRef;
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	@Override
+	public NearestNeighborSearchOnUniformGrid< T > copy()
+	{
+		final NearestNeighborSearchOnUniformGrid< T > copy = new NearestNeighborSearchOnUniformGrid< T >( grid );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestPoint = bestPoint;
+		copy.bestSquDistance = bestSquDistance;
+		copy.bestRef.setPoint( bestPoint );
+		return copy;
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for a
+ * {@link DynamicKDTree}. Removed points are skipped.
+ * <p>
+ * Results are collected in buffers that are re-used (and grown as required)
+ * across queries, as in {@link RadiusNeighborSearchOnKDTree}.
+ * </p>
+ */
+public class RadiusNeighborSearchOnDynamicKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	/**
+	 * Result nodes, in the order they were found.
+	 */
+	protected final ArrayList< DynamicKDTree< T >.Node > resultNodes;
+
+	/**
+	 * Squared distances of the results. After sorting, the {@code i}-th result
+	 * is {@code resultNodes.get( resultOrder[ i ] )}.
+	 */
+	protected double[] resultSquDistances;
+
+	protected int[] resultOrder;
+
+	public RadiusNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.numNeighbors = 0;
+		this.resultNodes = new ArrayList<>();
+		this.resultSquDistances = new double[ 16 ];
+		this.resultOrder = new int[ 16 ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		final DynamicKDTree< T >.Node root = tree.getRoot();
+		if ( root != null )
+			searchNode( root, radius * radius );
+		for ( int i = 0; i < numNeighbors; ++i )
+			resultOrder[ i ] = i;
+		if ( sortResults && numNeighbors > 1 )
+			Util.quicksort( resultSquDistances, resultOrder, 0, numNeighbors - 1 );
+	}
+
+	protected void searchNode( final DynamicKDTree< T >.Node current, final double squRadius )
+	{
+		// consider the current node
+		if ( !current.isRemoved() )
+		{
+			final double squDistance = current.squDistanceTo( pos );
+			if ( squDistance <= squRadius )
+				add( current, squDistance );
+		}
+
+		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+		final double axisSquDistance = axisDiff * axisDiff;
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final DynamicKDTree< T >.Node nearChild = leftIsNearBranch ? current.left() : current.right();
+		final DynamicKDTree< T >.Node awayChild = leftIsNearBranch ? current.right() : current.left();
+		if ( nearChild != null )
+			searchNode( nearChild, squRadius );
+
+		// search the away branch - maybe
+		if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
+			searchNode( awayChild, squRadius );
+	}
+
+	private void add( final DynamicKDTree< T >.Node node, final double squDistance )
+	{
+		if ( numNeighbors == resultSquDistances.length )
+		{
+			final int capacity = 2 * numNeighbors;
+			resultSquDistances = Arrays.copyOf( resultSquDistances, capacity );
+			resultOrder = new int[ capacity ];
+		}
+		if ( numNeighbors == resultNodes.size() )
+			resultNodes.add( node );
+		else
+			resultNodes.set( numNeighbors, node );
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * @return the node of the {@code i}-th neighbor, which can be used to
+	 *         remove it from the tree.
+	 */
+	public DynamicKDTree< T >.Node getNode( final int i )
+	{
+		return resultNodes.get( resultOrder[ i ] );
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return getNode( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return getNode( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
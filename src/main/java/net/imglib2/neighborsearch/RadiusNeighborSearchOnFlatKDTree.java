@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.util.Util;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for a
+ * {@link FlatKDTree}.
+ * <p>
+ * Results are collected in primitive arrays that are re-used (and grown as
+ * required) across queries, so that queries do not allocate objects once the
+ * buffers are large enough. {@link #getSampler(int)} and
+ * {@link #getPosition(int)} return instances that are re-used across
+ * queries. Use {@code copy()} on them to keep a result across queries.
+ * </p>
+ */
+public class RadiusNeighborSearchOnFlatKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final int size;
+
+	protected final double[] positions;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected int[] resultNodes;
+
+	protected double[] resultSquDistances;
+
+	protected final ArrayList< FlatKDTree< T >.NodeRef > resultPoints;
+
+	public RadiusNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.size = tree.numPoints();
+		this.positions = tree.getPositions();
+		this.pos = new double[ n ];
+		this.numNeighbors = 0;
+		this.resultNodes = new int[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.resultPoints = new ArrayList<>();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		reference.localize( pos );
+		search( pos, radius, sortResults );
+	}
+
+	/**
+	 * Search all points within {@code radius} of {@code query}.
+	 */
+	public void search( final double[] query, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		if ( query != pos )
+			System.arraycopy( query, 0, pos, 0, n );
+		numNeighbors = 0;
+		if ( size > 0 )
+			searchNode( 0, 0, radius * radius );
+		if ( sortResults && numNeighbors > 1 )
+			Util.quicksort( resultSquDistances, resultNodes, 0, numNeighbors - 1 );
+	}
+
+	protected void searchNode( final int current, final int d, final double squRadius )
+	{
+		// consider the current node
+		final double squDistance = tree.squDistance( current, pos );
+		if ( squDistance <= squRadius )
+			add( current, squDistance );
+
+		final double axisDiff = pos[ d ] - positions[ current * n + d ];
+		final boolean leftIsNearBranch = axisDiff < 0;
+
+		// search the near branch
+		final int left = 2 * current + 1;
+		final int nearChild = leftIsNearBranch ? left : left + 1;
+		final int awayChild = leftIsNearBranch ? left + 1 : left;
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		if ( nearChild < size )
+			searchNode( nearChild, dChild, squRadius );
+
+		// search the away branch - maybe
+		if ( ( axisDiff * axisDiff <= squRadius ) && ( awayChild < size ) )
+			searchNode( awayChild, dChild, squRadius );
+	}
+
+	private void add( final int node, final double squDistance )
+	{
+		if ( numNeighbors == resultNodes.length )
+		{
+			final int capacity = 2 * numNeighbors;
+			final int[] nodes = new int[ capacity ];
+			final double[] squDistances = new double[ capacity ];
+			System.arraycopy( resultNodes, 0, nodes, 0, numNeighbors );
+			System.arraycopy( resultSquDistances, 0, squDistances, 0, numNeighbors );
+			resultNodes = nodes;
+			resultSquDistances = squDistances;
+		}
+		resultNodes[ numNeighbors ] = node;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	/**
+	 * @return the tree node of the {@code i}-th neighbor.
+	 */
+	public int getNode( final int i )
+	{
+		return resultNodes[ i ];
+	}
+
+	private FlatKDTree< T >.NodeRef point( final int i )
+	{
+		while ( resultPoints.size() <= i )
+			resultPoints.add( tree.new NodeRef() );
+		final FlatKDTree< T >.NodeRef ref = resultPoints.get( i );
+		ref.setNode( resultNodes[ i ] );
+		return ref;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return point( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return point( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+}
@@ -35,8 +35,7 @@
 package net.imglib2.neighborsearch;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 import net.imglib2.KDTree;
 import net.imglib2.KDTreeNode;
@@ -46,6 +45,12 @@ import net.imglib2.util.ValuePair;
 
 /**
  * Implementation of {@link RadiusNeighborSearch} search for kd-trees.
+ * <p>
+ * Results are collected in arrays that are re-used (and grown as required)
+ * across queries, so that queries do not allocate objects once the buffers
+ * are large enough. The tree is traversed iteratively, using an explicit
+ * stack.
+ * </p>
  * 
  * @author Tobias Pietzsch
  */
@@ -57,14 +62,55 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 
 	protected final double[] pos;
 
+	/**
+	 * @deprecated Results are stored in {@link #resultNodes} and
+	 *             {@link #resultSquDistances}, use {@link #getSampler(int)}
+	 *             and {@link #getSquareDistance(int)} to read them. This list
+	 *             is not filled by {@link #searchNode(KDTreeNode, double)}
+	 *             anymore. It is cleared before each search, and pairs that a
+	 *             subclass adds to it during the search are appended to the
+	 *             results.
+	 */
+	@Deprecated
 	protected ArrayList< ValuePair< KDTreeNode< T >, Double > > resultPoints;
 
+	protected int numNeighbors;
+
+	/**
+	 * Result nodes, in the order they were found.
+	 */
+	protected KDTreeNode< T >[] resultNodes;
+
+	/**
+	 * Squared distances of the results. After sorting, the {@code i}-th result
+	 * is {@code resultNodes[ resultOrder[ i ] ]}.
+	 */
+	protected double[] resultSquDistances;
+
+	protected int[] resultOrder;
+
+	/**
+	 * Stack of nodes that remain to be visited.
+	 */
+	protected KDTreeNode< T >[] stack;
+
 	public RadiusNeighborSearchOnKDTree( final KDTree< T > tree )
 	{
 		this.tree = tree;
 		this.n = tree.numDimensions();
 		this.pos = new double[ n ];
-		this.resultPoints = new ArrayList< ValuePair< KDTreeNode< T >, Double > >();
+		this.resultPoints = new ArrayList<>();
+		this.numNeighbors = 0;
+		this.resultNodes = newNodeArray( 16 );
+		this.resultSquDistances = new double[ 16 ];
+		this.resultOrder = new int[ 16 ];
+		this.stack = newNodeArray( 64 );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static < T > KDTreeNode< T >[] newNodeArray( final int length )
+	{
+		return ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ length ];
 	}
 
 	@Override
@@ -72,19 +118,53 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 	{
 		assert radius >= 0;
 		reference.localize( pos );
+		numNeighbors = 0;
 		resultPoints.clear();
 		searchNode( tree.getRoot(), radius * radius );
-		if ( sortResults )
+		for ( final ValuePair< KDTreeNode< T >, Double > p : resultPoints )
+			add( p.a, p.b );
+		for ( int i = 0; i < numNeighbors; ++i )
+			resultOrder[ i ] = i;
+		if ( sortResults && numNeighbors > 1 )
+			sort( resultSquDistances, resultOrder, 0, numNeighbors - 1 );
+	}
+
+	/**
+	 * Sort {@code squDistances} and {@code order} by distance. Results with
+	 * equal distances are ordered by {@code order}, that is, they keep the
+	 * order in which they were found.
+	 */
+	private static void sort( final double[] squDistances, final int[] order, final int left, final int right )
+	{
+		int i = left, j = right;
+		final int m = ( left + right ) / 2;
+		final double x = squDistances[ m ];
+		final int xo = order[ m ];
+		do
 		{
-			Collections.sort( resultPoints, new Comparator< ValuePair< KDTreeNode< T >, Double > >()
+			while ( squDistances[ i ] < x || ( squDistances[ i ] == x && order[ i ] < xo ) )
+				i++;
+			while ( x < squDistances[ j ] || ( x == squDistances[ j ] && xo < order[ j ] ) )
+				j--;
+			if ( i <= j )
 			{
-				@Override
-				public int compare( final ValuePair< KDTreeNode< T >, Double > o1, final ValuePair< KDTreeNode< T >, Double > o2 )
-				{
-					return Double.compare( o1.b, o2.b );
-				}
-			} );
+				final double temp = squDistances[ i ];
+				squDistances[ i ] = squDistances[ j ];
+				squDistances[ j ] = temp;
+
+				final int temp2 = order[ i ];
+				order[ i ] = order[ j ];
+				order[ j ] = temp2;
+
+				i++;
+				j--;
+			}
 		}
+		while ( i <= j );
+		if ( left < j )
+			sort( squDistances, order, left, j );
+		if ( i < right )
+			sort( squDistances, order, i, right );
 	}
 
 	@Override
@@ -93,57 +173,88 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 		return n;
 	}
 
-	protected void searchNode( final KDTreeNode< T > current, final double squRadius )
+	/**
+	 * Collect all nodes of the subtree rooted at {@code root} within
+	 * {@code squRadius}. Nodes are visited in the same order as by a
+	 * recursive depth-first traversal that descends into the near branch
+	 * first.
+	 */
+	protected void searchNode( final KDTreeNode< T > root, final double squRadius )
 	{
-		// consider the current node
-		final double squDistance = current.squDistanceTo( pos );
-		if ( squDistance <= squRadius )
+		if ( root == null )
+			return;
+		int stackSize = 0;
+		stack[ stackSize++ ] = root;
+		while ( stackSize > 0 )
 		{
-			resultPoints.add( new ValuePair< KDTreeNode< T >, Double >( current, squDistance ) );
-		}
+			final KDTreeNode< T > current = stack[ --stackSize ];
+			stack[ stackSize ] = null;
 
-		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
-		final double axisSquDistance = axisDiff * axisDiff;
-		final boolean leftIsNearBranch = axisDiff < 0;
+			// consider the current node
+			final double squDistance = current.squDistanceTo( pos );
+			if ( squDistance <= squRadius )
+				add( current, squDistance );
 
-		// search the near branch
-		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
-		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
-		if ( nearChild != null )
-			searchNode( nearChild, squRadius );
+			final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+			final double axisSquDistance = axisDiff * axisDiff;
+			final boolean leftIsNearBranch = axisDiff < 0;
 
-		// search the away branch - maybe
-		if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
-			searchNode( awayChild, squRadius );
+			final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
+			final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+			if ( stackSize + 2 > stack.length )
+				stack = Arrays.copyOf( stack, 2 * stack.length );
+
+			// search the away branch - maybe (after the near branch)
+			if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
+				stack[ stackSize++ ] = awayChild;
+
+			// search the near branch
+			if ( nearChild != null )
+				stack[ stackSize++ ] = nearChild;
+		}
+	}
+
+	private void add( final KDTreeNode< T > node, final double squDistance )
+	{
+		if ( numNeighbors == resultNodes.length )
+		{
+			final int capacity = 2 * numNeighbors;
+			resultNodes = Arrays.copyOf( resultNodes, capacity );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, capacity );
+			resultOrder = new int[ capacity ];
+		}
+		resultNodes[ numNeighbors ] = node;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
 	}
 
 	@Override
 	public int numNeighbors()
 	{
-		return resultPoints.size();
+		return numNeighbors;
 	}
 
 	@Override
 	public Sampler< T > getSampler( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ resultOrder[ i ] ];
 	}
 
 	@Override
 	public RealLocalizable getPosition( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ resultOrder[ i ] ];
 	}
 
 	@Override
 	public double getSquareDistance( final int i )
 	{
-		return resultPoints.get( i ).b;
+		return resultSquDistances[ i ];
 	}
 
 	@Override
 	public double getDistance( final int i )
 	{
-		return Math.sqrt( resultPoints.get( i ).b );
+		return Math.sqrt( resultSquDistances[ i ] );
 	}
 }
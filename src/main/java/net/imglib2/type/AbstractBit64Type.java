@@ -37,6 +37,7 @@ package net.imglib2.type;
 
 import net.imglib2.img.NativeImg;
 import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.LongAccesses;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 
 /**
@@ -58,9 +59,6 @@ public abstract class AbstractBit64Type< T extends AbstractBit64Type< T > > exte
 	// A mask for bit and, containing nBits of 1
 	private final long mask;
 
-	// The inverse of mask
-	private final long invMask;
-
 	// this is the constructor if you want it to read from an array
 	public AbstractBit64Type( final NativeImg< ?, ? extends LongAccess > bitStorage, final int nBits )
 	{
@@ -72,7 +70,6 @@ public abstract class AbstractBit64Type< T extends AbstractBit64Type< T > > exte
 			this.mask = -1l; // all 1s
 		else
 			this.mask = ((long)(Math.pow(2, nBits) -1));
-		this.invMask = ~mask;
 	}
 
 	// this is the constructor if you want it to be a variable
@@ -138,33 +135,19 @@ public abstract class AbstractBit64Type< T extends AbstractBit64Type< T > > exte
 		final int i1 = (int)(k >>> 6); // k / 64;
 		final long shift = k & 63; // Same as k % 64;
 		final long safeValue = value & mask;
-		synchronized ( dataAccess ) {
-			if (0 == shift) {
-				// Number contained in a single long, ending exactly at the first bit
-				dataAccess.setValue(i1, (dataAccess.getValue(i1) & invMask) | safeValue);
+		if (0 == shift) {
+			// Number contained in a single long, ending exactly at the first bit
+			LongAccesses.setBits(dataAccess, i1, mask, safeValue);
+		} else {
+			final long antiShift = 64 - shift;
+			if (antiShift < nBits) {
+				// Number split between two adjacent longs:
+				// store the lower bits of safeValue at the upper bits of the first long
+				// and the upper bits of safeValue at the lower bits of the second long
+				LongAccesses.setBits(dataAccess, i1, mask << shift, safeValue << shift, mask >>> antiShift, safeValue >>> antiShift);
 			} else {
-				final long antiShift = 64 - shift;
-				final long v = dataAccess.getValue(i1);
-				if (antiShift < nBits) {
-					// Number split between two adjacent longs
-					// 1. Store the lower bits of safeValue at the upper bits of v1
-					final long v1 = (v & (0xffffffffffffffffL >>> antiShift)) // clear upper bits, keep other values
-							| ((safeValue & (mask >>> (nBits - antiShift))) << shift); // the lower part of safeValue, stored at the upper end
-					dataAccess.setValue(i1, v1);
-					// 2. Store the upper bits of safeValue at the lower bits of v2
-					final long v2 = (dataAccess.getValue(i1 + 1) & (0xffffffffffffffffL << (nBits - antiShift))) // other
-							| (safeValue >>> antiShift); // upper part of safeValue, stored at the lower end
-					dataAccess.setValue(i1 + 1, v2);
-				} else {
-					// Number contained inside a single long
-					if (0 == v) {
-						// Trivial case
-						dataAccess.setValue(i1, safeValue << shift);
-					} else {
-						// Clear the bits first
-						dataAccess.setValue(i1, (v & ~(mask << shift)) | (safeValue << shift));
-					}
-				}
+				// Store the lower bits of safeValue at the upper bits of the first long
+				LongAccesses.setBits(dataAccess, i1, mask << shift, safeValue << shift);
 			}
 		}
 	}
@@ -38,6 +38,7 @@ import java.math.BigInteger;
 
 import net.imglib2.img.NativeImg;
 import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.LongAccesses;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.type.BooleanType;
 import net.imglib2.type.NativeType;
@@ -126,14 +127,8 @@ public class BitType extends AbstractIntegerType< BitType > implements BooleanTy
 		// Same as above, minus one multiplication, plus one shift to multiply the reminder by 2
 		final int i1 = i >>> 6; // Same as i / 64
 		final long bit = 1l << (i & 63);
-		synchronized ( dataAccess )
-		{
-			// Clear or set the bit
-			if ( value )
-				dataAccess.setValue( i1, dataAccess.getValue( i1 ) | bit );
-			else
-				dataAccess.setValue( i1, dataAccess.getValue( i1 ) & ~bit );
-		}
+		// Clear or set the bit
+		LongAccesses.setBits( dataAccess, i1, bit, value ? bit : 0 );
 	}
 
 	@Override
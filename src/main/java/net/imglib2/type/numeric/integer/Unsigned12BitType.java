@@ -36,6 +36,7 @@ package net.imglib2.type.numeric.integer;
 
 import net.imglib2.img.NativeImg;
 import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.LongAccesses;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.type.NativeTypeFactory;
 import net.imglib2.type.Type;
@@ -128,35 +129,17 @@ public class Unsigned12BitType extends AbstractIntegerBitType< Unsigned12BitType
 
 		final long antiShift = 64 - shift;
 
-		synchronized ( dataAccess )
+		if ( antiShift < 12 )
+		{
+			// Number split between two adjacent longs:
+			// store the lower bits of safeValue at the upper bits of the first long
+			// and the upper bits of safeValue at the lower bits of the second long
+			LongAccesses.setBits( dataAccess, i1, mask << shift, safeValue << shift, mask >>> antiShift, safeValue >>> antiShift );
+		}
+		else
 		{
-			final long v = dataAccess.getValue( i1 );
-			if ( antiShift < 12 )
-			{
-				// Number split between two adjacent longs
-				// 1. Store the lower bits of safeValue at the upper bits of v1
-				final long v1 = ( v & ( 0xffffffffffffffffL >>> antiShift ) ) // clear upper bits, keep other values
-						| ( ( safeValue & ( mask >>> ( 12 - antiShift ) ) ) << shift ); // the lower part of safeValue, stored at the upper end
-				dataAccess.setValue( i1, v1 );
-				// 2. Store the upper bits of safeValue at the lower bits of v2
-				final long v2 = ( dataAccess.getValue( i1 + 1 ) & ( 0xffffffffffffffffL << ( 12 - antiShift ) ) ) // other
-						| ( safeValue >>> antiShift ); // upper part of safeValue, stored at the lower end
-				dataAccess.setValue( i1 + 1, v2 );
-			}
-			else
-			{
-				// Number contained inside a single long
-				if ( 0 == v )
-				{
-					// Trivial case
-					dataAccess.setValue( i1, safeValue << shift );
-				}
-				else
-				{
-					// Clear the bits first
-					dataAccess.setValue( i1, ( v & ~( mask << shift ) ) | ( safeValue << shift ) );
-				}
-			}
+			// Store the lower bits of safeValue at the upper bits of the first long
+			LongAccesses.setBits( dataAccess, i1, mask << shift, safeValue << shift );
 		}
 	}
 
@@ -36,6 +36,7 @@ package net.imglib2.type.numeric.integer;
 
 import net.imglib2.img.NativeImg;
 import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.LongAccesses;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.type.NativeTypeFactory;
 import net.imglib2.type.Type;
@@ -121,12 +122,7 @@ public class Unsigned2BitType extends AbstractIntegerBitType< Unsigned2BitType >
 		final long shift = ( i << 1 ) & 63; // Same as (i * 2) % 64
 		// Clear the bits first, then or the masked value
 
-		final long bitsToRetain = ~( mask << shift );
-		final long bitsToSet = ( value & mask ) << shift;
-		synchronized ( dataAccess )
-		{
-			dataAccess.setValue( i1, ( dataAccess.getValue( i1 ) & bitsToRetain ) | bitsToSet );
-		}
+		LongAccesses.setBits( dataAccess, i1, mask << shift, ( value & mask ) << shift );
 	}
 
 	@Override
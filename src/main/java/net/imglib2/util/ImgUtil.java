@@ -34,9 +34,29 @@
 
 package net.imglib2.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
 import net.imglib2.Cursor;
+import net.imglib2.Dirty;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.segmented.SegmentedArrayImg;
+import net.imglib2.loops.LoopBuilder;
+import net.imglib2.loops.ParallelTasks;
 import net.imglib2.type.BooleanType;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 
@@ -288,4 +308,295 @@ public class ImgUtil
 			dest[ this_offset ] = t.get();
 		}
 	}
+
+	/**
+	 * Copy {@code source} into {@code destination}, using the common
+	 * {@link ForkJoinPool}.
+	 *
+	 * @see #copy(RandomAccessibleInterval, RandomAccessibleInterval,
+	 *      ExecutorService)
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > destination )
+	{
+		copy( source, destination, ParallelTasks.defaultExecutorService() );
+	}
+
+	/**
+	 * Copy {@code source} into {@code destination}. Both must have the same
+	 * dimensions, pixels are matched relative to the respective interval min.
+	 * <p>
+	 * If both images store the same {@link NativeType} in primitive arrays and
+	 * have compatible flat layouts ({@link ArrayImg}, {@link PlanarImg},
+	 * {@link SegmentedArrayImg} in any combination, or two
+	 * {@link AbstractCellImg}s with the same {@link CellGrid}), the arrays are
+	 * copied with {@link System#arraycopy}. Otherwise pixels are copied line
+	 * by line with {@link LoopBuilder}. In both cases, the work is split into
+	 * tasks that run on {@code executorService}.
+	 * </p>
+	 */
+	public static < T extends Type< T > > void copy( final RandomAccessibleInterval< T > source, final RandomAccessibleInterval< T > destination, final ExecutorService executorService )
+	{
+		if ( !Intervals.equalDimensions( source, destination ) )
+			throw new IllegalArgumentException( "Dimensions of source and destination differ: " + Util.printInterval( source ) + " vs " + Util.printInterval( destination ) );
+
+		if ( source instanceof NativeImg && destination instanceof NativeImg )
+		{
+			final Fraction entitiesPerPixel = commonEntitiesPerPixel( ( NativeImg< ?, ? > ) source, ( NativeImg< ?, ? > ) destination );
+			if ( entitiesPerPixel != null )
+			{
+				if ( source instanceof AbstractCellImg && destination instanceof AbstractCellImg )
+				{
+					if ( copyCells( ( AbstractCellImg< ?, ?, ?, ? > ) source, ( AbstractCellImg< ?, ?, ?, ? > ) destination, entitiesPerPixel, executorService ) )
+						return;
+				}
+				else
+				{
+					final FlatArrays src = FlatArrays.of( source );
+					final FlatArrays dst = FlatArrays.of( destination );
+					if ( src != null && dst != null && src.isCompatible( dst, entitiesPerPixel ) )
+					{
+						copyFlat( src, dst, entitiesPerPixel, executorService );
+						return;
+					}
+				}
+			}
+		}
+
+		LoopBuilder.setImages( source, destination ).multiThreaded( executorService ).forEachPixel( ( s, d ) -> d.set( s ) );
+	}
+
+	/**
+	 * Minimal number of pixels per task for parallel bulk copies.
+	 */
+	private static final long MIN_PIXELS_PER_TASK = 1 << 16;
+
+	/**
+	 * @return the entities per pixel of both images, or {@code null} if they
+	 *         do not have the same type.
+	 */
+	private static Fraction commonEntitiesPerPixel( final NativeImg< ?, ? > source, final NativeImg< ?, ? > destination )
+	{
+		final NativeType< ? > s = ( NativeType< ? > ) source.createLinkedType();
+		final NativeType< ? > d = ( NativeType< ? > ) destination.createLinkedType();
+		if ( s == null || d == null || s.getClass() != d.getClass() )
+			return null;
+		final Fraction es = s.getEntitiesPerPixel();
+		final Fraction ed = d.getEntitiesPerPixel();
+		if ( es.getNumerator() * ed.getDenominator() != ed.getNumerator() * es.getDenominator() )
+			return null;
+		return es;
+	}
+
+	private static Object storageArray( final Object access )
+	{
+		if ( !( access instanceof ArrayDataAccess ) )
+			return null;
+		final Object array = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+		return array != null && array.getClass().isArray() ? array : null;
+	}
+
+	private static void setDirty( final Object access )
+	{
+		if ( access instanceof Dirty )
+			( ( Dirty ) access ).setDirty();
+	}
+
+	/**
+	 * Copy all cells of {@code source} into the corresponding cells of
+	 * {@code destination}. Returns {@code false} without copying anything if
+	 * the cell grids differ.
+	 */
+	private static boolean copyCells(
+			final AbstractCellImg< ?, ?, ?, ? > source,
+			final AbstractCellImg< ?, ?, ?, ? > destination,
+			final Fraction entitiesPerPixel,
+			final ExecutorService executorService )
+	{
+		if ( !source.getCellGrid().equals( destination.getCellGrid() ) )
+			return false;
+
+		// Check the first cell up front, so that images with non-array
+		// storage fall back to pixel-wise copying right away. (If a later
+		// cell turns out to be incompatible, false is returned and the
+		// caller copies everything pixel-wise.)
+		final Object s0 = storageArray( source.getCells().firstElement().getData() );
+		final Object d0 = storageArray( destination.getCells().firstElement().getData() );
+		if ( s0 == null || d0 == null || s0.getClass() != d0.getClass() )
+			return false;
+
+		final long numCells = Intervals.numElements( source.getCellGrid().getGridDimensions() );
+		final int numTasks = ( int ) Math.max( 1, Math.min( ParallelTasks.suggestNumberOfTasks( executorService ), numCells ) );
+		final boolean[] compatible = { true };
+		final List< Runnable > tasks = new ArrayList<>( numTasks );
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final long first = t * numCells / numTasks;
+			final long last = ( t + 1 ) * numCells / numTasks;
+			tasks.add( () -> {
+				final Cursor< ? extends Cell< ? > > sc = source.getCells().cursor();
+				final Cursor< ? extends Cell< ? > > dc = destination.getCells().cursor();
+				sc.jumpFwd( first );
+				dc.jumpFwd( first );
+				for ( long i = first; i < last && compatible[ 0 ]; ++i )
+				{
+					final Cell< ? > s = sc.next();
+					final Cell< ? > d = dc.next();
+					final Object sArray = storageArray( s.getData() );
+					final Object dArray = storageArray( d.getData() );
+					if ( sArray == null || dArray == null || sArray.getClass() != dArray.getClass() )
+					{
+						compatible[ 0 ] = false;
+						return;
+					}
+					System.arraycopy( sArray, 0, dArray, 0, ( int ) entitiesPerPixel.mulCeil( s.size() ) );
+					setDirty( d.getData() );
+				}
+			} );
+		}
+
+		ParallelTasks.run( executorService, tasks );
+		return compatible[ 0 ];
+	}
+
+	private static void copyFlat( final FlatArrays source, final FlatArrays destination, final Fraction entitiesPerPixel, final ExecutorService executorService )
+	{
+		final long numPixels = source.offsets[ source.arrays.length ];
+		final long denominator = entitiesPerPixel.getDenominator();
+		final long numTasks = Math.max( 1, Math.min( ParallelTasks.suggestNumberOfTasks( executorService ), numPixels / MIN_PIXELS_PER_TASK ) );
+		// chunk boundaries must fall on entity boundaries
+		final long chunkSize = ( ( ( numPixels + numTasks - 1 ) / numTasks + denominator - 1 ) / denominator ) * denominator;
+		final List< Runnable > tasks = new ArrayList<>();
+		for ( long from = 0; from < numPixels; from += chunkSize )
+		{
+			final long start = from;
+			final long end = Math.min( numPixels, from + chunkSize );
+			tasks.add( () -> copyFlatRange( source, destination, entitiesPerPixel, start, end ) );
+		}
+		ParallelTasks.run( executorService, tasks );
+	}
+
+	private static void copyFlatRange( final FlatArrays source, final FlatArrays destination, final Fraction entitiesPerPixel, final long from, final long to )
+	{
+		int i = source.arrayIndex( from );
+		int j = destination.arrayIndex( from );
+		long p = from;
+		while ( p < to )
+		{
+			final long sOffset = source.offsets[ i ];
+			final long dOffset = destination.offsets[ j ];
+			final long end = Math.min( to, Math.min( source.offsets[ i + 1 ], destination.offsets[ j + 1 ] ) );
+			final long sStart = entitiesPerPixel.mulCeil( p - sOffset );
+			final long dStart = entitiesPerPixel.mulCeil( p - dOffset );
+			final long length = entitiesPerPixel.mulCeil( end - sOffset ) - sStart;
+			System.arraycopy( source.arrays[ i ], ( int ) sStart, destination.arrays[ j ], ( int ) dStart, ( int ) length );
+			setDirty( destination.accesses[ j ] );
+			p = end;
+			if ( p == source.offsets[ i + 1 ] )
+				++i;
+			if ( p == destination.offsets[ j + 1 ] )
+				++j;
+		}
+	}
+
+	/**
+	 * The primitive arrays of an image that stores its pixels in flat
+	 * iteration order, possibly distributed over several arrays.
+	 */
+	private static final class FlatArrays
+	{
+		final Object[] accesses;
+
+		final Object[] arrays;
+
+		/**
+		 * Pixel offset of each array in flat order, followed by the total
+		 * number of pixels.
+		 */
+		final long[] offsets;
+
+		private FlatArrays( final int numArrays )
+		{
+			accesses = new Object[ numArrays ];
+			arrays = new Object[ numArrays ];
+			offsets = new long[ numArrays + 1 ];
+		}
+
+		/**
+		 * @return the arrays of {@code img}, or {@code null} if {@code img} is
+		 *         not a flat array image backed by primitive arrays.
+		 */
+		static FlatArrays of( final Object img )
+		{
+			final FlatArrays flat;
+			if ( img instanceof ArrayImg )
+			{
+				final ArrayImg< ?, ? > arrayImg = ( ArrayImg< ?, ? > ) img;
+				flat = new FlatArrays( 1 );
+				flat.accesses[ 0 ] = arrayImg.update( null );
+				flat.offsets[ 1 ] = arrayImg.size();
+			}
+			else if ( img instanceof PlanarImg )
+			{
+				final PlanarImg< ?, ? > planarImg = ( PlanarImg< ?, ? > ) img;
+				final int numSlices = planarImg.numSlices();
+				final long planeSize = planarImg.size() / numSlices;
+				flat = new FlatArrays( numSlices );
+				for ( int i = 0; i < numSlices; ++i )
+				{
+					flat.accesses[ i ] = planarImg.getPlane( i );
+					flat.offsets[ i + 1 ] = flat.offsets[ i ] + planeSize;
+				}
+			}
+			else if ( img instanceof SegmentedArrayImg )
+			{
+				final SegmentedArrayImg< ?, ? > segmentedImg = ( SegmentedArrayImg< ?, ? > ) img;
+				final int numSegments = segmentedImg.numSegments();
+				flat = new FlatArrays( numSegments );
+				for ( int i = 0; i < numSegments; ++i )
+				{
+					flat.accesses[ i ] = segmentedImg.getSegment( i );
+					flat.offsets[ i + 1 ] = flat.offsets[ i ] + segmentedImg.segmentSize( i );
+				}
+			}
+			else
+				return null;
+
+			for ( int i = 0; i < flat.arrays.length; ++i )
+			{
+				flat.arrays[ i ] = storageArray( flat.accesses[ i ] );
+				if ( flat.arrays[ i ] == null )
+					return null;
+			}
+			return flat;
+		}
+
+		/**
+		 * Two layouts are compatible if all arrays have the same primitive
+		 * type and every array boundary falls on an entity boundary (which
+		 * is always the case for types with integer entities per pixel).
+		 */
+		boolean isCompatible( final FlatArrays other, final Fraction entitiesPerPixel )
+		{
+			final Class< ? > arrayClass = arrays[ 0 ].getClass();
+			for ( final FlatArrays flat : Arrays.asList( this, other ) )
+			{
+				for ( final Object array : flat.arrays )
+					if ( array.getClass() != arrayClass )
+						return false;
+				for ( int i = 1; i < flat.arrays.length; ++i )
+					if ( flat.offsets[ i ] * entitiesPerPixel.getNumerator() % entitiesPerPixel.getDenominator() != 0 )
+						return false;
+			}
+			return true;
+		}
+
+		/**
+		 * @return index of the array containing pixel {@code p}.
+		 */
+		int arrayIndex( final long p )
+		{
+			final int i = Arrays.binarySearch( offsets, p );
+			return i >= 0 ? i : -i - 2;
+		}
+	}
 }
@@ -340,6 +340,106 @@ public class KthElement
 		kthElement( 0, values.length - 1, k, values );
 	}
 
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 *
+	 * <p>
+	 * The {@code permutation} array is permuted in the same way as the values
+	 * array. Unlike the other variants, the pivot of each partition step is
+	 * the median of the first, middle, and last element, so that (nearly)
+	 * sorted input does not degrade to quadratic run time, and each step is a
+	 * three-way partition that sets all elements equal to the pivot aside, so
+	 * that many equal values (e.g. points on a grid or in a plane) do not
+	 * degrade either.
+	 * </p>
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. {@code i <= k <= j}.
+	 * @param values
+	 *            array
+	 * @param permutation
+	 *            elements of this array are permuted in the same way as the
+	 *            elements in the values array
+	 */
+	public static void kthElement( int i, int j, final int k, final double[] values, final int[] permutation )
+	{
+		while ( true )
+		{
+			if ( j - i > 2 )
+				medianOfThreeToEnd( i, j, values, permutation );
+			final double pivot = values[ j ];
+
+			// [i, lt) < pivot, [lt, p) == pivot, (gt, j] > pivot
+			int lt = i;
+			int gt = j;
+			int p = i;
+			while ( p <= gt )
+			{
+				final double v = values[ p ];
+				if ( v < pivot )
+					swap( lt++, p++, values, permutation );
+				else if ( v > pivot )
+					swap( p, gt--, values, permutation );
+				else
+					++p;
+			}
+
+			if ( k < lt )
+			{
+				// partition lower part
+				j = lt - 1;
+			}
+			else if ( k > gt )
+			{
+				// partition upper part
+				i = gt + 1;
+			}
+			else
+				return;
+		}
+	}
+
+	private static void swap( final int a, final int b, final double[] values, final int[] permutation )
+	{
+		final double tmp = values[ a ];
+		values[ a ] = values[ b ];
+		values[ b ] = tmp;
+		final int ptmp = permutation[ a ];
+		permutation[ a ] = permutation[ b ];
+		permutation[ b ] = ptmp;
+	}
+
+	/**
+	 * Move the median of {@code values[i]}, {@code values[(i+j)/2]},
+	 * {@code values[j]} to position {@code j}.
+	 */
+	private static void medianOfThreeToEnd( final int i, final int j, final double[] values, final int[] permutation )
+	{
+		final int m = ( i + j ) >>> 1;
+		final double a = values[ i ];
+		final double b = values[ m ];
+		final double c = values[ j ];
+		final int median;
+		if ( a < b )
+			median = b < c ? m : ( a < c ? j : i );
+		else
+			median = a < c ? i : ( b < c ? j : m );
+		if ( median != j )
+		{
+			values[ median ] = c;
+			values[ j ] = median == i ? a : b;
+			final int tmp = permutation[ median ];
+			permutation[ median ] = permutation[ j ];
+			permutation[ j ] = tmp;
+		}
+	}
+
 	/**
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
@@ -405,24 +505,9 @@ public class KthElement
 	 * @param comparator
 	 *            ordering function on T
 	 */
-	public static < T > void kthElement( int i, int j, final int k, final List< T > values, final Comparator< ? super T > comparator )
+	public static < T > void kthElement( final int i, final int j, final int k, final List< T > values, final Comparator< ? super T > comparator )
 	{
-		while ( true )
-		{
-			final int pivotpos = partitionSubList( i, j, values, comparator );
-			if ( pivotpos > k )
-			{
-				// partition lower half
-				j = pivotpos - 1;
-			}
-			else if ( pivotpos < k )
-			{
-				// partition upper half
-				i = pivotpos + 1;
-			}
-			else
-				return;
-		}
+		kthElementThreeWay( i, j, k, values, null, comparator );
 	}
 
 	/**
@@ -620,26 +705,70 @@ public class KthElement
 	 * @param comparator
 	 *            ordering function on T
 	 */
-	public static < T > void kthElement( int i, int j, final int k, final List< T > values, final int[] permutation, final Comparator< ? super T > comparator )
+	public static < T > void kthElement( final int i, final int j, final int k, final List< T > values, final int[] permutation, final Comparator< ? super T > comparator )
+	{
+		kthElementThreeWay( i, j, k, values, permutation, comparator );
+	}
+
+	/**
+	 * Implements the {@link Comparator} variants for {@link List}s. Each step
+	 * is a three-way partition around the last element that sets all
+	 * elements equal to the pivot aside, so that many equal elements (e.g.
+	 * coplanar points in a {@link net.imglib2.KDTree}) do not degrade to
+	 * quadratic run time.
+	 *
+	 * @param permutation
+	 *            permuted like {@code values}, may be {@code null}.
+	 */
+	private static < T > void kthElementThreeWay( int i, int j, final int k, final List< T > values, final int[] permutation, final Comparator< ? super T > comparator )
 	{
 		while ( true )
 		{
-			final int pivotpos = partitionSubList( i, j, values, permutation, comparator );
-			if ( pivotpos > k )
+			final T pivot = values.get( j );
+
+			// [i, lt) < pivot, [lt, p) == pivot, (gt, j] > pivot
+			int lt = i;
+			int gt = j;
+			int p = i;
+			while ( p <= gt )
 			{
-				// partition lower half
-				j = pivotpos - 1;
+				final int c = comparator.compare( values.get( p ), pivot );
+				if ( c < 0 )
+					swap( lt++, p++, values, permutation );
+				else if ( c > 0 )
+					swap( p, gt--, values, permutation );
+				else
+					++p;
 			}
-			else if ( pivotpos < k )
+
+			if ( k < lt )
 			{
-				// partition upper half
-				i = pivotpos + 1;
+				// partition lower part
+				j = lt - 1;
+			}
+			else if ( k > gt )
+			{
+				// partition upper part
+				i = gt + 1;
 			}
 			else
 				return;
 		}
 	}
 
+	private static < T > void swap( final int a, final int b, final List< T > values, final int[] permutation )
+	{
+		if ( a == b )
+			return;
+		values.set( a, values.set( b, values.get( a ) ) );
+		if ( permutation != null )
+		{
+			final int tmp = permutation[ a ];
+			permutation[ a ] = permutation[ b ];
+			permutation[ b ] = tmp;
+		}
+	}
+
 	/**
 	 * Partition a list of {@code values} such that the k-th smallest value is
 	 * at position {@code k}, elements before the k-th are smaller or equal and
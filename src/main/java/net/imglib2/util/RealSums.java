@@ -0,0 +1,716 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.AbstractByteArray;
+import net.imglib2.img.basictypeaccess.array.AbstractDoubleArray;
+import net.imglib2.img.basictypeaccess.array.AbstractFloatArray;
+import net.imglib2.img.basictypeaccess.array.AbstractIntArray;
+import net.imglib2.img.basictypeaccess.array.AbstractLongArray;
+import net.imglib2.img.basictypeaccess.array.AbstractShortArray;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.loops.ParallelTasks;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * {@link RealSums} computes the sum, mean and variance of the values of a
+ * {@link RandomAccessibleInterval} of {@link RealType}s, optionally in
+ * parallel.
+ * <p>
+ * Like {@link RealSum}, the result does not suffer from small values being
+ * absorbed into a large running sum. Every addition is made error-free (Knuth's
+ * TwoSum), and the rounding errors are accumulated separately and added to the
+ * result at the end. The values are summed into several independent
+ * accumulators, which lets the CPU overlap the additions, and partial sums of
+ * parallel tasks are merged with the same compensation. The variance is
+ * computed with the (corrected) two-pass algorithm.
+ * <p>
+ * {@link ArrayImg}s, {@link PlanarImg}s and {@link AbstractCellImg}s of the
+ * primitive {@link RealType}s ({@link ByteType}, {@link UnsignedByteType},
+ * {@link ShortType}, {@link UnsignedShortType}, {@link IntType},
+ * {@link UnsignedIntType}, {@link LongType}, {@link FloatType} and
+ * {@link DoubleType}) backed by primitive arrays are read directly from their
+ * arrays. Other intervals are read with a cursor.
+ */
+public final class RealSums
+{
+	private static final int BLOCK_SIZE = 4096;
+
+	private static final long MIN_VALUES_PER_TASK = 1 << 16;
+
+	private RealSums()
+	{
+		// prevent from instantiation.
+	}
+
+	/**
+	 * Returns the sum of all values of {@code interval}.
+	 */
+	public static double sum( final RandomAccessibleInterval< ? extends RealType< ? > > interval )
+	{
+		return sum( interval, null );
+	}
+
+	/**
+	 * Returns the sum of all values of {@code interval}, computed in parallel
+	 * on the given {@link ExecutorService}.
+	 */
+	public static double sum( final RandomAccessibleInterval< ? extends RealType< ? > > interval, final ExecutorService executorService )
+	{
+		return reduce( source( interval ), executorService, SumKernel::new ).sum();
+	}
+
+	/**
+	 * Returns the mean of all values of {@code interval}, or NaN if it is
+	 * empty.
+	 */
+	public static double mean( final RandomAccessibleInterval< ? extends RealType< ? > > interval )
+	{
+		return mean( interval, null );
+	}
+
+	/**
+	 * Returns the mean of all values of {@code interval}, computed in
+	 * parallel on the given {@link ExecutorService}, or NaN if it is empty.
+	 */
+	public static double mean( final RandomAccessibleInterval< ? extends RealType< ? > > interval, final ExecutorService executorService )
+	{
+		final Source source = source( interval );
+		return reduce( source, executorService, SumKernel::new ).sum() / source.size();
+	}
+
+	/**
+	 * Returns the sample variance (normalized by {@code n - 1}) of all values
+	 * of {@code interval}, or NaN if it has less than two values.
+	 */
+	public static double variance( final RandomAccessibleInterval< ? extends RealType< ? > > interval )
+	{
+		return variance( interval, null );
+	}
+
+	/**
+	 * Returns the sample variance (normalized by {@code n - 1}) of all values
+	 * of {@code interval}, computed in parallel on the given
+	 * {@link ExecutorService}, or NaN if it has less than two values.
+	 */
+	public static double variance( final RandomAccessibleInterval< ? extends RealType< ? > > interval, final ExecutorService executorService )
+	{
+		final Source source = source( interval );
+		final long n = source.size();
+		if ( n < 2 )
+			return Double.NaN;
+		final double mean = reduce( source, executorService, SumKernel::new ).sum() / n;
+		final DeviationKernel deviations = reduce( source, executorService, () -> new DeviationKernel( mean ) );
+		// the sum of deviations would be zero in exact arithmetic, subtracting
+		// its square corrects for the rounding error of the mean
+		final double sumOfDeviations = deviations.deviations.sum();
+		return ( deviations.squares.sum() - sumOfDeviations * sumOfDeviations / n ) / ( n - 1 );
+	}
+
+	/**
+	 * A sum that keeps the rounding error of every addition.
+	 */
+	static final class CompensatedSum
+	{
+		private static final int LANES = 4;
+
+		private final double[] sums = new double[ LANES ];
+
+		private final double[] errors = new double[ LANES ];
+
+		/**
+		 * Add {@code values[ 0 ]} to {@code values[ n - 1 ]}.
+		 */
+		void add( final double[] values, final int n )
+		{
+			double s0 = sums[ 0 ], s1 = sums[ 1 ], s2 = sums[ 2 ], s3 = sums[ 3 ];
+			double e0 = errors[ 0 ], e1 = errors[ 1 ], e2 = errors[ 2 ], e3 = errors[ 3 ];
+			final int n4 = n & ~3;
+			for ( int i = 0; i < n4; i += 4 )
+			{
+				final double x0 = values[ i ], x1 = values[ i + 1 ], x2 = values[ i + 2 ], x3 = values[ i + 3 ];
+				final double t0 = s0 + x0, t1 = s1 + x1, t2 = s2 + x2, t3 = s3 + x3;
+				final double b0 = t0 - s0, b1 = t1 - s1, b2 = t2 - s2, b3 = t3 - s3;
+				e0 += ( s0 - ( t0 - b0 ) ) + ( x0 - b0 );
+				e1 += ( s1 - ( t1 - b1 ) ) + ( x1 - b1 );
+				e2 += ( s2 - ( t2 - b2 ) ) + ( x2 - b2 );
+				e3 += ( s3 - ( t3 - b3 ) ) + ( x3 - b3 );
+				s0 = t0;
+				s1 = t1;
+				s2 = t2;
+				s3 = t3;
+			}
+			sums[ 0 ] = s0;
+			sums[ 1 ] = s1;
+			sums[ 2 ] = s2;
+			sums[ 3 ] = s3;
+			errors[ 0 ] = e0;
+			errors[ 1 ] = e1;
+			errors[ 2 ] = e2;
+			errors[ 3 ] = e3;
+			for ( int i = n4; i < n; ++i )
+				add( i & 3, values[ i ] );
+		}
+
+		/**
+		 * Add the sums and errors of {@code other} to this sum.
+		 */
+		void add( final CompensatedSum other )
+		{
+			for ( int l = 0; l < LANES; ++l )
+			{
+				add( l, other.sums[ l ] );
+				errors[ l ] += other.errors[ l ];
+			}
+		}
+
+		double sum()
+		{
+			final CompensatedSum total = new CompensatedSum();
+			for ( int l = 0; l < LANES; ++l )
+				total.add( 0, sums[ l ] );
+			double error = total.errors[ 0 ];
+			for ( int l = 0; l < LANES; ++l )
+				error += errors[ l ];
+			return total.sums[ 0 ] + error;
+		}
+
+		private void add( final int lane, final double x )
+		{
+			final double s = sums[ lane ];
+			final double t = s + x;
+			final double b = t - s;
+			errors[ lane ] += ( s - ( t - b ) ) + ( x - b );
+			sums[ lane ] = t;
+		}
+	}
+
+	/**
+	 * Accumulates blocks of values. One instance is used per task.
+	 */
+	private interface Kernel< K extends Kernel< K > >
+	{
+		void accept( double[] block, int n );
+
+		void merge( K other );
+	}
+
+	private static final class SumKernel implements Kernel< SumKernel >
+	{
+		final CompensatedSum sum = new CompensatedSum();
+
+		@Override
+		public void accept( final double[] block, final int n )
+		{
+			sum.add( block, n );
+		}
+
+		@Override
+		public void merge( final SumKernel other )
+		{
+			sum.add( other.sum );
+		}
+
+		double sum()
+		{
+			return sum.sum();
+		}
+	}
+
+	private static final class DeviationKernel implements Kernel< DeviationKernel >
+	{
+		final double mean;
+
+		final CompensatedSum deviations = new CompensatedSum();
+
+		final CompensatedSum squares = new CompensatedSum();
+
+		DeviationKernel( final double mean )
+		{
+			this.mean = mean;
+		}
+
+		@Override
+		public void accept( final double[] block, final int n )
+		{
+			for ( int i = 0; i < n; ++i )
+				block[ i ] -= mean;
+			deviations.add( block, n );
+			for ( int i = 0; i < n; ++i )
+				block[ i ] *= block[ i ];
+			squares.add( block, n );
+		}
+
+		@Override
+		public void merge( final DeviationKernel other )
+		{
+			deviations.add( other.deviations );
+			squares.add( other.squares );
+		}
+	}
+
+	/**
+	 * Reads values {@code from} (inclusive) to {@code to} (exclusive) of a
+	 * {@link Source} block-wise into a {@code double[]}.
+	 */
+	private interface Source
+	{
+		long size();
+
+		void read( long from, long to, double[] block, Kernel< ? > kernel );
+	}
+
+	private static < K extends Kernel< K > > K reduce( final Source source, final ExecutorService executorService, final Supplier< K > kernels )
+	{
+		final long size = source.size();
+		final int numTasks = executorService == null
+				? 1
+				: ( int ) Math.max( 1, Math.min( ParallelTasks.suggestNumberOfTasks( executorService ), size / MIN_VALUES_PER_TASK ) );
+		final List< K > results = new ArrayList<>( numTasks );
+		final List< Runnable > tasks = new ArrayList<>( numTasks );
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final K kernel = kernels.get();
+			results.add( kernel );
+			final long from = size * t / numTasks;
+			final long to = size * ( t + 1 ) / numTasks;
+			if ( from < to )
+				tasks.add( () -> source.read( from, to, new double[ BLOCK_SIZE ], kernel ) );
+		}
+		ParallelTasks.run( executorService, tasks );
+
+		final K result = results.get( 0 );
+		for ( int t = 1; t < numTasks; ++t )
+			result.merge( results.get( t ) );
+		return result;
+	}
+
+	private static Source source( final RandomAccessibleInterval< ? extends RealType< ? > > interval )
+	{
+		final Source source = primitiveSource( interval );
+		return source != null ? source : new CursorSource( Views.flatIterable( interval ) );
+	}
+
+	private static final class CursorSource implements Source
+	{
+		private final IterableInterval< ? extends RealType< ? > > iterable;
+
+		CursorSource( final IterableInterval< ? extends RealType< ? > > iterable )
+		{
+			this.iterable = iterable;
+		}
+
+		@Override
+		public long size()
+		{
+			return iterable.size();
+		}
+
+		@Override
+		public void read( final long from, final long to, final double[] block, final Kernel< ? > kernel )
+		{
+			final Cursor< ? extends RealType< ? > > cursor = iterable.cursor();
+			cursor.jumpFwd( from );
+			for ( long i = from; i < to; )
+			{
+				final int n = ( int ) Math.min( block.length, to - i );
+				for ( int j = 0; j < n; ++j )
+					block[ j ] = cursor.next().getRealDouble();
+				kernel.accept( block, n );
+				i += n;
+			}
+		}
+	}
+
+	/**
+	 * Converts elements of primitive arrays to {@code double}.
+	 */
+	private enum ArrayReader
+	{
+		BYTE( byte[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				final byte[] a = ( byte[] ) array;
+				for ( int i = 0; i < n; ++i )
+					block[ i ] = a[ offset + i ];
+			}
+		},
+		UNSIGNED_BYTE( byte[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				final byte[] a = ( byte[] ) array;
+				for ( int i = 0; i < n; ++i )
+					block[ i ] = a[ offset + i ] & 0xff;
+			}
+		},
+		SHORT( short[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				final short[] a = ( short[] ) array;
+				for ( int i = 0; i < n; ++i )
+					block[ i ] = a[ offset + i ];
+			}
+		},
+		UNSIGNED_SHORT( short[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				final short[] a = ( short[] ) array;
+				for ( int i = 0; i < n; ++i )
+					block[ i ] = a[ offset + i ] & 0xffff;
+			}
+		},
+		INT( int[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				final int[] a = ( int[] ) array;
+				for ( int i = 0; i < n; ++i )
+					block[ i ] = a[ offset + i ];
+			}
+		},
+		UNSIGNED_INT( int[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				final int[] a = ( int[] ) array;
+				for ( int i = 0; i < n; ++i )
+					block[ i ] = a[ offset + i ] & 0xffffffffL;
+			}
+		},
+		LONG( long[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				final long[] a = ( long[] ) array;
+				for ( int i = 0; i < n; ++i )
+					block[ i ] = a[ offset + i ];
+			}
+		},
+		FLOAT( float[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				final float[] a = ( float[] ) array;
+				for ( int i = 0; i < n; ++i )
+					block[ i ] = a[ offset + i ];
+			}
+		},
+		DOUBLE( double[].class )
+		{
+			@Override
+			void read( final Object array, final int offset, final double[] block, final int n )
+			{
+				System.arraycopy( array, offset, block, 0, n );
+			}
+		};
+
+		private final Class< ? > arrayClass;
+
+		ArrayReader( final Class< ? > arrayClass )
+		{
+			this.arrayClass = arrayClass;
+		}
+
+		/**
+		 * Converts {@code n} elements of {@code array}, starting at
+		 * {@code offset}, into {@code block}.
+		 */
+		abstract void read( Object array, int offset, double[] block, int n );
+
+		boolean accepts( final Object array )
+		{
+			return arrayClass.isInstance( array );
+		}
+	}
+
+	private static ArrayReader arrayReader( final Class< ? > typeClass )
+	{
+		if ( typeClass == ByteType.class )
+			return ArrayReader.BYTE;
+		if ( typeClass == UnsignedByteType.class )
+			return ArrayReader.UNSIGNED_BYTE;
+		if ( typeClass == ShortType.class )
+			return ArrayReader.SHORT;
+		if ( typeClass == UnsignedShortType.class )
+			return ArrayReader.UNSIGNED_SHORT;
+		if ( typeClass == IntType.class )
+			return ArrayReader.INT;
+		if ( typeClass == UnsignedIntType.class )
+			return ArrayReader.UNSIGNED_INT;
+		if ( typeClass == LongType.class )
+			return ArrayReader.LONG;
+		if ( typeClass == FloatType.class )
+			return ArrayReader.FLOAT;
+		if ( typeClass == DoubleType.class )
+			return ArrayReader.DOUBLE;
+		return null;
+	}
+
+	private static Object storageArray( final Object access )
+	{
+		if ( access instanceof AbstractByteArray )
+			return ( ( AbstractByteArray< ? > ) access ).getCurrentStorageArray();
+		if ( access instanceof AbstractShortArray )
+			return ( ( AbstractShortArray< ? > ) access ).getCurrentStorageArray();
+		if ( access instanceof AbstractIntArray )
+			return ( ( AbstractIntArray< ? > ) access ).getCurrentStorageArray();
+		if ( access instanceof AbstractLongArray )
+			return ( ( AbstractLongArray< ? > ) access ).getCurrentStorageArray();
+		if ( access instanceof AbstractFloatArray )
+			return ( ( AbstractFloatArray< ? > ) access ).getCurrentStorageArray();
+		if ( access instanceof AbstractDoubleArray )
+			return ( ( AbstractDoubleArray< ? > ) access ).getCurrentStorageArray();
+		return null;
+	}
+
+	/**
+	 * A sequence of primitive arrays, each holding {@code lengths[ i ]} values.
+	 */
+	private static final class ArraySource implements Source
+	{
+		private final Object[] arrays;
+
+		private final long[] starts;
+
+		private final ArrayReader reader;
+
+		ArraySource( final Object[] arrays, final long[] lengths, final ArrayReader reader )
+		{
+			this.arrays = arrays;
+			this.reader = reader;
+			starts = new long[ arrays.length + 1 ];
+			for ( int i = 0; i < arrays.length; ++i )
+				starts[ i + 1 ] = starts[ i ] + lengths[ i ];
+		}
+
+		@Override
+		public long size()
+		{
+			return starts[ arrays.length ];
+		}
+
+		@Override
+		public void read( final long from, final long to, final double[] block, final Kernel< ? > kernel )
+		{
+			int a = 0;
+			for ( long i = from; i < to; )
+			{
+				while ( i >= starts[ a + 1 ] )
+					++a;
+				final int n = ( int ) Math.min( block.length, Math.min( to, starts[ a + 1 ] ) - i );
+				reader.read( arrays[ a ], ( int ) ( i - starts[ a ] ), block, n );
+				kernel.accept( block, n );
+				i += n;
+			}
+		}
+	}
+
+	/**
+	 * The cells of an {@link AbstractCellImg}, in the order of the cell grid.
+	 * A cell is only accessed while its values are read, such that a lazily
+	 * loaded image (e.g. a {@link net.imglib2.img.cell.LazyCellImg} with a
+	 * cache) does not need to hold all of its cells at once. Cells that are not
+	 * backed by a primitive array are read with a cursor.
+	 */
+	private static final class CellSource implements Source
+	{
+		private final RandomAccessibleInterval< ? extends RealType< ? > > img;
+
+		private final RandomAccessible< ? extends Cell< ? > > cells;
+
+		private final CellGrid grid;
+
+		private final ArrayReader reader;
+
+		private final long[] starts;
+
+		CellSource( final AbstractCellImg< ?, ?, ?, ? > img, final RandomAccessibleInterval< ? extends RealType< ? > > values, final ArrayReader reader )
+		{
+			this.img = values;
+			this.cells = img.getCells();
+			this.grid = img.getCellGrid();
+			this.reader = reader;
+			final int numCells = ( int ) Intervals.numElements( grid.getGridDimensions() );
+			final long[] cellMin = new long[ grid.numDimensions() ];
+			final int[] cellDims = new int[ grid.numDimensions() ];
+			starts = new long[ numCells + 1 ];
+			for ( int i = 0; i < numCells; ++i )
+			{
+				grid.getCellDimensions( i, cellMin, cellDims );
+				starts[ i + 1 ] = starts[ i ] + Intervals.numElements( cellDims );
+			}
+		}
+
+		@Override
+		public long size()
+		{
+			return starts[ starts.length - 1 ];
+		}
+
+		@Override
+		public void read( final long from, final long to, final double[] block, final Kernel< ? > kernel )
+		{
+			final RandomAccess< ? extends Cell< ? > > access = cells.randomAccess();
+			final int n = grid.numDimensions();
+			final long[] cellGridPosition = new long[ n ];
+			final long[] cellMin = new long[ n ];
+			final long[] cellMax = new long[ n ];
+			final int[] cellDims = new int[ n ];
+			int c = Arrays.binarySearch( starts, from );
+			if ( c < 0 )
+				c = -c - 2;
+			for ( long i = from; i < to; ++c )
+			{
+				final long cellTo = Math.min( to, starts[ c + 1 ] ) - starts[ c ];
+				grid.getCellGridPositionFlat( c, cellGridPosition );
+				access.setPosition( cellGridPosition );
+				final Object array = storageArray( access.get().getData() );
+				if ( array != null && reader.accepts( array ) )
+				{
+					for ( long j = i - starts[ c ]; j < cellTo; )
+					{
+						final int m = ( int ) Math.min( block.length, cellTo - j );
+						reader.read( array, ( int ) j, block, m );
+						kernel.accept( block, m );
+						j += m;
+					}
+				}
+				else
+				{
+					grid.getCellDimensions( c, cellMin, cellDims );
+					for ( int d = 0; d < n; ++d )
+						cellMax[ d ] = cellMin[ d ] + cellDims[ d ] - 1;
+					new CursorSource( Views.flatIterable( Views.interval( img, cellMin, cellMax ) ) ).read( i - starts[ c ], cellTo, block, kernel );
+				}
+				i = starts[ c ] + cellTo;
+			}
+		}
+	}
+
+	/**
+	 * Returns an {@link ArraySource} or {@link CellSource} if the values of
+	 * {@code interval} are stored in primitive arrays, or {@code null}
+	 * otherwise.
+	 */
+	private static Source primitiveSource( final RandomAccessibleInterval< ? extends RealType< ? > > interval )
+	{
+		final List< Object > accesses = new ArrayList<>();
+		final List< Long > lengths = new ArrayList<>();
+		if ( interval instanceof ArrayImg )
+		{
+			final ArrayImg< ?, ? > img = ( ArrayImg< ?, ? > ) interval;
+			accesses.add( img.update( null ) );
+			lengths.add( img.size() );
+		}
+		else if ( interval instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > img = ( PlanarImg< ?, ? > ) interval;
+			final long planeSize = img.size() / img.numSlices();
+			for ( int i = 0; i < img.numSlices(); ++i )
+			{
+				accesses.add( img.getPlane( i ) );
+				lengths.add( planeSize );
+			}
+		}
+		else if ( interval instanceof AbstractCellImg )
+		{
+			final AbstractCellImg< ?, ?, ?, ? > img = ( AbstractCellImg< ?, ?, ?, ? > ) interval;
+			if ( img.size() == 0 || Intervals.numElements( img.getCellGrid().getGridDimensions() ) >= Integer.MAX_VALUE )
+				return null;
+			final ArrayReader reader = arrayReader( img.firstElement().getClass() );
+			final Object array = storageArray( img.getCells().firstElement().getData() );
+			if ( reader == null || array == null || !reader.accepts( array ) )
+				return null;
+			return new CellSource( img, interval, reader );
+		}
+		else
+			return null;
+
+		final IterableInterval< ? > img = ( IterableInterval< ? > ) interval;
+		if ( img.size() == 0 )
+			return null;
+		final ArrayReader reader = arrayReader( img.firstElement().getClass() );
+		if ( reader == null )
+			return null;
+
+		final Object[] arrays = new Object[ accesses.size() ];
+		final long[] arrayLengths = new long[ arrays.length ];
+		for ( int i = 0; i < arrays.length; ++i )
+		{
+			arrays[ i ] = storageArray( accesses.get( i ) );
+			arrayLengths[ i ] = lengths.get( i );
+			if ( arrays[ i ] == null || !reader.accepts( arrays[ i ] ) )
+				return null;
+		}
+		return new ArraySource( arrays, arrayLengths, reader );
+	}
+}
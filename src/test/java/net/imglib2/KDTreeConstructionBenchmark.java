@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares sequential (recursive {@code makeNode}) and fork-join parallel
+ * construction of {@link KDTree} and {@link FlatKDTree}, for random points
+ * and for coplanar points (2D data embedded in 3D, all z equal).
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class KDTreeConstructionBenchmark
+{
+	@Param( { "100000", "1000000" } )
+	public int numPoints;
+
+	@Param( { "false", "true" } )
+	public boolean coplanar;
+
+	private static final int n = 3;
+
+	private List< RealPoint > points;
+
+	private List< Integer > values;
+
+	private double[] flatPoints;
+
+	@Setup
+	public void setup()
+	{
+		final Random random = new Random( 42 );
+		points = new ArrayList<>( numPoints );
+		values = new ArrayList<>( numPoints );
+		flatPoints = new double[ n * numPoints ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			final RealPoint p = new RealPoint( n );
+			for ( int d = 0; d < n; ++d )
+			{
+				final double x = coplanar && d == n - 1 ? 0 : random.nextDouble();
+				p.setPosition( x, d );
+				flatPoints[ i * n + d ] = x;
+			}
+			points.add( p );
+			values.add( i );
+		}
+	}
+
+	@Benchmark
+	public KDTree< Integer > kdTreeSequential()
+	{
+		return new KDTree<>( values, new ArrayList<>( points ) );
+	}
+
+	@Benchmark
+	public KDTree< Integer > kdTreeParallel()
+	{
+		return new KDTree<>( values, new ArrayList<>( points ), ForkJoinPool.commonPool() );
+	}
+
+	@Benchmark
+	public FlatKDTree< Integer > flatKDTreeSequential()
+	{
+		return new FlatKDTree<>( n, flatPoints, values );
+	}
+
+	@Benchmark
+	public FlatKDTree< Integer > flatKDTreeParallel()
+	{
+		return new FlatKDTree<>( n, flatPoints, values, ForkJoinPool.commonPool() );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( KDTreeConstructionBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
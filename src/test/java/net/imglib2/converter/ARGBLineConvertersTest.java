@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import net.imglib2.display.ColorTable8;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+
+import org.junit.Test;
+
+public class ARGBLineConvertersTest
+{
+	private static final long SIZE = 3000;
+
+	@Test
+	public void testRealARGBConverter()
+	{
+		assertSameAsPerPixel( ArrayImgs.bytes( SIZE ), new RealARGBConverter<>( -100, 100 ) );
+		assertSameAsPerPixel( ArrayImgs.unsignedBytes( SIZE ), new RealARGBConverter<>( 10, 200 ) );
+		assertSameAsPerPixel( ArrayImgs.shorts( SIZE ), new RealARGBConverter<>( -1000, 20000 ) );
+		assertSameAsPerPixel( ArrayImgs.unsignedShorts( SIZE ), new RealARGBConverter<>( 0, 65535 ) );
+		assertSameAsPerPixel( ArrayImgs.ints( SIZE ), new RealARGBConverter<>( -1e9, 1e9 ) );
+		assertSameAsPerPixel( ArrayImgs.unsignedInts( SIZE ), new RealARGBConverter<>( 0, 4e9 ) );
+		assertSameAsPerPixel( ArrayImgs.longs( SIZE ), new RealARGBConverter<>( -1e18, 1e18 ) );
+		assertSameAsPerPixel( ArrayImgs.floats( SIZE ), new RealARGBConverter<>( 0.2, 0.7 ) );
+		assertSameAsPerPixel( ArrayImgs.doubles( SIZE ), new RealARGBConverter<>( 0.2, 0.7 ) );
+	}
+
+	@Test
+	public void testRealLUTConverter()
+	{
+		assertSameAsPerPixel( ArrayImgs.unsignedBytes( SIZE ), new RealLUTConverter<>( 10, 200, new ColorTable8() ) );
+		assertSameAsPerPixel( ArrayImgs.floats( SIZE ), new RealLUTConverter<>( 0.2, 0.7, new ColorTable8() ) );
+	}
+
+	@Test
+	public void testChannelARGBConverter()
+	{
+		for ( final Converter< UnsignedByteType, ARGBType > converter : ChannelARGBConverter.converterListRGBA )
+			assertSameAsPerPixel( ArrayImgs.unsignedBytes( SIZE ), converter );
+	}
+
+	@Test
+	public void testUnsupported()
+	{
+		final ArrayImg< UnsignedLongType, LongArray > img = ArrayImgs.unsignedLongs( SIZE );
+		assertNull( ARGBLineConverters.create( img, new RealARGBConverter<>( 0, 1 ) ) );
+		assertNull( ARGBLineConverters.create( ArrayImgs.floats( SIZE ), ( a, b ) -> b.set( 0 ) ) );
+	}
+
+	private static < T extends RealType< T > & NativeType< T >, A > void assertSameAsPerPixel( final ArrayImg< T, A > img, final Converter< ? super T, ARGBType > converter )
+	{
+		final Random random = new Random( 1 );
+		final T t = img.firstElement();
+		final double min = Math.max( t.getMinValue(), -1e18 );
+		final double max = Math.min( t.getMaxValue(), 1e18 );
+		for ( final T s : img )
+			s.setReal( min + random.nextDouble() * ( max - min ) );
+		img.firstElement().setReal( min );
+
+		final int offset = 3;
+		final int length = ( int ) SIZE - 10;
+		final int[] expected = new int[ length + 5 ];
+		final ARGBType argb = new ARGBType();
+		int i = 0;
+		for ( final T s : img )
+		{
+			if ( i >= offset && i < offset + length )
+			{
+				converter.convert( s, argb );
+				expected[ i - offset + 5 ] = argb.get();
+			}
+			++i;
+		}
+
+		final ARGBLineConverter< A > lineConverter = ARGBLineConverters.create( img, converter );
+		assertNotNull( lineConverter );
+		final int[] actual = new int[ length + 5 ];
+		lineConverter.convertLine( img.update( null ), offset, actual, 5, length );
+		assertArrayEquals( expected, actual );
+	}
+}
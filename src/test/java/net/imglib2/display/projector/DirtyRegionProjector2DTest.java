@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.display.projector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.DirtyCellTracker;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+public class DirtyRegionProjector2DTest
+{
+	private static final long[] DIMENSIONS = { 300, 200, 3 };
+
+	@Test
+	public void testIterableIntervalProjector()
+	{
+		final Img< FloatType > source = createSource();
+		final Img< ARGBType > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final AtomicInteger conversions = new AtomicInteger();
+		final RealARGBConverter< FloatType > argb = new RealARGBConverter<>( 0, 1 );
+		final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, target, ( FloatType a, ARGBType b ) -> {
+			conversions.incrementAndGet();
+			argb.convert( a, b );
+		} );
+		projector.setPosition( 1, 2 );
+		projector.map();
+
+		final List< Interval > dirty = modify( source );
+		conversions.set( 0 );
+		projector.map( dirty );
+		// two full 64 x 64 cells, and 44 x 72 pixels of the two cells at the
+		// border of the image
+		assertEquals( 2 * 64 * 64 + 44 * 72, conversions.get() );
+		assertRendered( source, target );
+	}
+
+	@Test
+	public void testRandomAccessibleProjector()
+	{
+		final Img< FloatType > source = createSource();
+		final Img< ARGBType > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final RandomAccessibleProjector2D< FloatType, ARGBType > projector = new RandomAccessibleProjector2D<>( 0, 1, source, target, new RealARGBConverter<>( 0, 1 ) );
+		projector.setPosition( 1, 2 );
+		projector.map();
+
+		projector.map( modify( source ) );
+		assertRendered( source, target );
+	}
+
+	private static Img< FloatType > createSource()
+	{
+		final Img< FloatType > source = ArrayImgs.floats( DIMENSIONS );
+		final Random random = new Random( 1 );
+		for ( final FloatType t : source )
+			t.set( random.nextFloat() );
+		return source;
+	}
+
+	/**
+	 * Modifies three regions of the source, one of them in another plane,
+	 * and returns the dirty cells.
+	 */
+	private static List< Interval > modify( final Img< FloatType > source )
+	{
+		final DirtyCellTracker tracker = new DirtyCellTracker( new CellGrid( DIMENSIONS, new int[] { 64, 64, 1 } ) );
+		final Interval[] regions = {
+				Intervals.createMinMax( 10, 10, 1, 20, 20, 1 ),
+				Intervals.createMinMax( 130, 70, 1, 140, 80, 1 ),
+				Intervals.createMinMax( 290, 190, 1, 299, 199, 1 ),
+				Intervals.createMinMax( 10, 10, 2, 20, 20, 2 ) };
+		for ( final Interval region : regions )
+		{
+			for ( final FloatType t : Views.interval( source, region ) )
+				t.set( 0.5f );
+			tracker.markDirty( region );
+		}
+		return tracker.pollDirtyCells();
+	}
+
+	private static void assertRendered( final Img< FloatType > source, final Img< ARGBType > target )
+	{
+		final Img< ARGBType > expected = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, expected, new RealARGBConverter<>( 0, 1 ) );
+		projector.setPosition( 1, 2 );
+		projector.map();
+		final Cursor< ARGBType > e = expected.cursor();
+		final Cursor< ARGBType > t = target.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), t.next().get() );
+	}
+}
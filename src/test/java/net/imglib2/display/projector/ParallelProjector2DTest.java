@@ -0,0 +1,240 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.display.projector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.Converters;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.display.projector.composite.CompositeXYProjector;
+import net.imglib2.display.projector.volatiles.Volatile2DRandomAccessibleProjector;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.type.volatiles.VolatileFloatType;
+import net.imglib2.view.Views;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ParallelProjector2DTest
+{
+	private static final long[] DIMENSIONS = { 301, 203, 3 };
+
+	private static ExecutorService executorService;
+
+	private static Img< FloatType > source;
+
+	@BeforeClass
+	public static void setup()
+	{
+		executorService = Executors.newFixedThreadPool( 4 );
+		source = ArrayImgs.floats( DIMENSIONS );
+		final Random random = new Random( 1 );
+		for ( final FloatType t : source )
+			t.set( random.nextFloat() );
+	}
+
+	@AfterClass
+	public static void shutdown()
+	{
+		executorService.shutdown();
+	}
+
+	@Test
+	public void testIterableIntervalProjector2D()
+	{
+		// same iteration order as the source, flat iteration order, other
+		// iteration order
+		final Img< FloatType > source2d = ArrayImgs.floats( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final Cursor< FloatType > c = Views.flatIterable( Views.hyperSlice( source, 2, 1 ) ).cursor();
+		for ( final FloatType t : source2d )
+			t.set( c.next() );
+		assertIterableIntervalProjector( source2d, ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ) );
+		assertIterableIntervalProjector( source, ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ) );
+		final CellImgFactory< ARGBType > factory = new CellImgFactory<>( new ARGBType(), 64, 64 );
+		assertIterableIntervalProjector( source, factory.create( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), factory.create( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ) );
+	}
+
+	private static void assertIterableIntervalProjector( final Img< FloatType > source, final Img< ARGBType > expected, final Img< ARGBType > actual )
+	{
+		final IterableIntervalProjector2D< FloatType, ARGBType > sequential = new IterableIntervalProjector2D<>( 0, 1, source, expected, new RealARGBConverter<>( 0, 1 ) );
+		final AtomicInteger numConverters = new AtomicInteger();
+		final IterableIntervalProjector2D< FloatType, ARGBType > parallel = new IterableIntervalProjector2D<>( 0, 1, source, actual, () -> {
+			numConverters.incrementAndGet();
+			return new RealARGBConverter<>( 0, 1 );
+		} );
+		parallel.setExecutorService( executorService );
+		if ( source.numDimensions() > 2 )
+		{
+			sequential.setPosition( 2, 2 );
+			parallel.setPosition( 2, 2 );
+		}
+		sequential.map();
+		numConverters.set( 0 );
+		parallel.map();
+		assertTrue( numConverters.get() > 1 );
+		assertSameValues( expected, actual );
+	}
+
+	@Test
+	public void testRandomAccessibleProjector2D()
+	{
+		final Img< ARGBType > expected = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final Img< ARGBType > actual = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final RandomAccessibleProjector2D< FloatType, ARGBType > sequential = new RandomAccessibleProjector2D<>( 0, 1, source, expected, new RealARGBConverter<>( 0, 1 ) );
+		final RandomAccessibleProjector2D< FloatType, ARGBType > parallel = new RandomAccessibleProjector2D<>( 0, 1, source, actual, () -> new RealARGBConverter<>( 0, 1 ) );
+		parallel.setExecutorService( executorService );
+		sequential.setPosition( 1, 2 );
+		parallel.setPosition( 1, 2 );
+		sequential.map();
+		parallel.map();
+		assertSameValues( expected, actual );
+	}
+
+	@Test
+	public void testCompositeXYProjector()
+	{
+		final AtomicInteger numConverters = new AtomicInteger();
+		for ( final boolean composite : new boolean[] { true, false } )
+		{
+			final Img< ARGBType > expected = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+			final Img< ARGBType > actual = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+			final CompositeXYProjector< FloatType > sequential = new CompositeXYProjector<>( source, expected, compositeConverters(), 2 );
+			final CompositeXYProjector< FloatType > parallel = new CompositeXYProjector<>( source, actual, () -> {
+				numConverters.incrementAndGet();
+				return compositeConverters();
+			}, 2 );
+			parallel.setExecutorService( executorService );
+			sequential.setComposite( composite );
+			parallel.setComposite( composite );
+			sequential.setPosition( 1, 2 );
+			parallel.setPosition( 1, 2 );
+			sequential.map();
+			numConverters.set( 0 );
+			parallel.map();
+			assertTrue( numConverters.get() > 1 );
+			assertSameValues( expected, actual );
+		}
+	}
+
+	private static ArrayList< Converter< FloatType, ARGBType > > compositeConverters()
+	{
+		final ArrayList< Converter< FloatType, ARGBType > > converters = new ArrayList<>();
+		for ( int i = 0; i < DIMENSIONS[ 2 ]; ++i )
+		{
+			final RealARGBConverter< FloatType > converter = new RealARGBConverter<>( 0, 1 + i );
+			converter.setAlpha( 50 );
+			converters.add( converter );
+		}
+		return converters;
+	}
+
+	@Test
+	public void testSharedConverterRendersOnCallingThread()
+	{
+		final Set< Thread > threads = ConcurrentHashMap.newKeySet();
+		final Converter< FloatType, ARGBType > converter = ( a, b ) -> {
+			threads.add( Thread.currentThread() );
+			b.set( ( int ) ( a.get() * 255 ) );
+		};
+		final ArrayList< Converter< FloatType, ARGBType > > converters = new ArrayList<>();
+		for ( int i = 0; i < DIMENSIONS[ 2 ]; ++i )
+			converters.add( converter );
+		final List< AbstractProjector2D > projectors = Arrays.asList(
+				new IterableIntervalProjector2D<>( 0, 1, source, ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), converter ),
+				new RandomAccessibleProjector2D<>( 0, 1, source, ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), converter ),
+				new CompositeXYProjector<>( source, ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), converters, 2 ) );
+		for ( final AbstractProjector2D projector : projectors )
+		{
+			projector.setExecutorService( executorService );
+			threads.clear();
+			projector.map();
+			assertEquals( Collections.singleton( Thread.currentThread() ), threads );
+		}
+	}
+
+	@Test
+	public void testVolatile2DRandomAccessibleProjector()
+	{
+		final RandomAccessibleInterval< VolatileFloatType > volatileSource = Converters.convert( ( RandomAccessibleInterval< FloatType > ) source, ( a, b ) -> {
+			b.get().set( a );
+			b.setValid( true );
+		}, new VolatileFloatType() );
+		final Converter< VolatileFloatType, ARGBType > converter = ( a, b ) -> b.set( ( int ) ( a.get().get() * 255 ) );
+		final CellImgFactory< ARGBType > factory = new CellImgFactory<>( new ARGBType(), 64, 64 );
+		final Img< ARGBType > expected = factory.create( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final Img< ARGBType > actual = factory.create( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final Volatile2DRandomAccessibleProjector< FloatType, VolatileFloatType, ARGBType > sequential = new Volatile2DRandomAccessibleProjector<>( 0, 1, Views.hyperSlice( volatileSource, 2, 1 ), expected, converter );
+		final Volatile2DRandomAccessibleProjector< FloatType, VolatileFloatType, ARGBType > parallel = new Volatile2DRandomAccessibleProjector<>( 0, 1, Views.hyperSlice( volatileSource, 2, 1 ), actual, () -> converter );
+		parallel.setExecutorService( executorService );
+		sequential.map();
+		parallel.map();
+		assertSameValues( expected, actual );
+	}
+
+	private static void assertSameValues( final IterableInterval< ARGBType > expected, final IterableInterval< ARGBType > actual )
+	{
+		final Cursor< ARGBType > e = expected.cursor();
+		final Cursor< ARGBType > a = actual.cursor();
+		boolean nonZero = false;
+		while ( e.hasNext() )
+		{
+			final int value = e.next().get();
+			nonZero |= value != 0;
+			assertEquals( value, a.next().get() );
+		}
+		assertTrue( nonZero );
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.display.projector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.display.projector.composite.CompositeXYProjector;
+import net.imglib2.display.projector.specialized.ArrayImgXYARGBProjector;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+public class ProgressiveProjector2DTest
+{
+	private static final long[] DIMENSIONS = { 300, 200, 2 };
+
+	private static Img< FloatType > createSource()
+	{
+		final Img< FloatType > source = ArrayImgs.floats( DIMENSIONS );
+		final Random random = new Random( 1 );
+		for ( final FloatType t : source )
+			t.set( random.nextFloat() );
+		return source;
+	}
+
+	@Test
+	public void testSubsampling()
+	{
+		final Img< FloatType > source = createSource();
+		final Img< ARGBType > full = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final IterableIntervalProjector2D< FloatType, ARGBType > fullProjector = new IterableIntervalProjector2D<>( 0, 1, source, full, new RealARGBConverter<>( 0, 1 ) );
+		fullProjector.setPosition( 1, 2 );
+		fullProjector.map();
+
+		for ( final int subsampling : new int[] { 1, 3, 8 } )
+		{
+			final Img< ARGBType > preview = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+			final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, preview, new RealARGBConverter<>( 0, 1 ) );
+			projector.setPosition( 1, 2 );
+			projector.map( subsampling );
+			assertSubsampled( full, preview, subsampling );
+		}
+
+		final Img< ARGBType > preview = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final RandomAccessibleProjector2D< FloatType, ARGBType > projector = new RandomAccessibleProjector2D<>( 0, 1, source, preview, new RealARGBConverter<>( 0, 1 ) );
+		projector.setPosition( 1, 2 );
+		projector.map( 5 );
+		assertSubsampled( full, preview, 5 );
+	}
+
+	@Test
+	public void testCompositeSubsampling()
+	{
+		final Img< FloatType > source = createSource();
+		final ArrayList< Converter< FloatType, ARGBType > > converters = new ArrayList<>();
+		converters.add( new RealARGBConverter<>( 0, 1 ) );
+		converters.add( new RealARGBConverter<>( 0, 2 ) );
+		final Img< ARGBType > full = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final Img< ARGBType > preview = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final CompositeXYProjector< FloatType > fullProjector = new CompositeXYProjector<>( source, full, converters, 2 );
+		final CompositeXYProjector< FloatType > projector = new CompositeXYProjector<>( source, preview, converters, 2 );
+		fullProjector.setComposite( true );
+		projector.setComposite( true );
+		fullProjector.map();
+		projector.map( 4 );
+		assertSubsampled( full, preview, 4 );
+	}
+
+	@Test
+	public void testProgressive()
+	{
+		final Img< FloatType > source = createSource();
+		final Img< ARGBType > full = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		new IterableIntervalProjector2D<>( 0, 1, source, full, new RealARGBConverter< FloatType >( 0, 1 ) ).map();
+
+		final Img< ARGBType > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, target, new RealARGBConverter<>( 0, 1 ) );
+		final AtomicInteger passes = new AtomicInteger();
+		final int[] expectedSubsampling = { 8, 4, 2, 1 };
+		assertTrue( projector.mapProgressive( 8, () -> {
+			assertSubsampled( full, target, expectedSubsampling[ passes.getAndIncrement() ] );
+		} ) );
+		assertEquals( 4, passes.get() );
+		assertFalse( projector.wasCanceled() );
+	}
+
+	@Test
+	public void testProgressiveWithoutSubsampling()
+	{
+		final ArrayImg< FloatType, FloatArray > source = ArrayImgs.floats( DIMENSIONS );
+		final AtomicInteger maps = new AtomicInteger();
+		final ArrayImgXYARGBProjector< FloatType, FloatArray > projector = new ArrayImgXYARGBProjector< FloatType, FloatArray >( source, ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), 0, 1 )
+		{
+			@Override
+			public void map()
+			{
+				maps.incrementAndGet();
+				super.map();
+			}
+		};
+		assertFalse( projector.map( 4 ) );
+		assertEquals( 1, maps.get() );
+
+		// a single pass at full resolution
+		maps.set( 0 );
+		final AtomicInteger passes = new AtomicInteger();
+		assertTrue( projector.mapProgressive( 8, passes::incrementAndGet ) );
+		assertEquals( 1, maps.get() );
+		assertEquals( 1, passes.get() );
+
+		final IterableIntervalProjector2D< FloatType, ARGBType > subsampling = new IterableIntervalProjector2D<>( 0, 1, source, ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), new RealARGBConverter<>( 0, 1 ) );
+		assertTrue( subsampling.map( 4 ) );
+		assertFalse( subsampling.map( 1 ) );
+	}
+
+	@Test
+	public void testCancel()
+	{
+		final Img< FloatType > source = createSource();
+		final Img< ARGBType > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final AtomicInteger conversions = new AtomicInteger();
+		final RealARGBConverter< FloatType > argb = new RealARGBConverter<>( 0, 1 );
+		final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, target, ( FloatType a, ARGBType b ) -> {
+			conversions.incrementAndGet();
+			argb.convert( a, b );
+		} );
+
+		// cancel after some pixels were rendered
+		projector.setCancellationToken( () -> conversions.get() > 1000 );
+		projector.map();
+		assertTrue( projector.wasCanceled() );
+		assertTrue( conversions.get() < target.size() );
+		int rendered = 0;
+		for ( final ARGBType t : target )
+			if ( t.get() != 0 )
+				++rendered;
+		assertEquals( conversions.get(), rendered );
+
+		// the 8x subsampled pass needs fewer conversions, the 4x pass is canceled
+		final AtomicInteger passes = new AtomicInteger();
+		conversions.set( 0 );
+		assertFalse( projector.mapProgressive( 8, passes::incrementAndGet ) );
+		assertTrue( projector.wasCanceled() );
+		assertEquals( 1, passes.get() );
+
+		// not canceled
+		projector.setCancellationToken( () -> false );
+		projector.map();
+		assertFalse( projector.wasCanceled() );
+		projector.setCancellationToken( null );
+		projector.map();
+		assertFalse( projector.wasCanceled() );
+	}
+
+	@Test
+	public void testCancellationKeepsOneConverterPerStripe()
+	{
+		final Img< FloatType > source = createSource();
+		final Img< ARGBType > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final AtomicInteger converters = new AtomicInteger();
+		final IterableIntervalProjector2D< FloatType, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, target, () -> {
+			converters.incrementAndGet();
+			return new RealARGBConverter<>( 0, 1 );
+		} );
+		converters.set( 0 );
+
+		// the token is polled while rendering, but the single stripe (of
+		// 60000 pixels) creates only one converter
+		final AtomicInteger polls = new AtomicInteger();
+		projector.setCancellationToken( () -> polls.incrementAndGet() < 0 );
+		projector.map();
+		assertFalse( projector.wasCanceled() );
+		assertEquals( 1, converters.get() );
+		assertTrue( polls.get() > 1 );
+	}
+
+	private static void assertSubsampled( final Img< ARGBType > full, final Img< ARGBType > preview, final int subsampling )
+	{
+		final RandomAccess< ARGBType > fullAccess = full.randomAccess();
+		final Cursor< ARGBType > c = preview.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			fullAccess.setPosition( c.getLongPosition( 0 ) / subsampling * subsampling, 0 );
+			fullAccess.setPosition( c.getLongPosition( 1 ) / subsampling * subsampling, 1 );
+			assertEquals( fullAccess.get().get(), c.get().get() );
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.display.projector.specialized;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.converter.RealLUTConverter;
+import net.imglib2.display.ColorTable8;
+import net.imglib2.display.projector.AbstractProjector2D;
+import net.imglib2.display.projector.IterableIntervalProjector2D;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+public class XYARGBProjectorTest
+{
+	private static final long[] DIMENSIONS = { 70, 45, 5, 3 };
+
+	private static final long[] POSITION = { 0, 0, 3, 2 };
+
+	@Test
+	public void testArrayImg()
+	{
+		assertArrayImg( new UnsignedByteType() );
+		assertArrayImg( new ShortType() );
+		assertArrayImg( new IntType() );
+		assertArrayImg( new FloatType() );
+		assertArrayImg( new DoubleType() );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		assertPlanarImg( new UnsignedByteType() );
+		assertPlanarImg( new ShortType() );
+		assertPlanarImg( new IntType() );
+		assertPlanarImg( new FloatType() );
+		assertPlanarImg( new DoubleType() );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		assertCellImg( new UnsignedByteType(), 16, 10, 2, 2 );
+		assertCellImg( new ShortType(), 70, 45, 1, 1 );
+		assertCellImg( new IntType(), 7, 64, 3, 2 );
+		assertCellImg( new FloatType(), 32, 32, 4, 4 );
+		assertCellImg( new DoubleType(), 5, 5, 5, 5 );
+	}
+
+	@Test
+	public void testLUTConverter()
+	{
+		final CellImg< FloatType, ? > source = fill( new CellImgFactory<>( new FloatType(), 16, 16, 2, 2 ).create( DIMENSIONS ) );
+		final ArrayImg< ARGBType, IntArray > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final RealLUTConverter< FloatType > converter = new RealLUTConverter<>( -20, 150, new ColorTable8() );
+		map( new CellImgXYARGBProjector<>( source, target, converter ), null );
+		assertRendered( source, target, converter );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testUnsupportedConverter()
+	{
+		new ArrayImgXYARGBProjector<>( ArrayImgs.floats( DIMENSIONS ), ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] ), ( FloatType a, ARGBType b ) -> b.set( 0 ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testWrongTargetSize()
+	{
+		new ArrayImgXYARGBProjector<>( ArrayImgs.floats( DIMENSIONS ), ArrayImgs.argbs( DIMENSIONS[ 1 ], DIMENSIONS[ 0 ] ), 0, 1 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testOneDimensionalSource()
+	{
+		new ArrayImgXYARGBProjector<>( ArrayImgs.floats( DIMENSIONS[ 0 ] ), ArrayImgs.argbs( DIMENSIONS[ 0 ], 1 ), 0, 1 );
+	}
+
+	private static < T extends RealType< T > & NativeType< T > > void assertArrayImg( final T type )
+	{
+		final ArrayImg< T, ? > source = fill( new ArrayImgFactory<>( type ).create( DIMENSIONS ) );
+		final RealARGBConverter< T > converter = new RealARGBConverter<>( -50, 100 );
+		for ( final ExecutorService es : executors() )
+		{
+			final ArrayImg< ARGBType, IntArray > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+			map( new ArrayImgXYARGBProjector<>( source, target, converter ), es );
+			assertRendered( source, target, converter );
+		}
+	}
+
+	private static < T extends RealType< T > & NativeType< T > > void assertPlanarImg( final T type )
+	{
+		final PlanarImg< T, ? > source = fill( new PlanarImgFactory<>( type ).create( DIMENSIONS ) );
+		final RealARGBConverter< T > converter = new RealARGBConverter<>( -50, 100 );
+		for ( final ExecutorService es : executors() )
+		{
+			final ArrayImg< ARGBType, IntArray > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+			map( new PlanarImgXYARGBProjector<>( source, target, converter ), es );
+			assertRendered( source, target, converter );
+		}
+	}
+
+	private static < T extends RealType< T > & NativeType< T > > void assertCellImg( final T type, final int... cellDimensions )
+	{
+		final CellImg< T, ? > source = fill( new CellImgFactory<>( type, cellDimensions ).create( DIMENSIONS ) );
+		final RealARGBConverter< T > converter = new RealARGBConverter<>( -50, 100 );
+		for ( final ExecutorService es : executors() )
+		{
+			final ArrayImg< ARGBType, IntArray > target = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+			map( new CellImgXYARGBProjector<>( source, target, converter ), es );
+			assertRendered( source, target, converter );
+		}
+	}
+
+	private static ExecutorService[] executors()
+	{
+		return new ExecutorService[] { null, Executors.newFixedThreadPool( 3 ) };
+	}
+
+	private static void map( final AbstractProjector2D projector, final ExecutorService es )
+	{
+		projector.setExecutorService( es );
+		projector.setPosition( POSITION );
+		projector.map();
+		if ( es != null )
+			es.shutdown();
+	}
+
+	/**
+	 * Fills with the same pseudo-random values in the type range clipped
+	 * to [-100, 200].
+	 */
+	private static < I extends Img< T >, T extends RealType< T > > I fill( final I img )
+	{
+		final Random random = new Random( 1 );
+		final T type = img.firstElement();
+		final double min = Math.max( -100, type.getMinValue() );
+		final double max = Math.min( 200, type.getMaxValue() );
+		for ( final T t : img )
+			t.setReal( min + random.nextDouble() * ( max - min ) );
+		return img;
+	}
+
+	private static < T extends RealType< T > > void assertRendered( final Img< T > source, final ArrayImg< ARGBType, IntArray > target, final Converter< T, ARGBType > converter )
+	{
+		final ArrayImg< ARGBType, IntArray > expected = ArrayImgs.argbs( DIMENSIONS[ 0 ], DIMENSIONS[ 1 ] );
+		final IterableIntervalProjector2D< T, ARGBType > projector = new IterableIntervalProjector2D<>( 0, 1, source, expected, converter );
+		projector.setPosition( POSITION );
+		projector.map();
+		assertArrayEquals( expected.update( null ).getCurrentStorageArray(), target.update( null ).getCurrentStorageArray() );
+	}
+}
@@ -34,12 +34,24 @@
 
 package net.imglib2.histogram;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.ShortType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -104,6 +116,125 @@ public class Histogram1dTest
 		assertEquals( 0, hist.upperTailCount() );
 	}
 
+	@Test
+	public void testParallelCountData()
+	{
+		final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( 512, 600 );
+		final Random random = new Random( 42 );
+		for ( final UnsignedShortType t : img )
+			t.set( random.nextInt( 1200 ) );
+
+		final ExecutorService executorService = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			for ( final boolean tails : new boolean[] { true, false } )
+			{
+				final Histogram1d< UnsignedShortType > expected = new Histogram1d<>( img, new Integer1dBinMapper< UnsignedShortType >( 100, 1000, tails ) );
+				final Histogram1d< UnsignedShortType > actual = new Histogram1d<>( new Integer1dBinMapper< UnsignedShortType >( 100, 1000, tails ) );
+				actual.countData( Views.iterable( Views.interval( img, img ) ), executorService );
+				assertArrayEquals( expected.toLongArray(), actual.toLongArray() );
+				assertEquals( expected.ignoredCount(), actual.ignoredCount() );
+				assertEquals( expected.totalCount(), actual.totalCount() );
+				assertEquals( expected.distributionCount(), actual.distributionCount() );
+				assertEquals( img.firstElement().get(), actual.firstDataValue().get() );
+
+				// counting again starts from scratch, adding data accumulates
+				actual.countData( img, executorService );
+				actual.addData( img, executorService );
+				expected.addData( img );
+				assertArrayEquals( expected.toLongArray(), actual.toLongArray() );
+				assertEquals( expected.ignoredCount(), actual.ignoredCount() );
+			}
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testPrimitiveCounting()
+	{
+		final Random random = new Random( 42 );
+
+		final Img< UnsignedByteType > ubytes = ArrayImgs.unsignedBytes( 100, 80 );
+		for ( final UnsignedByteType t : ubytes )
+			t.set( random.nextInt( 256 ) );
+		assertSameAsGeneric( ubytes, new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+		assertSameAsGeneric( ubytes, new Integer1dBinMapper< UnsignedByteType >( 20, 100, true ) );
+		assertSameAsGeneric( ubytes, new Real1dBinMapper< UnsignedByteType >( 0, 255, 16, false ) );
+
+		final Img< ByteType > bytes = PlanarImgs.bytes( 30, 20, 5 );
+		for ( final ByteType t : bytes )
+			t.set( ( byte ) random.nextInt( 256 ) );
+		assertSameAsGeneric( bytes, new Integer1dBinMapper< ByteType >( -128, 256, false ) );
+		assertSameAsGeneric( bytes, new Integer1dBinMapper< ByteType >( -10, 20, false ) );
+
+		final Img< UnsignedShortType > ushorts = PlanarImgs.unsignedShorts( 50, 40, 3 );
+		for ( final UnsignedShortType t : ushorts )
+			t.set( random.nextInt( 1 << 16 ) );
+		assertSameAsGeneric( ushorts, new Integer1dBinMapper< UnsignedShortType >( 0, 1 << 16, false ) );
+		assertSameAsGeneric( ushorts, new Integer1dBinMapper< UnsignedShortType >( 1000, 5000, true ) );
+
+		final Img< ShortType > shorts = ArrayImgs.shorts( 100, 80 );
+		for ( final ShortType t : shorts )
+			t.set( ( short ) random.nextInt( 1 << 16 ) );
+		assertSameAsGeneric( shorts, new Integer1dBinMapper< ShortType >( -1000, 3000, true ) );
+		assertSameAsGeneric( shorts, new Real1dBinMapper< ShortType >( -32768, 32767, 100, false ) );
+	}
+
+	private static < T extends RealType< T > > void assertSameAsGeneric( final Img< T > img, final BinMapper1d< T > binMapper )
+	{
+		// a view is not counted on the primitive arrays
+		final Histogram1d< T > expected = new Histogram1d<>( Views.iterable( Views.interval( img, img ) ), binMapper );
+		final Histogram1d< T > actual = new Histogram1d<>( img, binMapper );
+		assertArrayEquals( expected.toLongArray(), actual.toLongArray() );
+		assertEquals( expected.ignoredCount(), actual.ignoredCount() );
+		assertEquals( expected.totalCount(), actual.totalCount() );
+		assertEquals( img.firstElement().getRealDouble(), actual.firstDataValue().getRealDouble(), 0 );
+
+		expected.addData( Views.iterable( Views.interval( img, img ) ) );
+		actual.addData( img );
+		assertArrayEquals( expected.toLongArray(), actual.toLongArray() );
+		assertEquals( expected.ignoredCount(), actual.ignoredCount() );
+
+		final ExecutorService executorService = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			actual.countData( img, executorService );
+			actual.addData( img, executorService );
+			assertArrayEquals( expected.toLongArray(), actual.toLongArray() );
+			assertEquals( expected.ignoredCount(), actual.ignoredCount() );
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final List< UnsignedByteType > data = getData1();
+		final BinMapper1d< UnsignedByteType > binMapper = new Integer1dBinMapper< UnsignedByteType >( 4, 6, false );
+		final Histogram1d< UnsignedByteType > expected = new Histogram1d<>( data, binMapper );
+		final Histogram1d< UnsignedByteType > a = new Histogram1d<>( data.subList( 0, 4 ), binMapper );
+		final Histogram1d< UnsignedByteType > b = new Histogram1d<>( data.subList( 4, data.size() ), binMapper );
+		a.merge( b );
+		assertArrayEquals( expected.toLongArray(), a.toLongArray() );
+		assertEquals( expected.ignoredCount(), a.ignoredCount() );
+		assertEquals( expected.distributionCount(), a.distributionCount() );
+		assertEquals( expected.totalCount(), a.totalCount() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testMergeDifferentBinCounts()
+	{
+		final Histogram1d< UnsignedByteType > a = new Histogram1d<>( new Integer1dBinMapper< UnsignedByteType >( 0, 10, false ) );
+		final Histogram1d< UnsignedByteType > b = new Histogram1d<>( new Integer1dBinMapper< UnsignedByteType >( 0, 20, false ) );
+		a.merge( b );
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
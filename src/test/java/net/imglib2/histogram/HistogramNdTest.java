@@ -38,14 +38,20 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.imglib2.Cursor;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import org.junit.Test;
@@ -292,6 +298,74 @@ public class HistogramNdTest
 		assertEquals( 20000, hist.distributionCount() );
 	}
 
+	@Test
+	public void testParallelCountData()
+	{
+		final Img< UnsignedByteType > img1 = ArrayImgs.unsignedBytes( 400, 300 );
+		final Img< UnsignedByteType > img2 = ArrayImgs.unsignedBytes( 400, 300 );
+		final Random random = new Random( 42 );
+		for ( final UnsignedByteType t : img1 )
+			t.set( random.nextInt( 256 ) );
+		for ( final UnsignedByteType t : img2 )
+			t.set( random.nextInt( 256 ) );
+
+		final List< BinMapper1d< UnsignedByteType > > mappers = new ArrayList<>();
+		mappers.add( new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+		mappers.add( new Integer1dBinMapper< UnsignedByteType >( 20, 100, false ) );
+
+		final List< Iterable< UnsignedByteType > > data = new ArrayList<>();
+		data.add( img1 );
+		data.add( img2 );
+		final HistogramNd< UnsignedByteType > expected = new HistogramNd<>( data, mappers );
+
+		final ExecutorService executorService = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final HistogramNd< UnsignedByteType > actual = new HistogramNd<>( mappers );
+			actual.countData( Arrays.asList( img1, img2 ), executorService );
+			assertEquals( expected.ignoredCount(), actual.ignoredCount() );
+			assertEquals( expected.distributionCount(), actual.distributionCount() );
+			assertSameCounts( expected, actual );
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final List< BinMapper1d< UnsignedByteType > > mappers = new ArrayList<>();
+		mappers.add( new Integer1dBinMapper< UnsignedByteType >( 0, 8, false ) );
+		mappers.add( new Integer1dBinMapper< UnsignedByteType >( 0, 8, false ) );
+		final List< Iterable< UnsignedByteType > > data = new ArrayList<>();
+		data.add( getData1() );
+		data.add( getData2() );
+		final HistogramNd< UnsignedByteType > expected = new HistogramNd<>( data, mappers );
+
+		final List< Iterable< UnsignedByteType > > dataA = new ArrayList<>();
+		dataA.add( getData1().subList( 0, 5 ) );
+		dataA.add( getData2().subList( 0, 5 ) );
+		final List< Iterable< UnsignedByteType > > dataB = new ArrayList<>();
+		dataB.add( getData1().subList( 5, 11 ) );
+		dataB.add( getData2().subList( 5, 11 ) );
+		final HistogramNd< UnsignedByteType > a = new HistogramNd<>( dataA, mappers );
+		a.merge( new HistogramNd<>( dataB, mappers ) );
+
+		assertEquals( expected.ignoredCount(), a.ignoredCount() );
+		assertEquals( expected.distributionCount(), a.distributionCount() );
+		assertSameCounts( expected, a );
+	}
+
+	private static void assertSameCounts( final HistogramNd< ? > expected, final HistogramNd< ? > actual )
+	{
+		final Cursor< LongType > e = expected.cursor();
+		final Cursor< LongType > a = actual.cursor();
+		while ( e.hasNext() )
+			assertEquals( e.next().get(), a.next().get() );
+	}
+
 	private List< UnsignedByteType > getData1()
 	{
 		final List< UnsignedByteType > data = new ArrayList< UnsignedByteType >();
@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+public class QuantileSketchTest
+{
+	@Test
+	public void testExactForFewValues()
+	{
+		final Random random = new Random( 1 );
+		final double[] values = new double[ 150 ];
+		final QuantileSketch sketch = new QuantileSketch();
+		for ( int i = 0; i < values.length; ++i )
+		{
+			values[ i ] = random.nextDouble();
+			sketch.add( values[ i ] );
+		}
+		assertEquals( values.length, sketch.count() );
+		for ( int i = 0; i <= 20; ++i )
+		{
+			final double q = i / 20.0;
+			assertEquals( Util.percentile( values, q ), sketch.quantile( q ), 0 );
+		}
+		final double[] sorted = values.clone();
+		Arrays.sort( sorted );
+		assertEquals( 0, sketch.rank( sorted[ 0 ] - 1 ), 0 );
+		assertEquals( 10.0 / values.length, sketch.rank( sorted[ 9 ] ), 0 );
+		assertEquals( 1, sketch.rank( sorted[ values.length - 1 ] ), 0 );
+	}
+
+	@Test
+	public void testRankError()
+	{
+		final int n = 1000000;
+		final double[] values = new double[ n ];
+		final Random random = new Random( 2 );
+		final QuantileSketch sketch = new QuantileSketch();
+		for ( int i = 0; i < n; ++i )
+		{
+			values[ i ] = random.nextGaussian();
+			sketch.add( values[ i ] );
+		}
+		assertEquals( n, sketch.count() );
+		assertSmallRankError( values, sketch, 0.02 );
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final int n = 300000;
+		final double[] values = new double[ n ];
+		final Random random = new Random( 3 );
+		final QuantileSketch[] parts = new QuantileSketch[ 7 ];
+		for ( int p = 0; p < parts.length; ++p )
+			parts[ p ] = new QuantileSketch();
+		for ( int i = 0; i < n; ++i )
+		{
+			// differently distributed parts
+			final int p = i % parts.length;
+			values[ i ] = p * 10 + random.nextDouble() * ( p + 1 );
+			parts[ p ].add( values[ i ] );
+		}
+		final QuantileSketch sketch = parts[ 0 ].copy();
+		for ( int p = 1; p < parts.length; ++p )
+			sketch.merge( parts[ p ] );
+		assertEquals( n, sketch.count() );
+		assertEquals( n / parts.length + 1, parts[ 0 ].count() );
+		assertSmallRankError( values, sketch, 0.02 );
+	}
+
+	@Test
+	public void testCreateInParallel()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 700, 500 );
+		final Random random = new Random( 4 );
+		final double[] values = new double[ ( int ) img.size() ];
+		int i = 0;
+		for ( final FloatType t : img )
+		{
+			t.set( ( float ) Math.exp( random.nextGaussian() ) );
+			values[ i++ ] = t.get();
+		}
+		final ExecutorService executorService = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			final QuantileSketch sketch = QuantileSketch.create( img, QuantileSketch.DEFAULT_K, executorService );
+			assertEquals( img.size(), sketch.count() );
+			assertSmallRankError( values, sketch, 0.02 );
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+
+		final QuantileSketch sequential = new QuantileSketch();
+		sequential.addAll( img );
+		assertSmallRankError( values, sequential, 0.02 );
+	}
+
+	@Test
+	public void testEmptyAndNaN()
+	{
+		final QuantileSketch sketch = new QuantileSketch();
+		assertTrue( Double.isNaN( sketch.quantile( 0.5 ) ) );
+		assertTrue( Double.isNaN( sketch.min() ) );
+		sketch.add( Double.NaN );
+		assertEquals( 0, sketch.count() );
+		sketch.add( 3 );
+		sketch.add( Double.NaN );
+		sketch.add( 1 );
+		assertEquals( 2, sketch.count() );
+		assertEquals( 1, sketch.min(), 0 );
+		assertEquals( 3, sketch.max(), 0 );
+		assertEquals( 3, sketch.quantile( 0.5 ), 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testInvalidQuantile()
+	{
+		new QuantileSketch().quantile( 1.5 );
+	}
+
+	private static void assertSmallRankError( final double[] values, final QuantileSketch sketch, final double maxRankError )
+	{
+		final double[] sorted = values.clone();
+		Arrays.sort( sorted );
+		assertEquals( sorted[ 0 ], sketch.min(), 0 );
+		assertEquals( sorted[ sorted.length - 1 ], sketch.max(), 0 );
+		assertEquals( sorted[ 0 ], sketch.quantile( 0 ), 0 );
+		assertEquals( sorted[ sorted.length - 1 ], sketch.quantile( 1 ), 0 );
+		for ( int i = 1; i < 100; ++i )
+		{
+			final double q = i / 100.0;
+			final double estimate = sketch.quantile( q );
+			final int rank = Arrays.binarySearch( sorted, estimate );
+			assertTrue( rank >= 0 );
+			assertEquals( q, ( double ) rank / ( sorted.length - 1 ), maxRankError );
+			assertEquals( ( double ) ( rank + 1 ) / sorted.length, sketch.rank( estimate ), maxRankError );
+		}
+	}
+}
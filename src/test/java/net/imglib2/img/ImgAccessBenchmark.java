@@ -0,0 +1,270 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.segmented.SegmentedArrayImgFactory;
+import net.imglib2.img.sparse.NtreeImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Measures every {@link Img} container against the common access patterns:
+ * cursor, localizing cursor, random access in row, column and random order,
+ * sub-interval cursor, and cursor/random access through a stack of views.
+ * <p>
+ * Run {@link #main(String...)} to write the results as JSON (to the file given
+ * as first argument, {@code img-access-benchmark.json} by default), so that
+ * they can be compared between versions.
+ * </p>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS )
+@Measurement( iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS )
+@Fork( 1 )
+public class ImgAccessBenchmark
+{
+	@Param( { "ArrayImg", "PlanarImg", "CellImg", "ListImg", "NtreeImg", "SegmentedArrayImg" } )
+	public String container;
+
+	private static final long[] dimensions = { 192, 192, 32 };
+
+	private static final int numRandomPositions = 100000;
+
+	private Img< IntType > img;
+
+	private Interval subInterval;
+
+	private RandomAccessibleInterval< IntType > view;
+
+	private long[][] randomPositions;
+
+	@Setup
+	public void setup()
+	{
+		img = factory( container ).create( dimensions );
+		final Random random = new Random( 42 );
+		for ( final IntType t : img )
+			t.set( random.nextInt( 256 ) );
+
+		// full planes, so that containers with optimized sub-interval
+		// cursors can use them
+		subInterval = new FinalInterval( new long[] { 0, 0, 8 }, new long[] { dimensions[ 0 ] - 1, dimensions[ 1 ] - 1, 23 } );
+
+		view = Views.zeroMin( Views.permute( Views.interval( Views.extendBorder( img ), Intervals.expand( img, -4 ) ), 0, 1 ) );
+
+		randomPositions = new long[ numRandomPositions ][ dimensions.length ];
+		for ( final long[] position : randomPositions )
+			for ( int d = 0; d < dimensions.length; ++d )
+				position[ d ] = random.nextInt( ( int ) dimensions[ d ] );
+	}
+
+	@Benchmark
+	public long cursor()
+	{
+		long sum = 0;
+		final Cursor< IntType > c = img.cursor();
+		while ( c.hasNext() )
+			sum += c.next().get();
+		return sum;
+	}
+
+	@Benchmark
+	public long localizingCursor()
+	{
+		long sum = 0;
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			sum += c.next().get();
+			sum += c.getLongPosition( 0 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long randomAccessRowOrder()
+	{
+		return sumRowOrder( img );
+	}
+
+	@Benchmark
+	public long randomAccessColumnOrder()
+	{
+		long sum = 0;
+		final RandomAccess< IntType > a = img.randomAccess();
+		for ( int z = 0; z < dimensions[ 2 ]; ++z )
+		{
+			a.setPosition( z, 2 );
+			for ( int x = 0; x < dimensions[ 0 ]; ++x )
+			{
+				a.setPosition( x, 0 );
+				a.setPosition( 0, 1 );
+				for ( int y = 0; y < dimensions[ 1 ]; ++y )
+				{
+					sum += a.get().get();
+					a.fwd( 1 );
+				}
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long randomAccessRandomOrder()
+	{
+		long sum = 0;
+		final RandomAccess< IntType > a = img.randomAccess();
+		for ( final long[] position : randomPositions )
+		{
+			a.setPosition( position );
+			sum += a.get().get();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long subIntervalCursor()
+	{
+		long sum = 0;
+		final Cursor< IntType > c = Views.flatIterable( Views.interval( img, subInterval ) ).cursor();
+		while ( c.hasNext() )
+			sum += c.next().get();
+		return sum;
+	}
+
+	@Benchmark
+	public long viewCursor()
+	{
+		long sum = 0;
+		final Cursor< IntType > c = Views.flatIterable( view ).cursor();
+		while ( c.hasNext() )
+			sum += c.next().get();
+		return sum;
+	}
+
+	@Benchmark
+	public long viewRandomAccessRowOrder()
+	{
+		return sumRowOrder( view );
+	}
+
+	private static long sumRowOrder( final RandomAccessibleInterval< IntType > image )
+	{
+		long sum = 0;
+		final RandomAccess< IntType > a = image.randomAccess();
+		final long sx = image.dimension( 0 );
+		final long sy = image.dimension( 1 );
+		final long sz = image.dimension( 2 );
+		for ( int z = 0; z < sz; ++z )
+		{
+			a.setPosition( z, 2 );
+			for ( int y = 0; y < sy; ++y )
+			{
+				a.setPosition( 0, 0 );
+				a.setPosition( y, 1 );
+				for ( int x = 0; x < sx; ++x )
+				{
+					sum += a.get().get();
+					a.fwd( 0 );
+				}
+			}
+		}
+		return sum;
+	}
+
+	private static ImgFactory< IntType > factory( final String container )
+	{
+		switch ( container )
+		{
+		case "ArrayImg":
+			return new ArrayImgFactory<>( new IntType() );
+		case "PlanarImg":
+			return new PlanarImgFactory<>( new IntType() );
+		case "CellImg":
+			return new CellImgFactory<>( new IntType(), 64 );
+		case "ListImg":
+			return new ListImgFactory<>( new IntType() );
+		case "NtreeImg":
+			return new NtreeImgFactory<>( new IntType() );
+		case "SegmentedArrayImg":
+			return new SegmentedArrayImgFactory<>( new IntType(), 16 );
+		default:
+			throw new IllegalArgumentException( "unknown container " + container );
+		}
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final String resultFile = args.length > 0 ? args[ 0 ] : "img-access-benchmark.json";
+		final Options opt = new OptionsBuilder()
+				.include( ImgAccessBenchmark.class.getSimpleName() )
+				.resultFormat( ResultFormatType.JSON )
+				.result( resultFile )
+				.build();
+		new Runner( opt ).run();
+	}
+}
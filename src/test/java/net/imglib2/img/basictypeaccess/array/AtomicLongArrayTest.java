@@ -0,0 +1,308 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.array;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.loops.ParallelTasks;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.integer.Unsigned4BitType;
+import net.imglib2.type.numeric.integer.UnsignedVariableBitLengthType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+public class AtomicLongArrayTest
+{
+	private static final int size = 10000;
+
+	private static final int numThreads = 8;
+
+	@Test
+	public void testCompareAndSet()
+	{
+		final AtomicLongArray access = new AtomicLongArray( new long[] { 1, 2 } );
+		assertTrue( access.compareAndSetValue( 1, 2, 5 ) );
+		assertFalse( access.compareAndSetValue( 1, 2, 7 ) );
+		assertEquals( 5, access.getValue( 1 ) );
+		assertEquals( 2, access.createArray( 2 ).getArrayLength() );
+	}
+
+	@Test
+	public void testConcurrentBitType()
+	{
+		final ArrayImg< BitType, AtomicLongArray > img = ArrayImgs.bits( new AtomicLongArray( size / 64 + 1 ), size );
+		interleaved( i -> {
+			final RandomAccess< BitType > a = img.randomAccess();
+			a.setPosition( i, 0 );
+			a.get().set( i % 3 != 0 );
+		} );
+		final RandomAccess< BitType > a = img.randomAccess();
+		for ( int i = 0; i < size; ++i )
+		{
+			a.setPosition( i, 0 );
+			assertEquals( i % 3 != 0, a.get().get() );
+		}
+	}
+
+	@Test
+	public void testConcurrentUnsigned4BitType()
+	{
+		final ArrayImg< Unsigned4BitType, AtomicLongArray > img = ArrayImgs.unsigned4Bits( new AtomicLongArray( size / 16 + 1 ), size );
+		interleaved( i -> {
+			final RandomAccess< Unsigned4BitType > a = img.randomAccess();
+			a.setPosition( i, 0 );
+			a.get().set( i % 16 );
+		} );
+		final RandomAccess< Unsigned4BitType > a = img.randomAccess();
+		for ( int i = 0; i < size; ++i )
+		{
+			a.setPosition( i, 0 );
+			assertEquals( i % 16, a.get().get() );
+		}
+	}
+
+	@Test
+	public void testConcurrentUnsigned12BitType()
+	{
+		final ArrayImg< Unsigned12BitType, AtomicLongArray > img = ArrayImgs.unsigned12Bits( new AtomicLongArray( size * 12 / 64 + 1 ), size );
+		interleaved( i -> {
+			final RandomAccess< Unsigned12BitType > a = img.randomAccess();
+			a.setPosition( i, 0 );
+			a.get().set( ( i * 7 ) % 4096 );
+		} );
+		final RandomAccess< Unsigned12BitType > a = img.randomAccess();
+		for ( int i = 0; i < size; ++i )
+		{
+			a.setPosition( i, 0 );
+			assertEquals( ( i * 7 ) % 4096, a.get().get() );
+		}
+	}
+
+	@Test
+	public void testConcurrentVariableBitLengthType()
+	{
+		final int nBits = 13;
+		final ArrayImg< UnsignedVariableBitLengthType, AtomicLongArray > img = ArrayImgs.unsignedVariableBitLengths( new AtomicLongArray( size * nBits / 64 + 1 ), nBits, size );
+		interleaved( i -> {
+			final RandomAccess< UnsignedVariableBitLengthType > a = img.randomAccess();
+			a.setPosition( i, 0 );
+			a.get().set( ( i * 5 ) % 8192 );
+		} );
+		final RandomAccess< UnsignedVariableBitLengthType > a = img.randomAccess();
+		for ( int i = 0; i < size; ++i )
+		{
+			a.setPosition( i, 0 );
+			assertEquals( ( i * 5 ) % 8192, a.get().get() );
+		}
+	}
+
+	@Test
+	public void testStraddlingWritesDoNotTear() throws InterruptedException
+	{
+		// pixel 5 of Unsigned12BitType occupies bits 60 to 71
+		assertNoTornWrite( access -> ArrayImgs.unsigned12Bits( access, 6 ), 5, 12, false );
+		assertNoTornWrite( access -> ArrayImgs.unsigned12Bits( access, 6 ), 5, 12, true );
+		// pixel 4 of 13 bit UnsignedVariableBitLengthType occupies bits 52 to 64
+		assertNoTornWrite( access -> ArrayImgs.unsignedVariableBitLengths( access, 13, 6 ), 4, 13, false );
+		assertNoTornWrite( access -> ArrayImgs.unsignedVariableBitLengths( access, 13, 6 ), 4, 13, true );
+	}
+
+	/**
+	 * Two threads write all zeros and all ones to the same pixel, which is
+	 * split between two longs. The first writer is paused after updating the
+	 * first long, until the second writer has finished (or 200 ms passed, if
+	 * the second writer is correctly blocked). The pixel must end up with
+	 * the value of one writer, not the low bits of one and the high bits of
+	 * the other.
+	 */
+	private static < T extends IntegerType< T > & NativeType< T > > void assertNoTornWrite( final Function< LongAccess, ArrayImg< T, ? > > createImg, final int pixel, final int nBits, final boolean atomic ) throws InterruptedException
+	{
+		final CountDownLatch firstWordWritten = new CountDownLatch( 1 );
+		final CountDownLatch secondWriterDone = new CountDownLatch( 1 );
+		final AtomicBoolean paused = new AtomicBoolean();
+		final Runnable pauseOnce = () -> {
+			if ( !paused.getAndSet( true ) )
+			{
+				firstWordWritten.countDown();
+				try
+				{
+					secondWriterDone.await( 200, TimeUnit.MILLISECONDS );
+				}
+				catch ( final InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		final LongAccess access = atomic
+				? new AtomicLongArray( 2 )
+				{
+					@Override
+					public boolean compareAndSetValue( final int index, final long expected, final long value )
+					{
+						final boolean success = super.compareAndSetValue( index, expected, value );
+						if ( index == 0 )
+							pauseOnce.run();
+						return success;
+					}
+				}
+				: new LongArray( 2 )
+				{
+					@Override
+					public void setValue( final int index, final long value )
+					{
+						super.setValue( index, value );
+						if ( index == 0 )
+							pauseOnce.run();
+					}
+				};
+		final ArrayImg< T, ? > img = createImg.apply( access );
+		final long ones = ( 1L << nBits ) - 1;
+
+		final Thread first = new Thread( () -> write( img, pixel, ones ) );
+		first.start();
+		assertTrue( firstWordWritten.await( 10, TimeUnit.SECONDS ) );
+		final Thread second = new Thread( () -> {
+			write( img, pixel, 0 );
+			secondWriterDone.countDown();
+		} );
+		second.start();
+		first.join();
+		second.join();
+
+		final long v = read( img, pixel );
+		assertTrue( "torn value " + Long.toHexString( v ), v == 0 || v == ones );
+	}
+
+	private static < T extends IntegerType< T > > void write( final RandomAccessibleInterval< T > img, final int pixel, final long value )
+	{
+		final RandomAccess< T > a = img.randomAccess();
+		a.setPosition( pixel, 0 );
+		a.get().setInteger( value );
+	}
+
+	private static < T extends IntegerType< T > > long read( final RandomAccessibleInterval< T > img, final int pixel )
+	{
+		final RandomAccess< T > a = img.randomAccess();
+		a.setPosition( pixel, 0 );
+		return a.get().getIntegerLong();
+	}
+
+	@Test
+	public void testFactories()
+	{
+		final Set< AccessFlags > atomic = AccessFlags.setOf( AccessFlags.ATOMIC );
+		final ArrayImg< BitType, ? > arrayImg = new ArrayImgFactory<>( new BitType(), atomic ).create( 100, 100 );
+		assertTrue( arrayImg.update( null ) instanceof AtomicLongArray );
+		assertConcurrentBits( arrayImg );
+
+		final PlanarImg< BitType, ? > planarImg = new PlanarImgFactory<>( new BitType(), atomic ).create( 100, 100 );
+		assertTrue( planarImg.getPlane( 0 ) instanceof AtomicLongArray );
+		assertConcurrentBits( planarImg );
+
+		final CellImg< BitType, ? > cellImg = new CellImgFactory<>( new BitType(), atomic, 32 ).create( 100, 100 );
+		assertEquals( atomic, AccessFlags.ofAccess( cellImg.getCells().firstElement().getData() ) );
+		assertConcurrentBits( cellImg );
+
+		final Img< BitType > copy = new CellImgFactory<>( new BitType(), atomic, 32 ).imgFactory( new BitType() ).create( 10, 10 );
+		assertTrue( ( ( CellImg< ?, ? > ) copy ).getCells().firstElement().getData() instanceof AtomicLongArray );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testAtomicFlagRequiresLong()
+	{
+		new ArrayImgFactory<>( new FloatType(), AccessFlags.setOf( AccessFlags.ATOMIC ) ).create( 10 );
+	}
+
+	private static void assertConcurrentBits( final Img< BitType > img )
+	{
+		interleaved( i -> {
+			final RandomAccess< BitType > a = img.randomAccess();
+			a.setPosition( new int[] { i % 100, i / 100 } );
+			a.get().set( i % 3 != 0 );
+		} );
+		final RandomAccess< BitType > a = img.randomAccess();
+		for ( int i = 0; i < size; ++i )
+		{
+			a.setPosition( new int[] { i % 100, i / 100 } );
+			assertEquals( i % 3 != 0, a.get().get() );
+		}
+	}
+
+	/**
+	 * Run {@code action} for all indices, with neighboring indices handled by
+	 * different threads to provoke contention on shared longs.
+	 */
+	private static void interleaved( final IntConsumer action )
+	{
+		final List< Runnable > tasks = new ArrayList<>();
+		for ( int t = 0; t < numThreads; ++t )
+		{
+			final int offset = t;
+			tasks.add( () -> {
+				for ( int i = offset; i < size; i += numThreads )
+					action.accept( i );
+			} );
+		}
+		ParallelTasks.run( ParallelTasks.defaultExecutorService(), tasks );
+	}
+}
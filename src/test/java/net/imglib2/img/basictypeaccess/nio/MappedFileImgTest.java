@@ -0,0 +1,207 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.basictypeaccess.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class MappedFileImgTest
+{
+	private static final long[] dimensions = { 7, 5, 4 };
+
+	private static final long offset = 16;
+
+	private Path file;
+
+	@Before
+	public void writeFile() throws IOException
+	{
+		file = Files.createTempFile( "imglib2-mapped", ".raw" );
+		final int numPixels = 7 * 5 * 4;
+		final ByteBuffer buffer = ByteBuffer.allocate( ( int ) offset + 4 * numPixels ).order( ByteOrder.BIG_ENDIAN );
+		buffer.position( ( int ) offset );
+		for ( int i = 0; i < numPixels; ++i )
+			buffer.putFloat( i * 0.5f );
+		buffer.flip();
+		try (final FileChannel channel = FileChannel.open( file, StandardOpenOption.WRITE ))
+		{
+			channel.write( buffer );
+		}
+	}
+
+	@After
+	public void deleteFile() throws IOException
+	{
+		Files.deleteIfExists( file );
+	}
+
+	@Test
+	public void testBufferAccess()
+	{
+		final FloatBufferAccess access = new FloatBufferAccess( 10 );
+		assertEquals( 10, access.getArrayLength() );
+		access.setValue( 9, 3.5f );
+		assertEquals( 3.5f, access.getValue( 9 ), 0 );
+		final FloatBufferAccess copy = access.createArray( 3 );
+		assertEquals( 3, copy.getArrayLength() );
+	}
+
+	@Test
+	public void testArrayImg() throws IOException
+	{
+		assertContent( ArrayImgs.mapFile( new FloatType(), file, offset, ByteOrder.BIG_ENDIAN, false, dimensions ) );
+	}
+
+	@Test
+	public void testPlanarImg() throws IOException
+	{
+		assertContent( PlanarImgs.mapFile( new FloatType(), file, offset, ByteOrder.BIG_ENDIAN, false, dimensions ) );
+	}
+
+	@Test
+	public void testCellImg() throws IOException
+	{
+		final CellImg< FloatType, ? > img = new CellImgFactory<>( new FloatType(), 3 ).mapFile( file, offset, ByteOrder.BIG_ENDIAN, false, dimensions );
+		assertEquals( 2, img.getCellGrid().gridDimension( 2 ) );
+		assertEquals( 1, img.getCellGrid().gridDimension( 1 ) );
+		assertContent( img );
+	}
+
+	@Test
+	public void testWritable() throws IOException
+	{
+		final Img< UnsignedShortType > img = ArrayImgs.mapFile( new UnsignedShortType(), file, 0, ByteOrder.LITTLE_ENDIAN, true, 10 );
+		final RandomAccess< UnsignedShortType > ra = img.randomAccess();
+		ra.setPosition( 3, 0 );
+		ra.get().set( 0xabcd );
+		ra.setPosition( 4, 0 );
+		ra.get().set( 0x1234 );
+
+		final Img< UnsignedShortType > other = ArrayImgs.mapFile( new UnsignedShortType(), file, 6, ByteOrder.BIG_ENDIAN, false, 2 );
+		final Cursor< UnsignedShortType > cursor = other.cursor();
+		assertEquals( 0xcdab, cursor.next().get() );
+		assertEquals( 0x3412, cursor.next().get() );
+	}
+
+	@Test( expected = IOException.class )
+	public void testFileTooShort() throws IOException
+	{
+		ArrayImgs.mapFile( new FloatType(), file, offset, ByteOrder.BIG_ENDIAN, false, 7, 5, 5 );
+	}
+
+	@Test
+	public void testArrayImgTooManyBytes() throws IOException
+	{
+		// fewer than Integer.MAX_VALUE pixels, but more than Integer.MAX_VALUE bytes
+		try
+		{
+			ArrayImgs.mapFile( new FloatType(), file, offset, ByteOrder.BIG_ENDIAN, false, 1 << 29 );
+			fail();
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			assertTrue( e.getMessage().contains( "bytes" ) );
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testPlanarImgMisalignedBits() throws IOException
+	{
+		PlanarImgs.mapFile( new BitType(), file, offset, ByteOrder.BIG_ENDIAN, false, dimensions );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testCellImgMisalignedBits() throws IOException
+	{
+		new CellImgFactory<>( new BitType(), 3 ).mapFile( file, offset, ByteOrder.BIG_ENDIAN, false, dimensions );
+	}
+
+	@Test
+	public void testAlignedBits() throws IOException
+	{
+		final long[] bitDimensions = { 32, 2, 4 };
+		final Img< BitType > reference = ArrayImgs.mapFile( new BitType(), file, offset, ByteOrder.BIG_ENDIAN, false, bitDimensions );
+		assertBits( reference, PlanarImgs.mapFile( new BitType(), file, offset, ByteOrder.BIG_ENDIAN, false, bitDimensions ) );
+		final CellImg< BitType, ? > img = new CellImgFactory<>( new BitType(), 3 ).mapFile( file, offset, ByteOrder.BIG_ENDIAN, false, bitDimensions );
+		assertEquals( 2, img.getCellGrid().gridDimension( 2 ) );
+		assertBits( reference, img );
+	}
+
+	private static void assertBits( final Img< BitType > expected, final Img< BitType > actual )
+	{
+		final Cursor< BitType > cursor = expected.localizingCursor();
+		final RandomAccess< BitType > ra = actual.randomAccess();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			ra.setPosition( cursor );
+			assertEquals( cursor.get().get(), ra.get().get() );
+		}
+	}
+
+	private static void assertContent( final Img< FloatType > img )
+	{
+		final Cursor< FloatType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			final long index = cursor.getLongPosition( 0 ) + 7 * ( cursor.getLongPosition( 1 ) + 5 * cursor.getLongPosition( 2 ) );
+			assertEquals( index * 0.5f, cursor.get().get(), 0 );
+		}
+	}
+}
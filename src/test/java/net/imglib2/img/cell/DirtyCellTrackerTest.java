@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.DirtyByteArray;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.img.list.ListLocalizingCursor;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+import org.junit.Test;
+
+public class DirtyCellTrackerTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 100, 50 }, new int[] { 32, 16 } );
+
+	@Test
+	public void testMarkDirty()
+	{
+		final DirtyCellTracker tracker = new DirtyCellTracker( grid );
+		assertFalse( tracker.isDirty() );
+
+		tracker.markDirty( new Point( 40, 20 ) );
+		tracker.markDirty( new Point( 1000, 20 ) ); // outside
+		assertTrue( tracker.isDirty() );
+		assertCells( tracker.pollDirtyCells(), new FinalInterval( new long[] { 32, 16 }, new long[] { 63, 31 } ) );
+		assertFalse( tracker.isDirty() );
+
+		// touches 2 x 2 cells, clipped to the image
+		tracker.markDirty( Intervals.createMinMax( 90, 40, 120, 60 ) );
+		tracker.markDirty( Intervals.createMinMax( 70, 47, 80, 48 ) );
+		assertCells( tracker.pollDirtyCells(),
+				new FinalInterval( new long[] { 64, 32 }, new long[] { 95, 47 } ),
+				new FinalInterval( new long[] { 96, 32 }, new long[] { 99, 47 } ),
+				new FinalInterval( new long[] { 64, 48 }, new long[] { 95, 49 } ),
+				new FinalInterval( new long[] { 96, 48 }, new long[] { 99, 49 } ) );
+
+		tracker.markDirty( Intervals.createMinMax( 200, 0, 300, 10 ) );
+		assertFalse( tracker.isDirty() );
+	}
+
+	@Test
+	public void testMarkDirtyAccesses()
+	{
+		final ListImg< Cell< DirtyByteArray > > cells = new ListImg<>( grid.getGridDimensions(), new Cell<>( new int[] { 1 }, new long[] { 1 }, null ) );
+		final ListLocalizingCursor< Cell< DirtyByteArray > > cellCursor = cells.localizingCursor();
+		final long[] cellMin = new long[ 2 ];
+		final int[] cellDims = new int[ 2 ];
+		while ( cellCursor.hasNext() )
+		{
+			cellCursor.fwd();
+			grid.getCellDimensions( new long[] { cellCursor.getLongPosition( 0 ), cellCursor.getLongPosition( 1 ) }, cellMin, cellDims );
+			cellCursor.set( new Cell<>( cellDims, cellMin, new DirtyByteArray( cellDims[ 0 ] * cellDims[ 1 ] ) ) );
+		}
+		final CellImg< UnsignedByteType, DirtyByteArray > img = new CellImg<>( new CellImgFactory<>( new UnsignedByteType() ), grid, cells, new Fraction() );
+		img.setLinkedType( new UnsignedByteType( img ) );
+		final DirtyCellTracker tracker = new DirtyCellTracker( img.getCellGrid() );
+		tracker.markDirtyAccesses( img );
+		assertFalse( tracker.isDirty() );
+
+		final RandomAccess< UnsignedByteType > access = img.randomAccess();
+		access.setPosition( new long[] { 5, 40 } );
+		access.get().set( 3 );
+		tracker.markDirtyAccesses( img );
+		assertCells( tracker.pollDirtyCells(), new FinalInterval( new long[] { 0, 32 }, new long[] { 31, 47 } ) );
+
+		// already reported
+		tracker.markDirtyAccesses( img );
+		assertFalse( tracker.isDirty() );
+	}
+
+	private static void assertCells( final List< Interval > actual, final Interval... expected )
+	{
+		final Set< String > expectedCells = new HashSet<>();
+		for ( final Interval interval : expected )
+			expectedCells.add( Arrays.toString( Intervals.minAsLongArray( interval ) ) + Arrays.toString( Intervals.maxAsLongArray( interval ) ) );
+		final Set< String > actualCells = new HashSet<>();
+		for ( final Interval interval : actual )
+			actualCells.add( Arrays.toString( Intervals.minAsLongArray( interval ) ) + Arrays.toString( Intervals.maxAsLongArray( interval ) ) );
+		assertEquals( expected.length, actual.size() );
+		assertEquals( expectedCells, actualCells );
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Fraction;
+
+public class LruCellCacheTest
+{
+	@Test
+	public void testLoadsOnlyOnce()
+	{
+		final AtomicInteger loads = new AtomicInteger();
+		final LruCellCache< Long > cache = new LruCellCache<>( index -> {
+			loads.incrementAndGet();
+			return index;
+		}, 10 );
+		for ( int i = 0; i < 5; ++i )
+		{
+			assertEquals( Long.valueOf( 1 ), cache.get( 1 ) );
+			assertEquals( Long.valueOf( 2 ), cache.get( 2 ) );
+		}
+		assertEquals( 2, loads.get() );
+		assertEquals( 2, cache.getMissCount() );
+		assertEquals( 8, cache.getHitCount() );
+		assertEquals( 0, cache.getEvictionCount() );
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted()
+	{
+		final LruCellCache< Long > cache = new LruCellCache<>( index -> index, 2 );
+		cache.get( 1 );
+		cache.get( 2 );
+		cache.get( 1 );
+		cache.get( 3 );
+		assertEquals( 2, cache.size() );
+		assertEquals( 1, cache.getEvictionCount() );
+		assertEquals( Long.valueOf( 1 ), cache.getIfPresent( 1 ) );
+		assertNull( cache.getIfPresent( 2 ) );
+		assertEquals( Long.valueOf( 3 ), cache.getIfPresent( 3 ) );
+	}
+
+	@Test
+	public void testWeightBudget()
+	{
+		final LruCellCache< Cell< IntArray > > cache = new LruCellCache<>(
+				index -> new Cell<>( new int[] { 10, 10 }, new long[] { index * 10, 0 }, new IntArray( 100 ) ),
+				1000, LruCellCache.cellBytes( new Fraction(), 4 ), false );
+		for ( int i = 0; i < 5; ++i )
+			cache.get( i );
+		assertEquals( 2, cache.size() );
+		assertEquals( 800, cache.getWeight() );
+		assertEquals( 3, cache.getEvictionCount() );
+	}
+
+	@Test
+	public void testSoftReferencesKeepEvictedValues()
+	{
+		final LruCellCache< Object > cache = new LruCellCache<>( index -> new Object(), 1, value -> 1, true );
+		final Object first = cache.get( 0 );
+		cache.get( 1 );
+		assertEquals( 1, cache.getEvictionCount() );
+		// first is still strongly reachable, so it can't have been cleared
+		assertSame( first, cache.get( 0 ) );
+		assertEquals( 2, cache.getMissCount() );
+	}
+
+	@Test
+	public void testConcurrentLoadingLoadsOnce() throws InterruptedException
+	{
+		final AtomicInteger loads = new AtomicInteger();
+		final LruCellCache< Long > cache = new LruCellCache<>( index -> {
+			loads.incrementAndGet();
+			try
+			{
+				Thread.sleep( 50 );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			return index;
+		}, 10 );
+		final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+		for ( int i = 0; i < 8; ++i )
+			executor.submit( () -> cache.get( 42 ) );
+		executor.shutdown();
+		executor.awaitTermination( 10, TimeUnit.SECONDS );
+		assertEquals( 1, loads.get() );
+		assertEquals( 1, cache.getMissCount() );
+		assertEquals( 7, cache.getHitCount() );
+	}
+
+	@Test
+	public void testLazyCellImg()
+	{
+		final CellGrid grid = new CellGrid( new long[] { 10, 10 }, new int[] { 5, 5 } );
+		final AtomicInteger loads = new AtomicInteger();
+		final LruCellCache< Cell< IntArray > > cache = new LruCellCache<>( index -> {
+			loads.incrementAndGet();
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final int[] data = new int[ cellDims[ 0 ] * cellDims[ 1 ] ];
+			Arrays.fill( data, ( int ) index );
+			return new Cell<>( cellDims, cellMin, new IntArray( data ) );
+		}, 4 );
+		final LazyCellImg< IntType, IntArray > img = new LazyCellImg<>( grid, new IntType(), cache );
+
+		final RandomAccess< IntType > ra = img.randomAccess();
+		for ( int i = 0; i < 10; ++i )
+		{
+			ra.setPosition( new long[] { 4, 0 } );
+			assertEquals( 0, ra.get().get() );
+			ra.setPosition( new long[] { 5, 0 } );
+			assertEquals( 1, ra.get().get() );
+		}
+		final Cursor< IntType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			assertEquals( cursor.getIntPosition( 0 ) / 5 + 2 * ( cursor.getIntPosition( 1 ) / 5 ), cursor.get().get() );
+		}
+		assertEquals( 4, loads.get() );
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.nio.DirtyVolatileShortBufferAccess;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class OffHeapCellImgFactoryTest
+{
+	@Test
+	public void testCreate()
+	{
+		try (final OffHeapCellImgFactory< FloatType > factory = new OffHeapCellImgFactory<>( new FloatType(), 4, 3 ))
+		{
+			final CellImg< FloatType, ? > img = factory.create( 10, 7 );
+			assertEquals( 10 * 7 * 4, factory.getAllocatedBytes() );
+			int i = 0;
+			for ( final FloatType t : img )
+				t.set( i++ );
+			final CellImg< FloatType, ? > copy = img.copy();
+			assertEquals( 2 * 10 * 7 * 4, factory.getAllocatedBytes() );
+			final Cursor< FloatType > c1 = img.cursor();
+			final Cursor< FloatType > c2 = copy.cursor();
+			while ( c1.hasNext() )
+				assertEquals( c1.next().get(), c2.next().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testAccessFlags()
+	{
+		try (final OffHeapCellImgFactory< UnsignedShortType > factory = new OffHeapCellImgFactory<>( new UnsignedShortType(), AccessFlags.setOf( AccessFlags.DIRTY, AccessFlags.VOLATILE ), 5 ))
+		{
+			final CellImg< UnsignedShortType, ? > img = factory.create( 10, 10 );
+			final Object data = img.getCells().firstElement().getData();
+			assertTrue( data instanceof DirtyVolatileShortBufferAccess );
+			assertEquals( AccessFlags.setOf( AccessFlags.DIRTY, AccessFlags.VOLATILE ), AccessFlags.ofAccess( data ) );
+			final RandomAccess< UnsignedShortType > ra = img.randomAccess();
+			ra.setPosition( new long[] { 1, 2 } );
+			ra.get().set( 65535 );
+			assertEquals( 65535, ra.get().get() );
+			assertTrue( ( ( DirtyVolatileShortBufferAccess ) data ).isDirty() );
+			assertTrue( ( ( DirtyVolatileShortBufferAccess ) data ).isValid() );
+		}
+	}
+
+	@Test( expected = IndexOutOfBoundsException.class )
+	public void testClose()
+	{
+		final OffHeapCellImgFactory< FloatType > factory = new OffHeapCellImgFactory<>( new FloatType(), 4 );
+		final CellImg< FloatType, ? > img = factory.create( 10, 10 );
+		factory.close();
+		assertEquals( 0, factory.getAllocatedBytes() );
+		img.firstElement().get();
+	}
+
+	@Test( expected = IndexOutOfBoundsException.class )
+	@SuppressWarnings( "deprecation" )
+	public void testDeprecatedCreate()
+	{
+		final OffHeapCellImgFactory< FloatType > factory = new OffHeapCellImgFactory<>( new FloatType(), 4 );
+		final CellImg< FloatType, ? > img = factory.create( new long[] { 10, 7 }, new FloatType() );
+		assertEquals( 10 * 7 * 4, factory.getAllocatedBytes() );
+		factory.close();
+		assertEquals( 0, factory.getAllocatedBytes() );
+		img.firstElement().get();
+	}
+}
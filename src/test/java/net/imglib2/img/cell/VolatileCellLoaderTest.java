@@ -0,0 +1,226 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Fraction;
+
+public class VolatileCellLoaderTest
+{
+	private final CellGrid grid = new CellGrid( new long[] { 10, 10 }, new int[] { 4, 4 } );
+
+	private Cell< VolatileIntArray > loadCell( final long index )
+	{
+		final long[] cellMin = new long[ 2 ];
+		final int[] cellDims = new int[ 2 ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final int[] data = new int[ cellDims[ 0 ] * cellDims[ 1 ] ];
+		Arrays.fill( data, ( int ) index + 1 );
+		return new Cell<>( cellDims, cellMin, new VolatileIntArray( data, true ) );
+	}
+
+	@Test
+	public void testInvalidCells()
+	{
+		final Get< Cell< VolatileIntArray > > placeholders = VolatileCellLoader.invalidCells( grid, new Fraction(), new VolatileIntArray( 0, true ) );
+		final Cell< VolatileIntArray > cell = placeholders.get( 0 );
+		assertFalse( cell.getData().isValid() );
+		assertEquals( 16, cell.getData().getArrayLength() );
+		assertSame( cell.getData(), placeholders.get( 1 ).getData() );
+		assertEquals( 8, placeholders.get( 2 ).getData().getArrayLength() );
+	}
+
+	@Test
+	public void testPlaceholderIsReplacedWhenLoaded() throws InterruptedException
+	{
+		// cell 1 is not loaded before the placeholder has been checked
+		final CountDownLatch blocked = new CountDownLatch( 1 );
+		final LruCellCache< Cell< VolatileIntArray > > cache = new LruCellCache<>( index -> {
+			if ( index == 1 )
+			{
+				try
+				{
+					blocked.await();
+				}
+				catch ( final InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			return loadCell( index );
+		}, 100 );
+		final Get< Cell< VolatileIntArray > > placeholders = VolatileCellLoader.invalidCells( grid, new Fraction(), new VolatileIntArray( 0, true ) );
+		final VolatileCellLoader< VolatileIntArray > loader = new VolatileCellLoader<>( cache, placeholders, 2, 100 );
+		final CountDownLatch loaded = new CountDownLatch( 1 );
+		loader.setLoadListener( index -> {
+			if ( index == 1 )
+				loaded.countDown();
+		} );
+		final LazyCellImg< IntType, VolatileIntArray > img = new LazyCellImg<>( grid, new IntType(), loader );
+
+		final RandomAccess< IntType > ra = img.randomAccess();
+		ra.setPosition( new long[] { 5, 1 } );
+		assertEquals( 0, ra.get().get() );
+		blocked.countDown();
+		assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+
+		final RandomAccess< IntType > ra2 = img.randomAccess();
+		ra2.setPosition( new long[] { 5, 1 } );
+		assertEquals( 2, ra2.get().get() );
+		assertTrue( loader.get( 1 ).getData().isValid() );
+		loader.shutdown();
+	}
+
+	@Test
+	public void testPriorityOrder() throws InterruptedException
+	{
+		final CountDownLatch blocked = new CountDownLatch( 1 );
+		final CountDownLatch done = new CountDownLatch( 4 );
+		final List< Long > order = Collections.synchronizedList( new ArrayList<>() );
+		final LruCellCache< Cell< VolatileIntArray > > cache = new LruCellCache<>( index -> {
+			if ( index == 0 )
+			{
+				try
+				{
+					blocked.await();
+				}
+				catch ( final InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			return loadCell( index );
+		}, 100 );
+		final Get< Cell< VolatileIntArray > > placeholders = VolatileCellLoader.invalidCells( grid, new Fraction(), new VolatileIntArray( 0, true ) );
+		final VolatileCellLoader< VolatileIntArray > loader = new VolatileCellLoader<>( cache, placeholders, 1, 100 );
+		loader.setLoadListener( index -> {
+			order.add( index );
+			done.countDown();
+		} );
+
+		// the single loader thread blocks on cell 0, while the others are enqueued
+		loader.get( 0 );
+		while ( loader.getQueueSize() > 0 )
+			Thread.sleep( 1 );
+		loader.setPriority( 1 );
+		loader.get( 1 );
+		loader.get( 2 );
+		loader.setPriority( 0 );
+		loader.get( 3 );
+		assertEquals( 3, loader.getQueueSize() );
+		blocked.countDown();
+
+		assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+		assertEquals( Arrays.asList( 0L, 3L, 2L, 1L ), order );
+		loader.shutdown();
+	}
+
+	@Test
+	public void testBoundedQueue()
+	{
+		final CountDownLatch blocked = new CountDownLatch( 1 );
+		final LruCellCache< Cell< VolatileIntArray > > cache = new LruCellCache<>( index -> {
+			try
+			{
+				blocked.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			return loadCell( index );
+		}, 100 );
+		final Get< Cell< VolatileIntArray > > placeholders = VolatileCellLoader.invalidCells( grid, new Fraction(), new VolatileIntArray( 0, true ) );
+		final VolatileCellLoader< VolatileIntArray > loader = new VolatileCellLoader<>( cache, placeholders, 1, 2 );
+		for ( int i = 0; i < 9; ++i )
+			loader.get( i );
+		assertTrue( loader.getQueueSize() <= 2 );
+		blocked.countDown();
+		loader.shutdown();
+	}
+
+	@Test
+	public void testFailuresAreReported() throws InterruptedException
+	{
+		final LruCellCache< Cell< VolatileIntArray > > cache = new LruCellCache<>( index -> {
+			if ( index == 0 )
+				throw new IllegalStateException( "load failed" );
+			return loadCell( index );
+		}, 100 );
+		final Get< Cell< VolatileIntArray > > placeholders = VolatileCellLoader.invalidCells( grid, new Fraction(), new VolatileIntArray( 0, true ) );
+		final VolatileCellLoader< VolatileIntArray > loader = new VolatileCellLoader<>( cache, placeholders, 1, 100 );
+		final List< String > errors = Collections.synchronizedList( new ArrayList<>() );
+		final CountDownLatch failed = new CountDownLatch( 2 );
+		final CountDownLatch loaded = new CountDownLatch( 1 );
+		loader.setErrorListener( ( e, index ) -> {
+			errors.add( index + ": " + e.getMessage() );
+			failed.countDown();
+		} );
+		loader.setLoadListener( index -> {
+			if ( index == 1 )
+				throw new IllegalStateException( "listener failed" );
+			loaded.countDown();
+		} );
+
+		loader.get( 0 );
+		loader.get( 1 );
+		assertTrue( failed.await( 10, TimeUnit.SECONDS ) );
+		assertTrue( errors.contains( "0: load failed" ) );
+		assertTrue( errors.contains( "1: listener failed" ) );
+
+		// the loader thread is still alive
+		loader.get( 2 );
+		assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+		assertTrue( loader.get( 2 ).getData().isValid() );
+		assertFalse( loader.get( 0 ).getData().isValid() );
+		loader.shutdown();
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.segmented;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+public class SegmentedArrayImgTest
+{
+	@Test
+	public void testSegmentedArrayImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "ArrayImg vs SegmentedArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory<>( new FloatType() ), new SegmentedArrayImgFactory<>( new FloatType(), 7 ) ) );
+			assertTrue( "SegmentedArrayImg vs ArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new SegmentedArrayImgFactory<>( new FloatType(), 5 ), new ArrayImgFactory<>( new FloatType() ) ) );
+			assertTrue( "SegmentedArrayImg vs SegmentedArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new SegmentedArrayImgFactory<>( new FloatType() ), new SegmentedArrayImgFactory<>( new FloatType(), 3 ) ) );
+		}
+	}
+
+	@Test
+	public void testSegments()
+	{
+		final SegmentedArrayImg< FloatType, ? > img = new SegmentedArrayImgFactory<>( new FloatType(), 4 ).create( 10, 7 );
+		assertEquals( 5, img.numSegments() );
+		assertEquals( 16, img.segmentSize( 0 ) );
+		assertEquals( 6, img.segmentSize( 4 ) );
+		assertEquals( 30, SegmentedArrayImg.maxSegmentBits( new FloatType().getEntitiesPerPixel() ) );
+	}
+
+	@Test
+	public void testEmptyImg()
+	{
+		final SegmentedArrayImg< FloatType, ? > img = new SegmentedArrayImgFactory<>( new FloatType(), 4 ).create( 10, 0 );
+		assertEquals( 0, img.size() );
+		assertEquals( 1, img.numSegments() );
+		assertEquals( 0, img.segmentSize( 0 ) );
+		assertFalse( img.cursor().hasNext() );
+		assertFalse( img.localizingCursor().hasNext() );
+		assertEquals( 0, img.copy().size() );
+	}
+
+	@Test
+	public void testCursorsAndRandomAccess()
+	{
+		final long[] dims = { 13, 7, 5 };
+		final ArrayImg< FloatType, ? > reference = ArrayImgs.floats( dims );
+		final Random random = new Random( 42 );
+		for ( final FloatType t : reference )
+			t.set( random.nextFloat() );
+
+		final SegmentedArrayImg< FloatType, ? > img = new SegmentedArrayImgFactory<>( new FloatType(), 4 ).create( dims );
+		final Cursor< FloatType > c = img.cursor();
+		for ( final FloatType t : reference )
+			c.next().set( t );
+		assertFalse( c.hasNext() );
+
+		final Cursor< FloatType > rc = reference.localizingCursor();
+		final Cursor< FloatType > lc = img.localizingCursor();
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		final long[] expected = new long[ 3 ];
+		final long[] actual = new long[ 3 ];
+		while ( rc.hasNext() )
+		{
+			rc.fwd();
+			lc.fwd();
+			rc.localize( expected );
+			lc.localize( actual );
+			assertArrayEquals( expected, actual );
+			assertEquals( rc.get().get(), lc.get().get(), 0 );
+			ra.setPosition( expected );
+			assertEquals( rc.get().get(), ra.get().get(), 0 );
+		}
+		assertFalse( lc.hasNext() );
+
+		// move across segment boundaries in both directions
+		final RandomAccess< FloatType > rra = reference.randomAccess();
+		ra.setPosition( new long[] { 12, 6, 4 } );
+		rra.setPosition( new long[] { 12, 6, 4 } );
+		for ( int i = 0; i < 4; ++i )
+		{
+			ra.bck( 1 );
+			rra.bck( 1 );
+			ra.move( -3, 0 );
+			rra.move( -3, 0 );
+			assertEquals( rra.get().get(), ra.get().get(), 0 );
+		}
+		ra.setPosition( 0, 2 );
+		rra.setPosition( 0, 2 );
+		assertEquals( rra.get().get(), ra.get().get(), 0 );
+
+		// jumpFwd
+		final Cursor< FloatType > jc = img.cursor();
+		final Cursor< FloatType > jlc = img.localizingCursor();
+		final Cursor< FloatType > jrc = reference.cursor();
+		for ( final long steps : new long[] { 1, 15, 16, 17, 100, 300 } )
+		{
+			jc.jumpFwd( steps );
+			jlc.jumpFwd( steps );
+			jrc.jumpFwd( steps );
+			jrc.localize( expected );
+			jc.localize( actual );
+			assertArrayEquals( expected, actual );
+			jlc.localize( actual );
+			assertArrayEquals( expected, actual );
+			assertEquals( jrc.get().get(), jc.get().get(), 0 );
+			assertEquals( jrc.get().get(), jlc.get().get(), 0 );
+		}
+	}
+
+	@Test
+	public void testSubByteTypes()
+	{
+		final long[] dims = { 33, 17 };
+		final SegmentedArrayImg< BitType, ? > bits = new SegmentedArrayImgFactory<>( new BitType(), 6 ).create( dims );
+		final SegmentedArrayImg< Unsigned12BitType, ? > twelve = new SegmentedArrayImgFactory<>( new Unsigned12BitType(), 4 ).create( dims );
+		final Cursor< BitType > bc = bits.cursor();
+		final Cursor< Unsigned12BitType > tc = twelve.cursor();
+		for ( int i = 0; bc.hasNext(); ++i )
+		{
+			bc.next().set( i % 3 == 0 );
+			tc.next().set( i % 4096 );
+		}
+
+		final RandomAccess< BitType > bra = bits.randomAccess();
+		final RandomAccess< Unsigned12BitType > tra = twelve.randomAccess();
+		for ( int y = 0; y < dims[ 1 ]; ++y )
+			for ( int x = 0; x < dims[ 0 ]; ++x )
+			{
+				final int i = x + y * ( int ) dims[ 0 ];
+				bra.setPosition( new int[] { x, y } );
+				tra.setPosition( new int[] { x, y } );
+				assertEquals( i % 3 == 0, bra.get().get() );
+				assertEquals( i % 4096, tra.get().get() );
+			}
+	}
+
+	@Test
+	public void testCopy()
+	{
+		final SegmentedArrayImg< FloatType, ? > img = new SegmentedArrayImgFactory<>( new FloatType(), 3 ).create( 9, 4 );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		final SegmentedArrayImg< FloatType, ? > copy = img.copy();
+		assertEquals( img.getSegmentBits(), copy.getSegmentBits() );
+		final Cursor< FloatType > c = copy.cursor();
+		for ( final FloatType t : img )
+			assertEquals( t.get(), c.next().get(), 0 );
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.loops;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
+
+public class IntervalChunksTest
+{
+
+	@Test
+	public void testChunksCoverInterval()
+	{
+		final Interval interval = Intervals.createMinSize( -3, 4, 10, 7, 20, 9 );
+		final List< Interval > chunks = IntervalChunks.chunkInterval( interval, 4 );
+		assertEquals( 4, chunks.size() );
+		long numElements = 0;
+		for ( final Interval chunk : chunks )
+		{
+			assertTrue( Intervals.contains( interval, chunk ) );
+			numElements += Intervals.numElements( chunk );
+		}
+		assertEquals( Intervals.numElements( interval ), numElements );
+	}
+
+	@Test
+	public void testSplitsOutermostDimension()
+	{
+		final Interval interval = new FinalInterval( 100, 50, 8 );
+		final List< Interval > chunks = IntervalChunks.chunkInterval( interval, 4 );
+		assertEquals( 4, chunks.size() );
+		assertTrue( Intervals.equals( FinalInterval.createMinMax( 0, 0, 0, 99, 49, 1 ), chunks.get( 0 ) ) );
+		assertTrue( Intervals.equals( FinalInterval.createMinMax( 0, 0, 6, 99, 49, 7 ), chunks.get( 3 ) ) );
+	}
+
+	@Test
+	public void testSplitsLargestDimensionIfNecessary()
+	{
+		final Interval interval = new FinalInterval( 100, 3 );
+		final List< Interval > chunks = IntervalChunks.chunkInterval( interval, 4 );
+		assertEquals( 4, chunks.size() );
+		assertTrue( Intervals.equals( FinalInterval.createMinMax( 0, 0, 24, 2 ), chunks.get( 0 ) ) );
+	}
+
+	@Test
+	public void testTooManyChunks()
+	{
+		final List< Interval > chunks = IntervalChunks.chunkInterval( new FinalInterval( 3, 2 ), 10 );
+		assertEquals( 3, chunks.size() );
+	}
+
+	@Test
+	public void testChunkCells()
+	{
+		final CellGrid grid = new CellGrid( new long[] { 10, 7 }, new int[] { 4, 3 } );
+		final List< Interval > chunks = IntervalChunks.chunkCells( grid, new FinalInterval( 10, 7 ) );
+		assertEquals( 9, chunks.size() );
+		assertTrue( Intervals.equals( FinalInterval.createMinMax( 0, 0, 3, 2 ), chunks.get( 0 ) ) );
+		assertTrue( Intervals.equals( FinalInterval.createMinMax( 8, 0, 9, 2 ), chunks.get( 2 ) ) );
+		assertTrue( Intervals.equals( FinalInterval.createMinMax( 8, 6, 9, 6 ), chunks.get( 8 ) ) );
+	}
+
+	@Test
+	public void testChunkCellsOfSubInterval()
+	{
+		final CellGrid grid = new CellGrid( new long[] { 10, 7 }, new int[] { 4, 3 } );
+		final List< Interval > chunks = IntervalChunks.chunkCells( grid, FinalInterval.createMinMax( 3, 1, 5, 2 ) );
+		assertEquals( 2, chunks.size() );
+		assertTrue( Intervals.equals( FinalInterval.createMinMax( 3, 1, 3, 2 ), chunks.get( 0 ) ) );
+		assertTrue( Intervals.equals( FinalInterval.createMinMax( 4, 1, 5, 2 ), chunks.get( 1 ) ) );
+	}
+
+	@Test
+	public void testChunkImageDoesNotCrossCellBorders()
+	{
+		final CellImg< IntType, ? > image = new CellImgFactory<>( new IntType(), 4, 3 ).create( 10, 7 );
+		final List< Interval > chunks = IntervalChunks.chunkImage( image, 20 );
+		assertTrue( chunks.size() >= 20 );
+		final List< Interval > cells = IntervalChunks.chunkCells( image.getCellGrid(), image );
+		long numElements = 0;
+		for ( final Interval chunk : chunks )
+		{
+			assertEquals( 1, cells.stream().filter( cell -> Intervals.contains( cell, chunk ) ).count() );
+			numElements += Intervals.numElements( chunk );
+		}
+		assertEquals( Intervals.numElements( image ), numElements );
+	}
+}
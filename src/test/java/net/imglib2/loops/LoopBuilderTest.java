@@ -38,6 +38,8 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -47,6 +49,7 @@ import net.imglib2.Cursor;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
 import net.imglib2.type.numeric.integer.IntType;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
@@ -70,6 +73,44 @@ public class LoopBuilderTest
 		assertSum( sum );
 	}
 
+	@Test
+	public void testLoopBuilderMultiThreaded()
+	{
+		final RandomAccessibleInterval< IntType > sum = ArrayImgs.ints(
+				Intervals.dimensionsAsLongArray( imageA ) );
+		LoopBuilder.setImages( imageA, imageB, sum ).multiThreaded().forEachPixel(
+				( a, b, s ) -> {
+					s.set( a.get() + b.get() );
+				} );
+		assertSum( sum );
+	}
+
+	@Test
+	public void testLoopBuilderMultiThreadedWithExecutorService()
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final Img< IntType > image = ArrayImgs.ints( 7, 11, 13 );
+			LoopBuilder.setImages( image ).multiThreaded( executor ).numberOfTasks( 5 ).forEachPixel( pixel -> pixel.inc() );
+			for ( final IntType pixel : image )
+				assertEquals( 1, pixel.get() );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testLoopBuilderMultiThreadedOnCellImg()
+	{
+		final Img< IntType > image = new CellImgFactory<>( new IntType(), 4, 3, 2 ).create( 7, 11, 13 );
+		LoopBuilder.setImages( image ).multiThreaded().forEachPixel( pixel -> pixel.inc() );
+		for ( final IntType pixel : image )
+			assertEquals( 1, pixel.get() );
+	}
+
 	private RandomAccessibleInterval< IntType > randomImage( final int randomSeed )
 	{
 		final Img< IntType > result = ArrayImgs.ints( 3, 2, 5 );
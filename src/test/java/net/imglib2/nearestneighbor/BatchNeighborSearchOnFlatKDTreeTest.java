@@ -0,0 +1,205 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.BatchNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.BatchNeighborSearchOnFlatKDTree.Neighbors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BatchNeighborSearchOnFlatKDTreeTest
+{
+	private static final int n = 3;
+
+	private static final int numPoints = 2000;
+
+	private static final int numQueries = 3000;
+
+	private static double[] points;
+
+	private static double[] queries;
+
+	private static FlatKDTree< Integer > tree;
+
+	private static ExecutorService executorService;
+
+	@BeforeClass
+	public static void setup()
+	{
+		final Random rnd = new Random( 435435435 );
+		points = new double[ n * numPoints ];
+		for ( int i = 0; i < points.length; ++i )
+			points[ i ] = rnd.nextDouble() * 10;
+		queries = new double[ n * numQueries ];
+		for ( int i = 0; i < queries.length; ++i )
+			queries[ i ] = rnd.nextDouble() * 12 - 1;
+		final List< Integer > values = new ArrayList<>();
+		for ( int i = 0; i < numPoints; ++i )
+			values.add( i );
+		tree = new FlatKDTree<>( n, points, values );
+		executorService = Executors.newFixedThreadPool( 4 );
+	}
+
+	@AfterClass
+	public static void shutdown()
+	{
+		executorService.shutdown();
+	}
+
+	private static double squDistance( final int point, final int query )
+	{
+		double sum = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double diff = points[ point * n + d ] - queries[ query * n + d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static double[] sortedSquDistances( final int query )
+	{
+		final double[] distances = new double[ numPoints ];
+		for ( int i = 0; i < numPoints; ++i )
+			distances[ i ] = squDistance( i, query );
+		Arrays.sort( distances );
+		return distances;
+	}
+
+	@Test
+	public void testNearestNeighbors()
+	{
+		final Neighbors neighbors = new BatchNeighborSearchOnFlatKDTree( tree, executorService ).nearestNeighbors( queries );
+		assertEquals( numQueries, neighbors.numQueries() );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			assertEquals( 1, neighbors.numNeighbors( q ) );
+			assertEquals( sortedSquDistances( q )[ 0 ], neighbors.squDistance( q, 0 ), 0 );
+			assertEquals( squDistance( neighbors.index( q, 0 ), q ), neighbors.squDistance( q, 0 ), 0 );
+		}
+	}
+
+	@Test
+	public void testKNearestNeighbors()
+	{
+		final int k = 7;
+		final Neighbors neighbors = new BatchNeighborSearchOnFlatKDTree( tree, executorService ).kNearestNeighbors( queries, k );
+		assertEquals( numQueries, neighbors.numQueries() );
+		assertEquals( numQueries * k, neighbors.indices.length );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			assertEquals( k, neighbors.numNeighbors( q ) );
+			final double[] expected = sortedSquDistances( q );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( expected[ i ], neighbors.squDistance( q, i ), 0 );
+				assertEquals( squDistance( neighbors.index( q, i ), q ), neighbors.squDistance( q, i ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testKLargerThanNumPoints()
+	{
+		final double[] fewPoints = { 0, 0, 1, 1, 2, 2 };
+		final FlatKDTree< String > small = new FlatKDTree<>( 2, fewPoints, Arrays.asList( "a", "b", "c" ) );
+		final Neighbors neighbors = new BatchNeighborSearchOnFlatKDTree( small ).kNearestNeighbors( new double[] { 1.9, 1.9 }, 5 );
+		assertEquals( 3, neighbors.numNeighbors( 0 ) );
+		assertArrayEquals( new int[] { 2, 1, 0 }, neighbors.indices );
+	}
+
+	@Test
+	public void testRadiusNeighbors()
+	{
+		final double radius = 1.5;
+		final Neighbors neighbors = new BatchNeighborSearchOnFlatKDTree( tree, executorService ).radiusNeighbors( queries, radius, true );
+		assertEquals( numQueries, neighbors.numQueries() );
+		assertEquals( 0, neighbors.offsets[ 0 ] );
+		assertEquals( neighbors.indices.length, neighbors.offsets[ numQueries ] );
+		for ( int q = 0; q < numQueries; ++q )
+		{
+			final double[] expected = sortedSquDistances( q );
+			int count = 0;
+			while ( count < numPoints && expected[ count ] <= radius * radius )
+				++count;
+			assertEquals( count, neighbors.numNeighbors( q ) );
+			for ( int i = 0; i < count; ++i )
+			{
+				assertEquals( expected[ i ], neighbors.squDistance( q, i ), 0 );
+				assertEquals( squDistance( neighbors.index( q, i ), q ), neighbors.squDistance( q, i ), 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testRealLocalizableQueries()
+	{
+		final List< RealPoint > queryPoints = new ArrayList<>();
+		for ( int q = 0; q < 10; ++q )
+			queryPoints.add( new RealPoint( Arrays.copyOfRange( queries, q * n, q * n + n ) ) );
+		final BatchNeighborSearchOnFlatKDTree search = new BatchNeighborSearchOnFlatKDTree( tree, executorService );
+		final Neighbors expected = search.kNearestNeighbors( Arrays.copyOf( queries, 10 * n ), 3 );
+		final Neighbors actual = search.kNearestNeighbors( queryPoints, 3 );
+		assertArrayEquals( expected.indices, actual.indices );
+		assertArrayEquals( expected.squDistances, actual.squDistances, 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testInvalidQueryLength()
+	{
+		new BatchNeighborSearchOnFlatKDTree( tree ).nearestNeighbors( new double[] { 1, 2 } );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTooManyNeighbors()
+	{
+		// 1.1M queries x 2000 neighbors overflow int
+		new BatchNeighborSearchOnFlatKDTree( tree ).kNearestNeighbors( new double[ 1100000 * n ], numPoints );
+	}
+}
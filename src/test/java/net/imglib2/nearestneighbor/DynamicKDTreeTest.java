@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree;
+
+import org.junit.Test;
+
+public class DynamicKDTreeTest
+{
+	private static double squDistance( final RealPoint a, final DynamicKDTree< ? >.Node b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the depth of the subtree
+	 */
+	private static int assertValidSubtree( final DynamicKDTree< Integer >.Node node, final double[] lower, final double[] upper, final HashSet< Integer > live )
+	{
+		if ( node == null )
+			return 0;
+		for ( int d = 0; d < lower.length; ++d )
+		{
+			assertTrue( node.getDoublePosition( d ) >= lower[ d ] );
+			assertTrue( node.getDoublePosition( d ) <= upper[ d ] );
+		}
+		if ( !node.isRemoved() )
+			assertTrue( live.remove( node.get() ) );
+		final int d = node.getSplitDimension();
+		final double[] leftUpper = upper.clone();
+		leftUpper[ d ] = node.getSplitCoordinate();
+		final double[] rightLower = lower.clone();
+		rightLower[ d ] = node.getSplitCoordinate();
+		final int left = assertValidSubtree( node.left(), lower, leftUpper, live );
+		final int right = assertValidSubtree( node.right(), rightLower, upper, live );
+		return 1 + Math.max( left, right );
+	}
+
+	private static int assertValidTree( final DynamicKDTree< Integer > tree, final List< DynamicKDTree< Integer >.Node > live )
+	{
+		final int n = tree.numDimensions();
+		final double[] lower = new double[ n ];
+		final double[] upper = new double[ n ];
+		Arrays.fill( lower, Double.NEGATIVE_INFINITY );
+		Arrays.fill( upper, Double.POSITIVE_INFINITY );
+		final HashSet< Integer > values = new HashSet<>();
+		for ( final DynamicKDTree< Integer >.Node node : live )
+			values.add( node.get() );
+		assertEquals( live.size(), tree.size() );
+		final int depth = assertValidSubtree( tree.getRoot(), lower, upper, values );
+		assertTrue( values.isEmpty() );
+		return depth;
+	}
+
+	private static void assertSearches( final DynamicKDTree< Integer > tree, final List< DynamicKDTree< Integer >.Node > live, final Random rnd )
+	{
+		final NearestNeighborSearchOnDynamicKDTree< Integer > nn = new NearestNeighborSearchOnDynamicKDTree<>( tree );
+		final KNearestNeighborSearchOnDynamicKDTree< Integer > knn = new KNearestNeighborSearchOnDynamicKDTree<>( tree, 4 );
+		final RadiusNeighborSearchOnDynamicKDTree< Integer > radius = new RadiusNeighborSearchOnDynamicKDTree<>( tree );
+		for ( int t = 0; t < 20; ++t )
+		{
+			final RealPoint query = new RealPoint( rnd.nextDouble(), rnd.nextDouble() );
+			final double[] expected = new double[ live.size() ];
+			for ( int i = 0; i < live.size(); ++i )
+				expected[ i ] = squDistance( query, live.get( i ) );
+			Arrays.sort( expected );
+
+			nn.search( query );
+			assertEquals( expected[ 0 ], nn.getSquareDistance(), 0 );
+			assertFalse( nn.getNode().isRemoved() );
+
+			knn.search( query );
+			for ( int i = 0; i < Math.min( 4, live.size() ); ++i )
+			{
+				assertEquals( expected[ i ], knn.getSquareDistance( i ), 0 );
+				assertFalse( knn.getNode( i ).isRemoved() );
+			}
+
+			radius.search( query, 0.1, true );
+			int count = 0;
+			while ( count < expected.length && expected[ count ] <= 0.01 )
+				++count;
+			assertEquals( count, radius.numNeighbors() );
+			for ( int i = 0; i < count; ++i )
+				assertEquals( expected[ i ], radius.getSquareDistance( i ), 0 );
+		}
+	}
+
+	@Test
+	public void testInsertRemove()
+	{
+		final Random rnd = new Random( 123 );
+		final DynamicKDTree< Integer > tree = new DynamicKDTree<>( 2 );
+		final List< DynamicKDTree< Integer >.Node > live = new ArrayList<>();
+		int nextValue = 0;
+		for ( int frame = 0; frame < 30; ++frame )
+		{
+			// insert some points and remove some others
+			for ( int i = 0; i < 100; ++i )
+				live.add( tree.insert( nextValue++, new RealPoint( rnd.nextDouble(), rnd.nextDouble() ) ) );
+			for ( int i = 0; i < 60 && !live.isEmpty(); ++i )
+				assertTrue( tree.remove( live.remove( rnd.nextInt( live.size() ) ) ) );
+			assertValidTree( tree, live );
+			assertSearches( tree, live, rnd );
+		}
+	}
+
+	@Test
+	public void testSortedInsertionStaysBalanced()
+	{
+		final DynamicKDTree< Integer > tree = new DynamicKDTree<>( 2 );
+		final List< DynamicKDTree< Integer >.Node > live = new ArrayList<>();
+		final int numPoints = 1 << 14;
+		for ( int i = 0; i < numPoints; ++i )
+			live.add( tree.insert( i, new RealPoint( i, 0.5 * i ) ) );
+		final int depth = assertValidTree( tree, live );
+		// height of a tree in which no subtree is more than ALPHA unbalanced
+		assertTrue( depth <= Math.log( numPoints ) / Math.log( 1 / DynamicKDTree.ALPHA ) + 2 );
+	}
+
+	@Test
+	public void testDuplicateCoordinateStaysBalanced()
+	{
+		// points on one column, and some identical points: quadratic with
+		// equal keys always sent to the same side
+		final Random rnd = new Random( 9 );
+		final DynamicKDTree< Integer > tree = new DynamicKDTree<>( 2 );
+		final List< DynamicKDTree< Integer >.Node > live = new ArrayList<>();
+		final int numPoints = 40000;
+		for ( int i = 0; i < numPoints; ++i )
+			live.add( tree.insert( i, i % 4 == 0 ? new RealPoint( 0.5, 0.25 ) : new RealPoint( 0.5, rnd.nextDouble() ) ) );
+		final int depth = assertValidTree( tree, live );
+		assertTrue( depth <= Math.log( numPoints ) / Math.log( 1 / DynamicKDTree.ALPHA ) + 2 );
+		assertSearches( tree, live, rnd );
+	}
+
+	@Test
+	public void testRemoveAndRebalance()
+	{
+		final Random rnd = new Random( 5 );
+		final List< RealPoint > positions = new ArrayList<>();
+		final List< Integer > values = new ArrayList<>();
+		for ( int i = 0; i < 1000; ++i )
+		{
+			positions.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble() ) );
+			values.add( i );
+		}
+		final DynamicKDTree< Integer > tree = new DynamicKDTree<>( values, positions );
+		final NearestNeighborSearchOnDynamicKDTree< Integer > nn = new NearestNeighborSearchOnDynamicKDTree<>( tree );
+		final List< DynamicKDTree< Integer >.Node > live = new ArrayList<>();
+		nn.search( new RealPoint( 0.5, 0.5 ) );
+		final DynamicKDTree< Integer >.Node nearest = nn.getNode();
+		assertTrue( tree.remove( nearest ) );
+		assertFalse( tree.remove( nearest ) );
+		nn.search( new RealPoint( 0.5, 0.5 ) );
+		assertTrue( nn.getNode() != nearest );
+
+		tree.rebalance();
+		collect( tree.getRoot(), live );
+		assertEquals( 999, live.size() );
+		assertValidTree( tree, live );
+		assertSearches( tree, live, rnd );
+
+		// removing all points empties the tree
+		for ( final DynamicKDTree< Integer >.Node node : live )
+			tree.remove( node );
+		assertEquals( 0, tree.size() );
+		nn.search( new RealPoint( 0.5, 0.5 ) );
+		assertNull( nn.getSampler() );
+	}
+
+	private static void collect( final DynamicKDTree< Integer >.Node node, final List< DynamicKDTree< Integer >.Node > nodes )
+	{
+		if ( node == null )
+			return;
+		if ( !node.isRemoved() )
+			nodes.add( node );
+		collect( node.left(), nodes );
+		collect( node.right(), nodes );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testEmptyPositionList()
+	{
+		new DynamicKDTree<>( new ArrayList< Integer >(), new ArrayList< RealPoint >() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testRemoveForeignNode()
+	{
+		final DynamicKDTree< Integer > a = new DynamicKDTree<>( 1 );
+		final DynamicKDTree< Integer > b = new DynamicKDTree<>( 1 );
+		b.remove( a.insert( 0, new RealPoint( 1.0 ) ) );
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+
+import org.junit.Test;
+
+public class FlatKDTreeTest
+{
+	private static double[] randomPoints( final int n, final int numPoints, final Random rnd )
+	{
+		final double[] points = new double[ n * numPoints ];
+		for ( int i = 0; i < points.length; ++i )
+			points[ i ] = rnd.nextDouble() * 100;
+		return points;
+	}
+
+	private static double[] gridPoints( final int n, final int width )
+	{
+		final int numPoints = ( int ) Math.pow( width, n );
+		final double[] points = new double[ n * numPoints ];
+		for ( int i = 0; i < numPoints; ++i )
+			for ( int d = 0, j = i; d < n; ++d, j /= width )
+				points[ i * n + d ] = j % width;
+		return points;
+	}
+
+	private static List< Integer > indices( final int numPoints )
+	{
+		final List< Integer > values = new ArrayList<>();
+		for ( int i = 0; i < numPoints; ++i )
+			values.add( i );
+		return values;
+	}
+
+	private static double[] squDistances( final int n, final double[] points, final double[] query )
+	{
+		final double[] distances = new double[ points.length / n ];
+		for ( int i = 0; i < distances.length; ++i )
+		{
+			double sum = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double diff = points[ i * n + d ] - query[ d ];
+				sum += diff * diff;
+			}
+			distances[ i ] = sum;
+		}
+		return distances;
+	}
+
+	private static void assertValidTree( final FlatKDTree< Integer > tree, final double[] points )
+	{
+		final int n = tree.numDimensions();
+		final int size = tree.numPoints();
+		final double[] positions = tree.getPositions();
+		final boolean[] seen = new boolean[ size ];
+		for ( int node = 0; node < size; ++node )
+		{
+			final int index = tree.valueIndex( node );
+			seen[ index ] = true;
+			assertEquals( index, tree.getValue( node ).intValue() );
+			for ( int d = 0; d < n; ++d )
+				assertEquals( points[ index * n + d ], positions[ node * n + d ], 0 );
+			assertSubtree( tree, 2 * node + 1, tree.splitDimension( node ), positions[ node * n + tree.splitDimension( node ) ], true );
+			assertSubtree( tree, 2 * node + 2, tree.splitDimension( node ), positions[ node * n + tree.splitDimension( node ) ], false );
+		}
+		for ( final boolean s : seen )
+			assertEquals( true, s );
+	}
+
+	private static void assertSubtree( final FlatKDTree< Integer > tree, final int node, final int d, final double split, final boolean left )
+	{
+		if ( node >= tree.numPoints() )
+			return;
+		final double x = tree.getPositions()[ node * tree.numDimensions() + d ];
+		assertEquals( true, left ? x <= split : x >= split );
+		assertSubtree( tree, 2 * node + 1, d, split, left );
+		assertSubtree( tree, 2 * node + 2, d, split, left );
+	}
+
+	@Test
+	public void testTreeStructure()
+	{
+		final Random rnd = new Random( 42 );
+		for ( final int numPoints : new int[] { 1, 2, 3, 7, 8, 100, 1023, 1024, 1025 } )
+		{
+			final double[] points = randomPoints( 3, numPoints, rnd );
+			assertValidTree( new FlatKDTree<>( 3, points, indices( numPoints ) ), points );
+		}
+		final double[] grid = gridPoints( 2, 20 );
+		assertValidTree( new FlatKDTree<>( 2, grid, indices( grid.length / 2 ) ), grid );
+	}
+
+	private static void assertParallelConstructionIsIdentical( final int n, final double[] points, final ForkJoinPool pool )
+	{
+		final List< Integer > values = indices( points.length / n );
+		final FlatKDTree< Integer > sequential = new FlatKDTree<>( n, points, values );
+		final FlatKDTree< Integer > parallel = new FlatKDTree<>( n, points, values, pool );
+		assertArrayEquals( sequential.getPositions(), parallel.getPositions(), 0 );
+		for ( int node = 0; node < sequential.numPoints(); ++node )
+			assertEquals( sequential.valueIndex( node ), parallel.valueIndex( node ) );
+	}
+
+	@Test
+	public void testParallelConstructionIsIdentical()
+	{
+		final ForkJoinPool pool = new ForkJoinPool( 4 );
+		try
+		{
+			assertParallelConstructionIsIdentical( 3, randomPoints( 3, 100000, new Random( 7 ) ), pool );
+			assertParallelConstructionIsIdentical( 2, gridPoints( 2, 300 ), pool );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testConstructFromRealPoints()
+	{
+		final Random rnd = new Random( 4 );
+		final List< RealPoint > points = new ArrayList<>();
+		for ( int i = 0; i < 100; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble() ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+		assertEquals( 100, tree.size() );
+		for ( int node = 0; node < tree.numPoints(); ++node )
+			for ( int d = 0; d < 2; ++d )
+				assertEquals( tree.getValue( node ).getDoublePosition( d ), tree.getPositions()[ node * 2 + d ], 0 );
+	}
+
+	private static void testSearches( final int n, final double[] points, final int numTests, final Random rnd )
+	{
+		final int numPoints = points.length / n;
+		final FlatKDTree< Integer > tree = new FlatKDTree<>( n, points, indices( numPoints ) );
+		final NearestNeighborSearchOnFlatKDTree< Integer > nn = new NearestNeighborSearchOnFlatKDTree<>( tree );
+		final int k = Math.min( 5, numPoints );
+		final KNearestNeighborSearchOnFlatKDTree< Integer > knn = new KNearestNeighborSearchOnFlatKDTree<>( tree, k );
+		final RadiusNeighborSearchOnFlatKDTree< Integer > radius = new RadiusNeighborSearchOnFlatKDTree<>( tree );
+		final double[] query = new double[ n ];
+		for ( int t = 0; t < numTests; ++t )
+		{
+			for ( int d = 0; d < n; ++d )
+				query[ d ] = rnd.nextDouble() * 120 - 10;
+			final double[] expected = squDistances( n, points, query );
+			final double[] sorted = expected.clone();
+			Arrays.sort( sorted );
+
+			nn.search( query );
+			assertEquals( sorted[ 0 ], nn.getSquareDistance(), 0 );
+			assertEquals( expected[ nn.getSampler().get() ], nn.getSquareDistance(), 0 );
+
+			knn.search( new RealPoint( query ) );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( sorted[ i ], knn.getSquareDistance( i ), 0 );
+				assertEquals( expected[ knn.getSampler( i ).get() ], knn.getSquareDistance( i ), 0 );
+			}
+
+			final double r = rnd.nextDouble() * 20;
+			radius.search( new RealPoint( query ), r, true );
+			int count = 0;
+			while ( count < sorted.length && sorted[ count ] <= r * r )
+				++count;
+			assertEquals( count, radius.numNeighbors() );
+			final double[] found = new double[ count ];
+			for ( int i = 0; i < count; ++i )
+			{
+				found[ i ] = radius.getSquareDistance( i );
+				assertEquals( expected[ radius.getSampler( i ).get() ], found[ i ], 0 );
+				for ( int d = 0; d < n; ++d )
+					assertEquals( points[ radius.getSampler( i ).get() * n + d ], radius.getPosition( i ).getDoublePosition( d ), 0 );
+			}
+			assertArrayEquals( Arrays.copyOf( sorted, count ), found, 0 );
+		}
+	}
+
+	@Test
+	public void testSearchesRandom()
+	{
+		final Random rnd = new Random( 435435435 );
+		for ( int n = 1; n <= 4; ++n )
+			testSearches( n, randomPoints( n, 1000, rnd ), 200, rnd );
+		testSearches( 3, randomPoints( 3, 1, rnd ), 10, rnd );
+	}
+
+	@Test
+	public void testSearchesGrid()
+	{
+		final Random rnd = new Random( 12 );
+		testSearches( 2, gridPoints( 2, 30 ), 200, rnd );
+		testSearches( 3, gridPoints( 3, 10 ), 200, rnd );
+	}
+
+	/**
+	 * Points in the z = 0 plane, all keys in dimension 2 are equal.
+	 */
+	private static double[] coplanarPoints( final int numPoints, final Random rnd )
+	{
+		final double[] points = randomPoints( 3, numPoints, rnd );
+		for ( int i = 0; i < numPoints; ++i )
+			points[ i * 3 + 2 ] = 0;
+		return points;
+	}
+
+	@Test
+	public void testCoplanar()
+	{
+		final Random rnd = new Random( 5 );
+
+		// quadratic with a partition that does not handle equal keys
+		final double[] points = coplanarPoints( 200000, rnd );
+		assertValidTree( new FlatKDTree<>( 3, points, indices( 200000 ) ), points );
+
+		testSearches( 3, coplanarPoints( 2000, rnd ), 100, rnd );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testEmptyPositionList()
+	{
+		new FlatKDTree<>( new ArrayList< Integer >(), new ArrayList< RealPoint >() );
+	}
+
+	@Test
+	public void testNodeRefCopy()
+	{
+		final double[] points = gridPoints( 2, 4 );
+		final FlatKDTree< Integer > tree = new FlatKDTree<>( 2, points, indices( 16 ) );
+		final NearestNeighborSearchOnFlatKDTree< Integer > nn = new NearestNeighborSearchOnFlatKDTree<>( tree );
+		nn.search( new double[] { 0.1, 0.1 } );
+		assertSame( nn.getSampler(), nn.getPosition() );
+		final NearestNeighborSearchOnFlatKDTree< Integer > copy = nn.copy();
+		nn.search( new double[] { 2.9, 2.9 } );
+		assertEquals( 0, copy.getSampler().get().intValue() );
+		assertEquals( 15, nn.getSampler().get().intValue() );
+	}
+}
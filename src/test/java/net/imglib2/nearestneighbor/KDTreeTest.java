@@ -34,14 +34,20 @@
 
 package net.imglib2.nearestneighbor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
 import net.imglib2.RealPoint;
 import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
 import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
@@ -436,6 +442,187 @@ public class KDTreeTest
 		assertTrue( testRadiusNeighbor( 3, 1000, 100, -5, 5 ) );
 	}
 
+	@Test
+	public void testRadiusNeighborSearchReusesBuffers()
+	{
+		final Random rnd = new Random( 4242 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 5000; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble() ) );
+		final KDTree< RealPoint > kdTree = new KDTree< RealPoint >( points, points );
+		final RadiusNeighborSearchOnKDTree< RealPoint > kd = new RadiusNeighborSearchOnKDTree< RealPoint >( kdTree );
+
+		// alternate between queries with many and few results
+		for ( final double radius : new double[] { 0.5, 0.01, 2, 0.05, 0 } )
+		{
+			for ( final boolean sort : new boolean[] { true, false } )
+			{
+				final RealPoint query = new RealPoint( rnd.nextDouble(), rnd.nextDouble() );
+				kd.search( query, radius, sort );
+				final HashSet< RealPoint > expected = new HashSet< RealPoint >();
+				for ( final RealPoint p : points )
+					if ( squDistance( query, p ) <= radius * radius )
+						expected.add( p );
+				assertEquals( expected.size(), kd.numNeighbors() );
+				double previous = 0;
+				for ( int i = 0; i < kd.numNeighbors(); ++i )
+				{
+					final RealPoint p = kd.getSampler( i ).get();
+					assertSame( p, ( ( KDTreeNode< ? > ) kd.getPosition( i ) ).get() );
+					assertEquals( squDistance( query, p ), kd.getSquareDistance( i ), 0 );
+					if ( sort )
+						assertTrue( kd.getSquareDistance( i ) >= previous );
+					previous = kd.getSquareDistance( i );
+					assertTrue( expected.remove( p ) );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRadiusNeighborSearchLegacySubclass()
+	{
+		final Random rnd = new Random( 4343 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 1000; ++i )
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble() ) );
+		final KDTree< RealPoint > kdTree = new KDTree< RealPoint >( points, points );
+
+		// a subclass written against the previous version, which collected
+		// results in resultPoints
+		final RadiusNeighborSearchOnKDTree< RealPoint > legacy = new RadiusNeighborSearchOnKDTree< RealPoint >( kdTree )
+		{
+			@SuppressWarnings( "deprecation" )
+			@Override
+			protected void searchNode( final KDTreeNode< RealPoint > current, final double squRadius )
+			{
+				final double squDistance = current.squDistanceTo( pos );
+				if ( squDistance <= squRadius )
+					resultPoints.add( new ValuePair< KDTreeNode< RealPoint >, Double >( current, squDistance ) );
+				if ( current.left != null )
+					searchNode( current.left, squRadius );
+				if ( current.right != null )
+					searchNode( current.right, squRadius );
+			}
+		};
+		final RadiusNeighborSearchOnKDTree< RealPoint > kd = new RadiusNeighborSearchOnKDTree< RealPoint >( kdTree );
+
+		for ( int q = 0; q < 2; ++q )
+		{
+			final RealPoint query = new RealPoint( rnd.nextDouble(), rnd.nextDouble() );
+			legacy.search( query, 0.2, true );
+			kd.search( query, 0.2, true );
+			assertEquals( kd.numNeighbors(), legacy.numNeighbors() );
+			for ( int i = 0; i < kd.numNeighbors(); ++i )
+				assertEquals( kd.getSquareDistance( i ), legacy.getSquareDistance( i ), 0 );
+		}
+	}
+
+	@Test
+	public void testRadiusNeighborSearchKeepsOrderOfEqualDistances()
+	{
+		// many duplicates of few points, so that many results have equal
+		// distances
+		final Random rnd = new Random( 4444 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final ArrayList< Integer > values = new ArrayList< Integer >();
+		for ( int i = 0; i < 2000; ++i )
+		{
+			points.add( new RealPoint( rnd.nextInt( 5 ), rnd.nextInt( 5 ) ) );
+			values.add( i );
+		}
+		final KDTree< Integer > kdTree = new KDTree< Integer >( values, points );
+		final RadiusNeighborSearchOnKDTree< Integer > kd = new RadiusNeighborSearchOnKDTree< Integer >( kdTree );
+
+		final RealPoint query = new RealPoint( 2, 2 );
+		kd.search( query, 2, false );
+		final ArrayList< ValuePair< Integer, Double > > expected = new ArrayList< ValuePair< Integer, Double > >();
+		for ( int i = 0; i < kd.numNeighbors(); ++i )
+			expected.add( new ValuePair< Integer, Double >( kd.getSampler( i ).get(), kd.getSquareDistance( i ) ) );
+		Collections.sort( expected, new Comparator< ValuePair< Integer, Double > >()
+		{
+			@Override
+			public int compare( final ValuePair< Integer, Double > o1, final ValuePair< Integer, Double > o2 )
+			{
+				return Double.compare( o1.b, o2.b );
+			}
+		} );
+
+		kd.search( query, 2, true );
+		assertEquals( expected.size(), kd.numNeighbors() );
+		for ( int i = 0; i < kd.numNeighbors(); ++i )
+		{
+			assertSame( expected.get( i ).a, kd.getSampler( i ).get() );
+			assertEquals( expected.get( i ).b, kd.getSquareDistance( i ), 0 );
+		}
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	private static < T > void assertSameTree( final KDTreeNode< T > expected, final KDTreeNode< T > actual )
+	{
+		if ( expected == null )
+		{
+			assertNull( actual );
+			return;
+		}
+		assertEquals( expected.getSplitDimension(), actual.getSplitDimension() );
+		for ( int d = 0; d < expected.numDimensions(); ++d )
+			assertEquals( expected.getDoublePosition( d ), actual.getDoublePosition( d ), 0 );
+		assertSame( expected.get(), actual.get() );
+		assertSameTree( expected.left, actual.left );
+		assertSameTree( expected.right, actual.right );
+	}
+
+	@Test
+	public void testParallelConstructionIsIdentical()
+	{
+		assertParallelConstructionIsIdentical( false );
+	}
+
+	@Test
+	public void testParallelConstructionCoplanar()
+	{
+		// quadratic with a partition that does not handle equal keys
+		assertParallelConstructionIsIdentical( true );
+	}
+
+	private static void assertParallelConstructionIsIdentical( final boolean coplanar )
+	{
+		final Random rnd = new Random( 12345 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final ArrayList< Integer > values = new ArrayList< Integer >();
+		for ( int i = 0; i < 100000; ++i )
+		{
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble(), coplanar ? 0 : rnd.nextDouble() ) );
+			values.add( i );
+		}
+		final ForkJoinPool pool = new ForkJoinPool( 4 );
+		try
+		{
+			final KDTree< Integer > sequential = new KDTree< Integer >( values, new ArrayList< RealPoint >( points ) );
+			final KDTree< Integer > parallel = new KDTree< Integer >( values, new ArrayList< RealPoint >( points ), pool );
+			assertSameTree( sequential.getRoot(), parallel.getRoot() );
+
+			final ArrayList< RealPoint > sequentialPoints = new ArrayList< RealPoint >( points );
+			final ArrayList< RealPoint > parallelPoints = new ArrayList< RealPoint >( points );
+			assertSameTree( new KDTree< RealPoint >( sequentialPoints, sequentialPoints ).getRoot(), new KDTree< RealPoint >( parallelPoints, parallelPoints, pool ).getRoot() );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
 	public static void main( final String[] args )
 	{
 		for ( int i = 0; i < 5; ++i )
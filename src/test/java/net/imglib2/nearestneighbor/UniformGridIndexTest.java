@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.UniformGridIndex;
+import net.imglib2.interpolation.neighborsearch.NearestNeighborSearchInterpolatorFactory;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnIterableRealInterval;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnUniformGrid;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+
+public class UniformGridIndexTest
+{
+	private static List< Integer > indices( final int numPoints )
+	{
+		final List< Integer > values = new ArrayList<>();
+		for ( int i = 0; i < numPoints; ++i )
+			values.add( i );
+		return values;
+	}
+
+	private static double minSquDistance( final int n, final double[] points, final double[] query )
+	{
+		double best = Double.MAX_VALUE;
+		for ( int i = 0; i < points.length / n; ++i )
+		{
+			double sum = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final double diff = points[ i * n + d ] - query[ d ];
+				sum += diff * diff;
+			}
+			best = Math.min( best, sum );
+		}
+		return best;
+	}
+
+	private static void testNearestNeighbor( final int n, final double[] points, final double cellSize, final Random rnd )
+	{
+		final UniformGridIndex< Integer > grid = new UniformGridIndex<>( n, points, indices( points.length / n ), cellSize );
+		final NearestNeighborSearchOnUniformGrid< Integer > search = new NearestNeighborSearchOnUniformGrid<>( grid );
+		final double[] query = new double[ n ];
+		for ( int t = 0; t < 500; ++t )
+		{
+			// queries inside and outside of the bounding box
+			for ( int d = 0; d < n; ++d )
+				query[ d ] = rnd.nextDouble() * 140 - 20;
+			search.search( new RealPoint( query ) );
+			assertEquals( minSquDistance( n, points, query ), search.getSquareDistance(), 0 );
+			final int index = search.getSampler().get();
+			for ( int d = 0; d < n; ++d )
+				assertEquals( points[ index * n + d ], search.getPosition().getDoublePosition( d ), 0 );
+		}
+	}
+
+	private static double[] randomPoints( final int n, final int numPoints, final Random rnd )
+	{
+		final double[] points = new double[ n * numPoints ];
+		for ( int i = 0; i < points.length; ++i )
+			points[ i ] = rnd.nextDouble() * 100;
+		return points;
+	}
+
+	@Test
+	public void testRandomPoints()
+	{
+		final Random rnd = new Random( 42 );
+		for ( int n = 1; n <= 3; ++n )
+			testNearestNeighbor( n, randomPoints( n, 2000, rnd ), 0, rnd );
+	}
+
+	@Test
+	public void testExplicitCellSize()
+	{
+		final Random rnd = new Random( 43 );
+		final double[] points = randomPoints( 2, 1000, rnd );
+		for ( final double cellSize : new double[] { 0.5, 7, 1000 } )
+			testNearestNeighbor( 2, points, cellSize, rnd );
+	}
+
+	@Test
+	public void testClusteredPoints()
+	{
+		final Random rnd = new Random( 44 );
+		final double[] points = new double[ 3 * 1000 ];
+		for ( int i = 0; i < 1000; ++i )
+		{
+			// one dense cluster and a few far away outliers
+			final double scale = i < 990 ? 1 : 100;
+			for ( int d = 0; d < 3; ++d )
+				points[ i * 3 + d ] = rnd.nextGaussian() * scale;
+		}
+		testNearestNeighbor( 3, points, 0, rnd );
+	}
+
+	@Test
+	public void testDegeneratePoints()
+	{
+		final Random rnd = new Random( 45 );
+		// all points on a line in 2D
+		final double[] line = new double[ 2 * 100 ];
+		for ( int i = 0; i < 100; ++i )
+			line[ 2 * i ] = i;
+		testNearestNeighbor( 2, line, 0, rnd );
+		// a single point
+		testNearestNeighbor( 3, new double[] { 1, 2, 3 }, 0, rnd );
+	}
+
+	@Test
+	public void testCopy()
+	{
+		final double[] points = { 0, 0, 10, 10 };
+		final UniformGridIndex< Integer > grid = new UniformGridIndex<>( 2, points, indices( 2 ) );
+		final NearestNeighborSearchOnUniformGrid< Integer > search = new NearestNeighborSearchOnUniformGrid<>( grid );
+		search.search( new double[] { 1, 1 } );
+		final NearestNeighborSearchOnUniformGrid< Integer > copy = search.copy();
+		search.search( new double[] { 9, 9 } );
+		assertEquals( 0, copy.getSampler().get().intValue() );
+		assertEquals( 2, copy.getSquareDistance(), 0 );
+		assertEquals( 1, search.getSampler().get().intValue() );
+	}
+
+	@Test
+	public void testInterpolation()
+	{
+		final Random rnd = new Random( 46 );
+		final RealPointSampleList< DoubleType > samples = new RealPointSampleList<>( 2 );
+		for ( int i = 0; i < 1000; ++i )
+		{
+			final double x = rnd.nextDouble() * 10;
+			final double y = rnd.nextDouble() * 10;
+			samples.add( new RealPoint( x, y ), new DoubleType( x + 100 * y ) );
+		}
+		final UniformGridIndex< DoubleType > grid = new UniformGridIndex<>( samples );
+		final RealRandomAccess< DoubleType > access = new NearestNeighborSearchInterpolatorFactory< DoubleType >().create( new NearestNeighborSearchOnUniformGrid<>( grid ) );
+		final NearestNeighborSearchOnIterableRealInterval< DoubleType > reference = new NearestNeighborSearchOnIterableRealInterval<>( samples );
+		for ( int t = 0; t < 100; ++t )
+		{
+			final double[] p = { rnd.nextDouble() * 10, rnd.nextDouble() * 10 };
+			access.setPosition( p );
+			reference.search( new RealPoint( p ) );
+			assertEquals( reference.getSampler().get().get(), access.get().get(), 0 );
+		}
+	}
+}
@@ -38,16 +38,30 @@ import static net.imglib2.util.Util.percentile;
 import static net.imglib2.util.Util.quicksort;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.List;
 
+import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.list.ListImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.img.segmented.SegmentedArrayImgFactory;
+import net.imglib2.type.Type;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.operators.ValueEquals;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
 import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -367,4 +381,87 @@ public class ImgUtilTest
 		}
 	}
 
+
+	@Test
+	public void testCopyRandomAccessibleInterval()
+	{
+		final long[] dims = { 37, 21, 5 };
+		final List< ImgFactory< IntType > > factories = Arrays.asList(
+				new ArrayImgFactory<>( new IntType() ),
+				new PlanarImgFactory<>( new IntType() ),
+				new SegmentedArrayImgFactory<>( new IntType(), 7 ),
+				new CellImgFactory<>( new IntType(), 8 ),
+				new CellImgFactory<>( new IntType(), 5, 7, 3 ),
+				new ListImgFactory<>( new IntType() ) );
+		for ( final ImgFactory< IntType > sourceFactory : factories )
+		{
+			final Img< IntType > source = sourceFactory.create( dims );
+			final Cursor< IntType > c = source.localizingCursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				c.get().set( ( int ) IntervalIndexer.positionToIndex( c, source ) );
+			}
+			for ( final ImgFactory< IntType > destinationFactory : factories )
+			{
+				final Img< IntType > destination = destinationFactory.create( dims );
+				ImgUtil.copy( source, destination );
+				assertImagesEqual( source, destination );
+			}
+		}
+	}
+
+	@Test
+	public void testCopyViews()
+	{
+		final Img< IntType > source = new CellImgFactory<>( new IntType(), 4 ).create( 10, 10 );
+		int i = 0;
+		for ( final IntType t : source )
+			t.set( i++ );
+		final RandomAccessibleInterval< IntType > sourceView = Views.interval( Views.translate( source, 5, -3 ), new long[] { 6, -2 }, new long[] { 12, 4 } );
+		final Img< IntType > destination = new PlanarImgFactory<>( new IntType() ).create( 7, 7 );
+		ImgUtil.copy( sourceView, destination );
+		assertImagesEqual( Views.zeroMin( sourceView ), destination );
+	}
+
+	@Test
+	public void testCopySubByteTypes()
+	{
+		final long[] dims = { 13, 11, 3 };
+		final Img< BitType > bits = new ArrayImgFactory<>( new BitType() ).create( dims );
+		int i = 0;
+		for ( final BitType t : bits )
+			t.set( i++ % 3 == 0 );
+		for ( final ImgFactory< BitType > factory : Arrays.< ImgFactory< BitType > >asList(
+				new ArrayImgFactory<>( new BitType() ),
+				new PlanarImgFactory<>( new BitType() ),
+				new SegmentedArrayImgFactory<>( new BitType(), 6 ),
+				new SegmentedArrayImgFactory<>( new BitType(), 5 ) ) )
+		{
+			final Img< BitType > copy = factory.create( dims );
+			ImgUtil.copy( bits, copy );
+			assertImagesEqual( bits, copy );
+		}
+
+		final Img< Unsigned12BitType > twelve = new PlanarImgFactory<>( new Unsigned12BitType() ).create( dims );
+		for ( final Unsigned12BitType t : twelve )
+			t.set( i++ % 4096 );
+		final Img< Unsigned12BitType > copy = new ArrayImgFactory<>( new Unsigned12BitType() ).create( dims );
+		ImgUtil.copy( twelve, copy );
+		assertImagesEqual( twelve, copy );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testCopyDimensionMismatch()
+	{
+		ImgUtil.copy( new ArrayImgFactory<>( new IntType() ).create( 3, 4 ), new ArrayImgFactory<>( new IntType() ).create( 4, 3 ) );
+	}
+
+	private static < T extends Type< T > & ValueEquals< T > > void assertImagesEqual( final RandomAccessibleInterval< T > expected, final RandomAccessibleInterval< T > actual )
+	{
+		final Cursor< T > e = Views.flatIterable( expected ).cursor();
+		final Cursor< T > a = Views.flatIterable( actual ).cursor();
+		while ( e.hasNext() )
+			assertTrue( e.next().valueEquals( a.next() ) );
+	}
 }
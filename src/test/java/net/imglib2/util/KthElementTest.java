@@ -43,6 +43,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.ListIterator;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -635,4 +636,65 @@ public class KthElementTest
 		for ( int p = 0; p < permutation.length; ++p )
 			assertTrue( values.get( p ).equals( origvalues.get( permutation[ p ] ) ) );
 	}
+
+	@Test
+	public void testKthElementDoublePermutationSubrange()
+	{
+		final double[] values = new double[] { 123, 21, 12912, 321, 32, 12345, 249, 5823, 834, 10, 23, 329, 21, 21 };
+		final double[] origvalues = values.clone();
+
+		final int[] permutation = new int[ values.length ];
+		for ( int k = 0; k < permutation.length; ++k )
+			permutation[ k ] = k;
+
+		final int i = 2;
+		final int j = values.length - 2;
+		for ( int k = i; k <= j; ++k )
+		{
+			KthElement.kthElement( i, j, k, values, permutation );
+
+			// the elements before the k-th should be equal or smaller than the k-th
+			for ( int p = i; p < k; ++p )
+				assertTrue( values[ p ] <= values[ k ] );
+
+			// the elements after the k-th should be equal or greater than the k-th
+			for ( int p = k + 1; p <= j; ++p )
+				assertTrue( values[ p ] >= values[ k ] );
+
+			// elements outside [i, j] are untouched
+			assertTrue( values[ 0 ] == origvalues[ 0 ] && values[ 1 ] == origvalues[ 1 ] && values[ values.length - 1 ] == origvalues[ values.length - 1 ] );
+
+			for ( int p = 0; p < permutation.length; ++p )
+				assertTrue( values[ p ] == origvalues[ permutation[ p ] ] );
+		}
+	}
+
+	@Test
+	public void testKthElementDoublePermutationEqualKeys()
+	{
+		// many equal keys: all-equal (quadratic with a partition that does not
+		// handle equal keys) and few distinct values
+		final Random rnd = new Random( 3 );
+		for ( final int numDistinct : new int[] { 1, 2, 5 } )
+		{
+			final double[] values = new double[ 200000 ];
+			for ( int p = 0; p < values.length; ++p )
+				values[ p ] = rnd.nextInt( numDistinct );
+			final double[] origvalues = values.clone();
+			final int[] permutation = new int[ values.length ];
+			for ( int p = 0; p < permutation.length; ++p )
+				permutation[ p ] = p;
+
+			for ( final int k : new int[] { 0, values.length / 3, values.length / 2, values.length - 1 } )
+			{
+				KthElement.kthElement( 0, values.length - 1, k, values, permutation );
+				for ( int p = 0; p < k; ++p )
+					assertTrue( values[ p ] <= values[ k ] );
+				for ( int p = k + 1; p < values.length; ++p )
+					assertTrue( values[ p ] >= values[ k ] );
+				for ( int p = 0; p < permutation.length; ++p )
+					assertTrue( values[ p ] == origvalues[ permutation[ p ] ] );
+			}
+		}
+	}
 }
@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RealSumsTest
+{
+	private static ExecutorService executorService;
+
+	@BeforeClass
+	public static void startExecutor()
+	{
+		executorService = Executors.newFixedThreadPool( 4 );
+	}
+
+	@AfterClass
+	public static void stopExecutor()
+	{
+		executorService.shutdown();
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 401, 333 );
+		fill( img, new Random( 1 ), 1000 );
+		assertStatistics( img );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		final Img< UnsignedShortType > img = PlanarImgs.unsignedShorts( 123, 97, 11 );
+		fill( img, new Random( 2 ), 65535 );
+		assertStatistics( img );
+
+		final Img< ByteType > bytes = PlanarImgs.bytes( 50, 60, 7 );
+		int i = 0;
+		for ( final ByteType t : bytes )
+			t.set( ( byte ) ( i++ * 37 ) );
+		assertStatistics( bytes );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		final Img< UnsignedIntType > img = new CellImgFactory<>( new UnsignedIntType(), 64, 32 ).create( 300, 211 );
+		final Random random = new Random( 3 );
+		for ( final UnsignedIntType t : img )
+			t.set( random.nextLong() & 0xffffffffL );
+		assertStatistics( img );
+	}
+
+	@Test
+	public void testLazyCellImg()
+	{
+		final CellGrid grid = new CellGrid( new long[] { 700, 311 }, new int[] { 64, 32 } );
+		final LazyCellImg< IntType, IntAccess > img = new LazyCellImg<>( grid, new IntType(), index -> {
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final int size = cellDims[ 0 ] * cellDims[ 1 ];
+			// every third cell is not backed by a primitive array
+			final IntAccess data = index % 3 == 1 ? new IntBufferAccess( size ) : new IntArray( size );
+			for ( int i = 0; i < size; ++i )
+			{
+				final long x = cellMin[ 0 ] + i % cellDims[ 0 ];
+				final long y = cellMin[ 1 ] + i / cellDims[ 0 ];
+				data.setValue( i, ( int ) ( ( x * 7919 + y * 104729 ) % 100003 ) - 50000 );
+			}
+			return new Cell<>( cellDims, cellMin, data );
+		} );
+		assertStatistics( img );
+	}
+
+	@Test
+	public void testView()
+	{
+		final Img< DoubleType > img = ArrayImgs.doubles( 300, 300 );
+		fill( img, new Random( 4 ), 1 );
+		assertStatistics( Views.interval( img, new long[] { 10, 20 }, new long[] { 250, 299 } ) );
+		assertStatistics( Views.permute( img, 0, 1 ) );
+	}
+
+	@Test
+	public void testCompensation()
+	{
+		// a large value followed by many small ones, which a naive sum would
+		// drop entirely
+		final Img< DoubleType > img = ArrayImgs.doubles( 1000, 1000 );
+		for ( final DoubleType t : img )
+			t.set( 1.0 );
+		img.firstElement().set( 1e17 );
+		assertEquals( 1e17 + 999999, RealSums.sum( img ), 0 );
+		assertEquals( 1e17 + 999999, RealSums.sum( img, executorService ), 0 );
+
+		// values with a large offset, where the naive variance formula fails
+		for ( final DoubleType t : img )
+			t.set( 1e9 );
+		int i = 0;
+		for ( final DoubleType t : img )
+			t.set( t.get() + ( i++ % 2 ) );
+		assertEquals( 0.25 * img.size() / ( img.size() - 1 ), RealSums.variance( img, executorService ), 1e-12 );
+	}
+
+	@Test
+	public void testEmptyAndSingle()
+	{
+		final Img< FloatType > empty = ArrayImgs.floats( 0 );
+		assertEquals( 0, RealSums.sum( empty ), 0 );
+		assertTrue( Double.isNaN( RealSums.mean( empty ) ) );
+		final Img< FloatType > single = ArrayImgs.floats( new float[] { 3 }, 1 );
+		assertEquals( 3, RealSums.mean( single ), 0 );
+		assertTrue( Double.isNaN( RealSums.variance( single ) ) );
+	}
+
+	private static < T extends RealType< T > > void fill( final Iterable< T > img, final Random random, final double max )
+	{
+		for ( final T t : img )
+			t.setReal( Math.floor( random.nextDouble() * max ) );
+	}
+
+	private static void assertStatistics( final RandomAccessibleInterval< ? extends RealType< ? > > interval )
+	{
+		BigDecimal referenceSum = BigDecimal.ZERO;
+		for ( final RealType< ? > t : Views.iterable( interval ) )
+			referenceSum = referenceSum.add( new BigDecimal( t.getRealDouble() ) );
+		final long n = Intervals.numElements( interval );
+		final BigDecimal referenceMean = referenceSum.divide( new BigDecimal( n ), MathContext.DECIMAL128 );
+		BigDecimal referenceSquares = BigDecimal.ZERO;
+		for ( final RealType< ? > t : Views.iterable( interval ) )
+		{
+			final BigDecimal d = new BigDecimal( t.getRealDouble() ).subtract( referenceMean );
+			referenceSquares = referenceSquares.add( d.multiply( d ) );
+		}
+		final double sum = referenceSum.doubleValue();
+		final double mean = referenceMean.doubleValue();
+		final double variance = referenceSquares.divide( new BigDecimal( n - 1 ), MathContext.DECIMAL128 ).doubleValue();
+
+		assertEquals( sum, RealSums.sum( interval ), 0 );
+		assertEquals( sum, RealSums.sum( interval, executorService ), 0 );
+		assertEquals( mean, RealSums.mean( interval ), Math.ulp( mean ) );
+		assertEquals( mean, RealSums.mean( interval, executorService ), Math.ulp( mean ) );
+		assertEquals( variance, RealSums.variance( interval ), 1e-12 * variance );
+		assertEquals( variance, RealSums.variance( interval, executorService ), 1e-12 * variance );
+	}
+}